@@ -34,24 +34,41 @@ CREATE TABLE `user_roles` (
 -- Product Table
 CREATE TABLE `product` (
     id BINARY(16) PRIMARY KEY,
+    version BIGINT NOT NULL DEFAULT 0,
     name VARCHAR(255) NOT NULL,
     description TEXT,
     price DECIMAL(10, 2) NOT NULL,
     image_src VARCHAR(250),
     stock INT DEFAULT 0,
+    stock_shards INT NOT NULL DEFAULT 0,
     category VARCHAR(100) NOT NULL,
     created_at DATETIME DEFAULT CURRENT_TIMESTAMP,
-    updated_at DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP
+    updated_at DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    KEY idx_product_category (category),
+    KEY idx_product_stock_shards (stock_shards)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
+-- Stock of hot products split over several rows (product.stock_shards > 0)
+CREATE TABLE `product_stock_shard` (
+    id BINARY(16) PRIMARY KEY,
+    product_id BINARY(16) NOT NULL,
+    shard_index INT NOT NULL,
+    stock INT NOT NULL DEFAULT 0,
+    UNIQUE KEY uk_product_shard (product_id, shard_index),
+    CONSTRAINT fk_stock_shard_product FOREIGN KEY (product_id) REFERENCES `product`(id)
+        ON DELETE NO ACTION ON UPDATE NO ACTION
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
 
 -- Basket (Cart) Table
 CREATE TABLE `basket` (
     id BINARY(16) PRIMARY KEY,
+    version BIGINT NOT NULL DEFAULT 0,
     user_id BINARY(16) NOT NULL,
     status VARCHAR(30) NOT NULL,
     created_at DATETIME DEFAULT CURRENT_TIMESTAMP,
     updated_at DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
     KEY fk_user_idx (user_id),
+    KEY idx_basket_status_updated (status, updated_at),
     CONSTRAINT fk_user FOREIGN KEY (user_id) REFERENCES `user`(id)
         ON DELETE NO ACTION ON UPDATE NO ACTION
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
@@ -59,6 +76,7 @@ CREATE TABLE `basket` (
 -- BasketItem Table
 CREATE TABLE `basket_item` (
     id BINARY(16) PRIMARY KEY,
+    version BIGINT NOT NULL DEFAULT 0,
     basket_id BINARY(16) NOT NULL,
     product_id BINARY(16) NOT NULL,
     quantity INT NOT NULL,
@@ -75,6 +93,7 @@ CREATE TABLE `basket_item` (
 -- Order Table
 CREATE TABLE `order` (
     id BINARY(16) PRIMARY KEY,
+    version BIGINT NOT NULL DEFAULT 0,
     user_id BINARY(16) NOT NULL,
     basket_id BINARY(16) NOT NULL,
     total_price DECIMAL(10, 2) NOT NULL,
@@ -85,6 +104,7 @@ CREATE TABLE `order` (
     updated_at DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
     KEY fk_order_user_idx (user_id),
     KEY fk_order_basket_idx (basket_id),
+    UNIQUE KEY uk_order_paypal_order_id (paypal_order_id),
     CONSTRAINT fk_order_user FOREIGN KEY (user_id) REFERENCES `user`(id)
         ON DELETE NO ACTION ON UPDATE NO ACTION,
     CONSTRAINT fk_order_basket FOREIGN KEY (basket_id) REFERENCES `basket`(id)
@@ -116,8 +136,10 @@ CREATE TABLE `payment` (
     payment_method VARCHAR(255) NOT NULL,
     status VARCHAR(20) NOT NULL,
     transaction_id VARCHAR(255),
+    amount DECIMAL(10, 2),
     created_at DATETIME DEFAULT CURRENT_TIMESTAMP,
     KEY fk_payment_order_idx (order_id),
+    KEY idx_payment_status (status),
     CONSTRAINT fk_payment_order FOREIGN KEY (order_id) REFERENCES `order`(id)
         ON DELETE NO ACTION ON UPDATE NO ACTION
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
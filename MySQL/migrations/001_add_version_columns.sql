@@ -0,0 +1,7 @@
+-- Optimistic locking (@Version) for databases created before the version columns were added to initdb/schema.sql
+USE `e-commerce`;
+
+ALTER TABLE `product` ADD COLUMN version BIGINT NOT NULL DEFAULT 0 AFTER id;
+ALTER TABLE `basket` ADD COLUMN version BIGINT NOT NULL DEFAULT 0 AFTER id;
+ALTER TABLE `basket_item` ADD COLUMN version BIGINT NOT NULL DEFAULT 0 AFTER id;
+ALTER TABLE `order` ADD COLUMN version BIGINT NOT NULL DEFAULT 0 AFTER id;
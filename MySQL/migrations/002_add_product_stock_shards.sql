@@ -0,0 +1,14 @@
+-- Opt-in sharded stock for hot products, for databases created before it was added to initdb/schema.sql
+USE `e-commerce`;
+
+ALTER TABLE `product` ADD COLUMN stock_shards INT NOT NULL DEFAULT 0 AFTER stock;
+
+CREATE TABLE `product_stock_shard` (
+    id BINARY(16) PRIMARY KEY,
+    product_id BINARY(16) NOT NULL,
+    shard_index INT NOT NULL,
+    stock INT NOT NULL DEFAULT 0,
+    UNIQUE KEY uk_product_shard (product_id, shard_index),
+    CONSTRAINT fk_stock_shard_product FOREIGN KEY (product_id) REFERENCES `product`(id)
+        ON DELETE NO ACTION ON UPDATE NO ACTION
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
@@ -0,0 +1,11 @@
+-- Indexes for the queries that were full scans (see QueryPlanRegressionTest), for databases created before they were added to initdb/schema.sql
+USE `e-commerce`;
+
+-- basket expiry sweep: ACTIVE baskets not updated since the cutoff
+ALTER TABLE `basket` ADD KEY idx_basket_status_updated (status, updated_at);
+-- catalog by category
+ALTER TABLE `product` ADD KEY idx_product_category (category);
+-- stock shard rebalancing: the few products with stock_shards > 0
+ALTER TABLE `product` ADD KEY idx_product_stock_shards (stock_shards);
+-- PayPal capture: the order of a PayPal order id (unique, as mapped on Order)
+ALTER TABLE `order` ADD UNIQUE KEY uk_order_paypal_order_id (paypal_order_id);
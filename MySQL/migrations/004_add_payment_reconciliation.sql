@@ -0,0 +1,7 @@
+-- Payments are recorded for captures PayPal did not answer, and settled by the reconciliation job
+USE `e-commerce`;
+
+-- mapped on Payment but missing from the table
+ALTER TABLE `payment` ADD COLUMN amount DECIMAL(10, 2) AFTER transaction_id;
+-- reconciliation job: the PENDING payments
+ALTER TABLE `payment` ADD KEY idx_payment_status (status);
@@ -0,0 +1,71 @@
+package com.fabiolima.e_commerce.benchmarks;
+
+import com.fabiolima.e_commerce.entities.Basket;
+import com.fabiolima.e_commerce.entities.Order;
+import com.fabiolima.e_commerce.monitoring.BusinessMetrics;
+import com.fabiolima.e_commerce.repository.BasketRepository;
+import com.fabiolima.e_commerce.service.implementation.BasketServiceImpl;
+import com.fabiolima.e_commerce.service.implementation.OrderServiceImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The per-line work of pricing a basket and of turning it into an order, on 1 to 1000 line baskets.
+ * The repository answers from memory, so only the service code is measured (no transaction, no observation).
+ * transferBasketDataToOrder is private and reached through a method handle, which the JIT inlines like a direct call;
+ * convertBasketToOrder around it only adds a repository save and a debug log.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BasketPricingBenchmark {
+
+    private static final MethodHandle TRANSFER_BASKET_DATA_TO_ORDER;
+
+    static {
+        try {
+            TRANSFER_BASKET_DATA_TO_ORDER = MethodHandles.privateLookupIn(OrderServiceImpl.class, MethodHandles.lookup())
+                    .findVirtual(OrderServiceImpl.class, "transferBasketDataToOrder",
+                            MethodType.methodType(void.class, Basket.class, Order.class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    @Param({"1", "10", "100", "1000"})
+    int lines;
+
+    private BasketServiceImpl basketService;
+    private OrderServiceImpl orderService;
+    private Basket basket;
+
+    @Setup
+    public void setUp() {
+        basket = BenchmarkData.basket(lines);
+        BusinessMetrics businessMetrics = new BusinessMetrics(new SimpleMeterRegistry());
+        basketService = new BasketServiceImpl(BenchmarkData.repository(BasketRepository.class, basket),
+                null, null, businessMetrics);
+        orderService = new OrderServiceImpl(null, null, null, businessMetrics);
+    }
+
+    @Benchmark
+    public BigDecimal calculateTotalPrice() {
+        return basketService.calculateTotalPrice(basket.getId());
+    }
+
+    @Benchmark
+    public Order transferBasketDataToOrder() throws Throwable {
+        Order order = new Order();
+        TRANSFER_BASKET_DATA_TO_ORDER.invokeExact(orderService, basket, order);
+        return order;
+    }
+}
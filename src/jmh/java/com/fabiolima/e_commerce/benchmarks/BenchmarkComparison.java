@@ -0,0 +1,64 @@
+package com.fabiolima.e_commerce.benchmarks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compares two JMH JSON result files (e.g. one kept from the previous release and target/jmh-result.json):
+ * score and allocated bytes per operation (gc.alloc.rate.norm) of every benchmark and parameter set found in both.
+ * <pre>
+ * mvn -P benchmarks compile exec:java -Dexec.mainClass=com.fabiolima.e_commerce.benchmarks.BenchmarkComparison \
+ *     -Dexec.args="baseline.json target/jmh-result.json"
+ * </pre>
+ */
+public final class BenchmarkComparison {
+
+    private static final String ALLOCATION = "gc.alloc.rate.norm";
+
+    private BenchmarkComparison() {}
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2)
+            throw new IllegalArgumentException("Usage: BenchmarkComparison <baseline.json> <current.json>");
+        Map<String, JsonNode> baseline = read(new File(args[0]));
+        Map<String, JsonNode> current = read(new File(args[1]));
+
+        System.out.printf("%-80s %14s %14s %8s %12s %12s%n",
+                "benchmark", "baseline", "current", "change", "B/op before", "B/op after");
+        for (Map.Entry<String, JsonNode> entry : current.entrySet()) {
+            JsonNode before = baseline.get(entry.getKey());
+            if (before == null)
+                continue;
+            JsonNode after = entry.getValue();
+            double beforeScore = before.path("primaryMetric").path("score").asDouble();
+            double afterScore = after.path("primaryMetric").path("score").asDouble();
+            System.out.printf("%-80s %14.3f %14.3f %+7.1f%% %12s %12s%n", entry.getKey(), beforeScore, afterScore,
+                    beforeScore == 0 ? 0 : (afterScore - beforeScore) * 100 / beforeScore,
+                    allocation(before), allocation(after));
+        }
+    }
+
+    // keyed by benchmark name, parameters and unit, so a changed mode or unit does not compare unlike scores
+    private static Map<String, JsonNode> read(File file) throws IOException {
+        Map<String, JsonNode> results = new LinkedHashMap<>();
+        for (JsonNode result : new ObjectMapper().readTree(file)) {
+            Map<String, String> params = new TreeMap<>();
+            result.path("params").fields().forEachRemaining(param -> params.put(param.getKey(), param.getValue().asText()));
+            String name = result.path("benchmark").asText().replace("com.fabiolima.e_commerce.benchmarks.", "");
+            results.put(name + (params.isEmpty() ? "" : " " + params) + " " + result.path("primaryMetric").path("scoreUnit").asText(),
+                    result);
+        }
+        return results;
+    }
+
+    private static String allocation(JsonNode result) {
+        JsonNode metric = result.path("secondaryMetrics").path(ALLOCATION);
+        return metric.isMissingNode() ? "-" : String.format("%.0f", metric.path("score").asDouble());
+    }
+}
@@ -0,0 +1,107 @@
+package com.fabiolima.e_commerce.benchmarks;
+
+import com.fabiolima.e_commerce.entities.*;
+import com.fabiolima.e_commerce.entities.enums.BasketStatus;
+import com.fabiolima.e_commerce.entities.enums.OrderStatus;
+import com.fabiolima.e_commerce.entities.enums.PaymentStatus;
+import com.fabiolima.e_commerce.entities.enums.UserStatus;
+
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Detached entities shaped like the ones the services load, and repository stand-ins answering from them.
+ */
+final class BenchmarkData {
+
+    private BenchmarkData() {}
+
+    static User user() {
+        User user = new User();
+        user.setId(UUID.randomUUID());
+        user.setName("Benchmark Customer");
+        user.setEmail("customer@example.com");
+        user.setAddress("1 Benchmark Street");
+        user.setUserStatus(UserStatus.ACTIVE);
+        user.setCreatedAt(LocalDateTime.now());
+        user.setLastUpdated(LocalDateTime.now());
+        return user;
+    }
+
+    static List<Product> products(int count) {
+        List<Product> products = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Product product = new Product();
+            product.setId(UUID.randomUUID());
+            product.setProductName("Product " + i);
+            product.setProductDescription("Description of product " + i);
+            product.setProductPrice(new BigDecimal("19.99").add(BigDecimal.valueOf(i, 2)));
+            product.setImageSrc("https://cdn.example.com/products/" + i + ".jpg");
+            product.setStock(100);
+            product.setCategory(i % 2 == 0 ? "shoes" : "accessories");
+            products.add(product);
+        }
+        return products;
+    }
+
+    /** an ACTIVE basket with one line per product, quantities 1 to 5 */
+    static Basket basket(int lines) {
+        Basket basket = new Basket();
+        basket.setId(UUID.randomUUID());
+        basket.setBasketStatus(BasketStatus.ACTIVE);
+        basket.setCreatedAt(LocalDateTime.now());
+        basket.setLastUpdated(LocalDateTime.now());
+        user().addBasketToUser(basket);
+        int i = 0;
+        for (Product product : products(lines)) {
+            BasketItem item = new BasketItem();
+            item.setId(UUID.randomUUID());
+            item.setBasket(basket);
+            item.setProduct(product);
+            item.setQuantity(i++ % 5 + 1);
+            basket.getBasketItems().add(item);
+        }
+        return basket;
+    }
+
+    /** a PENDING order with the basket's lines */
+    static Order order(Basket basket) {
+        Order order = new Order();
+        order.setId(UUID.randomUUID());
+        order.setUser(basket.getUser());
+        order.setPaypalOrderId("5O190127TN364715T");
+        order.setOrderStatus(OrderStatus.PENDING);
+        order.setPaymentStatus(PaymentStatus.PENDING);
+        order.setCreatedAt(LocalDateTime.now());
+        order.setLastUpdated(LocalDateTime.now());
+        BigDecimal total = BigDecimal.ZERO;
+        for (BasketItem item : basket.getBasketItems()) {
+            order.addOrderItemToOrder(OrderItem.builder()
+                    .id(UUID.randomUUID())
+                    .productId(item.getProduct().getId())
+                    .productName(item.getProduct().getProductName())
+                    .quantity(item.getQuantity())
+                    .price(item.getProduct().getProductPrice())
+                    .build());
+            total = total.add(item.getProduct().getProductPrice().multiply(BigDecimal.valueOf(item.getQuantity())));
+        }
+        order.setTotalPrice(total);
+        return order;
+    }
+
+    /** a repository whose findById returns the given entity and whose save returns its argument */
+    @SuppressWarnings("unchecked")
+    static <R> R repository(Class<R> type, Object entity) {
+        return (R) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) ->
+                switch (method.getName()) {
+                    case "findById" -> Optional.of(entity);
+                    case "save" -> args[0];
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+}
@@ -0,0 +1,101 @@
+package com.fabiolima.e_commerce.benchmarks;
+
+import com.fabiolima.e_commerce.security.JwtAuthenticationFilter;
+import com.fabiolima.e_commerce.security.JwtService;
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.util.ReflectionUtils;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Proxy;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token issue at login, token verification, and the whole JwtAuthenticationFilter pass every authenticated request
+ * makes (parse and verify the token twice, load the user, set the security context), with an in-memory user lookup.
+ * The key is a random HS256 key of the size security.jwt.secret-key holds.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JwtBenchmark {
+
+    private final JwtService jwtService = new JwtService();
+    private final UserDetails user = User.withUsername("customer@example.com")
+            .password("{noop}password")
+            .roles("CUSTOMER")
+            .build();
+    private JwtAuthenticationFilter filter;
+    private String token;
+    private HttpServletRequest request;
+    private final HttpServletResponse response = stub(HttpServletResponse.class, null);
+
+    @Setup
+    public void setUp() {
+        byte[] key = new byte[32];
+        new SecureRandom().nextBytes(key);
+        set(jwtService, "secretKey", Base64.getEncoder().encodeToString(key));
+        set(jwtService, "jwtExpiration", 3_600_000L);
+
+        token = jwtService.generateToken(user);
+        request = stub(HttpServletRequest.class, "Bearer " + token);
+        filter = new JwtAuthenticationFilter(jwtService, username -> user,
+                (request, response, handler, exception) -> {
+                    throw new IllegalStateException("Token rejected in the benchmark", exception);
+                });
+    }
+
+    @Benchmark
+    public String generateToken() {
+        return jwtService.generateToken(user);
+    }
+
+    @Benchmark
+    public boolean verifyToken() {
+        return jwtService.isTokenValid(token, user);
+    }
+
+    @Benchmark
+    public void authenticationFilter(Blackhole blackhole) throws ServletException, IOException {
+        FilterChain chain = (request, response) -> blackhole.consume(SecurityContextHolder.getContext().getAuthentication());
+        try {
+            filter.doFilter(request, response, chain);
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+    }
+
+    private static void set(Object target, String name, Object value) {
+        Field field = ReflectionUtils.findField(target.getClass(), name);
+        ReflectionUtils.makeAccessible(field);
+        ReflectionUtils.setField(field, target, value);
+    }
+
+    // an API request carrying the token, attributes are not kept (OncePerRequestFilter only needs them within the call)
+    @SuppressWarnings("unchecked")
+    private static <T> T stub(Class<T> type, String authorization) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) ->
+                switch (method.getName()) {
+                    case "getHeader" -> "Authorization".equals(args[0]) ? authorization : null;
+                    case "getRequestURI" -> "/user/3f2b8c1e-0000-4000-8000-000000000001/basket";
+                    case "getDispatcherType" -> DispatcherType.REQUEST;
+                    case "getRemoteAddr" -> "127.0.0.1";
+                    default -> method.getReturnType() == boolean.class ? false
+                            : method.getReturnType() == int.class ? 0 : null;
+                });
+    }
+}
@@ -0,0 +1,170 @@
+package com.fabiolima.e_commerce.benchmarks;
+
+import ch.qos.logback.classic.AsyncAppender;
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.encoder.JsonEncoder;
+import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.Appender;
+import ch.qos.logback.core.OutputStreamAppender;
+import ch.qos.logback.core.encoder.Encoder;
+import com.fabiolima.e_commerce.entities.OrderItem;
+import com.fabiolima.e_commerce.monitoring.logging.CategorySamplingTurboFilter;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Logging cost of one add-to-basket + checkout request on the request thread, writing to a discarded stream.
+ * before: the former statements (INFO in the ownership checks and item changes, the order items rendered with
+ * toString) through Spring Boot's synchronous console pattern.
+ * after: the current statements (DEBUG there, item count only) as JSON behind the async appender and the
+ * category sampling. afterSynchronous is the same without the async appender, to separate the two effects.
+ * At benchmark rates the service category is over its limit, so most checkout lines are sampled out too,
+ * as they would be under the same load in production.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LoggingBenchmark {
+
+    private static final String BOOT_CONSOLE_PATTERN =
+            "%d{yyyy-MM-dd'T'HH:mm:ss.SSSXXX} %5p %pid --- [%t] %-40.40logger{39} : %m%n";
+
+    @Param({"10"})
+    int orderItems;
+
+    private LoggerContext beforeContext;
+    private LoggerContext afterContext;
+    private LoggerContext afterSynchronousContext;
+    private Loggers before;
+    private Loggers after;
+    private Loggers afterSynchronous;
+
+    private final UUID userId = UUID.randomUUID();
+    private final UUID basketId = UUID.randomUUID();
+    private final UUID itemId = UUID.randomUUID();
+    private final UUID orderId = UUID.randomUUID();
+    private final String email = "customer@example.com";
+    private List<OrderItem> items;
+
+    @Setup
+    public void setUp() {
+        items = new ArrayList<>();
+        for (int i = 0; i < orderItems; i++)
+            items.add(OrderItem.builder()
+                    .productId(UUID.randomUUID())
+                    .productName("Product " + i)
+                    .quantity(i + 1)
+                    .price(new BigDecimal("19.99"))
+                    .build());
+
+        beforeContext = new LoggerContext();
+        PatternLayoutEncoder pattern = new PatternLayoutEncoder();
+        pattern.setPattern(BOOT_CONSOLE_PATTERN);
+        before = new Loggers(beforeContext, discarding(beforeContext, pattern), null);
+
+        afterContext = new LoggerContext();
+        AsyncAppender async = new AsyncAppender();
+        async.setContext(afterContext);
+        async.setQueueSize(8192);
+        async.setDiscardingThreshold(0);
+        async.setNeverBlock(true);
+        async.addAppender(discarding(afterContext, new JsonEncoder()));
+        async.start();
+        after = new Loggers(afterContext, async, sampling(afterContext));
+
+        afterSynchronousContext = new LoggerContext();
+        afterSynchronous = new Loggers(afterSynchronousContext,
+                discarding(afterSynchronousContext, new JsonEncoder()), sampling(afterSynchronousContext));
+    }
+
+    @TearDown
+    public void tearDown() {
+        beforeContext.stop();
+        afterContext.stop();
+        afterSynchronousContext.stop();
+    }
+
+    @Benchmark
+    public void before() {
+        before.ownership.info("Basket Id: {}", basketId);
+        before.ownership.info("Is basket id from authenticated user ? {}", true);
+        before.basketItems.info("Item id {} quantity has been incremented by one", itemId);
+        before.ownership.info("Is user id from the url the same as the authenticated user ? {}", true);
+        before.orders.info("items in order after transfer: {}", items);
+        before.baskets.info("basket {} is checked-out and a new basket of id {} has been created to user {} - {}",
+                basketId, orderId, userId, email);
+    }
+
+    @Benchmark
+    public void after() {
+        request(after);
+    }
+
+    @Benchmark
+    public void afterSynchronous() {
+        request(afterSynchronous);
+    }
+
+    private void request(Loggers loggers) {
+        loggers.ownership.debug("Is basket id {} from authenticated user ? {}", basketId, true);
+        loggers.basketItems.debug("Item id {} quantity has been incremented by one", itemId);
+        loggers.ownership.debug("Is user id from the url the same as the authenticated user ? {}", true);
+        loggers.orders.debug("{} items transferred from basket {} to order", items.size(), basketId);
+        loggers.baskets.info("basket {} is checked-out and a new basket of id {} has been created to user {} - {}",
+                basketId, orderId, userId, email);
+    }
+
+    private static OutputStreamAppender<ILoggingEvent> discarding(LoggerContext context, Encoder<ILoggingEvent> encoder) {
+        encoder.setContext(context);
+        encoder.start();
+        OutputStreamAppender<ILoggingEvent> appender = new OutputStreamAppender<>();
+        appender.setContext(context);
+        appender.setEncoder(encoder);
+        appender.setOutputStream(OutputStream.nullOutputStream());
+        appender.start();
+        return appender;
+    }
+
+    // the limits of logback-spring.xml
+    private static CategorySamplingTurboFilter sampling(LoggerContext context) {
+        CategorySamplingTurboFilter filter = new CategorySamplingTurboFilter();
+        filter.addLimit("com.fabiolima.e_commerce.security=20");
+        filter.addLimit("com.fabiolima.e_commerce.service=200");
+        filter.addLimit("com.fabiolima.e_commerce=500");
+        filter.setSampleEvery(100);
+        filter.setContext(context);
+        filter.start();
+        return filter;
+    }
+
+    private static final class Loggers {
+        private final Logger ownership;
+        private final Logger basketItems;
+        private final Logger orders;
+        private final Logger baskets;
+
+        Loggers(LoggerContext context, Appender<ILoggingEvent> appender, CategorySamplingTurboFilter filter) {
+            if (filter != null)
+                context.addTurboFilter(filter);
+            Logger root = context.getLogger(Logger.ROOT_LOGGER_NAME);
+            root.setLevel(Level.INFO);
+            root.addAppender(appender);
+            ownership = context.getLogger("com.fabiolima.e_commerce.security.authentication.BasketAuthenticationService");
+            basketItems = context.getLogger("com.fabiolima.e_commerce.service.implementation.BasketItemServiceImpl");
+            orders = context.getLogger("com.fabiolima.e_commerce.service.implementation.OrderServiceImpl");
+            baskets = context.getLogger("com.fabiolima.e_commerce.service.implementation.BasketServiceImpl");
+        }
+    }
+}
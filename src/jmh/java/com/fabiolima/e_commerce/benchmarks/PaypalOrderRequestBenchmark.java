@@ -0,0 +1,38 @@
+package com.fabiolima.e_commerce.benchmarks;
+
+import com.fabiolima.e_commerce.entities.Order;
+import com.fabiolima.e_commerce.service.implementation.PaypalServiceImpl;
+import com.paypal.orders.OrderRequest;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building the PayPal create-order request from an order of 1 to 1000 lines, the local part of createOrder
+ * that runs inside its read-only transaction. Each amount goes through String.format.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PaypalOrderRequestBenchmark {
+
+    @Param({"1", "10", "100", "1000"})
+    int lines;
+
+    // buildOrderRequest uses none of the collaborators
+    private final PaypalServiceImpl paypalService = new PaypalServiceImpl(null, null, null, null, null, null);
+    private Order order;
+
+    @Setup
+    public void setUp() {
+        order = BenchmarkData.order(BenchmarkData.basket(lines));
+    }
+
+    @Benchmark
+    public OrderRequest buildOrderRequest() {
+        return paypalService.buildOrderRequest(order);
+    }
+}
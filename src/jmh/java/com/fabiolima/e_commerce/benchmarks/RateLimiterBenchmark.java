@@ -0,0 +1,61 @@
+package com.fabiolima.e_commerce.benchmarks;
+
+import com.fabiolima.e_commerce.filter.RateLimiter;
+import com.fabiolima.e_commerce.filter.RouteGroup;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of one rate limiter decision, the work RateLimitFilter adds to every request; it should stay well under 1 µs.
+ * allowed: clients with tokens left, rejected: a client over its limit, contended: every thread on the same client
+ * (one CAS loop on a single bucket), spread: lookups among clients tracked by a busy instance.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RateLimiterBenchmark {
+
+    private static final int CLIENTS = 100_000;
+
+    // a token per nanosecond (never exhausted) except for payment: one request per minute
+    private static final int PER_NANOSECOND = 1_000_000_000;
+    private final RateLimiter rateLimiter = new RateLimiter(1, 60, PER_NANOSECOND, 1, PER_NANOSECOND, 1,
+            1, 60, PER_NANOSECOND, 1, CLIENTS * 2);
+    private final String[] clients = new String[CLIENTS];
+
+    @Setup
+    public void setUp() {
+        for (int i = 0; i < CLIENTS; i++) {
+            clients[i] = "user" + i + "@mail.com";
+            rateLimiter.tryAcquire(RouteGroup.CATALOG, clients[i]);
+        }
+        rateLimiter.tryAcquire(RouteGroup.PAYMENT, "greedy@mail.com");
+    }
+
+    @Benchmark
+    public RateLimiter.Decision allowed() {
+        return rateLimiter.tryAcquire(RouteGroup.BASKET, "shopper@mail.com");
+    }
+
+    @Benchmark
+    public RateLimiter.Decision rejected() {
+        return rateLimiter.tryAcquire(RouteGroup.PAYMENT, "greedy@mail.com");
+    }
+
+    @Benchmark
+    @Threads(4)
+    public RateLimiter.Decision contended() {
+        return rateLimiter.tryAcquire(RouteGroup.DEFAULT, "shared-nat@10.0.0.1");
+    }
+
+    @Benchmark
+    @Threads(4)
+    public RateLimiter.Decision spread() {
+        return rateLimiter.tryAcquire(RouteGroup.CATALOG, clients[ThreadLocalRandom.current().nextInt(CLIENTS)]);
+    }
+}
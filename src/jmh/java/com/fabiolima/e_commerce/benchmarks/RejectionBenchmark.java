@@ -0,0 +1,125 @@
+package com.fabiolima.e_commerce.benchmarks;
+
+import com.fabiolima.e_commerce.entities.Product;
+import com.fabiolima.e_commerce.exceptions.ErrorDetails;
+import com.fabiolima.e_commerce.exceptions.GlobalControllerExceptionHandler;
+import com.fabiolima.e_commerce.exceptions.InsufficientStockException;
+import com.fabiolima.e_commerce.exceptions.NotFoundException;
+import com.fabiolima.e_commerce.exceptions.TooManyRequestsException;
+import com.fabiolima.e_commerce.monitoring.BusinessMetrics;
+import com.fabiolima.e_commerce.service.implementation.BasketItemServiceImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.ResponseEntity;
+
+import java.lang.reflect.Proxy;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Rejected requests per second, from the throw to the ErrorDetails the controller advice returns.
+ * The failure is raised stackDepth frames below the handler: about 10 in a unit test, well over 100
+ * under Tomcat, the security filter chain, Spring MVC and the transaction/retry proxies.
+ * The filledStack* benchmarks build the exceptions the way they were built before (String.format and a stack trace).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RejectionBenchmark {
+
+    private static final TooManyRequestsException TOO_MANY_REQUESTS =
+            new TooManyRequestsException("Too many requests. Please retry later.");
+
+    @Param({"10", "150"})
+    int stackDepth;
+
+    private final GlobalControllerExceptionHandler handler = new GlobalControllerExceptionHandler();
+    // only ensureStockAvailable is called, it only counts the rejection
+    private final BasketItemServiceImpl basketItemService =
+            new BasketItemServiceImpl(null, null, null, null, new BusinessMetrics(new SimpleMeterRegistry()));
+    private final HttpServletRequest request = (HttpServletRequest) Proxy.newProxyInstance(
+            HttpServletRequest.class.getClassLoader(), new Class<?>[]{HttpServletRequest.class},
+            (proxy, method, args) -> method.getName().equals("getRequestURI") ? "/basket/item" : null);
+    private final UUID productId = UUID.randomUUID();
+    private Product soldOut;
+
+    @Setup
+    public void setUp() {
+        soldOut = new Product();
+        soldOut.setId(productId);
+        soldOut.setProductName("Limited edition sneaker");
+        soldOut.setStock(0);
+    }
+
+    @Benchmark
+    public ResponseEntity<ErrorDetails> insufficientStock() {
+        try {
+            return atDepth(stackDepth, () -> {
+                basketItemService.ensureStockAvailable(soldOut, 1);
+                return null;
+            });
+        } catch (InsufficientStockException e) {
+            return handler.handleInsufficientStockException(e, request);
+        }
+    }
+
+    @Benchmark
+    public ResponseEntity<ErrorDetails> filledStackInsufficientStock() {
+        try {
+            return atDepth(stackDepth, () -> {
+                throw new FilledStackException(String.format("Not enough stock available for product '%s'. Available: %d, Requested: %d",
+                        soldOut.getProductName(), soldOut.getStock(), 1));
+            });
+        } catch (FilledStackException e) {
+            return handler.handleInsufficientStockException(new InsufficientStockException(e.getMessage()), request);
+        }
+    }
+
+    @Benchmark
+    public ResponseEntity<ErrorDetails> notFound() {
+        try {
+            return atDepth(stackDepth, () -> {
+                throw new NotFoundException("Product with Id %s not found", productId);
+            });
+        } catch (NotFoundException e) {
+            return handler.handleNotFound(e, request);
+        }
+    }
+
+    @Benchmark
+    public ResponseEntity<ErrorDetails> filledStackNotFound() {
+        try {
+            return atDepth(stackDepth, () -> {
+                throw new FilledStackException(String.format("Product with Id %s not found", productId.toString()));
+            });
+        } catch (FilledStackException e) {
+            return handler.handleNotFound(new NotFoundException(e.getMessage()), request);
+        }
+    }
+
+    @Benchmark
+    public ResponseEntity<ErrorDetails> preallocatedTooManyRequests() {
+        try {
+            return atDepth(stackDepth, () -> {
+                throw TOO_MANY_REQUESTS;
+            });
+        } catch (TooManyRequestsException e) {
+            return handler.handleTooManyRequestsException(e, request);
+        }
+    }
+
+    private static ResponseEntity<ErrorDetails> atDepth(int depth, Supplier<ResponseEntity<ErrorDetails>> failure) {
+        return depth == 0 ? failure.get() : atDepth(depth - 1, failure);
+    }
+
+    static class FilledStackException extends RuntimeException {
+        FilledStackException(String message) {
+            super(message);
+        }
+    }
+}
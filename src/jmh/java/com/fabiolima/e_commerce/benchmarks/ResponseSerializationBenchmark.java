@@ -0,0 +1,79 @@
+package com.fabiolima.e_commerce.benchmarks;
+
+import com.fabiolima.e_commerce.dto.BasketResponse;
+import com.fabiolima.e_commerce.dto.OrderResponse;
+import com.fabiolima.e_commerce.dto.ProductResponse;
+import com.fabiolima.e_commerce.entities.Basket;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writing the Basket, Order and product page responses as JSON bytes, with the ObjectMapper settings Spring Boot
+ * gives the message converter. The response objects are built once: mapping the entities is measured by
+ * the *WithMapping benchmarks, which add the from(...) call the controllers make.
+ * lines is the number of basket/order lines and the product page size.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ResponseSerializationBenchmark {
+
+    @Param({"1", "10", "100", "1000"})
+    int lines;
+
+    private final ObjectWriter writer = Jackson2ObjectMapperBuilder.json()
+            .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .build()
+            .writer();
+    private Basket basket;
+    private com.fabiolima.e_commerce.entities.Order order;
+    private BasketResponse basketResponse;
+    private OrderResponse orderResponse;
+    private Page<ProductResponse> productPage;
+
+    @Setup
+    public void setUp() {
+        basket = BenchmarkData.basket(lines);
+        order = BenchmarkData.order(basket);
+        basketResponse = BasketResponse.from(basket);
+        orderResponse = OrderResponse.from(order);
+        productPage = new PageImpl<>(BenchmarkData.products(lines).stream().map(ProductResponse::from).toList(),
+                PageRequest.of(0, lines), 10_000);
+    }
+
+    @Benchmark
+    public byte[] basket() throws JsonProcessingException {
+        return writer.writeValueAsBytes(basketResponse);
+    }
+
+    @Benchmark
+    public byte[] basketWithMapping() throws JsonProcessingException {
+        return writer.writeValueAsBytes(BasketResponse.from(basket));
+    }
+
+    @Benchmark
+    public byte[] order() throws JsonProcessingException {
+        return writer.writeValueAsBytes(orderResponse);
+    }
+
+    @Benchmark
+    public byte[] orderWithMapping() throws JsonProcessingException {
+        return writer.writeValueAsBytes(OrderResponse.from(order));
+    }
+
+    @Benchmark
+    public byte[] productPage() throws JsonProcessingException {
+        return writer.writeValueAsBytes(productPage);
+    }
+}
@@ -0,0 +1,125 @@
+package com.fabiolima.e_commerce.concurrency;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Implements {@link RetryOnConflict}. Ordered before the transaction advice so every attempt
+ * gets a new transaction and a fresh persistence context.
+ * Exports the conflicts, retries and exhausted retries per operation (conflict.retry.*), including the
+ * operations first seen after the registry was bound.
+ */
+@Slf4j
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class ConflictRetryAspect implements MeterBinder {
+
+    private final Map<String, ConflictStats> stats = new ConcurrentHashMap<>();
+    private volatile MeterRegistry registry;
+
+    @Around("@annotation(retryOnConflict)")
+    public Object retry(ProceedingJoinPoint joinPoint, RetryOnConflict retryOnConflict) throws Throwable {
+        // inside a transaction a retry would reuse the failed persistence context: leave it to the outermost boundary
+        if (TransactionSynchronizationManager.isActualTransactionActive())
+            return joinPoint.proceed();
+
+        String operation = joinPoint.getSignature().getDeclaringType().getSimpleName() + "." + joinPoint.getSignature().getName();
+        ConflictStats operationStats = stats.computeIfAbsent(operation, this::newStats);
+        int maxAttempts = Math.max(1, retryOnConflict.maxAttempts());
+
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return joinPoint.proceed();
+            } catch (OptimisticLockingFailureException e) {
+                operationStats.conflicts.increment();
+                if (attempt >= maxAttempts) {
+                    operationStats.exhausted.increment();
+                    log.warn("{} still conflicting after {} attempts", operation, attempt);
+                    throw e;
+                }
+                operationStats.retries.increment();
+                log.debug("{} conflicted on attempt {}, retrying", operation, attempt);
+                backoff(attempt, retryOnConflict);
+            }
+        }
+    }
+
+    @Override
+    public void bindTo(@NonNull MeterRegistry registry) {
+        this.registry = registry;
+        stats.forEach((operation, operationStats) -> register(registry, operation, operationStats));
+    }
+
+    private ConflictStats newStats(String operation) {
+        ConflictStats operationStats = new ConflictStats();
+        MeterRegistry current = registry;
+        if (current != null)
+            register(current, operation, operationStats);
+        return operationStats;
+    }
+
+    // registering the same meter twice returns the first one, so racing with bindTo is harmless
+    private static void register(MeterRegistry registry, String operation, ConflictStats operationStats) {
+        FunctionCounter.builder("conflict.retry.conflicts", operationStats, ConflictStats::getConflicts)
+                .description("Optimistic locking conflicts, every attempt counted")
+                .tag("operation", operation)
+                .register(registry);
+        FunctionCounter.builder("conflict.retry.retries", operationStats, ConflictStats::getRetries)
+                .tag("operation", operation)
+                .register(registry);
+        FunctionCounter.builder("conflict.retry.exhausted", operationStats, ConflictStats::getExhausted)
+                .description("Calls that still conflicted after their last attempt (answered 409)")
+                .tag("operation", operation)
+                .register(registry);
+    }
+
+    private static void backoff(int attempt, RetryOnConflict policy) throws InterruptedException {
+        long ceiling = Math.min(policy.maxBackoffMillis(), policy.backoffMillis() << Math.min(attempt - 1, 20));
+        if (ceiling > 0)
+            Thread.sleep(ThreadLocalRandom.current().nextLong(ceiling + 1));
+    }
+
+    /** conflict counters per operation (SimpleClassName.method) */
+    public Map<String, ConflictStats> getStats() {
+        return Map.copyOf(stats);
+    }
+
+    public long getConflicts() {
+        return stats.values().stream().mapToLong(ConflictStats::getConflicts).sum();
+    }
+
+    public long getRetries() {
+        return stats.values().stream().mapToLong(ConflictStats::getRetries).sum();
+    }
+
+    public long getExhausted() {
+        return stats.values().stream().mapToLong(ConflictStats::getExhausted).sum();
+    }
+
+    public static final class ConflictStats {
+        private final LongAdder conflicts = new LongAdder();
+        private final LongAdder retries = new LongAdder();
+        private final LongAdder exhausted = new LongAdder();
+
+        public long getConflicts() { return conflicts.sum(); }
+        public long getRetries() { return retries.sum(); }
+        public long getExhausted() { return exhausted.sum(); }
+    }
+}
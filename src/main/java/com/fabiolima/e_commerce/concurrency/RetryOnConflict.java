@@ -0,0 +1,21 @@
+package com.fabiolima.e_commerce.concurrency;
+
+import java.lang.annotation.*;
+
+/**
+ * Runs the method again when its transaction loses an optimistic lock race (another request
+ * committed a newer @Version of an entity it changed). Only applied where the method starts the
+ * transaction: a nested call lets the conflict reach the outermost boundary, which retries the whole unit.
+ * Waits a random time up to backoffMillis * 2^(attempt - 1), capped at maxBackoffMillis, between attempts.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface RetryOnConflict {
+
+    int maxAttempts() default 4;
+
+    long backoffMillis() default 20;
+
+    long maxBackoffMillis() default 200;
+}
@@ -0,0 +1,96 @@
+package com.fabiolima.e_commerce.configuration;
+
+import com.fabiolima.e_commerce.datasource.ReadWriteRoutingDataSource;
+import com.fabiolima.e_commerce.datasource.ReservedCapacityDataSource;
+import com.fabiolima.e_commerce.monitoring.SlowQueryDetector;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.observation.ObservationRegistry;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import net.ttddyy.observation.tracing.DataSourceObservationListener;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The primary is configured by spring.datasource.*; replicas are optional (datasource.replica.urls).
+ * Without replicas every transaction goes to the primary.
+ * Scheduled jobs get their own small pool on the primary database (datasource.jobs.pool-size), and a few
+ * connections of the primary pool are kept for checkout and payment (datasource.primary.reserved-for-critical).
+ * Every connection, statement and result set is observed (jdbc.* spans), with the SQL but never the bind values.
+ * Below that, every statement is timed by the SlowQueryDetector, which also follows result sets to count their rows.
+ */
+@Configuration
+public class DataSourceConfiguration {
+
+    @Bean
+    public ReadWriteRoutingDataSource routingDataSource(DataSourceProperties properties, Environment environment,
+                                                        @Value("${datasource.replica.urls:}") List<String> replicaUrls,
+                                                        @Value("${datasource.replica.username:${spring.datasource.username:}}") String replicaUsername,
+                                                        @Value("${datasource.replica.password:${spring.datasource.password:}}") String replicaPassword,
+                                                        @Value("${datasource.replica.pool-size:10}") int replicaPoolSize,
+                                                        @Value("${datasource.jobs.pool-size:3}") int jobsPoolSize,
+                                                        @Value("${datasource.primary.reserved-for-critical:4}") int reservedForCritical,
+                                                        @Value("${datasource.replica.max-lag-ms:2000}") long maxLagMillis,
+                                                        @Value("${datasource.read-your-writes-ms:5000}") long readYourWritesMillis) {
+
+        HikariDataSource primary = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(primary));
+        primary.setPoolName("primary");
+
+        HikariDataSource jobs = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        jobs.setPoolName("jobs");
+        jobs.setMaximumPoolSize(jobsPoolSize);
+        jobs.setMinimumIdle(1);
+        jobs.setConnectionTimeout(primary.getConnectionTimeout());
+
+        List<ReadWriteRoutingDataSource.Replica> replicas = new ArrayList<>();
+        for (String url : replicaUrls) {
+            if (url.isBlank())
+                continue;
+            HikariDataSource replica = new HikariDataSource();
+            replica.setJdbcUrl(url.trim());
+            replica.setUsername(replicaUsername);
+            replica.setPassword(replicaPassword);
+            replica.setMaximumPoolSize(replicaPoolSize);
+            replica.setConnectionTimeout(primary.getConnectionTimeout());
+            replica.setReadOnly(true);
+            replica.setPoolName("replica-" + (replicas.size() + 1));
+            replicas.add(new ReadWriteRoutingDataSource.Replica(replica.getPoolName(), replica));
+        }
+
+        DataSource reservedPrimary = new ReservedCapacityDataSource(primary,
+                primary.getMaximumPoolSize() - reservedForCritical, primary.getConnectionTimeout());
+
+        return new ReadWriteRoutingDataSource(reservedPrimary, jobs, replicas,
+                Duration.ofMillis(maxLagMillis), Duration.ofMillis(readYourWritesMillis));
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(ReadWriteRoutingDataSource routingDataSource, ObservationRegistry observationRegistry,
+                                 SlowQueryDetector slowQueryDetector) {
+        // a layer of its own: proxying result sets here would also give every result set a jdbc.result-set span
+        DataSource timed = ProxyDataSourceBuilder.create("slow-queries", routingDataSource)
+                .listener(slowQueryDetector)
+                .methodListener(slowQueryDetector)
+                .proxyResultSet()
+                .build();
+        DataSourceObservationListener listener = new DataSourceObservationListener(observationRegistry);
+        DataSource observed = ProxyDataSourceBuilder.create("routing", timed)
+                .listener(listener)
+                .methodListener(listener)
+                .build();
+        return new LazyConnectionDataSourceProxy(observed);
+    }
+}
@@ -1,19 +1,93 @@
 package com.fabiolima.e_commerce.configuration;
 
+import com.fabiolima.e_commerce.service.implementation.CircuitBreaker;
+import com.fabiolima.e_commerce.service.implementation.PaypalGatewayImpl;
 import com.paypal.core.PayPalEnvironment;
 import com.paypal.core.PayPalHttpClient;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
 @Configuration
 public class PaypalConfiguration {
 
     @Bean
     public PayPalHttpClient getPaypalClient(
             @Value("${paypal.client-id}") String clientId,
-            @Value("${paypal.secret}") String clientSecret) {
-        PayPalEnvironment environment = new PayPalEnvironment.Sandbox(clientId, clientSecret);
-        return new PayPalHttpClient(environment);
+            @Value("${paypal.secret}") String clientSecret,
+            @Value("${paypal.base-url:}") String baseUrl,
+            @Value("${paypal.http.connect-timeout-ms:2000}") int connectTimeoutMillis,
+            @Value("${paypal.http.read-timeout-ms:10000}") int readTimeoutMillis) {
+        // a custom base url points the client to a local PayPal stand-in (tests, load tests)
+        PayPalEnvironment environment = baseUrl.isBlank()
+                ? new PayPalEnvironment.Sandbox(clientId, clientSecret)
+                : new PayPalEnvironment(clientId, clientSecret, baseUrl, baseUrl);
+        PayPalHttpClient client = new PayPalHttpClient(environment);
+        // the gateway deadline only frees the caller, these end the call itself (and free its bulkhead permit)
+        client.setConnectTimeout(connectTimeoutMillis);
+        client.setReadTimeout(readTimeoutMillis);
+        return client;
+    }
+
+    // the gateway is missing when a test replaces it with a mock
+    @Bean
+    public MeterBinder paypalGatewayMetrics(ObjectProvider<PaypalGatewayImpl> gatewayProvider) {
+        return registry -> gatewayProvider.ifAvailable(gateway -> {
+            for (PaypalGatewayImpl.Operation operation : PaypalGatewayImpl.Operation.values()) {
+                PaypalGatewayImpl.OperationStats stats = gateway.getStats(operation);
+                String tag = operation.name().toLowerCase();
+                FunctionTimer.builder("paypal.calls", stats,
+                                PaypalGatewayImpl.OperationStats::getCalls,
+                                PaypalGatewayImpl.OperationStats::getTotalNanos, TimeUnit.NANOSECONDS)
+                        .description("PayPal calls that were sent, until they answered or passed the deadline")
+                        .tag("operation", tag)
+                        .register(registry);
+                TimeGauge.builder("paypal.calls.max", stats, TimeUnit.NANOSECONDS,
+                                PaypalGatewayImpl.OperationStats::getMaxNanos)
+                        .tag("operation", tag)
+                        .register(registry);
+                FunctionCounter.builder("paypal.calls.failures", stats, PaypalGatewayImpl.OperationStats::getFailures)
+                        .description("PayPal calls that failed, timeouts included")
+                        .tag("operation", tag)
+                        .register(registry);
+                FunctionCounter.builder("paypal.calls.timeouts", stats, PaypalGatewayImpl.OperationStats::getTimeouts)
+                        .tag("operation", tag)
+                        .register(registry);
+                FunctionCounter.builder("paypal.calls.rejected", stats, PaypalGatewayImpl.OperationStats::getRejected)
+                        .description("Calls refused by the bulkhead or the open circuit breaker")
+                        .tag("operation", tag)
+                        .register(registry);
+            }
+            Gauge.builder("paypal.bulkhead.available", gateway, PaypalGatewayImpl::getAvailableCallPermits)
+                    .register(registry);
+            Gauge.builder("paypal.circuit.open", gateway, g -> g.getCircuitBreakerState() == CircuitBreaker.State.CLOSED ? 0 : 1)
+                    .description("1 while the circuit breaker refuses (or only trials) PayPal calls")
+                    .register(registry);
+        });
+    }
+
+    // calls to PayPal run here so the gateway can give up on them without giving up the thread
+    @Bean(name = "paypalExecutor", destroyMethod = "close")
+    @ConditionalOnThreading(Threading.VIRTUAL)
+    public ExecutorService virtualPaypalExecutor() {
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("paypal-", 0).factory());
+    }
+
+    @Bean(name = "paypalExecutor", destroyMethod = "close")
+    @ConditionalOnThreading(Threading.PLATFORM)
+    public ExecutorService platformPaypalExecutor(@Value("${paypal.gateway.max-concurrent-calls:50}") int threads) {
+        return Executors.newFixedThreadPool(threads, Thread.ofPlatform().name("paypal-", 0).factory());
     }
 }
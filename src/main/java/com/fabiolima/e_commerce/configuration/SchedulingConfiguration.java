@@ -0,0 +1,28 @@
+package com.fabiolima.e_commerce.configuration;
+
+import com.fabiolima.e_commerce.datasource.Workload;
+import com.fabiolima.e_commerce.datasource.WorkloadContext;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+/**
+ * Scheduled jobs run on a small pool of low-priority threads, apart from request handling,
+ * and are tagged as BACKGROUND work so their database calls use the jobs connection pool.
+ */
+@Configuration
+public class SchedulingConfiguration {
+
+    @Bean
+    public ThreadPoolTaskScheduler taskScheduler(@Value("${jobs.scheduler.pool-size:2}") int poolSize) {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(poolSize);
+        scheduler.setThreadNamePrefix("jobs-");
+        scheduler.setThreadPriority(Thread.MIN_PRIORITY);
+        scheduler.setTaskDecorator(task -> () -> WorkloadContext.runAs(Workload.BACKGROUND, task));
+        scheduler.setWaitForTasksToCompleteOnShutdown(true);
+        scheduler.setAwaitTerminationSeconds(30);
+        return scheduler;
+    }
+}
@@ -1,9 +1,12 @@
 package com.fabiolima.e_commerce.configuration;
 
+import com.fabiolima.e_commerce.filter.ConcurrencyLimitFilter;
+import com.fabiolima.e_commerce.filter.RateLimitFilter;
 import com.fabiolima.e_commerce.security.JwtAuthenticationFilter;
 import lombok.extern.slf4j.Slf4j;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.autoconfigure.security.servlet.EndpointRequest;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationProvider;
@@ -30,11 +33,16 @@ public class SecurityConfiguration {
 
     private final AuthenticationProvider authenticationProvider;
     private final JwtAuthenticationFilter jwtAuthenticationFilter;
+    private final RateLimitFilter rateLimitFilter;
+    private final ConcurrencyLimitFilter concurrencyLimitFilter;
 
     @Autowired
-    public SecurityConfiguration(AuthenticationProvider authenticationProvider, JwtAuthenticationFilter jwtAuthenticationFilter) {
+    public SecurityConfiguration(AuthenticationProvider authenticationProvider, JwtAuthenticationFilter jwtAuthenticationFilter,
+                                 RateLimitFilter rateLimitFilter, ConcurrencyLimitFilter concurrencyLimitFilter) {
         this.authenticationProvider = authenticationProvider;
         this.jwtAuthenticationFilter = jwtAuthenticationFilter;
+        this.rateLimitFilter = rateLimitFilter;
+        this.concurrencyLimitFilter = concurrencyLimitFilter;
     }
 
     @Bean
@@ -56,14 +64,22 @@ public class SecurityConfiguration {
                                 .requestMatchers("/admin/**").hasRole("ADMIN")
                                 .requestMatchers("/api/auth/**").permitAll()
                                 .requestMatchers("/product").permitAll()
+                                // the waiting room reads the user from the JWT itself, see WaitingRoomController
+                                .requestMatchers("/waiting-room/**").permitAll()
+                                // actuator endpoints are only served on the internal management port
+                                .requestMatchers(EndpointRequest.toAnyEndpoint()).permitAll()
                                 .anyRequest().authenticated()
                 )
                 .sessionManagement(session ->
                         session.sessionCreationPolicy(SessionCreationPolicy.STATELESS)// if using JWT change to STATELESS
                 )
                 .authenticationProvider(authenticationProvider) //enforces that spring security uses the custom authentication
-                .addFilterBefore(jwtAuthenticationFilter, UsernamePasswordAuthenticationFilter.class);
+                .addFilterBefore(jwtAuthenticationFilter, UsernamePasswordAuthenticationFilter.class)
                  //place the filter before the usernamepasswordauthenticationfilter
+                .addFilterBefore(concurrencyLimitFilter, JwtAuthenticationFilter.class)
+                 //shed load before the jwt filter loads the user from the database
+                .addFilterAfter(rateLimitFilter, JwtAuthenticationFilter.class);
+                 //rate limit once the user (if any) is known, so quotas are per user instead of per IP
 
         return http.build();
     }
@@ -82,8 +98,9 @@ public class SecurityConfiguration {
                 "https://e-commerce-app-nine-silk.vercel.app")); // Frontend URL
         corsConfiguration.setAllowedMethods(List.of("GET", "POST", "PUT", "DELETE", "PATCH"));
         corsConfiguration.setAllowCredentials(true);  // Allows cookies/credentials
-        corsConfiguration.setAllowedHeaders(List.of("Authorization", "Content-Type"));
-        corsConfiguration.setExposedHeaders(List.of("Authorization")); // Allow frontend to read Authorization header
+        corsConfiguration.setAllowedHeaders(List.of("Authorization", "Content-Type", "X-Admission-Token"));
+        corsConfiguration.setExposedHeaders(List.of("Authorization", // Allow frontend to read Authorization header
+                "RateLimit-Limit", "RateLimit-Remaining", "RateLimit-Reset", "Retry-After"));
 
         // Ensure the CORS configuration is applied for all endpoints
         UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
@@ -0,0 +1,57 @@
+package com.fabiolima.e_commerce.configuration;
+
+import com.fabiolima.e_commerce.monitoring.TailSamplingSpanProcessor;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.opentelemetry.sdk.trace.export.BatchSpanProcessor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.autoconfigure.tracing.ConditionalOnEnabledTracing;
+import org.springframework.boot.actuate.autoconfigure.tracing.SpanProcessors;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Every trace is recorded (management.tracing.sampling.probability=1.0) and the decision to export it is taken
+ * once it is complete: spans go through the TailSamplingSpanProcessor before Spring Boot's batch exporter.
+ */
+@Configuration
+@ConditionalOnEnabledTracing
+public class TracingConfiguration {
+
+    @Bean
+    public TailSamplingSpanProcessor tailSamplingSpanProcessor(
+            BatchSpanProcessor otelSpanProcessor,
+            @Value("${tracing.tail-sampling.slow-threshold-ms:500}") long slowThresholdMillis,
+            @Value("${tracing.tail-sampling.baseline-probability:0.01}") double baselineProbability,
+            @Value("${tracing.tail-sampling.max-buffered-traces:10000}") int maxBufferedTraces,
+            @Value("${tracing.tail-sampling.max-trace-age-ms:60000}") long maxTraceAgeMillis) {
+        return new TailSamplingSpanProcessor(otelSpanProcessor, TimeUnit.MILLISECONDS.toNanos(slowThresholdMillis),
+                baselineProbability, maxBufferedTraces, TimeUnit.MILLISECONDS.toNanos(maxTraceAgeMillis));
+    }
+
+    // replaces Spring Boot's list of span processors, which would also export every span straight away
+    @Bean
+    public SpanProcessors spanProcessors(TailSamplingSpanProcessor tailSamplingSpanProcessor) {
+        return SpanProcessors.of(tailSamplingSpanProcessor);
+    }
+
+    @Bean
+    public MeterBinder tailSamplingMetrics(TailSamplingSpanProcessor processor) {
+        return registry -> {
+            FunctionCounter.builder("tracing.tail.traces", processor, TailSamplingSpanProcessor::getKept)
+                    .tag("decision", "kept")
+                    .register(registry);
+            FunctionCounter.builder("tracing.tail.traces", processor, TailSamplingSpanProcessor::getDropped)
+                    .tag("decision", "dropped")
+                    .register(registry);
+            FunctionCounter.builder("tracing.tail.spans.overflowed", processor, TailSamplingSpanProcessor::getOverflowed)
+                    .description("Spans not buffered because too many traces were pending")
+                    .register(registry);
+            Gauge.builder("tracing.tail.traces.buffered", processor, TailSamplingSpanProcessor::getBufferedTraces)
+                    .register(registry);
+        };
+    }
+}
@@ -2,6 +2,7 @@ package com.fabiolima.e_commerce.controller;
 
 import com.fabiolima.e_commerce.dto.LoginRequest;
 import com.fabiolima.e_commerce.dto.RegistrationRequest;
+import com.fabiolima.e_commerce.dto.UserResponse;
 import com.fabiolima.e_commerce.entities.Basket;
 import com.fabiolima.e_commerce.entities.User;
 import com.fabiolima.e_commerce.dto.JwtAuthorizationResponse;
@@ -46,11 +47,11 @@ public class AuthenticationController {
 
     @Operation(summary = "Registers a new customer")
     @PostMapping("/signup")
-    public ResponseEntity<User> registerUser(@Valid @RequestBody RegistrationRequest registrationInput) {
+    public ResponseEntity<UserResponse> registerUser(@Valid @RequestBody RegistrationRequest registrationInput) {
 
         User registeredUser = authenticationService.registerUser(registrationInput);
         log.info("User registered successfully: {}", registeredUser.getEmail());
 
-        return ResponseEntity.ok(registeredUser);
+        return ResponseEntity.ok(UserResponse.from(registeredUser));
     }
 }
\ No newline at end of file
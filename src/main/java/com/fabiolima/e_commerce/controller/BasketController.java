@@ -1,10 +1,10 @@
 package com.fabiolima.e_commerce.controller;
 
-import com.fabiolima.e_commerce.entities.Basket;
-import com.fabiolima.e_commerce.entities.User;
+import com.fabiolima.e_commerce.dto.BasketResponse;
 import com.fabiolima.e_commerce.service.BasketService;
 import com.fabiolima.e_commerce.service.OrderService;
 import com.fabiolima.e_commerce.service.UserService;
+import com.fabiolima.e_commerce.service.implementation.ResponseAssembler;
 import io.swagger.v3.oas.annotations.Operation;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
@@ -23,43 +23,46 @@ public class BasketController {
     private final BasketService basketService;
     private final UserService userService;
     private final OrderService orderService;
+    private final ResponseAssembler responseAssembler;
 
     @Autowired
-    public BasketController(BasketService basketService, UserService userService, OrderService orderService){
+    public BasketController(BasketService basketService, UserService userService, OrderService orderService,
+                            ResponseAssembler responseAssembler){
         this.basketService = basketService;
         this.userService = userService;
         this.orderService = orderService;
+        this.responseAssembler = responseAssembler;
     }
 
     @Operation(summary = "Retrieve basket by its id")
     @GetMapping("/{basketId}")
     @PreAuthorize("@basketAuthenticationService.isOwner(#basketId, authentication)")
-    public ResponseEntity<Basket> getBasketById(@PathVariable("userId") UUID userId,
-                                                @PathVariable("basketId") UUID basketId){
-        Basket theBasket = basketService.findBasketById(basketId);
+    public ResponseEntity<BasketResponse> getBasketById(@PathVariable("userId") UUID userId,
+                                                        @PathVariable("basketId") UUID basketId){
+        BasketResponse theBasket = responseAssembler.read(() -> basketService.findBasketById(basketId), BasketResponse::from);
         return ResponseEntity.ok(theBasket);
     }
 
     @Operation(summary = "Retrieve newest Active basket - Useful for the frontend to have always a valid basket to use")
     @GetMapping("/active-basket")
-    public ResponseEntity<Basket> getNewestActiveBasket(@PathVariable("userId") UUID userId){
-        User user = userService.findUserByUserId(userId);
-        return  ResponseEntity.ok(basketService.returnNewestActiveBasket(user));
+    public ResponseEntity<BasketResponse> getNewestActiveBasket(@PathVariable("userId") UUID userId){
+        return  ResponseEntity.ok(responseAssembler.read(
+                () -> basketService.returnNewestActiveBasket(userService.findUserByUserId(userId)), BasketResponse::from));
     }
 
     @Operation(summary = "Creates new basket/cart for the user when it expires or is checked out")
     @PostMapping()
-    public ResponseEntity<Basket> createBasket(@PathVariable("userId") UUID userId){
+    public ResponseEntity<BasketResponse> createBasket(@PathVariable("userId") UUID userId){
 
-        User user = userService.findUserByUserId(userId);
-        Basket createdBasket = basketService.createBasketAndAddToUser(user);
+        BasketResponse createdBasket = responseAssembler.write(
+                () -> basketService.createBasketAndAddToUser(userService.findUserByUserId(userId)), BasketResponse::from);
         return ResponseEntity.status(HttpStatus.CREATED).body(createdBasket);
     }
 
     @Operation(summary = "Change Basket status to checked out. A checked out basket cannot be updated anymore.")
     @PatchMapping("/{basketId}/checkout")
     @PreAuthorize("@basketAuthenticationService.isOwner(#basketId, authentication)")
-    public ResponseEntity<Basket> convertBasketToOrder(@PathVariable("userId") UUID userId,
+    public ResponseEntity<BasketResponse> convertBasketToOrder(@PathVariable("userId") UUID userId,
                                                    @PathVariable("basketId") UUID basketId){
         //1 - Change basket status to CHECKED_OUT
         /**
@@ -71,7 +74,7 @@ public class BasketController {
          basket is as Active status. Therefore, the basket will only be checked out after
          the user decides to pay for the order, and be redirected to PayPal page.
         */
-        Basket basket = basketService.checkoutBasket(userId, basketId);
+        BasketResponse basket = responseAssembler.write(() -> basketService.checkoutBasket(userId, basketId), BasketResponse::from);
 
         return ResponseEntity.ok(basket);
     }
@@ -79,17 +82,17 @@ public class BasketController {
     @Operation(summary = "Deactivate a basket if user don't update it for 1 day, giving back all items to product stock")
     @DeleteMapping("/{basketId}")
     @PreAuthorize("@basketAuthenticationService.isOwner(#basketId, authentication)")
-    public ResponseEntity<Basket> deactivateBasket(@PathVariable("userId") UUID userId,
-                                               @PathVariable("basketId") UUID basketId) {
-        Basket theBasket = basketService.deactivateBasketById(userId, basketId);
+    public ResponseEntity<BasketResponse> deactivateBasket(@PathVariable("userId") UUID userId,
+                                                           @PathVariable("basketId") UUID basketId) {
+        BasketResponse theBasket = responseAssembler.write(() -> basketService.deactivateBasketById(userId, basketId), BasketResponse::from);
         return ResponseEntity.ok(theBasket);
     }
 
     @Operation(summary = "Remove all items in basket")
     @PostMapping("/{basketId}/clear-basket")
     @PreAuthorize("@basketAuthenticationService.isOwner(#basketId, authentication)")
-    public ResponseEntity<Basket> clearBasket(@PathVariable("basketId") UUID basketId){
-        Basket basket = basketService.clearBasket(basketId);
+    public ResponseEntity<BasketResponse> clearBasket(@PathVariable("basketId") UUID basketId){
+        BasketResponse basket = responseAssembler.write(() -> basketService.clearBasket(basketId), BasketResponse::from);
         return ResponseEntity.ok(basket);
     }
 
@@ -1,18 +1,23 @@
 package com.fabiolima.e_commerce.controller;
 
-import com.fabiolima.e_commerce.entities.BasketItem;
+import com.fabiolima.e_commerce.dto.BasketItemResponse;
 import com.fabiolima.e_commerce.service.BasketItemService;
+import com.fabiolima.e_commerce.service.implementation.BasketMutationCoalescer;
+import com.fabiolima.e_commerce.service.implementation.ResponseAssembler;
+import com.fabiolima.e_commerce.waitingroom.WaitingRoomManager;
 import io.swagger.v3.oas.annotations.Operation;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
 import java.math.BigDecimal;
 import java.util.List;
 import java.util.UUID;
+import java.util.function.IntUnaryOperator;
 
 @Slf4j
 @RestController
@@ -21,53 +26,71 @@ import java.util.UUID;
 public class BasketItemController {
 
     private final BasketItemService basketItemService;
+    private final ResponseAssembler responseAssembler;
+    private final BasketMutationCoalescer basketMutationCoalescer;
+    private final WaitingRoomManager waitingRoomManager;
     @Autowired
-    public BasketItemController(BasketItemService basketItemService){
+    public BasketItemController(BasketItemService basketItemService, ResponseAssembler responseAssembler,
+                                BasketMutationCoalescer basketMutationCoalescer, WaitingRoomManager waitingRoomManager){
         this.basketItemService = basketItemService;
+        this.responseAssembler = responseAssembler;
+        this.basketMutationCoalescer = basketMutationCoalescer;
+        this.waitingRoomManager = waitingRoomManager;
     }
 
+    // products behind an open waiting room need the admission token issued by the room
     @Operation(summary = "Add items to basket")
     @PostMapping
-    public ResponseEntity<BasketItem> addItemToBasket(@PathVariable("basketId") UUID basketId,
+    public ResponseEntity<BasketItemResponse> addItemToBasket(@PathVariable("basketId") UUID basketId,
                                                        @RequestParam UUID productId,
-                                                       @RequestParam int quant){
+                                                       @RequestParam int quant,
+                                                       @RequestHeader(value = WaitingRoomManager.ADMISSION_TOKEN_HEADER, required = false) String admissionToken,
+                                                       Authentication authentication){
 
-        BasketItem item = basketItemService.addItemToBasket(basketId, productId, quant);
+        waitingRoomManager.checkAdmission(productId, authentication.getName(), admissionToken, quant);
+        BasketItemResponse item = BasketItemResponse.from(basketItemService.addItemToBasket(basketId, productId, quant));
         return ResponseEntity.status(HttpStatus.CREATED).body(item);
     }
 
     @Operation(summary = "Retrieve all items in a basket")
     @GetMapping
-    public ResponseEntity<List<BasketItem>> getAllItemsInBasket(@PathVariable("basketId") UUID basketId){
-        return ResponseEntity.ok(basketItemService.getItemsByBasket(basketId));
+    public ResponseEntity<List<BasketItemResponse>> getAllItemsInBasket(@PathVariable("basketId") UUID basketId){
+        return ResponseEntity.ok(responseAssembler.read(() -> basketItemService.getItemsByBasket(basketId),
+                items -> items.stream().map(BasketItemResponse::from).toList()));
     }
 
     @Operation(summary = "Retrieve item by its id")
     @GetMapping("/{itemId}")
-    public ResponseEntity<BasketItem> getItemById(@PathVariable("basketId") UUID basketId,
-                                                  @PathVariable("itemId") UUID itemId){
-        return ResponseEntity.ok(basketItemService.getItemById(itemId));
+    public ResponseEntity<BasketItemResponse> getItemById(@PathVariable("basketId") UUID basketId,
+                                                          @PathVariable("itemId") UUID itemId){
+        return ResponseEntity.ok(BasketItemResponse.from(basketItemService.getItemById(itemId)));
     }
     /*
     * Everytime the user update the quantity, the API performs stock validations,
     * then @PostMapping aligns better with thw API design, as the operation is more than just updating a field
     * */
-    // increment quantity one by one in item
+    // increment quantity one by one in item. Rapid clicks on the same item are merged into one update
     @Operation(summary = "Increment the item quantity by the value of One in basket and decrement product stock")
     @PostMapping("/{itemId}/increment")
-    public ResponseEntity<BasketItem> incrementItemInBasket(@PathVariable("basketId") UUID basketId,
-                                                            @PathVariable("itemId") UUID itemId){
+    public ResponseEntity<BasketItemResponse> incrementItemInBasket(@PathVariable("basketId") UUID basketId,
+                                                            @PathVariable("itemId") UUID itemId,
+                                                            @RequestHeader(value = WaitingRoomManager.ADMISSION_TOKEN_HEADER, required = false) String admissionToken,
+                                                            Authentication authentication){
 
-        BasketItem incrementedItem = basketItemService.incrementItemQuantity(itemId);
+        checkAdmission(itemId, currentQuantity -> 1, admissionToken, authentication);
+        BasketItemResponse incrementedItem = basketMutationCoalescer.submit(basketId, itemId, 1);
         return ResponseEntity.ok(incrementedItem);
     }
 
-    // decrement quantity one by one in item
+    // decrement quantity one by one in item. Rapid clicks on the same item are merged into one update
     @Operation(summary = "Decrement the item quantity by the value of One in basket and increment product stock")
     @PostMapping("/{itemId}/decrement")
-    public ResponseEntity<BasketItem> decrementItemInBasket(@PathVariable("basketId") UUID basketId,
-                                                            @PathVariable("itemId") UUID itemId){
-        BasketItem decrementedItem = basketItemService.decrementItemQuantity(basketId, itemId);
+    public ResponseEntity<BasketItemResponse> decrementItemInBasket(@PathVariable("basketId") UUID basketId,
+                                                            @PathVariable("itemId") UUID itemId,
+                                                            @RequestHeader(value = WaitingRoomManager.ADMISSION_TOKEN_HEADER, required = false) String admissionToken,
+                                                            Authentication authentication){
+        checkAdmission(itemId, currentQuantity -> 0, admissionToken, authentication);
+        BasketItemResponse decrementedItem = basketMutationCoalescer.submit(basketId, itemId, -1);
         return ResponseEntity.ok(decrementedItem);
     }
 
@@ -75,10 +98,13 @@ public class BasketItemController {
     @Operation(summary = "Update item quantity defined by customer. " +
             "Useful if website allows user to manually set the quantity. It also update product stock")
     @PostMapping("/{itemId}")
-    public ResponseEntity<BasketItem> updateItemQuantityInBasket(@PathVariable("basketId") UUID basketId,
+    public ResponseEntity<BasketItemResponse> updateItemQuantityInBasket(@PathVariable("basketId") UUID basketId,
                                                                  @PathVariable("itemId") UUID itemId,
-                                                                 @RequestParam int quant){
-        BasketItem updatedBasketItem = basketItemService.updateBasketItem(basketId, itemId, quant);
+                                                                 @RequestParam int quant,
+                                                                 @RequestHeader(value = WaitingRoomManager.ADMISSION_TOKEN_HEADER, required = false) String admissionToken,
+                                                                 Authentication authentication){
+        checkAdmission(itemId, currentQuantity -> Math.max(0, quant - currentQuantity), admissionToken, authentication);
+        BasketItemResponse updatedBasketItem = BasketItemResponse.from(basketItemService.updateBasketItem(basketId, itemId, quant));
         return ResponseEntity.ok(updatedBasketItem);
     }
 
@@ -97,4 +123,13 @@ public class BasketItemController {
         basketItemService.removeItemFromBasket(basketId,itemId);
         return ResponseEntity.noContent().build();
     }
+
+    // the product of the line is only read while a waiting room is open; units maps the line's quantity to the units taken
+    private void checkAdmission(UUID itemId, IntUnaryOperator units, String admissionToken, Authentication authentication) {
+        if (!waitingRoomManager.isGuarding())
+            return;
+        BasketItemResponse item = responseAssembler.read(() -> basketItemService.getItemById(itemId), BasketItemResponse::from);
+        waitingRoomManager.checkAdmission(item.getProduct().getId(), authentication.getName(), admissionToken,
+                units.applyAsInt(item.getQuantity()));
+    }
 }
\ No newline at end of file
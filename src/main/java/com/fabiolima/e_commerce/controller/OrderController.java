@@ -1,12 +1,13 @@
 package com.fabiolima.e_commerce.controller;
 
+import com.fabiolima.e_commerce.dto.OrderResponse;
 import com.fabiolima.e_commerce.entities.Basket;
-import com.fabiolima.e_commerce.entities.Order;
 import com.fabiolima.e_commerce.entities.User;
 import com.fabiolima.e_commerce.service.BasketService;
 import com.fabiolima.e_commerce.service.OrderService;
 import com.fabiolima.e_commerce.service.ProductService;
 import com.fabiolima.e_commerce.service.UserService;
+import com.fabiolima.e_commerce.service.implementation.ResponseAssembler;
 import io.swagger.v3.oas.annotations.Operation;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
@@ -25,65 +26,72 @@ public class OrderController {
     private final ProductService productService;
     private final BasketService basketService;
     private final UserService userService;
+    private final ResponseAssembler responseAssembler;
 
     @Autowired
     public OrderController (OrderService orderService,
-                            ProductService productService, BasketService basketService, UserService userService){
+                            ProductService productService, BasketService basketService, UserService userService,
+                            ResponseAssembler responseAssembler){
         this.orderService = orderService;
         this.productService = productService;
         this.basketService = basketService;
         this.userService = userService;
+        this.responseAssembler = responseAssembler;
     }
 
     @Operation(summary = "Creates an Order from Basket")
     @PostMapping("/create-order")
-    public ResponseEntity<Order> createOrderFromBasket(@PathVariable("userId") UUID userId){
-        User user = userService.findUserByUserId(userId);
-        Basket basket = basketService.returnNewestActiveBasket(user);
+    public ResponseEntity<OrderResponse> createOrderFromBasket(@PathVariable("userId") UUID userId){
 
-        return ResponseEntity.ok(orderService.createOrderAndAddToUser(userId,basket));
+        return ResponseEntity.ok(responseAssembler.write(() -> {
+            User user = userService.findUserByUserId(userId);
+            Basket basket = basketService.returnNewestActiveBasket(user);
+            return orderService.createOrderAndAddToUser(userId, basket);
+        }, OrderResponse::from));
     }
 
     @Operation(summary = "Retrieve newest created Order - Useful to fetch the created order when checking basket out")
     @GetMapping("/newest-created-order")
-    public ResponseEntity<Order> getNewestPendingBasket(@PathVariable("userId") UUID userId){
-        return  ResponseEntity.ok(orderService.returnNewestPendingOrder(userId));
+    public ResponseEntity<OrderResponse> getNewestPendingBasket(@PathVariable("userId") UUID userId){
+        return  ResponseEntity.ok(responseAssembler.read(() -> orderService.returnNewestPendingOrder(userId), OrderResponse::from));
     }
 
     @Operation(summary = "It retrieves all users orders")
     @GetMapping
-    public ResponseEntity<Page<Order>> getAllUsersOrders(@RequestParam(defaultValue = "0") int pgNum,
-                                                         @RequestParam(defaultValue = "25") int pgSize,
-                                                         @PathVariable ("userId") UUID userId){
-        Page<Order> orders = orderService.getUserOrders(pgNum, pgSize, userId);
+    public ResponseEntity<Page<OrderResponse>> getAllUsersOrders(@RequestParam(defaultValue = "0") int pgNum,
+                                                                 @RequestParam(defaultValue = "25") int pgSize,
+                                                                 @PathVariable ("userId") UUID userId){
+        Page<OrderResponse> orders = responseAssembler.read(() -> orderService.getUserOrders(pgNum, pgSize, userId),
+                page -> page.map(OrderResponse::from));
         return ResponseEntity.ok(orders);
     }
 
     @Operation(summary = "It retrieves all users orders depending on its status")
     @GetMapping("/status")
-    public ResponseEntity<Page<Order>> getUsersOrdersByOrderStatus(@RequestParam(defaultValue = "0") int pgNum,
-                                                                   @RequestParam(defaultValue = "25") int pgSize,
-                                                                   @PathVariable("userId") UUID userId,
-                                                                   @RequestParam("status") String status){
+    public ResponseEntity<Page<OrderResponse>> getUsersOrdersByOrderStatus(@RequestParam(defaultValue = "0") int pgNum,
+                                                                           @RequestParam(defaultValue = "25") int pgSize,
+                                                                           @PathVariable("userId") UUID userId,
+                                                                           @RequestParam("status") String status){
 
-        Page<Order> orders = orderService.getUserOrdersByStatus(pgNum, pgSize, userId, status);
+        Page<OrderResponse> orders = responseAssembler.read(() -> orderService.getUserOrdersByStatus(pgNum, pgSize, userId, status),
+                page -> page.map(OrderResponse::from));
         return ResponseEntity.ok(orders);
     }
 
     @Operation(summary = "Retrieve users order by its id")
     @GetMapping("/{orderId}")
     @PreAuthorize("@orderAuthenticationService.isOwner(#orderId,authentication)")
-    public ResponseEntity<Order> getUsersOrderByOrderId(@PathVariable ("userId") UUID userId,
-                                                        @PathVariable ("orderId") UUID orderId){
-        return ResponseEntity.ok(orderService.findOrderById(orderId));
+    public ResponseEntity<OrderResponse> getUsersOrderByOrderId(@PathVariable ("userId") UUID userId,
+                                                                @PathVariable ("orderId") UUID orderId){
+        return ResponseEntity.ok(responseAssembler.read(() -> orderService.findOrderById(orderId), OrderResponse::from));
     }
 
     @Operation(summary = "Update order status")
     @PatchMapping("/{orderId}/status")
     @PreAuthorize("@orderAuthenticationService.isOwner(#orderId,authentication)")
-    public ResponseEntity<Order> updateOrderStatus(@PathVariable ("orderId") UUID orderId,
-                                                   @RequestParam ("status") String status){
-        Order order = orderService.updateOrderStatus(orderId,status);
+    public ResponseEntity<OrderResponse> updateOrderStatus(@PathVariable ("orderId") UUID orderId,
+                                                           @RequestParam ("status") String status){
+        OrderResponse order = responseAssembler.write(() -> orderService.updateOrderStatus(orderId,status), OrderResponse::from);
 
         return ResponseEntity.ok(order);
     }
@@ -91,9 +99,9 @@ public class OrderController {
     @Operation(summary = "To cancel an order if its current status is pending")
     @DeleteMapping("/{orderId}/cancel")
     @PreAuthorize("@orderAuthenticationService.isOwner(#orderId,authentication)")
-    public ResponseEntity<Order> cancelOrder(@PathVariable ("orderId") UUID orderId){
+    public ResponseEntity<OrderResponse> cancelOrder(@PathVariable ("orderId") UUID orderId){
 
-        Order order = orderService.cancelOrder(orderId);
+        OrderResponse order = responseAssembler.write(() -> orderService.cancelOrder(orderId), OrderResponse::from);
         return ResponseEntity.ok(order);
     }
 }
\ No newline at end of file
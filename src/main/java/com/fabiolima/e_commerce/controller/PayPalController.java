@@ -1,6 +1,7 @@
 package com.fabiolima.e_commerce.controller;
 
-import com.fabiolima.e_commerce.entities.Order;
+import com.fabiolima.e_commerce.dto.OrderResponse;
+import com.fabiolima.e_commerce.entities.enums.OrderStatus;
 import com.fabiolima.e_commerce.service.OrderService;
 import com.fabiolima.e_commerce.service.implementation.PaypalServiceImpl;
 import io.swagger.v3.oas.annotations.Operation;
@@ -37,9 +38,13 @@ public class PayPalController {
      * Use this to execute the payment:
      */
 
-    @Operation(summary = "Captures the created order by its Id")
+    @Operation(summary = "Captures the created order by its Id (202 while the payment is being confirmed with PayPal)")
     @PostMapping("/capture")
-    public ResponseEntity<Order> captureOrder(@RequestParam String token) {
-        return ResponseEntity.ok(paypalServiceImpl.captureOrder(token));
+    public ResponseEntity<OrderResponse> captureOrder(@RequestParam String token) {
+        OrderResponse order = paypalServiceImpl.captureOrder(token);
+        // PayPal did not answer the capture: it is settled in the background, capturing again is not needed
+        if (order.getOrderStatus() == OrderStatus.PENDING)
+            return ResponseEntity.accepted().body(order);
+        return ResponseEntity.ok(order);
     }
 }
@@ -1,5 +1,6 @@
 package com.fabiolima.e_commerce.controller;
 
+import com.fabiolima.e_commerce.dto.ProductResponse;
 import com.fabiolima.e_commerce.entities.Product;
 import com.fabiolima.e_commerce.service.ProductService;
 import io.swagger.v3.oas.annotations.Operation;
@@ -25,40 +26,41 @@ public class ProductController {
 
     @Operation(summary = "Create a new product")
     @PostMapping
-    public ResponseEntity<Product> createProduct(@RequestBody Product theProduct){
-        Product createdProduct = productService.saveProduct(theProduct);
+    public ResponseEntity<ProductResponse> createProduct(@RequestBody Product theProduct){
+        ProductResponse createdProduct = ProductResponse.from(productService.saveProduct(theProduct));
         return ResponseEntity.status(HttpStatus.CREATED).body(createdProduct);
     }
 
     @Operation(summary = "Retrieves all products")
     @GetMapping
-    public ResponseEntity<Page<Product>> getAllProducts(@RequestParam(defaultValue = "0") int pgNum,
-                                                        @RequestParam(defaultValue = "25") int pgSize) {
-        Page<Product> allProducts = productService.findAllProducts(pgNum, pgSize);
+    public ResponseEntity<Page<ProductResponse>> getAllProducts(@RequestParam(defaultValue = "0") int pgNum,
+                                                                @RequestParam(defaultValue = "25") int pgSize) {
+        Page<ProductResponse> allProducts = productService.findAllProducts(pgNum, pgSize).map(ProductResponse::from);
         return ResponseEntity.ok(allProducts);
     }
 
     @Operation(summary = "Retrieve products by its category")
     @GetMapping("/category")
-    public ResponseEntity<Page<Product>> getProductsByCategory(@RequestParam(defaultValue = "0") int pgNum,
-                                                               @RequestParam(defaultValue = "25") int pgSize,
-                                                               @RequestParam("category") String category){
-        Page<Product> productsByCategory = productService.findProductsByCategory(pgNum, pgSize, category);
+    public ResponseEntity<Page<ProductResponse>> getProductsByCategory(@RequestParam(defaultValue = "0") int pgNum,
+                                                                       @RequestParam(defaultValue = "25") int pgSize,
+                                                                       @RequestParam("category") String category){
+        Page<ProductResponse> productsByCategory = productService.findProductsByCategory(pgNum, pgSize, category)
+                .map(ProductResponse::from);
         return ResponseEntity.ok(productsByCategory);
     }
 
     @Operation(summary = "Retrieve a product by its id")
     @GetMapping("/{productId}")
-    public ResponseEntity<Product> getProductById(@PathVariable ("productId") UUID productId){
-        Product theProduct = productService.findProductById(productId);
+    public ResponseEntity<ProductResponse> getProductById(@PathVariable ("productId") UUID productId){
+        ProductResponse theProduct = ProductResponse.from(productService.findProductById(productId));
         return ResponseEntity.ok(theProduct);
     }
 
     @Operation(summary = "Update product details")
     @PatchMapping("/{productId}")
-    public ResponseEntity<Product> updateProduct(@PathVariable ("productId") UUID productId,
-                                        @RequestBody Map<String, Object> updates){
-        Product updatedProduct = productService.patchUpdateProductById(productId, updates);
+    public ResponseEntity<ProductResponse> updateProduct(@PathVariable ("productId") UUID productId,
+                                                         @RequestBody Map<String, Object> updates){
+        ProductResponse updatedProduct = ProductResponse.from(productService.patchUpdateProductById(productId, updates));
 
         return ResponseEntity.ok(updatedProduct);
     }
@@ -1,6 +1,6 @@
 package com.fabiolima.e_commerce.controller;
 
-import com.fabiolima.e_commerce.entities.User;
+import com.fabiolima.e_commerce.dto.UserResponse;
 import com.fabiolima.e_commerce.repository.UserRepository;
 import com.fabiolima.e_commerce.service.UserService;
 import io.swagger.v3.oas.annotations.Operation;
@@ -30,32 +30,32 @@ public class UserController {
     @Operation(summary = "Returns user's data")
     @GetMapping("/{userId}")
     @PreAuthorize("@userAuthenticationService.isOwner(#userId, authentication)")
-    public ResponseEntity<User> getUserByUserId(@PathVariable("userId") UUID userId){
-        User user = userService.findUserByUserId(userId);
+    public ResponseEntity<UserResponse> getUserByUserId(@PathVariable("userId") UUID userId){
+        UserResponse user = UserResponse.from(userService.findUserByUserId(userId));
         return ResponseEntity.ok(user);
     }
 
     @Operation(summary = "Update user details")
     @PatchMapping("/{userId}")
     @PreAuthorize("@userAuthenticationService.isOwner(#userId, authentication)")
-    public ResponseEntity<User> updateUserByUserId(@RequestBody Map<String, Object> updates,
-                                   @PathVariable("userId") UUID userId){
-        return ResponseEntity.ok(userService.patchUpdateUserByUserId(userId,updates));
+    public ResponseEntity<UserResponse> updateUserByUserId(@RequestBody Map<String, Object> updates,
+                                                           @PathVariable("userId") UUID userId){
+        return ResponseEntity.ok(UserResponse.from(userService.patchUpdateUserByUserId(userId,updates)));
     }
 
     @Operation(summary = "Deactivate user, preserving its data")
     @PatchMapping("/{userId}/deactivate")
     @PreAuthorize("@userAuthenticationService.isOwner(#userId, authentication)")
-    public ResponseEntity<User> deactivateUserByUserId(@PathVariable("userId") UUID userId){
-        return ResponseEntity.ok(userService.deactivateUserByUserId(userId));
+    public ResponseEntity<UserResponse> deactivateUserByUserId(@PathVariable("userId") UUID userId){
+        return ResponseEntity.ok(UserResponse.from(userService.deactivateUserByUserId(userId)));
     }
 
     @PostMapping("/{userId}/roles/add-role")
-    public ResponseEntity<User> addRoleToUser(
+    public ResponseEntity<UserResponse> addRoleToUser(
             @PathVariable UUID userId,
             @RequestParam String roleName
     ) {
-        User updatedUser = userService.addRoleToUser(userId, roleName);
+        UserResponse updatedUser = UserResponse.from(userService.addRoleToUser(userId, roleName));
         return ResponseEntity.ok(updatedUser);
     }
 }
\ No newline at end of file
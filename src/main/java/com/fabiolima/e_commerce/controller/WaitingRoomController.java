@@ -0,0 +1,51 @@
+package com.fabiolima.e_commerce.controller;
+
+import com.fabiolima.e_commerce.dto.WaitingRoomResponse;
+import com.fabiolima.e_commerce.exceptions.ForbiddenException;
+import com.fabiolima.e_commerce.security.JwtService;
+import com.fabiolima.e_commerce.waitingroom.WaitingRoomManager;
+import io.swagger.v3.oas.annotations.Operation;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+/**
+ * Queue endpoints polled by thousands of clients during a flash sale. They are answered from memory:
+ * the user is read from the JWT signature alone (JwtAuthenticationFilter, which loads the user from
+ * the database, skips this path).
+ */
+@RestController
+@RequestMapping("/waiting-room/{roomId}")
+public class WaitingRoomController {
+
+    private final WaitingRoomManager waitingRoomManager;
+    private final JwtService jwtService;
+
+    @Autowired
+    public WaitingRoomController(WaitingRoomManager waitingRoomManager, JwtService jwtService) {
+        this.waitingRoomManager = waitingRoomManager;
+        this.jwtService = jwtService;
+    }
+
+    @Operation(summary = "Join the waiting room (joining again keeps the original place in the queue)")
+    @PostMapping
+    public ResponseEntity<WaitingRoomResponse> joinWaitingRoom(@PathVariable("roomId") String roomId,
+                                                               @RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String authorization){
+        return ResponseEntity.ok(waitingRoomManager.join(roomId, currentUser(authorization)));
+    }
+
+    @Operation(summary = "Retrieve the position in the waiting room, or the admission token once admitted")
+    @GetMapping
+    public ResponseEntity<WaitingRoomResponse> getWaitingRoomStatus(@PathVariable("roomId") String roomId,
+                                                                    @RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String authorization){
+        return ResponseEntity.ok(waitingRoomManager.status(roomId, currentUser(authorization)));
+    }
+
+    private String currentUser(String authorization) {
+        if (authorization == null || !authorization.startsWith("Bearer "))
+            throw new ForbiddenException("Please log in to join the waiting room.");
+        // verifies the signature and the expiry of the token
+        return jwtService.extractUsername(authorization.substring(7));
+    }
+}
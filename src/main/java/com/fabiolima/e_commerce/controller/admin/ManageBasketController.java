@@ -1,7 +1,8 @@
 package com.fabiolima.e_commerce.controller.admin;
 
-import com.fabiolima.e_commerce.entities.Basket;
+import com.fabiolima.e_commerce.dto.BasketResponse;
 import com.fabiolima.e_commerce.service.BasketService;
+import com.fabiolima.e_commerce.service.implementation.ResponseAssembler;
 import io.swagger.v3.oas.annotations.Operation;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
@@ -14,27 +15,30 @@ import java.util.UUID;
 @RequestMapping("/admin")
 public class ManageBasketController {
     private final BasketService basketService;
+    private final ResponseAssembler responseAssembler;
 
     @Autowired
-    public ManageBasketController(BasketService basketService) {
+    public ManageBasketController(BasketService basketService, ResponseAssembler responseAssembler) {
         this.basketService = basketService;
+        this.responseAssembler = responseAssembler;
     }
 
     @Operation(summary = "Retrieve all the baskets of an user")
     @GetMapping("/{adminId}/user/{userId}")
-    public ResponseEntity<Page<Basket>> getAllUsersBasket(@PathVariable("userId") UUID userId,
-                                                          @RequestParam(defaultValue = "0") int pgNum,
-                                                          @RequestParam(defaultValue = "25") int pgSize){
-        Page<Basket> usersBaskets = basketService.getUserBaskets(pgNum, pgSize, userId);
+    public ResponseEntity<Page<BasketResponse>> getAllUsersBasket(@PathVariable("userId") UUID userId,
+                                                                  @RequestParam(defaultValue = "0") int pgNum,
+                                                                  @RequestParam(defaultValue = "25") int pgSize){
+        Page<BasketResponse> usersBaskets = responseAssembler.read(() -> basketService.getUserBaskets(pgNum, pgSize, userId),
+                page -> page.map(BasketResponse::from));
         return ResponseEntity.ok(usersBaskets);
     }
 
 
     @Operation(summary = "Retrieve basket by its id")
     @GetMapping("/{basketId}")
-    public ResponseEntity<Basket> getBasketById(@PathVariable("userId") UUID userId,
-                                                @PathVariable("basketId") UUID basketId){
-        Basket theBasket = basketService.findBasketById(basketId);
+    public ResponseEntity<BasketResponse> getBasketById(@PathVariable("userId") UUID userId,
+                                                        @PathVariable("basketId") UUID basketId){
+        BasketResponse theBasket = responseAssembler.read(() -> basketService.findBasketById(basketId), BasketResponse::from);
         return ResponseEntity.ok(theBasket);
     }
 }
@@ -0,0 +1,28 @@
+package com.fabiolima.e_commerce.controller.admin;
+
+import com.fabiolima.e_commerce.dto.ProductResponse;
+import com.fabiolima.e_commerce.service.ProductService;
+import io.swagger.v3.oas.annotations.Operation;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.UUID;
+
+@RestController
+@RequestMapping("/admin/product")
+public class ManageProductController {
+    private final ProductService productService;
+
+    @Autowired
+    public ManageProductController(ProductService productService) {
+        this.productService = productService;
+    }
+
+    @Operation(summary = "Split the stock of a hot product over a number of rows (0 turns sharding off)")
+    @PutMapping("/{productId}/stock-shards")
+    public ResponseEntity<ProductResponse> shardProductStock(@PathVariable("productId") UUID productId,
+                                                             @RequestParam int shards){
+        return ResponseEntity.ok(ProductResponse.from(productService.shardProductStock(productId, shards)));
+    }
+}
@@ -0,0 +1,70 @@
+package com.fabiolima.e_commerce.controller.admin;
+
+import com.fabiolima.e_commerce.monitoring.jfr.ProfilingRecordings;
+import io.swagger.v3.oas.annotations.Operation;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+@RestController
+@RequestMapping("/admin/profiling/recordings")
+public class ManageProfilingController {
+    private final ProfilingRecordings profilingRecordings;
+
+    @Autowired
+    public ManageProfilingController(ProfilingRecordings profilingRecordings) {
+        this.profilingRecordings = profilingRecordings;
+    }
+
+    @Operation(summary = "Start a bounded flight recording on this instance ('profile' adds allocation and lock contention)")
+    @PostMapping
+    public ResponseEntity<ProfilingRecordings.RecordingSnapshot> startRecording(@RequestParam(defaultValue = "profile") String settings,
+                                                                               @RequestParam(required = false) Long durationMinutes){
+        return ResponseEntity.ok(profilingRecordings.start(settings, durationMinutes));
+    }
+
+    @Operation(summary = "Retrieve the flight recordings of this instance")
+    @GetMapping
+    public ResponseEntity<List<ProfilingRecordings.RecordingSnapshot>> getRecordings(){
+        return ResponseEntity.ok(profilingRecordings.getRecordings());
+    }
+
+    @Operation(summary = "Stop a flight recording, its data can still be downloaded until it is deleted")
+    @PostMapping("/{recordingId}/stop")
+    public ResponseEntity<ProfilingRecordings.RecordingSnapshot> stopRecording(@PathVariable("recordingId") long recordingId){
+        return ResponseEntity.ok(profilingRecordings.stop(recordingId));
+    }
+
+    @Operation(summary = "Download what a flight recording holds so far as a .jfr file")
+    @GetMapping("/{recordingId}")
+    public ResponseEntity<StreamingResponseBody> downloadRecording(@PathVariable("recordingId") long recordingId){
+        Path file = profilingRecordings.dump(recordingId);
+        StreamingResponseBody body = out -> {
+            try {
+                Files.copy(file, out);
+            } finally {
+                Files.deleteIfExists(file);
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        ContentDisposition.attachment().filename(file.getFileName().toString()).build().toString())
+                .body(body);
+    }
+
+    @Operation(summary = "Delete a flight recording and its data")
+    @DeleteMapping("/{recordingId}")
+    public ResponseEntity<Void> deleteRecording(@PathVariable("recordingId") long recordingId){
+        profilingRecordings.delete(recordingId);
+        return ResponseEntity.noContent().build();
+    }
+}
@@ -0,0 +1,33 @@
+package com.fabiolima.e_commerce.controller.admin;
+
+import com.fabiolima.e_commerce.monitoring.SlowQueryDetector;
+import io.swagger.v3.oas.annotations.Operation;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/admin/slow-queries")
+public class ManageSlowQueriesController {
+    private final SlowQueryDetector slowQueryDetector;
+
+    @Autowired
+    public ManageSlowQueriesController(SlowQueryDetector slowQueryDetector) {
+        this.slowQueryDetector = slowQueryDetector;
+    }
+
+    @Operation(summary = "Retrieve the slowest query shapes recorded on this instance, with the methods and routes that ran them")
+    @GetMapping
+    public ResponseEntity<List<SlowQueryDetector.ShapeSnapshot>> getSlowQueries(@RequestParam(defaultValue = "10") int limit){
+        return ResponseEntity.ok(slowQueryDetector.getSlowest(limit));
+    }
+
+    @Operation(summary = "Clear the slow queries recorded on this instance")
+    @DeleteMapping
+    public ResponseEntity<Void> clearSlowQueries(){
+        slowQueryDetector.reset();
+        return ResponseEntity.noContent().build();
+    }
+}
@@ -1,5 +1,6 @@
 package com.fabiolima.e_commerce.controller.admin;
 
+import com.fabiolima.e_commerce.dto.UserResponse;
 import com.fabiolima.e_commerce.entities.Role;
 import com.fabiolima.e_commerce.entities.User;
 import com.fabiolima.e_commerce.entities.enums.UserRole;
@@ -25,42 +26,42 @@ public class ManageUserDetailsController {
 
     @Operation(summary = "Used to create a new Vendor")
     @PostMapping
-    public ResponseEntity<User> createNewUser(@RequestBody @Valid User theUser){
+    public ResponseEntity<UserResponse> createNewUser(@RequestBody @Valid User theUser){
         Role role = new Role();
         role.setName(UserRole.ROLE_VENDOR);
         theUser.addRoleToUser(role);
-        return ResponseEntity.status(HttpStatus.CREATED).body(userService.saveUser(theUser));
+        return ResponseEntity.status(HttpStatus.CREATED).body(UserResponse.from(userService.saveUser(theUser)));
     }
 
     @Operation(summary = "Retrieve all users")
     @GetMapping
-    public ResponseEntity<Page<User>> getAllUsers(@RequestParam(defaultValue = "0") int pgNum,
-                                                  @RequestParam(defaultValue = "50") int pgSize){
-        return ResponseEntity.ok(userService.findAllUsers(pgNum, pgSize));
+    public ResponseEntity<Page<UserResponse>> getAllUsers(@RequestParam(defaultValue = "0") int pgNum,
+                                                          @RequestParam(defaultValue = "50") int pgSize){
+        return ResponseEntity.ok(userService.findAllUsers(pgNum, pgSize).map(UserResponse::from));
     }
 
     @Operation(summary = "Retrieve all active users")
     @GetMapping("/status")
-    public ResponseEntity<Page<User>> getAllActiveUsers(@RequestParam(defaultValue = "0") int pgNum,
-                                                        @RequestParam(defaultValue = "50") int pgSize,
-                                                        @RequestParam("status") String status){
+    public ResponseEntity<Page<UserResponse>> getAllActiveUsers(@RequestParam(defaultValue = "0") int pgNum,
+                                                                @RequestParam(defaultValue = "50") int pgSize,
+                                                                @RequestParam("status") String status){
 
-        return ResponseEntity.ok(userService.findAllUsersWithStatus(pgNum,pgSize,status));
+        return ResponseEntity.ok(userService.findAllUsersWithStatus(pgNum,pgSize,status).map(UserResponse::from));
     }
 
     @Operation(summary = "Add new role to user")
     @PostMapping("/{userId}/roles/add-role")
-    public ResponseEntity<User> addRoleToUser(
+    public ResponseEntity<UserResponse> addRoleToUser(
             @PathVariable UUID userId,
             @RequestParam String roleName
     ) {
-        User updatedUser = userService.addRoleToUser(userId, roleName);
+        UserResponse updatedUser = UserResponse.from(userService.addRoleToUser(userId, roleName));
         return ResponseEntity.ok(updatedUser);
     }
 
     @Operation(summary = "Remove user account")
     @DeleteMapping("/{userId}")
-    public ResponseEntity<User> deleteUserByUserId(@PathVariable("userId") UUID userId){
-        return ResponseEntity.ok(userService.deactivateUserByUserId(userId));
+    public ResponseEntity<UserResponse> deleteUserByUserId(@PathVariable("userId") UUID userId){
+        return ResponseEntity.ok(UserResponse.from(userService.deactivateUserByUserId(userId)));
     }
 }
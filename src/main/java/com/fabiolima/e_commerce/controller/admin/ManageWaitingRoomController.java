@@ -0,0 +1,43 @@
+package com.fabiolima.e_commerce.controller.admin;
+
+import com.fabiolima.e_commerce.waitingroom.WaitingRoomManager;
+import io.swagger.v3.oas.annotations.Operation;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+@RestController
+@RequestMapping("/admin/waiting-room")
+public class ManageWaitingRoomController {
+    private final WaitingRoomManager waitingRoomManager;
+
+    @Autowired
+    public ManageWaitingRoomController(WaitingRoomManager waitingRoomManager) {
+        this.waitingRoomManager = waitingRoomManager;
+    }
+
+    @Operation(summary = "Open a waiting room in front of one or more products, or change its products and admission rate")
+    @PutMapping("/{roomId}")
+    public ResponseEntity<WaitingRoomManager.RoomSnapshot> openWaitingRoom(@PathVariable("roomId") String roomId,
+                                                                           @RequestParam Set<UUID> productIds,
+                                                                           @RequestParam double admissionsPerSecond){
+        return ResponseEntity.ok(waitingRoomManager.open(roomId, productIds, admissionsPerSecond));
+    }
+
+    @Operation(summary = "Retrieve the open waiting rooms with their queue length and admission counts")
+    @GetMapping
+    public ResponseEntity<List<WaitingRoomManager.RoomSnapshot>> getWaitingRooms(){
+        return ResponseEntity.ok(waitingRoomManager.getRooms());
+    }
+
+    @Operation(summary = "Close a waiting room, its products can be added to baskets freely again")
+    @DeleteMapping("/{roomId}")
+    public ResponseEntity<Void> closeWaitingRoom(@PathVariable("roomId") String roomId){
+        waitingRoomManager.close(roomId);
+        return ResponseEntity.noContent().build();
+    }
+}
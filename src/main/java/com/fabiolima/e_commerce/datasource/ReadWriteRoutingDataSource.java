@@ -0,0 +1,262 @@
+package com.fabiolima.e_commerce.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Sends @Transactional(readOnly = true) work to a replica and everything else to the primary.
+ * A replica is skipped while its lag is above maxLag, and until its lag has been checked once; when none is
+ * usable the read goes to the primary.
+ * After a user commits a write, that user's reads stay on the primary for the read-your-writes window,
+ * so they never read their own change from a replica that has not applied it yet (per instance, kept in memory).
+ * BACKGROUND work (scheduled jobs) always uses the separate jobs pool, so a large sweep cannot drain the
+ * pool that serves requests.
+ * <p>
+ * Must be used behind a LazyConnectionDataSourceProxy: the read-only flag of the transaction is only
+ * known once the transaction has started, after the transaction manager asked for a connection.
+ */
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource implements AutoCloseable {
+
+    static final String PRIMARY = "primary";
+    static final String JOBS = "jobs";
+
+    private final DataSource primary;
+    private final DataSource jobs;
+    private final List<Replica> replicas;
+    private final long maxLagMillis;
+    private final long readYourWritesNanos;
+    private final Map<String, Long> recentWriters = new ConcurrentHashMap<>();
+    private final AtomicInteger next = new AtomicInteger();
+    private final LongAdder primaryReads = new LongAdder();
+    private final LongAdder stickyReads = new LongAdder();
+    private final Map<Workload, WaitStats> waitStats = new EnumMap<>(Workload.class);
+
+    /**
+     * @param jobs pool for BACKGROUND work, or null to run it on the primary
+     */
+    public ReadWriteRoutingDataSource(DataSource primary, DataSource jobs, List<Replica> replicas,
+                                      Duration maxLag, Duration readYourWrites) {
+        this.primary = primary;
+        this.jobs = jobs;
+        this.replicas = List.copyOf(replicas);
+        this.maxLagMillis = maxLag.toMillis();
+        this.readYourWritesNanos = readYourWrites.toNanos();
+
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        if (jobs != null)
+            targets.put(JOBS, jobs);
+        for (Replica replica : this.replicas)
+            targets.put(replica.getName(), replica.getDataSource());
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        afterPropertiesSet();
+        for (Workload workload : Workload.values())
+            waitStats.put(workload, new WaitStats());
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        long start = System.nanoTime();
+        try {
+            return super.getConnection();
+        } finally {
+            waitStats.get(WorkloadContext.current()).record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (jobs != null && WorkloadContext.current() == Workload.BACKGROUND)
+            return JOBS;
+
+        String user = currentUser();
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            rememberWriterOnCommit(user);
+            return PRIMARY;
+        }
+        if (user != null && isRecentWriter(user, System.nanoTime())) {
+            stickyReads.increment();
+            return PRIMARY;
+        }
+        Replica replica = pickReplica();
+        if (replica == null) {
+            primaryReads.increment();
+            return PRIMARY;
+        }
+        replica.reads.increment();
+        return replica.getName();
+    }
+
+    // round robin over the replicas that are not lagging
+    private Replica pickReplica() {
+        int size = replicas.size();
+        if (size == 0)
+            return null;
+        int start = Math.floorMod(next.getAndIncrement(), size);
+        for (int i = 0; i < size; i++) {
+            Replica replica = replicas.get((start + i) % size);
+            if (replica.getLagMillis() <= maxLagMillis)
+                return replica;
+        }
+        return null;
+    }
+
+    private void rememberWriterOnCommit(String user) {
+        if (user == null || !TransactionSynchronizationManager.isSynchronizationActive())
+            return;
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                recentWriters.put(user, System.nanoTime() + readYourWritesNanos);
+            }
+        });
+    }
+
+    boolean isRecentWriter(String user, long now) {
+        Long until = recentWriters.get(user);
+        return until != null && until - now > 0;
+    }
+
+    void evictExpiredWriters(long now) {
+        recentWriters.values().removeIf(until -> until - now <= 0);
+    }
+
+    private static String currentUser() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return authentication == null || !authentication.isAuthenticated() ? null : authentication.getName();
+    }
+
+    public List<Replica> getReplicas() {
+        return replicas;
+    }
+
+    /** read-only transactions sent to the primary because no replica was usable */
+    public long getPrimaryReads() {
+        return primaryReads.sum();
+    }
+
+    /** read-only transactions sent to the primary to honour read-your-writes */
+    public long getStickyReads() {
+        return stickyReads.sum();
+    }
+
+    public int getTrackedWriters() {
+        return recentWriters.size();
+    }
+
+    /** time spent waiting for a connection, per workload */
+    public WaitStats getWaitStats(Workload workload) {
+        return waitStats.get(workload);
+    }
+
+    /** state of every pool behind this data source: primary, jobs, then replicas */
+    public List<PoolSnapshot> getPoolSnapshots() {
+        List<PoolSnapshot> snapshots = new ArrayList<>();
+        getHikariPools().forEach((name, hikari) -> {
+            HikariPoolMXBean pool = hikari.getHikariPoolMXBean();
+            if (pool != null)
+                snapshots.add(new PoolSnapshot(name, pool.getActiveConnections(), pool.getIdleConnections(),
+                        pool.getThreadsAwaitingConnection(), hikari.getMaximumPoolSize()));
+        });
+        return snapshots;
+    }
+
+    /** the Hikari pools behind this data source by name: primary, jobs, then replicas */
+    public Map<String, HikariDataSource> getHikariPools() {
+        Map<String, HikariDataSource> hikariPools = new LinkedHashMap<>();
+        pools().forEach((name, dataSource) -> {
+            HikariDataSource hikari = unwrapHikari(dataSource);
+            if (hikari != null)
+                hikariPools.put(name, hikari);
+        });
+        return hikariPools;
+    }
+
+    private Map<String, DataSource> pools() {
+        Map<String, DataSource> pools = new LinkedHashMap<>();
+        pools.put(PRIMARY, primary);
+        if (jobs != null)
+            pools.put(JOBS, jobs);
+        for (Replica replica : replicas)
+            pools.put(replica.getName(), replica.getDataSource());
+        return pools;
+    }
+
+    private static HikariDataSource unwrapHikari(DataSource dataSource) {
+        try {
+            return dataSource.isWrapperFor(HikariDataSource.class) ? dataSource.unwrap(HikariDataSource.class) : null;
+        } catch (SQLException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public void close() {
+        for (DataSource dataSource : pools().values()) {
+            HikariDataSource hikari = unwrapHikari(dataSource);
+            if (hikari != null)
+                hikari.close();
+        }
+    }
+
+    public record PoolSnapshot(String pool, int active, int idle, int pending, int maximumPoolSize) {
+    }
+
+    public static final class WaitStats {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+        void record(long nanos) {
+            count.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulate(nanos);
+        }
+
+        public long getCount() { return count.sum(); }
+        public long getTotalNanos() { return totalNanos.sum(); }
+        public long getMaxNanos() { return maxNanos.get(); }
+    }
+
+    public static final class Replica {
+        private final String name;
+        private final DataSource dataSource;
+        private final LongAdder reads = new LongAdder();
+        // unknown until the lag monitor has checked it: out of rotation
+        private volatile long lagMillis = Long.MAX_VALUE;
+
+        public Replica(String name, DataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+        }
+
+        public String getName() { return name; }
+        public DataSource getDataSource() { return dataSource; }
+        public long getReads() { return reads.sum(); }
+        public long getLagMillis() { return lagMillis; }
+
+        /** Long.MAX_VALUE takes the replica out of rotation (not checked yet, unreachable or not replicating) */
+        public void setLagMillis(long lagMillis) { this.lagMillis = lagMillis; }
+    }
+}
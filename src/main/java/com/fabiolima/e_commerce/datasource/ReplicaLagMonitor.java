@@ -0,0 +1,58 @@
+package com.fabiolima.e_commerce.datasource;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+/**
+ * Polls every replica for its replication lag. The default query and column are MySQL's.
+ * A replica only takes reads once a check has found it replicating.
+ */
+@Slf4j
+@Component
+public class ReplicaLagMonitor {
+
+    private final ReadWriteRoutingDataSource routingDataSource;
+    private final String lagQuery;
+    private final String lagColumn;
+
+    public ReplicaLagMonitor(ReadWriteRoutingDataSource routingDataSource,
+                             @Value("${datasource.replica.lag-query:SHOW REPLICA STATUS}") String lagQuery,
+                             @Value("${datasource.replica.lag-column:Seconds_Behind_Source}") String lagColumn) {
+        this.routingDataSource = routingDataSource;
+        this.lagQuery = lagQuery;
+        this.lagColumn = lagColumn;
+    }
+
+    @Scheduled(fixedDelayString = "${datasource.replica.lag-check-interval-ms:1000}")
+    public void checkReplicas() {
+        for (ReadWriteRoutingDataSource.Replica replica : routingDataSource.getReplicas()) {
+            long lagMillis = measureLag(replica);
+            if (lagMillis == Long.MAX_VALUE && replica.getLagMillis() != Long.MAX_VALUE)
+                log.warn("Replica {} taken out of rotation, reads go to the primary", replica.getName());
+            else if (lagMillis != Long.MAX_VALUE && replica.getLagMillis() == Long.MAX_VALUE)
+                log.info("Replica {} is replicating ({}ms behind), reads may use it", replica.getName(), lagMillis);
+            replica.setLagMillis(lagMillis);
+        }
+        routingDataSource.evictExpiredWriters(System.nanoTime());
+    }
+
+    private long measureLag(ReadWriteRoutingDataSource.Replica replica) {
+        try (Connection connection = replica.getDataSource().getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(lagQuery)) {
+            if (!resultSet.next())
+                return Long.MAX_VALUE; // not configured as a replica
+            long seconds = resultSet.getLong(lagColumn);
+            return resultSet.wasNull() ? Long.MAX_VALUE : seconds * 1000; // NULL while replication is stopped
+        } catch (Exception e) {
+            log.warn("Could not check lag of replica {}: {}", replica.getName(), e.getMessage());
+            return Long.MAX_VALUE;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.fabiolima.e_commerce.datasource;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps part of a pool for CRITICAL work: other workloads share the remaining connections
+ * and wait (up to the pool's connection timeout) once those are all checked out.
+ */
+public class ReservedCapacityDataSource extends DelegatingDataSource {
+
+    private final Semaphore sharedConnections;
+    private final long timeoutMillis;
+    private final LongAdder rejected = new LongAdder();
+
+    public ReservedCapacityDataSource(DataSource target, int sharedConnections, long timeoutMillis) {
+        super(target);
+        this.sharedConnections = new Semaphore(Math.max(1, sharedConnections), true);
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return getConnection(() -> obtainTargetDataSource().getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return getConnection(() -> obtainTargetDataSource().getConnection(username, password));
+    }
+
+    private Connection getConnection(ConnectionSupplier supplier) throws SQLException {
+        if (WorkloadContext.current() == Workload.CRITICAL)
+            return supplier.get();
+
+        try {
+            if (!sharedConnections.tryAcquire(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                rejected.increment();
+                throw new SQLTransientConnectionException(String.format(
+                        "Connection is not available, request timed out after %dms (remaining connections are reserved for checkout and payment)",
+                        timeoutMillis));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException("Interrupted while waiting for a connection", e);
+        }
+
+        try {
+            return releasingPermitOnClose(supplier.get());
+        } catch (SQLException | RuntimeException e) {
+            sharedConnections.release();
+            throw e;
+        }
+    }
+
+    private Connection releasingPermitOnClose(Connection connection) {
+        InvocationHandler handler = new InvocationHandler() {
+            private boolean released;
+
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                if ("close".equals(method.getName()) && !released) {
+                    released = true;
+                    sharedConnections.release();
+                }
+                try {
+                    return method.invoke(connection, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getTargetException();
+                }
+            }
+        };
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class}, handler);
+    }
+
+    public int getAvailableSharedConnections() {
+        return sharedConnections.availablePermits();
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    @FunctionalInterface
+    private interface ConnectionSupplier {
+        Connection get() throws SQLException;
+    }
+}
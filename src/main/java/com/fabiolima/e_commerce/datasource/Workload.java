@@ -0,0 +1,13 @@
+package com.fabiolima.e_commerce.datasource;
+
+/**
+ * Kind of work running on the current thread, used to pick a connection pool.
+ */
+public enum Workload {
+    /** regular API requests */
+    INTERACTIVE,
+    /** checkout and payment requests, may use the connections reserved on the primary pool */
+    CRITICAL,
+    /** scheduled jobs and batch work, use their own small pool */
+    BACKGROUND
+}
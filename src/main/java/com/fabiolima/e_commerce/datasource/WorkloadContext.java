@@ -0,0 +1,43 @@
+package com.fabiolima.e_commerce.datasource;
+
+/**
+ * Holds the Workload of the current thread. Requests are tagged by WorkloadFilter,
+ * scheduled jobs by the task decorator of the jobs scheduler.
+ */
+public final class WorkloadContext {
+
+    private static final ThreadLocal<Workload> CURRENT = new ThreadLocal<>();
+
+    private WorkloadContext() {
+    }
+
+    public static Workload current() {
+        Workload workload = CURRENT.get();
+        return workload == null ? Workload.INTERACTIVE : workload;
+    }
+
+    /**
+     * @return the workload set before, to hand back to restore()
+     */
+    public static Workload enter(Workload workload) {
+        Workload previous = CURRENT.get();
+        CURRENT.set(workload);
+        return previous;
+    }
+
+    public static void restore(Workload previous) {
+        if (previous == null)
+            CURRENT.remove();
+        else
+            CURRENT.set(previous);
+    }
+
+    public static void runAs(Workload workload, Runnable task) {
+        Workload previous = enter(workload);
+        try {
+            task.run();
+        } finally {
+            restore(previous);
+        }
+    }
+}
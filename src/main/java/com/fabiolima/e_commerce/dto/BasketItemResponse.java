@@ -0,0 +1,23 @@
+package com.fabiolima.e_commerce.dto;
+
+import com.fabiolima.e_commerce.entities.BasketItem;
+import lombok.Builder;
+import lombok.Getter;
+
+import java.util.UUID;
+
+@Getter
+@Builder
+public class BasketItemResponse {
+    private UUID id;
+    private ProductResponse product;
+    private int quantity;
+
+    public static BasketItemResponse from(BasketItem basketItem) {
+        return BasketItemResponse.builder()
+                .id(basketItem.getId())
+                .product(ProductResponse.from(basketItem.getProduct()))
+                .quantity(basketItem.getQuantity())
+                .build();
+    }
+}
@@ -0,0 +1,33 @@
+package com.fabiolima.e_commerce.dto;
+
+import com.fabiolima.e_commerce.entities.Basket;
+import com.fabiolima.e_commerce.entities.enums.BasketStatus;
+import lombok.Builder;
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+@Getter
+@Builder
+public class BasketResponse {
+    private UUID id;
+    private BasketStatus basketStatus;
+    private LocalDateTime createdAt;
+    private LocalDateTime lastUpdated;
+    private UserResponse user;
+    private List<BasketItemResponse> basketItems;
+
+    // basketItems is lazy, call it inside a transaction
+    public static BasketResponse from(Basket basket) {
+        return BasketResponse.builder()
+                .id(basket.getId())
+                .basketStatus(basket.getBasketStatus())
+                .createdAt(basket.getCreatedAt())
+                .lastUpdated(basket.getLastUpdated())
+                .user(basket.getUser() == null ? null : UserResponse.from(basket.getUser()))
+                .basketItems(basket.getBasketItems().stream().map(BasketItemResponse::from).toList())
+                .build();
+    }
+}
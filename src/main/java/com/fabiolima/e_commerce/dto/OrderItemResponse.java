@@ -0,0 +1,28 @@
+package com.fabiolima.e_commerce.dto;
+
+import com.fabiolima.e_commerce.entities.OrderItem;
+import lombok.Builder;
+import lombok.Getter;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+@Getter
+@Builder
+public class OrderItemResponse {
+    private UUID id;
+    private UUID productId;
+    private String productName;
+    private BigDecimal price;
+    private Integer quantity;
+
+    public static OrderItemResponse from(OrderItem orderItem) {
+        return OrderItemResponse.builder()
+                .id(orderItem.getId())
+                .productId(orderItem.getProductId())
+                .productName(orderItem.getProductName())
+                .price(orderItem.getPrice())
+                .quantity(orderItem.getQuantity())
+                .build();
+    }
+}
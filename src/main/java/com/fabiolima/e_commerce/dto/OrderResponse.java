@@ -0,0 +1,39 @@
+package com.fabiolima.e_commerce.dto;
+
+import com.fabiolima.e_commerce.entities.Order;
+import com.fabiolima.e_commerce.entities.enums.OrderStatus;
+import com.fabiolima.e_commerce.entities.enums.PaymentStatus;
+import lombok.Builder;
+import lombok.Getter;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+@Getter
+@Builder
+public class OrderResponse {
+    private UUID id;
+    private String paypalOrderId;
+    private BigDecimal totalPrice;
+    private List<OrderItemResponse> items;
+    private PaymentStatus paymentStatus;
+    private OrderStatus orderStatus;
+    private LocalDateTime createdAt;
+    private LocalDateTime lastUpdated;
+
+    // items is lazy, call it inside a transaction
+    public static OrderResponse from(Order order) {
+        return OrderResponse.builder()
+                .id(order.getId())
+                .paypalOrderId(order.getPaypalOrderId())
+                .totalPrice(order.getTotalPrice())
+                .items(order.getItems() == null ? List.of() : order.getItems().stream().map(OrderItemResponse::from).toList())
+                .paymentStatus(order.getPaymentStatus())
+                .orderStatus(order.getOrderStatus())
+                .createdAt(order.getCreatedAt())
+                .lastUpdated(order.getLastUpdated())
+                .build();
+    }
+}
@@ -0,0 +1,32 @@
+package com.fabiolima.e_commerce.dto;
+
+import com.fabiolima.e_commerce.entities.Product;
+import lombok.Builder;
+import lombok.Getter;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+@Getter
+@Builder
+public class ProductResponse {
+    private UUID id;
+    private String productName;
+    private String productDescription;
+    private BigDecimal productPrice;
+    private String imageSrc;
+    private int stock;
+    private String category;
+
+    public static ProductResponse from(Product product) {
+        return ProductResponse.builder()
+                .id(product.getId())
+                .productName(product.getProductName())
+                .productDescription(product.getProductDescription())
+                .productPrice(product.getProductPrice())
+                .imageSrc(product.getImageSrc())
+                .stock(product.getStock())
+                .category(product.getCategory())
+                .build();
+    }
+}
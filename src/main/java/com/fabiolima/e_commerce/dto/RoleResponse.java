@@ -0,0 +1,22 @@
+package com.fabiolima.e_commerce.dto;
+
+import com.fabiolima.e_commerce.entities.Role;
+import com.fabiolima.e_commerce.entities.enums.UserRole;
+import lombok.Builder;
+import lombok.Getter;
+
+import java.util.UUID;
+
+@Getter
+@Builder
+public class RoleResponse {
+    private UUID roleId;
+    private UserRole name;
+
+    public static RoleResponse from(Role role) {
+        return RoleResponse.builder()
+                .roleId(role.getRoleId())
+                .name(role.getName())
+                .build();
+    }
+}
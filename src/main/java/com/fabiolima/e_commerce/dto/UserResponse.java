@@ -0,0 +1,39 @@
+package com.fabiolima.e_commerce.dto;
+
+import com.fabiolima.e_commerce.entities.User;
+import com.fabiolima.e_commerce.entities.enums.UserStatus;
+import lombok.Builder;
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Same fields as the User entity minus the password hash.
+ */
+@Getter
+@Builder
+public class UserResponse {
+    private UUID id;
+    private String name;
+    private String email;
+    private String address;
+    private UserStatus userStatus;
+    private LocalDateTime createdAt;
+    private LocalDateTime lastUpdated;
+    private List<RoleResponse> roles;
+
+    public static UserResponse from(User user) {
+        return UserResponse.builder()
+                .id(user.getId())
+                .name(user.getName())
+                .email(user.getEmail())
+                .address(user.getAddress())
+                .userStatus(user.getUserStatus())
+                .createdAt(user.getCreatedAt())
+                .lastUpdated(user.getLastUpdated())
+                .roles(user.getRoles().stream().map(RoleResponse::from).toList())
+                .build();
+    }
+}
@@ -0,0 +1,21 @@
+package com.fabiolima.e_commerce.dto;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.time.Instant;
+
+@Getter
+@Builder
+public class WaitingRoomResponse {
+    private String roomId;
+    private boolean admitted;
+    // 0 once admitted, 1 for the next user to be let in
+    private long position;
+    private long estimatedWaitSeconds;
+    // poll the status again after this long; a ticket that is not polled for a while is dropped
+    private long pollAfterMillis;
+    // send it in the X-Admission-Token header when adding a guarded product to the basket
+    private String admissionToken;
+    private Instant admissionExpiresAt;
+}
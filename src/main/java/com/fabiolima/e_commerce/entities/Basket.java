@@ -21,13 +21,18 @@ import java.util.UUID;
 @AllArgsConstructor
 
 @Entity
-@Table(name = "basket")
+@Table(name = "basket",
+        indexes = @Index(name = "idx_basket_status_updated", columnList = "status, updated_at"))
 public class Basket {
     @Id
     @GeneratedValue(strategy = GenerationType.UUID)
     @Column(name = "id",columnDefinition = "BINARY(16)")
     private UUID id;
 
+    @Version
+    @Column(name = "version")
+    private Long version;
+
     @Enumerated(EnumType.STRING)
     @Column(name = "status")
     private BasketStatus basketStatus;
@@ -69,6 +74,7 @@ public class Basket {
         theBasketItem.setBasket(this);
     }
 
+    // associations are referred to by id only: no recursion, and no lazy loading just to print a basket
     @Override
     public String toString() {
         return "Basket{" +
@@ -76,9 +82,8 @@ public class Basket {
                 ", basketStatus=" + basketStatus +
                 ", createdAt=" + createdAt +
                 ", lastUpdated=" + lastUpdated +
-                ", user=" + user +
-                ", order=" + order +
-                ", basketItems=" + basketItems +
+                ", userId=" + (user == null ? null : user.getId()) +
+                ", orderId=" + (order == null ? null : order.getId()) +
                 '}';
     }
 }
@@ -23,6 +23,10 @@ public class BasketItem {
     @Column(name = "id",columnDefinition = "BINARY(16)")
     private UUID id;
 
+    @Version
+    @Column(name = "version")
+    private Long version;
+
     @ManyToOne
     @JoinColumn(name = "basket_id")
     @JsonIgnore
@@ -53,7 +57,7 @@ public class BasketItem {
     public String toString() {
         return "BasketItem{" +
                 "id=" + id +
-                ", product=" + product +
+                ", productId=" + (product == null ? null : product.getId()) +
                 ", quantity=" + quantity +
                 '}';
     }
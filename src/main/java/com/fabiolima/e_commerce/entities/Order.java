@@ -29,6 +29,10 @@ public class Order {
     @Column(name = "id",columnDefinition = "BINARY(16)")
     private UUID id;
 
+    @Version
+    @Column(name = "version")
+    private Long version;
+
     @Column(name = "paypal_order_id",unique = true)
     private String paypalOrderId;
 
@@ -92,9 +96,8 @@ public class Order {
         return "Order{" +
                 "id=" + id +
                 ", paypalOrderId='" + paypalOrderId + '\'' +
-                ", user=" + user +
+                ", userId=" + (user == null ? null : user.getId()) +
                 ", totalPrice=" + totalPrice +
-                ", items=" + items +
                 ", paymentStatus=" + paymentStatus +
                 ", orderStatus=" + orderStatus +
                 '}';
@@ -14,7 +14,7 @@ import java.util.UUID;
 @AllArgsConstructor
 
 @Entity
-@Table(name = "payment")
+@Table(name = "payment", indexes = @Index(name = "idx_payment_status", columnList = "status"))
 public class Payment {
 
     @Id
@@ -16,7 +16,9 @@ import java.util.UUID;
 @Setter
 
 @Entity
-@Table(name = "product")
+@Table(name = "product",
+        indexes = {@Index(name = "idx_product_category", columnList = "category"),
+                @Index(name = "idx_product_stock_shards", columnList = "stock_shards")})
 public class Product {
 
     @Id
@@ -24,6 +26,10 @@ public class Product {
     @Column(name = "id",columnDefinition = "BINARY(16)")
     private UUID id;
 
+    @Version
+    @Column(name = "version")
+    private Long version;
+
     @Column(name = "name")
     private String productName;
 
@@ -36,9 +42,15 @@ public class Product {
     @Column(name = "image_src")
     private String imageSrc;
 
+    // for a sharded product (see ProductStockShard) this is the cached sum of the shards
     @Column(name = "stock")
     private int stock;
 
+    // 0: stock lives in the stock column; N > 0: stock is split over N product_stock_shard rows
+    @Column(name = "stock_shards")
+    @JsonIgnore
+    private int stockShards;
+
     @Column(name = "category")
     private String category;
 
@@ -46,6 +58,10 @@ public class Product {
     @JsonIgnore
     private final List<BasketItem> basketItemList = new ArrayList<>();
 
+    public boolean isStockSharded() {
+        return stockShards > 0;
+    }
+
     public void addProductInBasketItem(BasketItem theBasketItem){
         basketItemList.add(theBasketItem);
         theBasketItem.setProduct(this);
@@ -0,0 +1,45 @@
+package com.fabiolima.e_commerce.entities;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.util.UUID;
+
+/**
+ * One slice of a hot product's stock. A product with stockShards = N has N of these rows;
+ * its stock is their sum, so concurrent baskets lock different rows instead of the product row.
+ */
+@NoArgsConstructor
+@Builder
+@AllArgsConstructor
+@Getter
+@Setter
+
+@Entity
+@Table(name = "product_stock_shard",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"product_id", "shard_index"}))
+public class ProductStockShard {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    @Column(name = "id",columnDefinition = "BINARY(16)")
+    private UUID id;
+
+    @Column(name = "product_id", columnDefinition = "BINARY(16)", nullable = false)
+    private UUID productId;
+
+    @Column(name = "shard_index")
+    private int shardIndex;
+
+    @Column(name = "stock")
+    private int stock;
+
+    @Override
+    public String toString() {
+        return "ProductStockShard{" +
+                "productId=" + productId +
+                ", shardIndex=" + shardIndex +
+                ", stock=" + stock +
+                '}';
+    }
+}
@@ -106,7 +106,6 @@ public class User {
                 "id=" + id +
                 ", name='" + name + '\'' +
                 ", email='" + email + '\'' +
-                ", password='" + password + '\'' +
                 ", address='" + address + '\'' +
                 ", userStatus=" + userStatus +
                 ", createdAt=" + createdAt +
@@ -3,7 +3,8 @@ package com.fabiolima.e_commerce.entities.enums;
 public enum PaymentStatus {
     PENDING,
     COMPLETED,
-    FAILED;
+    FAILED,
+    REFUNDED;
 
     public static boolean isValidEnum(String status){
         for(PaymentStatus ps : PaymentStatus.values()){
@@ -0,0 +1,37 @@
+package com.fabiolima.e_commerce.exceptions;
+
+/**
+ * Base of the expected business failures (not found, out of stock, rejected by a limiter or a waiting room).
+ * They are ordinary traffic, in a sell-out most add-to-basket calls end with one, so they carry no stack trace
+ * and a message given as a format template is only formatted when it is read.
+ * Without a stack trace an instance with a fixed message can also be created once and thrown again.
+ */
+public abstract class BusinessException extends RuntimeException {
+
+    private final String template;
+    private final Object[] args;
+    private volatile String message;
+
+    protected BusinessException(String message) {
+        super(null, null, false, false);
+        this.template = message;
+        this.args = null;
+        this.message = message;
+    }
+
+    protected BusinessException(String template, Object... args) {
+        super(null, null, false, false);
+        this.template = template;
+        this.args = args;
+    }
+
+    @Override
+    public String getMessage() {
+        String formatted = message;
+        if (formatted == null) {
+            formatted = String.format(template, args);
+            message = formatted;
+        }
+        return formatted;
+    }
+}
@@ -4,8 +4,12 @@ import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.ResponseStatus;
 
 @ResponseStatus(HttpStatus.BAD_REQUEST)
-public class InsufficientStockException extends RuntimeException{
+public class InsufficientStockException extends BusinessException {
     public InsufficientStockException (String message){
         super(message);
     }
+
+    public InsufficientStockException(String template, Object... args){
+        super(template, args);
+    }
 }
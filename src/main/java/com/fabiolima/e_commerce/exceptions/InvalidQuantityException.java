@@ -4,7 +4,7 @@ import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.ResponseStatus;
 
 @ResponseStatus(HttpStatus.BAD_REQUEST)
-public class InvalidQuantityException extends RuntimeException{
+public class InvalidQuantityException extends BusinessException {
     public InvalidQuantityException(String message){
         super(message);
     }
@@ -4,10 +4,14 @@ import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.ResponseStatus;
 
 @ResponseStatus(HttpStatus.NOT_FOUND)
-public class NotFoundException extends RuntimeException{
+public class NotFoundException extends BusinessException {
 
     public NotFoundException (String message){
         super(message);
     }
 
+    public NotFoundException(String template, Object... args){
+        super(template, args);
+    }
+
 }
\ No newline at end of file
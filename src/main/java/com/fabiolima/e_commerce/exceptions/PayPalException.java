@@ -8,4 +8,8 @@ public class PayPalException extends RuntimeException{
     public PayPalException(String message){
         super(message);
     }
+
+    public PayPalException(String message, Throwable cause){
+        super(message, cause);
+    }
 }
\ No newline at end of file
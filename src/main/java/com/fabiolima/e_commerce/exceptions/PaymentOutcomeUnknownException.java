@@ -0,0 +1,11 @@
+package com.fabiolima.e_commerce.exceptions;
+
+/**
+ * A capture sent to PayPal whose answer never came back (deadline or connection lost): the money may or may not
+ * have been taken. It is not retried by the client but settled by PaymentReconciliation.
+ */
+public class PaymentOutcomeUnknownException extends RuntimeException {
+    public PaymentOutcomeUnknownException(String message, Throwable cause){
+        super(message, cause);
+    }
+}
@@ -0,0 +1,12 @@
+package com.fabiolima.e_commerce.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.TOO_MANY_REQUESTS)
+public class TooManyRequestsException extends BusinessException {
+
+    public TooManyRequestsException(String message){
+        super(message);
+    }
+}
@@ -0,0 +1,147 @@
+package com.fabiolima.e_commerce.filter;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Gradient style adaptive concurrency limit.
+ *
+ * The limit follows the ratio between the long-term (healthy) latency and the latency just measured:
+ * when MySQL slows down and requests start queueing for a connection, the short-term latency grows,
+ * the gradient drops below 1 and the limit shrinks. When latency recovers the limit grows again by
+ * a small queue allowance each sample. A request that failed on the server side (5xx, exception) is a
+ * drop: it may have failed fast because something is overloaded, so it cuts the limit instead of
+ * passing for a quick, healthy sample.
+ *
+ * Each route group may only use a share of the limit, so catalog browsing is shed long before
+ * checkout and payment capture are affected.
+ */
+@Component
+public class AdaptiveConcurrencyLimiter {
+
+    private static final double SMOOTHING = 0.2;
+    private static final double LONG_RTT_WINDOW = 600;
+    private static final double DROP_BACKOFF = 0.9;
+
+    public enum Outcome {
+        /** the request was served: its latency is a sample */
+        SUCCESS,
+        /** the request failed on the server side: the limit backs off */
+        DROPPED,
+        /** the request failed for reasons unrelated to load (client errors) and does not move the limit */
+        IGNORED
+    }
+
+    private final Map<RouteGroup, Double> shares = new EnumMap<>(RouteGroup.class);
+    private final Map<RouteGroup, LongAdder> rejected = new EnumMap<>(RouteGroup.class);
+    private final LongAdder dropped = new LongAdder();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final ReentrantLock updateLock = new ReentrantLock();
+    private final int minLimit;
+    private final int maxLimit;
+
+    private volatile double limit;
+    private double longRttNanos;
+
+    public AdaptiveConcurrencyLimiter(@Value("${concurrency-limit.initial-limit:20}") int initialLimit,
+                                      @Value("${concurrency-limit.min-limit:4}") int minLimit,
+                                      @Value("${concurrency-limit.max-limit:200}") int maxLimit) {
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+
+        shares.put(RouteGroup.CATALOG, 0.6);
+        shares.put(RouteGroup.DEFAULT, 0.75);
+        shares.put(RouteGroup.AUTH, 0.8);
+        shares.put(RouteGroup.BASKET, 0.9);
+        shares.put(RouteGroup.CHECKOUT, 1.0);
+        shares.put(RouteGroup.PAYMENT, 1.0);
+        for (RouteGroup group : RouteGroup.values())
+            rejected.put(group, new LongAdder());
+    }
+
+    public boolean tryAcquire(RouteGroup group) {
+        // payment and checkout always get at least the minimum limit
+        int allowed = Math.max(group.ordinal() >= RouteGroup.CHECKOUT.ordinal() ? minLimit : 1,
+                (int) (limit * shares.get(group)));
+        while (true) {
+            int current = inFlight.get();
+            if (current >= allowed) {
+                rejected.get(group).increment();
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1))
+                return true;
+        }
+    }
+
+    /**
+     * @param rttNanos how long the admitted request took
+     * @param outcome how the request ended
+     */
+    public void release(long rttNanos, Outcome outcome) {
+        int inFlightAtCompletion = inFlight.getAndDecrement();
+        if (outcome == Outcome.IGNORED || (outcome == Outcome.SUCCESS && rttNanos <= 0))
+            return;
+        // never block a request thread for bookkeeping: if another thread is updating, skip this sample
+        if (!updateLock.tryLock())
+            return;
+        try {
+            if (outcome == Outcome.DROPPED)
+                drop();
+            else
+                update(rttNanos, inFlightAtCompletion);
+        } finally {
+            updateLock.unlock();
+        }
+    }
+
+    private void drop() {
+        dropped.increment();
+        limit = Math.max(minLimit, limit * DROP_BACKOFF);
+    }
+
+    private void update(long rttNanos, int inFlightAtCompletion) {
+        if (longRttNanos == 0) {
+            longRttNanos = rttNanos;
+            return;
+        }
+        longRttNanos = longRttNanos + (rttNanos - longRttNanos) / LONG_RTT_WINDOW;
+        // after an overload the long-term average is still inflated, pull it back so the limit can grow again
+        if (longRttNanos / rttNanos > 2)
+            longRttNanos = rttNanos * 2.0;
+
+        double current = limit;
+        // an app-limited sample (far below the limit) says nothing about the limit
+        if (inFlightAtCompletion < current / 2)
+            return;
+
+        double gradient = Math.max(0.5, Math.min(1.0, longRttNanos / rttNanos));
+        double queueSize = Math.sqrt(current);
+        double newLimit = current * gradient + queueSize;
+        newLimit = current * (1 - SMOOTHING) + newLimit * SMOOTHING;
+        limit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public long getRejectedCount(RouteGroup group) {
+        return rejected.get(group).sum();
+    }
+
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+}
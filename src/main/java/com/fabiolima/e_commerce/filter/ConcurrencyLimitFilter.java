@@ -0,0 +1,76 @@
+package com.fabiolima.e_commerce.filter;
+
+import com.fabiolima.e_commerce.exceptions.ServiceUnavailableException;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerExceptionResolver;
+
+import java.io.IOException;
+
+/**
+ * First filter of the security chain: sheds excess load with 503 + Retry-After before the request
+ * touches the database (user lookup in JwtAuthenticationFilter, ownership checks, services).
+ */
+@Component
+public class ConcurrencyLimitFilter extends OncePerRequestFilter {
+
+    // stackless, so the same instance is thrown for every shed request
+    private static final ServiceUnavailableException BUSY =
+            new ServiceUnavailableException("The service is busy. Please retry in a moment.");
+
+    private final AdaptiveConcurrencyLimiter limiter;
+    private final HandlerExceptionResolver handlerExceptionResolver;
+    private final boolean enabled;
+
+    public ConcurrencyLimitFilter(AdaptiveConcurrencyLimiter limiter,
+                                  HandlerExceptionResolver handlerExceptionResolver,
+                                  @Value("${concurrency-limit.enabled:true}") boolean enabled) {
+        this.limiter = limiter;
+        this.handlerExceptionResolver = handlerExceptionResolver;
+        this.enabled = enabled;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(@NonNull HttpServletRequest request) {
+        String uri = request.getRequestURI();
+        return !enabled || uri.startsWith("/swagger-ui") || uri.startsWith("/v3/api-docs");
+    }
+
+    @Override
+    protected void doFilterInternal(
+            @NonNull HttpServletRequest request,
+            @NonNull HttpServletResponse response,
+            @NonNull FilterChain filterChain
+    ) throws ServletException, IOException {
+
+        if (!limiter.tryAcquire(RouteGroup.of(request))) {
+            handlerExceptionResolver.resolveException(request, response, null, BUSY);
+            return;
+        }
+
+        long start = System.nanoTime();
+        AdaptiveConcurrencyLimiter.Outcome outcome = AdaptiveConcurrencyLimiter.Outcome.DROPPED;
+        try {
+            filterChain.doFilter(request, response);
+            outcome = outcome(response.getStatus());
+        } finally {
+            limiter.release(System.nanoTime() - start, outcome);
+        }
+    }
+
+    static AdaptiveConcurrencyLimiter.Outcome outcome(int status) {
+        // server errors are often the fast failures of an overloaded dependency (pool timeout, PayPal busy)
+        if (status >= 500)
+            return AdaptiveConcurrencyLimiter.Outcome.DROPPED;
+        // client errors return early and would make the service look faster than it is
+        if (status >= 400)
+            return AdaptiveConcurrencyLimiter.Outcome.IGNORED;
+        return AdaptiveConcurrencyLimiter.Outcome.SUCCESS;
+    }
+}
@@ -0,0 +1,78 @@
+package com.fabiolima.e_commerce.filter;
+
+import com.fabiolima.e_commerce.exceptions.TooManyRequestsException;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.NonNull;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerExceptionResolver;
+
+import java.io.IOException;
+
+/**
+ * Runs right after JwtAuthenticationFilter, so authenticated calls are limited per user
+ * and anonymous calls (login, signup, catalog) per client IP.
+ * Adds the RateLimit-Limit / RateLimit-Remaining / RateLimit-Reset headers to every limited response.
+ */
+@Component
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    // stackless, so the same instance is thrown for every rejected request
+    private static final TooManyRequestsException TOO_MANY_REQUESTS =
+            new TooManyRequestsException("Too many requests. Please retry later.");
+
+    private final RateLimiter rateLimiter;
+    private final HandlerExceptionResolver handlerExceptionResolver;
+    private final boolean enabled;
+
+    public RateLimitFilter(RateLimiter rateLimiter,
+                           HandlerExceptionResolver handlerExceptionResolver,
+                           @Value("${rate-limit.enabled:true}") boolean enabled) {
+        this.rateLimiter = rateLimiter;
+        this.handlerExceptionResolver = handlerExceptionResolver;
+        this.enabled = enabled;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(@NonNull HttpServletRequest request) {
+        String uri = request.getRequestURI();
+        // waiting room polls are paced by the room itself (pollAfterMillis) and would share one IP bucket behind a NAT
+        return !enabled || uri.startsWith("/swagger-ui") || uri.startsWith("/v3/api-docs") || uri.startsWith("/waiting-room/");
+    }
+
+    @Override
+    protected void doFilterInternal(
+            @NonNull HttpServletRequest request,
+            @NonNull HttpServletResponse response,
+            @NonNull FilterChain filterChain
+    ) throws ServletException, IOException {
+
+        RouteGroup group = RouteGroup.of(request);
+        RateLimiter.Decision decision = rateLimiter.tryAcquire(group, clientKey(request));
+
+        response.setHeader("RateLimit-Limit", Integer.toString(decision.limit()));
+        response.setHeader("RateLimit-Remaining", Integer.toString(decision.remaining()));
+        response.setHeader("RateLimit-Reset", Long.toString(decision.waitSeconds()));
+
+        if (!decision.allowed()) {
+            response.setHeader("Retry-After", Long.toString(decision.waitSeconds()));
+            handlerExceptionResolver.resolveException(request, response, null, TOO_MANY_REQUESTS);
+            return;
+        }
+
+        filterChain.doFilter(request, response);
+    }
+
+    private String clientKey(HttpServletRequest request) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.isAuthenticated())
+            return authentication.getName();
+        return request.getRemoteAddr();
+    }
+}
@@ -0,0 +1,26 @@
+package com.fabiolima.e_commerce.filter;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Allows {@code capacity} requests per {@code windowSeconds}, refilled continuously.
+ */
+public record RateLimitPolicy(int capacity, long windowSeconds) {
+
+    public RateLimitPolicy {
+        if (capacity <= 0 || windowSeconds <= 0)
+            throw new IllegalArgumentException("Rate limit capacity and window must be positive");
+    }
+
+    long emissionIntervalNanos() {
+        return TimeUnit.SECONDS.toNanos(windowSeconds) / capacity;
+    }
+
+    long burstToleranceNanos() {
+        return TimeUnit.SECONDS.toNanos(windowSeconds);
+    }
+
+    int remaining(long debtNanos) {
+        return (int) Math.max(0, (burstToleranceNanos() - debtNanos) / emissionIntervalNanos());
+    }
+}
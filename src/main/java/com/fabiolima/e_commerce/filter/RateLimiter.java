@@ -0,0 +1,128 @@
+package com.fabiolima.e_commerce.filter;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps one token bucket per client and route group.
+ * Clients are identified by the authenticated user (JWT subject) or, for anonymous calls, by their IP.
+ * Emails always contain an '@' and IP addresses never do, so both kinds of key share the same map.
+ */
+@Slf4j
+@Component
+public class RateLimiter {
+
+    private final Map<RouteGroup, RateLimitPolicy> policies = new EnumMap<>(RouteGroup.class);
+    private final Map<RouteGroup, ConcurrentHashMap<String, TokenBucket>> buckets = new EnumMap<>(RouteGroup.class);
+    private final Map<RouteGroup, LongAdder> rejected = new EnumMap<>(RouteGroup.class);
+    private final Map<RouteGroup, LongAdder> evictedOverCapacity = new EnumMap<>(RouteGroup.class);
+    private final int maxBucketsPerGroup;
+
+    public RateLimiter(@Value("${rate-limit.auth.capacity:10}") int authCapacity,
+                       @Value("${rate-limit.auth.window-seconds:60}") long authWindow,
+                       @Value("${rate-limit.catalog.capacity:120}") int catalogCapacity,
+                       @Value("${rate-limit.catalog.window-seconds:60}") long catalogWindow,
+                       @Value("${rate-limit.basket.capacity:60}") int basketCapacity,
+                       @Value("${rate-limit.basket.window-seconds:60}") long basketWindow,
+                       @Value("${rate-limit.payment.capacity:10}") int paymentCapacity,
+                       @Value("${rate-limit.payment.window-seconds:60}") long paymentWindow,
+                       @Value("${rate-limit.default.capacity:60}") int defaultCapacity,
+                       @Value("${rate-limit.default.window-seconds:60}") long defaultWindow,
+                       @Value("${rate-limit.max-buckets-per-group:100000}") int maxBucketsPerGroup) {
+
+        RateLimitPolicy payment = new RateLimitPolicy(paymentCapacity, paymentWindow);
+        policies.put(RouteGroup.AUTH, new RateLimitPolicy(authCapacity, authWindow));
+        policies.put(RouteGroup.CATALOG, new RateLimitPolicy(catalogCapacity, catalogWindow));
+        policies.put(RouteGroup.BASKET, new RateLimitPolicy(basketCapacity, basketWindow));
+        policies.put(RouteGroup.CHECKOUT, payment);
+        policies.put(RouteGroup.PAYMENT, payment);
+        policies.put(RouteGroup.DEFAULT, new RateLimitPolicy(defaultCapacity, defaultWindow));
+
+        for (RouteGroup group : RouteGroup.values()) {
+            buckets.put(group, new ConcurrentHashMap<>());
+            rejected.put(group, new LongAdder());
+            evictedOverCapacity.put(group, new LongAdder());
+        }
+        this.maxBucketsPerGroup = maxBucketsPerGroup;
+    }
+
+    public Decision tryAcquire(RouteGroup group, String clientKey) {
+        return tryAcquire(group, clientKey, System.nanoTime());
+    }
+
+    Decision tryAcquire(RouteGroup group, String clientKey, long now) {
+        ConcurrentHashMap<String, TokenBucket> groupBuckets = buckets.get(group);
+        TokenBucket bucket = groupBuckets.get(clientKey);
+        if (bucket == null)
+            bucket = groupBuckets.computeIfAbsent(clientKey, key -> new TokenBucket());
+
+        RateLimitPolicy policy = policies.get(group);
+        long result = bucket.tryAcquire(now, policy);
+        if (result < 0) {
+            rejected.get(group).increment();
+            return new Decision(false, policy.capacity(), 0, -result);
+        }
+        return new Decision(true, policy.capacity(), policy.remaining(result), result);
+    }
+
+    public long getRejectedCount(RouteGroup group) {
+        return rejected.get(group).sum();
+    }
+
+    public int getTrackedClients(RouteGroup group) {
+        return buckets.get(group).size();
+    }
+
+    /** buckets dropped before they refilled because the group held more than max-buckets-per-group */
+    public long getEvictedOverCapacity(RouteGroup group) {
+        return evictedOverCapacity.get(group).sum();
+    }
+
+    /**
+     * A bucket that has fully refilled carries no information, so it can be dropped without changing any decision.
+     * If a group still holds too many buckets afterwards (e.g. an IP sweep), the buckets closest to full are dropped
+     * until it is back under the limit: those clients get a full bucket again, everyone else keeps theirs.
+     */
+    @Scheduled(fixedDelayString = "${rate-limit.eviction-interval-ms:30000}")
+    public void evictIdleBuckets() {
+        evictIdleBuckets(System.nanoTime());
+    }
+
+    void evictIdleBuckets(long now) {
+        buckets.forEach((group, groupBuckets) -> {
+            groupBuckets.values().removeIf(bucket -> bucket.isIdle(now));
+            int excess = groupBuckets.size() - maxBucketsPerGroup;
+            if (excess > 0) {
+                log.warn("Rate limiter is tracking {} clients for {}. Dropping the {} closest to full.",
+                        groupBuckets.size(), group, excess);
+                groupBuckets.entrySet().stream()
+                        .map(entry -> Map.entry(entry.getKey(), entry.getValue().theoreticalArrival()))
+                        .sorted(Map.Entry.comparingByValue())
+                        .limit(excess)
+                        .forEach(entry -> {
+                            // a bucket used since it was listed is no longer the closest to full: keep it
+                            if (groupBuckets.computeIfPresent(entry.getKey(), (key, bucket) ->
+                                    bucket.theoreticalArrival() == entry.getValue() ? null : bucket) == null)
+                                evictedOverCapacity.get(group).increment();
+                        });
+            }
+        });
+    }
+
+    /**
+     * @param waitNanos time until the bucket is full again when allowed, or until the next token when rejected
+     */
+    public record Decision(boolean allowed, int limit, int remaining, long waitNanos) {
+
+        public long waitSeconds() {
+            return Math.max(1, (waitNanos + 999_999_999L) / 1_000_000_000L);
+        }
+    }
+}
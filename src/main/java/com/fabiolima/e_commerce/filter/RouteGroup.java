@@ -0,0 +1,37 @@
+package com.fabiolima.e_commerce.filter;
+
+import jakarta.servlet.http.HttpServletRequest;
+
+/**
+ * Coarse classification of the API routes used by the request filters.
+ * The order of the constants matters: a higher ordinal means a more important route
+ * (payment capture and checkout must keep working while catalog browsing is being shed).
+ */
+public enum RouteGroup {
+    CATALOG,
+    DEFAULT,
+    AUTH,
+    BASKET,
+    CHECKOUT,
+    PAYMENT;
+
+    public static RouteGroup of(HttpServletRequest request) {
+        return of(request.getRequestURI());
+    }
+
+    public static RouteGroup of(String uri) {
+        if (uri == null)
+            return DEFAULT;
+        if (uri.startsWith("/api/auth"))
+            return AUTH;
+        if (uri.contains("/payments"))
+            return PAYMENT;
+        if (uri.endsWith("/checkout") || uri.endsWith("/create-order"))
+            return CHECKOUT;
+        if (uri.startsWith("/product"))
+            return CATALOG;
+        if (uri.startsWith("/basket") || uri.contains("/basket"))
+            return BASKET;
+        return DEFAULT;
+    }
+}
@@ -0,0 +1,41 @@
+package com.fabiolima.e_commerce.filter;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket implemented as a GCRA (generic cell rate algorithm).
+ * The whole bucket state is a single "theoretical arrival time", so taking a token is one CAS
+ * and a bucket whose arrival time is in the past is exactly as full as a brand-new one.
+ */
+final class TokenBucket {
+
+    private final AtomicLong theoreticalArrival = new AtomicLong();
+
+    /**
+     * @return the nanoseconds the bucket needs to be completely full again when the token was granted,
+     * or the negated nanoseconds the caller has to wait before retrying when it was refused.
+     */
+    long tryAcquire(long now, RateLimitPolicy policy) {
+        long interval = policy.emissionIntervalNanos();
+        long tolerance = policy.burstToleranceNanos();
+        while (true) {
+            long current = theoreticalArrival.get();
+            long tat = Math.max(current, now);
+            long next = tat + interval;
+            long debt = next - now;
+            if (debt > tolerance)
+                return -(debt - tolerance);
+            if (theoreticalArrival.compareAndSet(current, next))
+                return debt;
+        }
+    }
+
+    boolean isIdle(long now) {
+        return theoreticalArrival.get() <= now;
+    }
+
+    /** the later, the emptier the bucket: the earliest ones are the closest to full */
+    long theoreticalArrival() {
+        return theoreticalArrival.get();
+    }
+}
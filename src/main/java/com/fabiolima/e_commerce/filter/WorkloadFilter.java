@@ -0,0 +1,42 @@
+package com.fabiolima.e_commerce.filter;
+
+import com.fabiolima.e_commerce.datasource.Workload;
+import com.fabiolima.e_commerce.datasource.WorkloadContext;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Tags checkout and payment requests as CRITICAL so they can use the connections reserved for them.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 1)
+public class WorkloadFilter extends OncePerRequestFilter {
+
+    @Override
+    protected void doFilterInternal(
+            @NonNull HttpServletRequest request,
+            @NonNull HttpServletResponse response,
+            @NonNull FilterChain filterChain
+    ) throws ServletException, IOException {
+
+        RouteGroup group = RouteGroup.of(request);
+        Workload workload = group == RouteGroup.CHECKOUT || group == RouteGroup.PAYMENT
+                ? Workload.CRITICAL : Workload.INTERACTIVE;
+
+        Workload previous = WorkloadContext.enter(workload);
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            WorkloadContext.restore(previous);
+        }
+    }
+}
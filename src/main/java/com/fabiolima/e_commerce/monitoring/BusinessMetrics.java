@@ -0,0 +1,75 @@
+package com.fabiolima.e_commerce.monitoring;
+
+import com.fabiolima.e_commerce.entities.enums.OrderStatus;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Business counters: baskets created, expired and checked out, order status transitions and stock rejections.
+ * Events raised inside a transaction are only counted once it commits, so rolled back or retried attempts
+ * (see @RetryOnConflict) are not counted twice.
+ */
+@Component
+public class BusinessMetrics {
+
+    public enum StockRejection { BASKET, PRODUCT, SHARDS }
+
+    private final MeterRegistry registry;
+    private final Counter basketsCreated;
+    private final Counter basketsExpired;
+    private final Counter basketsCheckedOut;
+
+    @Autowired
+    public BusinessMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.basketsCreated = Counter.builder("ecommerce.baskets.created").register(registry);
+        this.basketsExpired = Counter.builder("ecommerce.baskets.expired").register(registry);
+        this.basketsCheckedOut = Counter.builder("ecommerce.baskets.checked.out").register(registry);
+    }
+
+    public void basketCreated() {
+        afterCommit(basketsCreated::increment);
+    }
+
+    public void basketsExpired(int count) {
+        afterCommit(() -> basketsExpired.increment(count));
+    }
+
+    public void basketCheckedOut() {
+        afterCommit(basketsCheckedOut::increment);
+    }
+
+    /** from is null for a new order */
+    public void orderTransition(OrderStatus from, OrderStatus to) {
+        Counter counter = Counter.builder("ecommerce.orders.transitions")
+                .tag("from", from == null ? "NEW" : from.name())
+                .tag("to", to.name())
+                .register(registry);
+        afterCommit(counter::increment);
+    }
+
+    /** counted right away: the rejection rolls the transaction back */
+    public void stockRejected(StockRejection source) {
+        Counter.builder("ecommerce.stock.rejections")
+                .tag("source", source.name().toLowerCase())
+                .register(registry)
+                .increment();
+    }
+
+    private static void afterCommit(Runnable increment) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            increment.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                increment.run();
+            }
+        });
+    }
+}
@@ -0,0 +1,44 @@
+package com.fabiolima.e_commerce.monitoring;
+
+import com.fabiolima.e_commerce.filter.AdaptiveConcurrencyLimiter;
+import com.fabiolima.e_commerce.filter.RouteGroup;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+
+/**
+ * Adaptive concurrency limit metrics: the current limit, the requests in flight, the requests shed (answered 503)
+ * per route group and the server-side failures that made the limit back off.
+ */
+@Component
+public class ConcurrencyLimitMetrics implements MeterBinder {
+
+    private final AdaptiveConcurrencyLimiter limiter;
+
+    @Autowired
+    public ConcurrencyLimitMetrics(AdaptiveConcurrencyLimiter limiter) {
+        this.limiter = limiter;
+    }
+
+    @Override
+    public void bindTo(@NonNull MeterRegistry registry) {
+        Gauge.builder("concurrency.limit", limiter, AdaptiveConcurrencyLimiter::getLimit)
+                .description("Requests allowed in flight")
+                .register(registry);
+        Gauge.builder("concurrency.limit.in.flight", limiter, AdaptiveConcurrencyLimiter::getInFlight)
+                .register(registry);
+        FunctionCounter.builder("concurrency.limit.dropped", limiter, AdaptiveConcurrencyLimiter::getDroppedCount)
+                .description("Requests that failed on the server side and made the limit back off")
+                .register(registry);
+        for (RouteGroup group : RouteGroup.values()) {
+            FunctionCounter.builder("concurrency.limit.rejected", limiter, l -> l.getRejectedCount(group))
+                    .description("Requests shed by the concurrency limit")
+                    .tag("group", group.name().toLowerCase())
+                    .register(registry);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.fabiolima.e_commerce.monitoring;
+
+import com.fabiolima.e_commerce.filter.RouteGroup;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Runs before the security chain so that the user lookup done by JwtAuthenticationFilter is counted too.
+ */
+@Slf4j
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class ConnectionHoldTimeFilter extends OncePerRequestFilter {
+
+    private final ConnectionHoldTimeRecorder recorder;
+
+    public ConnectionHoldTimeFilter(ConnectionHoldTimeRecorder recorder) {
+        this.recorder = recorder;
+    }
+
+    @Override
+    protected void doFilterInternal(
+            @NonNull HttpServletRequest request,
+            @NonNull HttpServletResponse response,
+            @NonNull FilterChain filterChain
+    ) throws ServletException, IOException {
+
+        ConnectionHoldTimeRecorder.RequestHold hold = recorder.begin();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            recorder.end(hold, RouteGroup.of(request));
+            log.debug("{} {} held {} connection(s) for {} ms", request.getMethod(), request.getRequestURI(),
+                    hold.getConnections(), hold.getTotalNanos() / 1_000_000);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.fabiolima.e_commerce.monitoring;
+
+import com.fabiolima.e_commerce.filter.RouteGroup;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Measures how long JDBC connections stay checked out of the pool.
+ * Connections are attributed to the request that acquired them (see ConnectionHoldTimeFilter)
+ * and aggregated per route group; connections taken outside a request (scheduled jobs) are kept apart.
+ */
+@Component
+public class ConnectionHoldTimeRecorder {
+
+    private static final ThreadLocal<RequestHold> CURRENT = new ThreadLocal<>();
+
+    private final Map<RouteGroup, HoldStats> byRoute = new EnumMap<>(RouteGroup.class);
+    private final HoldStats background = new HoldStats();
+
+    public ConnectionHoldTimeRecorder() {
+        for (RouteGroup group : RouteGroup.values())
+            byRoute.put(group, new HoldStats());
+    }
+
+    public RequestHold begin() {
+        RequestHold hold = new RequestHold();
+        CURRENT.set(hold);
+        return hold;
+    }
+
+    public void end(RequestHold hold, RouteGroup group) {
+        CURRENT.remove();
+        byRoute.get(group).record(hold.getTotalNanos(), hold.getMaxNanos());
+    }
+
+    public RequestHold current() {
+        return CURRENT.get();
+    }
+
+    // called by MonitoredDataSource when a connection leaves the pool, returns the request it belongs to (or null)
+    RequestHold onAcquire() {
+        RequestHold hold = CURRENT.get();
+        if (hold != null)
+            hold.open.incrementAndGet();
+        return hold;
+    }
+
+    // called by MonitoredDataSource when a connection goes back to the pool
+    void onRelease(RequestHold owner, long heldNanos) {
+        if (owner == null) {
+            background.record(heldNanos, heldNanos);
+            return;
+        }
+        owner.open.decrementAndGet();
+        owner.connections.incrementAndGet();
+        owner.totalNanos.addAndGet(heldNanos);
+        owner.maxNanos.accumulateAndGet(heldNanos, Math::max);
+    }
+
+    public HoldStats getStats(RouteGroup group) {
+        return byRoute.get(group);
+    }
+
+    public HoldStats getBackgroundStats() {
+        return background;
+    }
+
+    /**
+     * Connection usage of a single request.
+     */
+    public static final class RequestHold {
+        private final AtomicInteger open = new AtomicInteger();
+        private final AtomicInteger connections = new AtomicInteger();
+        private final AtomicLong totalNanos = new AtomicLong();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        /** connections currently checked out by this request */
+        public int getOpenConnections() { return open.get(); }
+        /** connections already returned to the pool */
+        public int getConnections() { return connections.get(); }
+        public long getTotalNanos() { return totalNanos.get(); }
+        public long getMaxNanos() { return maxNanos.get(); }
+    }
+
+    /**
+     * Hold time aggregated over many requests (or connections, for background work).
+     */
+    public static final class HoldStats {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+        void record(long total, long max) {
+            count.increment();
+            totalNanos.add(total);
+            maxNanos.accumulate(max);
+        }
+
+        public long getCount() { return count.sum(); }
+        public long getTotalNanos() { return totalNanos.sum(); }
+        public long getMaxNanos() { return maxNanos.get(); }
+        public double getAverageMillis() {
+            long n = count.sum();
+            return n == 0 ? 0 : totalNanos.sum() / 1e6 / n;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.fabiolima.e_commerce.monitoring;
+
+import com.fabiolima.e_commerce.datasource.ReadWriteRoutingDataSource;
+import com.fabiolima.e_commerce.datasource.Workload;
+import com.fabiolima.e_commerce.filter.RouteGroup;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Connection pool metrics. Spring Boot only binds pools it can reach through a DataSource bean, which misses
+ * the jobs pool and the replicas behind the routing data source, so every Hikari pool is bound here
+ * (hikaricp.* tagged by pool). Also exports the routing counters, the connection wait and hold times and the
+ * slow queries left out of the recording (every slow query is timed by SlowQueryDetector, per caller).
+ */
+@Component
+public class DataSourceMetrics implements MeterBinder {
+
+    private final ReadWriteRoutingDataSource routingDataSource;
+    private final ConnectionHoldTimeRecorder holdTimeRecorder;
+    private final SlowQueryDetector slowQueryDetector;
+
+    @Autowired
+    public DataSourceMetrics(ReadWriteRoutingDataSource routingDataSource, ConnectionHoldTimeRecorder holdTimeRecorder,
+                             SlowQueryDetector slowQueryDetector) {
+        this.routingDataSource = routingDataSource;
+        this.holdTimeRecorder = holdTimeRecorder;
+        this.slowQueryDetector = slowQueryDetector;
+    }
+
+    @Override
+    public void bindTo(@NonNull MeterRegistry registry) {
+        // a pool takes a single metrics tracker, keep the one Spring Boot may already have set
+        routingDataSource.getHikariPools().values().forEach(pool -> {
+            if (pool.getMetricRegistry() == null && pool.getMetricsTrackerFactory() == null)
+                pool.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(registry));
+        });
+
+        for (Workload workload : Workload.values()) {
+            ReadWriteRoutingDataSource.WaitStats stats = routingDataSource.getWaitStats(workload);
+            String tag = workload.name().toLowerCase();
+            FunctionTimer.builder("datasource.connection.wait", stats,
+                            ReadWriteRoutingDataSource.WaitStats::getCount,
+                            ReadWriteRoutingDataSource.WaitStats::getTotalNanos, TimeUnit.NANOSECONDS)
+                    .description("Time spent waiting for a pooled connection")
+                    .tag("workload", tag)
+                    .register(registry);
+            TimeGauge.builder("datasource.connection.wait.max", stats, TimeUnit.NANOSECONDS,
+                            ReadWriteRoutingDataSource.WaitStats::getMaxNanos)
+                    .tag("workload", tag)
+                    .register(registry);
+        }
+
+        FunctionCounter.builder("datasource.reads.primary.fallback", routingDataSource, ReadWriteRoutingDataSource::getPrimaryReads)
+                .description("Read-only transactions sent to the primary because no replica was usable")
+                .register(registry);
+        FunctionCounter.builder("datasource.reads.sticky", routingDataSource, ReadWriteRoutingDataSource::getStickyReads)
+                .description("Read-only transactions kept on the primary for read-your-writes")
+                .register(registry);
+        for (ReadWriteRoutingDataSource.Replica replica : routingDataSource.getReplicas()) {
+            Gauge.builder("datasource.replica.lag", replica, ReadWriteRoutingDataSource.Replica::getLagMillis)
+                    .tag("replica", replica.getName())
+                    .baseUnit("milliseconds")
+                    .register(registry);
+            FunctionCounter.builder("datasource.replica.reads", replica, ReadWriteRoutingDataSource.Replica::getReads)
+                    .tag("replica", replica.getName())
+                    .register(registry);
+        }
+
+        for (RouteGroup group : RouteGroup.values())
+            bindHoldTime(registry, holdTimeRecorder.getStats(group), group.name().toLowerCase());
+        bindHoldTime(registry, holdTimeRecorder.getBackgroundStats(), "background");
+
+        FunctionCounter.builder("datasource.query.slow.dropped", slowQueryDetector, SlowQueryDetector::getSampledOut)
+                .description("Slow JDBC executions timed but not logged or recorded in the query shapes")
+                .tag("reason", "sampled")
+                .register(registry);
+        FunctionCounter.builder("datasource.query.slow.dropped", slowQueryDetector, SlowQueryDetector::getRateLimited)
+                .tag("reason", "rate-limited")
+                .register(registry);
+        FunctionCounter.builder("datasource.query.slow.shapes.overflowed", slowQueryDetector, SlowQueryDetector::getShapesOverflowed)
+                .description("Recorded slow executions whose query shape was not kept because max-shapes was reached")
+                .register(registry);
+        Gauge.builder("datasource.query.slow.shapes", slowQueryDetector, SlowQueryDetector::getShapeCount)
+                .register(registry);
+    }
+
+    private static void bindHoldTime(MeterRegistry registry, ConnectionHoldTimeRecorder.HoldStats stats, String route) {
+        FunctionTimer.builder("datasource.connection.hold", stats,
+                        ConnectionHoldTimeRecorder.HoldStats::getCount,
+                        ConnectionHoldTimeRecorder.HoldStats::getTotalNanos, TimeUnit.NANOSECONDS)
+                .description("Time connections stay checked out, per request (or per connection for background work)")
+                .tag("route", route)
+                .register(registry);
+        TimeGauge.builder("datasource.connection.hold.max", stats, TimeUnit.NANOSECONDS,
+                        ConnectionHoldTimeRecorder.HoldStats::getMaxNanos)
+                .tag("route", route)
+                .register(registry);
+    }
+}
@@ -0,0 +1,68 @@
+package com.fabiolima.e_commerce.monitoring;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Wraps the pooled DataSource so every connection reports how long it was held before close().
+ */
+public class MonitoredDataSource extends DelegatingDataSource {
+
+    private final ConnectionHoldTimeRecorder recorder;
+
+    public MonitoredDataSource(DataSource target, ConnectionHoldTimeRecorder recorder) {
+        super(target);
+        this.recorder = recorder;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return monitor(obtainTargetDataSource().getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return monitor(obtainTargetDataSource().getConnection(username, password));
+    }
+
+    private Connection monitor(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                new MonitoredConnection(connection, recorder.onAcquire(), System.nanoTime()));
+    }
+
+    private final class MonitoredConnection implements InvocationHandler {
+
+        private final Connection target;
+        private final ConnectionHoldTimeRecorder.RequestHold owner;
+        private final long acquiredAt;
+        private boolean released;
+
+        MonitoredConnection(Connection target, ConnectionHoldTimeRecorder.RequestHold owner, long acquiredAt) {
+            this.target = target;
+            this.owner = owner;
+            this.acquiredAt = acquiredAt;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if ("close".equals(method.getName()) && !released) {
+                released = true;
+                recorder.onRelease(owner, System.nanoTime() - acquiredAt);
+            }
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getTargetException();
+            }
+        }
+    }
+}
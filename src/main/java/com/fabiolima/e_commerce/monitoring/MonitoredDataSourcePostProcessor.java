@@ -0,0 +1,31 @@
+package com.fabiolima.e_commerce.monitoring;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+
+/**
+ * Wraps the application DataSource in a MonitoredDataSource.
+ * The routing data source is only reached through the primary DataSource, which is wrapped instead.
+ */
+@Component
+public class MonitoredDataSourcePostProcessor implements BeanPostProcessor {
+
+    private final ObjectProvider<ConnectionHoldTimeRecorder> recorder;
+
+    public MonitoredDataSourcePostProcessor(ObjectProvider<ConnectionHoldTimeRecorder> recorder) {
+        this.recorder = recorder;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(@NonNull Object bean, @NonNull String beanName) {
+        if (bean instanceof DataSource dataSource && !(bean instanceof MonitoredDataSource)
+                && !(bean instanceof AbstractRoutingDataSource))
+            return new MonitoredDataSource(dataSource, recorder.getObject());
+        return bean;
+    }
+}
@@ -0,0 +1,45 @@
+package com.fabiolima.e_commerce.monitoring;
+
+import com.fabiolima.e_commerce.filter.RateLimiter;
+import com.fabiolima.e_commerce.filter.RouteGroup;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+
+/**
+ * Rate limiter metrics per route group: requests rejected (answered 429), clients tracked, and buckets dropped
+ * early because the group tracked more clients than rate-limit.max-buckets-per-group.
+ */
+@Component
+public class RateLimitMetrics implements MeterBinder {
+
+    private final RateLimiter rateLimiter;
+
+    @Autowired
+    public RateLimitMetrics(RateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
+    @Override
+    public void bindTo(@NonNull MeterRegistry registry) {
+        for (RouteGroup group : RouteGroup.values()) {
+            String tag = group.name().toLowerCase();
+            FunctionCounter.builder("rate.limit.rejected", rateLimiter, limiter -> limiter.getRejectedCount(group))
+                    .description("Requests rejected by the rate limiter")
+                    .tag("group", tag)
+                    .register(registry);
+            Gauge.builder("rate.limit.clients", rateLimiter, limiter -> limiter.getTrackedClients(group))
+                    .description("Clients with a bucket that has not refilled yet")
+                    .tag("group", tag)
+                    .register(registry);
+            FunctionCounter.builder("rate.limit.evicted.over.capacity", rateLimiter,
+                            limiter -> limiter.getEvictedOverCapacity(group))
+                    .tag("group", tag)
+                    .register(registry);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.fabiolima.e_commerce.monitoring;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fixed-rate task on the jobs scheduler that reports how late it starts. When the jobs threads are busy
+ * with a long sweep, every other job (touch flush, stock rebalance, waiting room admissions) is late by as much.
+ */
+@Component
+public class SchedulerLagProbe {
+
+    private final long periodMillis;
+    private final AtomicLong lagMillis = new AtomicLong();
+    // only used by the probe itself, fixed-rate runs never overlap
+    private long expectedAt = -1;
+
+    @Autowired
+    public SchedulerLagProbe(MeterRegistry registry,
+                             @Value("${jobs.scheduler.lag-probe-interval-ms:1000}") long periodMillis) {
+        this.periodMillis = periodMillis;
+        Gauge.builder("jobs.scheduler.lag", lagMillis, AtomicLong::get)
+                .description("How late the last probe run started")
+                .baseUnit("milliseconds")
+                .register(registry);
+    }
+
+    @Scheduled(fixedRateString = "${jobs.scheduler.lag-probe-interval-ms:1000}")
+    public void probe() {
+        record(System.currentTimeMillis());
+    }
+
+    // a late fixed-rate task runs again right away to catch up, so the expected times keep the original cadence
+    void record(long now) {
+        if (expectedAt < 0)
+            expectedAt = now;
+        lagMillis.set(Math.max(0, now - expectedAt));
+        expectedAt += periodMillis;
+    }
+
+    public long getLagMillis() {
+        return lagMillis.get();
+    }
+}
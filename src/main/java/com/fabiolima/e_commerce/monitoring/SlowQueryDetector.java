@@ -0,0 +1,362 @@
+package com.fabiolima.e_commerce.monitoring;
+
+import com.fabiolima.e_commerce.exceptions.BadRequestException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.extern.slf4j.Slf4j;
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.MethodExecutionContext;
+import net.ttddyy.dsproxy.listener.MethodExecutionListener;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Times every JDBC execution (it listens to the DataSource proxy, see DataSourceConfiguration) and records the ones
+ * slower than threshold-ms with their normalized SQL, duration, the application and repository methods that ran
+ * them, the route of the request and the number of rows.
+ * Every slow execution is timed in datasource.query.slow. Only sample-rate of them are logged and recorded in the
+ * query shapes, at most max-per-second, in at most max-shapes shapes; the others are only counted. The rows of a
+ * SELECT are the ones the caller read, so it is recorded when its result set is closed (or its statement or
+ * connection, which close the result set too).
+ */
+@Slf4j
+@Component
+public class SlowQueryDetector implements QueryExecutionListener, MethodExecutionListener {
+
+    private static final String APPLICATION_PACKAGE = "com.fabiolima.e_commerce.";
+    // the DataSource layers, retries and monitoring between the caller and the driver
+    private static final List<String> INFRASTRUCTURE_PACKAGES = List.of(
+            APPLICATION_PACKAGE + "monitoring.", APPLICATION_PACKAGE + "datasource.",
+            APPLICATION_PACKAGE + "configuration.", APPLICATION_PACKAGE + "concurrency.");
+    private static final String REPOSITORY_PACKAGE = APPLICATION_PACKAGE + "repository.";
+    private static final StackWalker STACK = StackWalker.getInstance(StackWalker.Option.RETAIN_CLASS_REFERENCE);
+
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("(?<![\\w.$])\\d+(?:\\.\\d+)?\\b");
+    private static final Pattern IN_LIST = Pattern.compile("\\(\\s*\\?(?:\\s*,\\s*\\?)+\\s*\\)");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern ID_SEGMENT = Pattern.compile(
+            "/(?:\\d+|\\p{XDigit}{8}-\\p{XDigit}{4}-\\p{XDigit}{4}-\\p{XDigit}{4}-\\p{XDigit}{12})(?=/|$)");
+
+    private static final int MAX_CALL_SITES_PER_SHAPE = 10;
+    private static final CallSite OTHER_CALL_SITES = new CallSite("other", "-", "-");
+    // result sets never closed are completed with their statement or connection, this only bounds a leak
+    private static final int MAX_PENDING = 1000;
+
+    private final long thresholdMillis;
+    private final double sampleRate;
+    private final int maxPerSecond;
+    private final int maxShapes;
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+    private final Map<String, QueryShape> shapes = new ConcurrentHashMap<>();
+    // the slow SELECTs waiting for their result set to be closed, by result set
+    private final Map<ResultSet, SlowExecution> pending = new ConcurrentHashMap<>();
+
+    private final AtomicLong second = new AtomicLong(-1);
+    private final AtomicInteger recordedThisSecond = new AtomicInteger();
+    private final LongAdder slow = new LongAdder();
+    private final LongAdder recorded = new LongAdder();
+    private final LongAdder sampledOut = new LongAdder();
+    private final LongAdder rateLimited = new LongAdder();
+    private final LongAdder shapesOverflowed = new LongAdder();
+
+    public SlowQueryDetector(@Value("${slow-query.threshold-ms:200}") long thresholdMillis,
+                             @Value("${slow-query.sample-rate:1.0}") double sampleRate,
+                             @Value("${slow-query.max-per-second:20}") int maxPerSecond,
+                             @Value("${slow-query.max-shapes:500}") int maxShapes,
+                             ObjectProvider<MeterRegistry> meterRegistry) {
+        this.thresholdMillis = thresholdMillis;
+        this.sampleRate = sampleRate;
+        this.maxPerSecond = maxPerSecond;
+        this.maxShapes = maxShapes;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+    }
+
+    @Override
+    public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        long elapsedMillis = execInfo.getElapsedTime();
+        if (elapsedMillis < thresholdMillis)
+            return;
+        CallSite callSite = callSite(route());
+        time(callSite, elapsedMillis);
+        // sampling and the rate limit only spare the log and the shapes, the timer above counts every execution
+        if (sampleRate < 1 && ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+            sampledOut.increment();
+            return;
+        }
+        if (!tryAcquire()) {
+            rateLimited.increment();
+            return;
+        }
+
+        String sql = queryInfoList.stream().map(QueryInfo::getQuery).collect(Collectors.joining("; "));
+        SlowExecution execution = new SlowExecution(normalize(sql), elapsedMillis, callSite,
+                execInfo.getStatement(), execInfo.getConnectionId());
+        Object result = execInfo.getResult();
+        if (result instanceof ResultSet resultSet && pending.size() < MAX_PENDING)
+            pending.put(resultSet, execution);
+        else
+            record(execution, updateCount(result));
+    }
+
+    @Override
+    public void beforeMethod(MethodExecutionContext executionContext) {
+    }
+
+    @Override
+    public void afterMethod(MethodExecutionContext executionContext) {
+        if (pending.isEmpty())
+            return;
+        Object target = executionContext.getTarget();
+        String method = executionContext.getMethod().getName();
+        if (target instanceof ResultSet resultSet) {
+            if (method.equals("next") && Boolean.TRUE.equals(executionContext.getResult())) {
+                SlowExecution execution = pending.get(resultSet);
+                if (execution != null)
+                    execution.rows.increment();
+            } else if (method.equals("close")) {
+                complete(pending.remove(resultSet));
+            }
+        } else if (method.equals("close")) {
+            // closing the statement or the connection closes its result sets too
+            if (target instanceof Statement statement)
+                completeWhere(execution -> execution.statement == statement);
+            else if (target instanceof Connection && executionContext.getConnectionInfo() != null)
+                completeWhere(execution -> executionContext.getConnectionInfo().getConnectionId()
+                        .equals(execution.connectionId));
+        }
+    }
+
+    /** the query shapes with the slowest executions first */
+    public List<ShapeSnapshot> getSlowest(int limit) {
+        if (limit <= 0)
+            throw new BadRequestException("limit must be positive.");
+        return shapes.values().stream()
+                .map(QueryShape::snapshot)
+                .sorted(Comparator.comparingLong(ShapeSnapshot::maxMillis).reversed())
+                .limit(limit)
+                .toList();
+    }
+
+    public void reset() {
+        shapes.clear();
+    }
+
+    /** executions slower than the threshold, recorded or not */
+    public long getSlow() { return slow.sum(); }
+    public long getRecorded() { return recorded.sum(); }
+    public long getSampledOut() { return sampledOut.sum(); }
+    public long getRateLimited() { return rateLimited.sum(); }
+    public long getShapesOverflowed() { return shapesOverflowed.sum(); }
+    public int getShapeCount() { return shapes.size(); }
+
+    /** replaces literals with ? and an IN list of bind parameters with a single one */
+    static String normalize(String sql) {
+        String normalized = STRING_LITERAL.matcher(sql).replaceAll("?");
+        normalized = NUMBER_LITERAL.matcher(normalized).replaceAll("?");
+        normalized = IN_LIST.matcher(normalized).replaceAll("(?)");
+        return WHITESPACE.matcher(normalized).replaceAll(" ").trim();
+    }
+
+    private boolean tryAcquire() {
+        long now = System.currentTimeMillis() / 1000;
+        long current = second.get();
+        if (now != current && second.compareAndSet(current, now))
+            recordedThisSecond.set(0);
+        return recordedThisSecond.incrementAndGet() <= maxPerSecond;
+    }
+
+    private void completeWhere(Predicate<SlowExecution> closed) {
+        for (Iterator<Map.Entry<ResultSet, SlowExecution>> it = pending.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<ResultSet, SlowExecution> entry = it.next();
+            if (closed.test(entry.getValue()) && pending.remove(entry.getKey(), entry.getValue()))
+                complete(entry.getValue());
+        }
+    }
+
+    private void complete(SlowExecution execution) {
+        if (execution != null)
+            record(execution, execution.rows.sum());
+    }
+
+    private void time(CallSite callSite, long elapsedMillis) {
+        slow.increment();
+        MeterRegistry registry = meterRegistry.getIfAvailable();
+        if (registry != null)
+            Timer.builder("datasource.query.slow")
+                    .description("JDBC executions slower than the slow query threshold")
+                    .tag("caller", callSite.caller())
+                    .tag("repository", callSite.repositoryMethod())
+                    .register(registry)
+                    .record(elapsedMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void record(SlowExecution execution, long rows) {
+        recorded.increment();
+        CallSite callSite = execution.callSite;
+        log.warn("Slow query: {} ms, {} rows, {} via {} on {}: {}", execution.elapsedMillis, rows < 0 ? "?" : rows,
+                callSite.caller(), callSite.repositoryMethod(), callSite.route(), execution.sql);
+
+        QueryShape shape = shapes.get(execution.sql);
+        if (shape == null && shapes.size() >= maxShapes)
+            shapesOverflowed.increment();
+        else
+            (shape != null ? shape : shapes.computeIfAbsent(execution.sql, QueryShape::new))
+                    .record(callSite, execution.elapsedMillis, rows);
+    }
+
+    private static long updateCount(Object result) {
+        if (result instanceof Number count)
+            return count.longValue();
+        if (result instanceof int[] counts) {
+            long total = 0;
+            for (int count : counts)
+                total += Math.max(count, 0);
+            return total;
+        }
+        if (result instanceof long[] counts) {
+            long total = 0;
+            for (long count : counts)
+                total += Math.max(count, 0);
+            return total;
+        }
+        return -1;
+    }
+
+    // the handler's path pattern once Spring MVC has picked it, the path with its ids replaced before that
+    private static String route() {
+        if (!(RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes))
+            return "background";
+        HttpServletRequest request = attributes.getRequest();
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        String path = pattern != null ? pattern.toString() : ID_SEGMENT.matcher(request.getRequestURI()).replaceAll("/{id}");
+        return request.getMethod() + " " + path;
+    }
+
+    // the innermost application method outside the repositories and the infrastructure, and the repository
+    // method it called (the Spring Data proxy, or a default method of the repository interface)
+    private static CallSite callSite(String route) {
+        return STACK.walk(frames -> {
+            String repositoryMethod = "-";
+            for (Iterator<StackWalker.StackFrame> it = frames.iterator(); it.hasNext(); ) {
+                StackWalker.StackFrame frame = it.next();
+                Class<?> type = frame.getDeclaringClass();
+                if (Proxy.isProxyClass(type)) {
+                    for (Class<?> proxied : type.getInterfaces())
+                        if (proxied.getName().startsWith(REPOSITORY_PACKAGE))
+                            repositoryMethod = proxied.getSimpleName() + "." + frame.getMethodName();
+                    continue;
+                }
+                String name = type.getName();
+                if (!name.startsWith(APPLICATION_PACKAGE) || name.contains("$$"))
+                    continue;
+                if (name.startsWith(REPOSITORY_PACKAGE)) {
+                    repositoryMethod = type.getSimpleName() + "." + frame.getMethodName();
+                    continue;
+                }
+                if (INFRASTRUCTURE_PACKAGES.stream().noneMatch(name::startsWith))
+                    return new CallSite(type.getSimpleName() + "." + frame.getMethodName(), repositoryMethod, route);
+            }
+            return new CallSite("-", repositoryMethod, route);
+        });
+    }
+
+    public record CallSite(String caller, String repositoryMethod, String route) {}
+
+    public record CallSiteSnapshot(String caller, String repositoryMethod, String route, long count, long maxMillis) {}
+
+    public record ShapeSnapshot(String sql, long count, long totalMillis, long maxMillis, long maxRows,
+                                Instant lastSeen, List<CallSiteSnapshot> callSites) {}
+
+    private static final class SlowExecution {
+        private final String sql;
+        private final long elapsedMillis;
+        private final CallSite callSite;
+        private final Statement statement;
+        private final String connectionId;
+        // a result set may be read by another thread than the one that ran the query
+        private final LongAdder rows = new LongAdder();
+
+        SlowExecution(String sql, long elapsedMillis, CallSite callSite, Statement statement, String connectionId) {
+            this.sql = sql;
+            this.elapsedMillis = elapsedMillis;
+            this.callSite = callSite;
+            this.statement = statement;
+            this.connectionId = connectionId;
+        }
+    }
+
+    private static final class QueryShape {
+        private final String sql;
+        private final CallSiteStats total = new CallSiteStats();
+        private final LongAccumulator maxRows = new LongAccumulator(Math::max, -1);
+        private final Map<CallSite, CallSiteStats> callSites = new ConcurrentHashMap<>();
+        private volatile Instant lastSeen;
+
+        QueryShape(String sql) {
+            this.sql = sql;
+        }
+
+        void record(CallSite callSite, long elapsedMillis, long rows) {
+            total.record(elapsedMillis);
+            maxRows.accumulate(rows);
+            lastSeen = Instant.now();
+            CallSite key = callSites.containsKey(callSite) || callSites.size() < MAX_CALL_SITES_PER_SHAPE
+                    ? callSite : OTHER_CALL_SITES;
+            callSites.computeIfAbsent(key, site -> new CallSiteStats()).record(elapsedMillis);
+        }
+
+        ShapeSnapshot snapshot() {
+            List<CallSiteSnapshot> sites = callSites.entrySet().stream()
+                    .map(entry -> new CallSiteSnapshot(entry.getKey().caller(), entry.getKey().repositoryMethod(),
+                            entry.getKey().route(), entry.getValue().count.sum(), entry.getValue().maxMillis.get()))
+                    .sorted(Comparator.comparingLong(CallSiteSnapshot::count).reversed())
+                    .toList();
+            return new ShapeSnapshot(sql, total.count.sum(), total.totalMillis.sum(), total.maxMillis.get(),
+                    maxRows.get(), lastSeen, sites);
+        }
+    }
+
+    private static final class CallSiteStats {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalMillis = new LongAdder();
+        private final LongAccumulator maxMillis = new LongAccumulator(Math::max, 0);
+
+        void record(long elapsedMillis) {
+            count.increment();
+            totalMillis.add(elapsedMillis);
+            maxMillis.accumulate(elapsedMillis);
+        }
+    }
+}
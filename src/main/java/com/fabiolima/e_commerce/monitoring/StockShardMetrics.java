@@ -0,0 +1,40 @@
+package com.fabiolima.e_commerce.monitoring;
+
+import com.fabiolima.e_commerce.service.implementation.ProductStockShards;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+
+/**
+ * Stock shard counters (product.stock.shards.*): takes, takes that had to scan other shards, rebalances and
+ * gives that missed their shard. Rising scans mean the shards of a product run dry faster than they are evened out.
+ */
+@Component
+public class StockShardMetrics implements MeterBinder {
+
+    private final ProductStockShards stockShards;
+
+    @Autowired
+    public StockShardMetrics(ProductStockShards stockShards) {
+        this.stockShards = stockShards;
+    }
+
+    @Override
+    public void bindTo(@NonNull MeterRegistry registry) {
+        FunctionCounter.builder("product.stock.shards.takes", stockShards, ProductStockShards::getTakes)
+                .description("Stock taken from shards")
+                .register(registry);
+        FunctionCounter.builder("product.stock.shards.scans", stockShards, ProductStockShards::getScans)
+                .description("Takes whose random shard was short, so the other shards were scanned")
+                .register(registry);
+        FunctionCounter.builder("product.stock.shards.rebalances", stockShards, ProductStockShards::getRebalances)
+                .description("Times the shards of a product were evened out")
+                .register(registry);
+        FunctionCounter.builder("product.stock.shards.misplaced.gives", stockShards, ProductStockShards::getMisplacedGives)
+                .description("Stock given back to a shard that no longer existed")
+                .register(registry);
+    }
+}
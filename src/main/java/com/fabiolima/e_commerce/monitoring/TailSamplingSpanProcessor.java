@@ -0,0 +1,151 @@
+package com.fabiolima.e_commerce.monitoring;
+
+import io.opentelemetry.api.trace.SpanContext;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.ReadWriteSpan;
+import io.opentelemetry.sdk.trace.ReadableSpan;
+import io.opentelemetry.sdk.trace.SpanProcessor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Keeps the ended spans of a trace in memory until its local root span (the request or the scheduled job) ends,
+ * then exports the whole trace only if it was slow, had an error, or falls in the baseline sample.
+ * Spans that end after their root (a PayPal call still running when the request gave up on it) are never
+ * exported and are evicted with traces whose root never ended here.
+ */
+@Slf4j
+public class TailSamplingSpanProcessor implements SpanProcessor {
+
+    private final SpanProcessor delegate;
+    private final long slowThresholdNanos;
+    private final double baselineProbability;
+    private final int maxBufferedTraces;
+    private final long maxTraceAgeNanos;
+    private final Map<String, PendingTrace> pending = new ConcurrentHashMap<>();
+
+    private final LongAdder kept = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder overflowed = new LongAdder();
+
+    public TailSamplingSpanProcessor(SpanProcessor delegate, long slowThresholdNanos, double baselineProbability,
+                                     int maxBufferedTraces, long maxTraceAgeNanos) {
+        this.delegate = delegate;
+        this.slowThresholdNanos = slowThresholdNanos;
+        this.baselineProbability = baselineProbability;
+        this.maxBufferedTraces = maxBufferedTraces;
+        this.maxTraceAgeNanos = maxTraceAgeNanos;
+    }
+
+    @Override
+    public void onStart(Context parentContext, ReadWriteSpan span) {
+    }
+
+    @Override
+    public boolean isStartRequired() {
+        return false;
+    }
+
+    @Override
+    public void onEnd(ReadableSpan span) {
+        String traceId = span.getSpanContext().getTraceId();
+        SpanContext parent = span.getParentSpanContext();
+        if (parent.isValid() && !parent.isRemote()) {
+            PendingTrace trace = pending.get(traceId);
+            if (trace == null) {
+                if (pending.size() >= maxBufferedTraces) {
+                    overflowed.increment();
+                    return;
+                }
+                trace = pending.computeIfAbsent(traceId, id -> new PendingTrace());
+            }
+            trace.add(span);
+            return;
+        }
+
+        PendingTrace trace = pending.remove(traceId);
+        List<ReadableSpan> spans = trace == null ? new ArrayList<>() : trace.drain();
+        spans.add(span);
+        if (keep(span, spans)) {
+            kept.increment();
+            spans.forEach(delegate::onEnd);
+        } else {
+            dropped.increment();
+        }
+    }
+
+    @Override
+    public boolean isEndRequired() {
+        return true;
+    }
+
+    private boolean keep(ReadableSpan root, List<ReadableSpan> spans) {
+        if (root.getLatencyNanos() >= slowThresholdNanos)
+            return true;
+        for (ReadableSpan span : spans)
+            if (span.toSpanData().getStatus().getStatusCode() == StatusCode.ERROR)
+                return true;
+        return ThreadLocalRandom.current().nextDouble() < baselineProbability;
+    }
+
+    /** drops buffered traces whose root span has not ended within the maximum trace age */
+    @Scheduled(fixedRateString = "${tracing.tail-sampling.eviction-interval-ms:10000}")
+    public void evictStale() {
+        long now = System.nanoTime();
+        int before = pending.size();
+        pending.values().removeIf(trace -> now - trace.firstSeen > maxTraceAgeNanos);
+        int evicted = before - pending.size();
+        if (evicted > 0)
+            log.debug("Evicted {} traces whose root span did not end in time", evicted);
+    }
+
+    @Override
+    public CompletableResultCode forceFlush() {
+        return delegate.forceFlush();
+    }
+
+    @Override
+    public CompletableResultCode shutdown() {
+        pending.clear();
+        return delegate.shutdown();
+    }
+
+    public long getKept() { return kept.sum(); }
+    public long getDropped() { return dropped.sum(); }
+    public long getOverflowed() { return overflowed.sum(); }
+    public int getBufferedTraces() { return pending.size(); }
+
+    private static final class PendingTrace {
+        private final long firstSeen = System.nanoTime();
+        private final List<ReadableSpan> spans = new ArrayList<>();
+        private final ReentrantLock lock = new ReentrantLock();
+
+        void add(ReadableSpan span) {
+            lock.lock();
+            try {
+                spans.add(span);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        List<ReadableSpan> drain() {
+            lock.lock();
+            try {
+                return new ArrayList<>(spans);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
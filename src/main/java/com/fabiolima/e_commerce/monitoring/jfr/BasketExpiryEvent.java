@@ -0,0 +1,23 @@
+package com.fabiolima.e_commerce.monitoring.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("ecommerce.BasketExpiry")
+@Label("Basket Expiry Batch")
+@Description("One run of the expired basket sweep")
+@Category({"E-commerce", "Basket"})
+@StackTrace(false)
+public class BasketExpiryEvent extends jdk.jfr.Event {
+
+    @Label("Candidates")
+    @Description("Active baskets not updated in the database for a day")
+    public int candidates;
+
+    @Label("Expired")
+    @Description("Candidates without recent activity waiting to be flushed, cleared and deleted")
+    public int expired;
+}
@@ -0,0 +1,27 @@
+package com.fabiolima.e_commerce.monitoring.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("ecommerce.Checkout")
+@Label("Basket Checkout")
+@Description("Checkout of a basket, from loading it to saving it as CHECKED_OUT")
+@Category({"E-commerce", "Basket"})
+@StackTrace(false)
+public class CheckoutEvent extends jdk.jfr.Event {
+
+    @Label("User Id")
+    public String userId;
+
+    @Label("Basket Id")
+    public String basketId;
+
+    @Label("Items")
+    public int items;
+
+    @Label("Succeeded")
+    public boolean succeeded;
+}
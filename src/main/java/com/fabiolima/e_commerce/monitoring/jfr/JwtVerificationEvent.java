@@ -0,0 +1,26 @@
+package com.fabiolima.e_commerce.monitoring.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("ecommerce.JwtVerification")
+@Label("JWT Verification")
+@Description("Signature check and parsing of a JWT")
+@Category({"E-commerce", "Security"})
+@StackTrace(false)
+public class JwtVerificationEvent extends jdk.jfr.Event {
+
+    // the subject is the user's email: a keyed hash tells users apart within a recording without naming them
+    @Label("Subject Hash")
+    @Description("Keyed hash of the token subject, stable until the instance restarts")
+    public String subjectHash;
+
+    @Label("Valid")
+    public boolean valid;
+
+    @Label("Failure")
+    public String failure;
+}
@@ -0,0 +1,25 @@
+package com.fabiolima.e_commerce.monitoring.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("ecommerce.PaypalCall")
+@Label("PayPal Call")
+@Description("PayPal call made by the gateway, from submission until the caller gets its answer (or gives up)")
+@Category({"E-commerce", "PayPal"})
+@StackTrace(false)
+public class PaypalCallEvent extends jdk.jfr.Event {
+
+    @Label("Operation")
+    public String operation;
+
+    @Label("PayPal Order Id")
+    public String paypalOrderId;
+
+    @Label("Outcome")
+    @Description("SUCCESS, TIMEOUT or FAILURE")
+    public String outcome;
+}
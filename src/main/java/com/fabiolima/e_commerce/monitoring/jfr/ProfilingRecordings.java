@@ -0,0 +1,150 @@
+package com.fabiolima.e_commerce.monitoring.jfr;
+
+import com.fabiolima.e_commerce.exceptions.BadRequestException;
+import com.fabiolima.e_commerce.exceptions.NotFoundException;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Flight recordings started on demand in a running instance (no -XX:StartFlightRecording needed).
+ * Every recording is bounded: it keeps at most max-age of data and max-size bytes on disk, stops by itself after
+ * at most max-duration, and only max-recordings can exist at a time (stopped ones count until they are deleted).
+ * The "profile" settings add allocation samples and lock contention (monitor enter, park) to the default ones;
+ * the ecommerce.* events are recorded with both.
+ */
+@Slf4j
+@Component
+public class ProfilingRecordings {
+
+    private static final List<String> SETTINGS = List.of("default", "profile");
+
+    private final int maxRecordings;
+    private final Duration maxAge;
+    private final long maxSizeBytes;
+    private final Duration maxDuration;
+    private final Map<Long, Recording> recordings = new ConcurrentHashMap<>();
+    // the recording count is checked and raised together
+    private final ReentrantLock startLock = new ReentrantLock();
+
+    public ProfilingRecordings(@Value("${profiling.max-recordings:2}") int maxRecordings,
+                               @Value("${profiling.max-age-minutes:30}") long maxAgeMinutes,
+                               @Value("${profiling.max-size-mb:250}") long maxSizeMb,
+                               @Value("${profiling.max-duration-minutes:60}") long maxDurationMinutes) {
+        this.maxRecordings = maxRecordings;
+        this.maxAge = Duration.ofMinutes(maxAgeMinutes);
+        this.maxSizeBytes = maxSizeMb * 1024 * 1024;
+        this.maxDuration = Duration.ofMinutes(maxDurationMinutes);
+    }
+
+    /** starts a continuous recording, stopped after the given number of minutes (or the maximum duration) */
+    public RecordingSnapshot start(String settings, Long durationMinutes) {
+        startLock.lock();
+        try {
+            if (!SETTINGS.contains(settings))
+                throw new BadRequestException("settings must be one of " + SETTINGS);
+            if (durationMinutes != null && durationMinutes <= 0)
+                throw new BadRequestException("durationMinutes must be positive.");
+            if (recordings.size() >= maxRecordings)
+                throw new BadRequestException("At most " + maxRecordings + " recordings can be kept, delete one first.");
+
+            Recording recording;
+            try {
+                recording = new Recording(Configuration.getConfiguration(settings));
+            } catch (IOException | ParseException e) {
+                throw new IllegalStateException("JFR settings '" + settings + "' are not available", e);
+            }
+            Duration duration = durationMinutes == null || Duration.ofMinutes(durationMinutes).compareTo(maxDuration) > 0
+                    ? maxDuration : Duration.ofMinutes(durationMinutes);
+            recording.setName("e-commerce-" + settings + "-" + Instant.now().getEpochSecond());
+            recording.setToDisk(true);
+            recording.setMaxAge(maxAge);
+            recording.setMaxSize(maxSizeBytes);
+            recording.setDuration(duration);
+            recording.start();
+            recordings.put(recording.getId(), recording);
+
+            log.info("Started flight recording {} ({} settings) for {}", recording.getName(), settings, duration);
+            return snapshot(recording);
+        } finally {
+            startLock.unlock();
+        }
+    }
+
+    public RecordingSnapshot stop(long id) {
+        Recording recording = find(id);
+        if (recording.getState() == RecordingState.RUNNING) {
+            recording.stop();
+            log.info("Stopped flight recording {}", recording.getName());
+        }
+        return snapshot(recording);
+    }
+
+    /** writes the data recorded so far to a temporary file, which the caller deletes */
+    public Path dump(long id) {
+        Recording recording = find(id);
+        if (recording.getState() != RecordingState.RUNNING && recording.getState() != RecordingState.STOPPED)
+            throw new BadRequestException("Recording " + id + " has no data yet.");
+        try {
+            Path file = Files.createTempFile(recording.getName() + "-", ".jfr");
+            recording.dump(file);
+            return file;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public void delete(long id) {
+        Recording recording = recordings.remove(id);
+        if (recording == null)
+            throw new NotFoundException("Recording %d not found", id);
+        recording.close();
+        log.info("Deleted flight recording {}", recording.getName());
+    }
+
+    public List<RecordingSnapshot> getRecordings() {
+        return recordings.values().stream()
+                .sorted(Comparator.comparingLong(Recording::getId))
+                .map(ProfilingRecordings::snapshot)
+                .toList();
+    }
+
+    @PreDestroy
+    public void closeAll() {
+        recordings.values().forEach(Recording::close);
+        recordings.clear();
+    }
+
+    private Recording find(long id) {
+        Recording recording = recordings.get(id);
+        if (recording == null)
+            throw new NotFoundException("Recording %d not found", id);
+        return recording;
+    }
+
+    private static RecordingSnapshot snapshot(Recording recording) {
+        return new RecordingSnapshot(recording.getId(), recording.getName(), recording.getState().name(),
+                recording.getStartTime(), recording.getStopTime(), recording.getDuration(),
+                recording.getMaxAge(), recording.getMaxSize(), recording.getSize());
+    }
+
+    public record RecordingSnapshot(long id, String name, String state, Instant startTime, Instant stopTime,
+                                    Duration duration, Duration maxAge, long maxSize, long size) {}
+}
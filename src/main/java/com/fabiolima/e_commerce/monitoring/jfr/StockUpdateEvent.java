@@ -0,0 +1,28 @@
+package com.fabiolima.e_commerce.monitoring.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("ecommerce.StockUpdate")
+@Label("Stock Update")
+@Description("Stock taken from (positive delta) or given back to (negative delta) a product")
+@Category({"E-commerce", "Product"})
+@StackTrace(false)
+public class StockUpdateEvent extends jdk.jfr.Event {
+
+    @Label("Product Id")
+    public String productId;
+
+    @Label("Delta")
+    public int delta;
+
+    @Label("Sharded")
+    public boolean sharded;
+
+    @Label("Rejected")
+    @Description("Not enough stock")
+    public boolean rejected;
+}
@@ -0,0 +1,103 @@
+package com.fabiolima.e_commerce.monitoring.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+import org.slf4j.Marker;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caps the INFO and below events a logging category (logger name prefix) writes per second; past the cap only
+ * one event in sampleEvery gets through. WARN and ERROR are never dropped. Configured in logback-spring.xml:
+ * <pre>
+ * &lt;turboFilter class="...CategorySamplingTurboFilter"&gt;
+ *     &lt;limit&gt;com.fabiolima.e_commerce.service=200&lt;/limit&gt;
+ *     &lt;sampleEvery&gt;100&lt;/sampleEvery&gt;
+ * &lt;/turboFilter&gt;
+ * </pre>
+ * The longest matching prefix wins; loggers outside every category are not limited.
+ */
+public class CategorySamplingTurboFilter extends TurboFilter {
+
+    private static final Category UNLIMITED = new Category("", Integer.MAX_VALUE);
+
+    private final List<Category> categories = new ArrayList<>();
+    private final Map<String, Category> byLogger = new ConcurrentHashMap<>();
+    private int sampleEvery = 100;
+
+    /** prefix=eventsPerSecond */
+    public void addLimit(String limit) {
+        int separator = limit.lastIndexOf('=');
+        if (separator <= 0)
+            throw new IllegalArgumentException("Expected <logger prefix>=<events per second> but got " + limit);
+        categories.add(new Category(limit.substring(0, separator).trim(),
+                Integer.parseInt(limit.substring(separator + 1).trim())));
+        categories.sort(Comparator.comparingInt((Category category) -> category.prefix.length()).reversed());
+        byLogger.clear();
+    }
+
+    public void setSampleEvery(int sampleEvery) {
+        this.sampleEvery = Math.max(1, sampleEvery);
+    }
+
+    @Override
+    public FilterReply decide(Marker marker, Logger logger, Level level, String format, Object[] params, Throwable t) {
+        // isXxxEnabled() guards come through here without a format, and must not use up the category's permits
+        if (format == null || level.isGreaterOrEqual(Level.WARN) || !level.isGreaterOrEqual(logger.getEffectiveLevel()))
+            return FilterReply.NEUTRAL;
+        Category category = byLogger.computeIfAbsent(logger.getName(), this::categoryOf);
+        if (category == UNLIMITED || category.tryAcquire(sampleEvery))
+            return FilterReply.NEUTRAL;
+        return FilterReply.DENY;
+    }
+
+    private Category categoryOf(String loggerName) {
+        for (Category category : categories)
+            if (loggerName.startsWith(category.prefix))
+                return category;
+        return UNLIMITED;
+    }
+
+    public List<Category> getCategories() {
+        return List.copyOf(categories);
+    }
+
+    public static final class Category {
+        private final String prefix;
+        private final int perSecond;
+        private final AtomicLong second = new AtomicLong(-1);
+        private final AtomicInteger count = new AtomicInteger();
+        private final AtomicLong overLimit = new AtomicLong();
+        private final LongAdder dropped = new LongAdder();
+
+        Category(String prefix, int perSecond) {
+            this.prefix = prefix;
+            this.perSecond = perSecond;
+        }
+
+        boolean tryAcquire(int sampleEvery) {
+            long now = System.currentTimeMillis() / 1000;
+            long current = second.get();
+            // only the thread that moves to the new second resets the count
+            if (now != current && second.compareAndSet(current, now))
+                count.set(0);
+            if (count.incrementAndGet() <= perSecond || overLimit.incrementAndGet() % sampleEvery == 0)
+                return true;
+            dropped.increment();
+            return false;
+        }
+
+        public String getPrefix() { return prefix; }
+        public int getPerSecond() { return perSecond; }
+        public long getDropped() { return dropped.sum(); }
+    }
+}
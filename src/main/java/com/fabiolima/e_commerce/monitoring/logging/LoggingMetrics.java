@@ -0,0 +1,43 @@
+package com.fabiolima.e_commerce.monitoring.logging;
+
+import ch.qos.logback.classic.AsyncAppender;
+import ch.qos.logback.classic.LoggerContext;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+
+/**
+ * Async logging queue usage and the events dropped by the category sampling, when logback-spring.xml is in use.
+ */
+@Component
+public class LoggingMetrics implements MeterBinder {
+
+    @Override
+    public void bindTo(@NonNull MeterRegistry registry) {
+        if (!(LoggerFactory.getILoggerFactory() instanceof LoggerContext context))
+            return;
+
+        if (context.getLogger(Logger.ROOT_LOGGER_NAME).getAppender("ASYNC") instanceof AsyncAppender async) {
+            Gauge.builder("logging.async.queue.size", async, AsyncAppender::getNumberOfElementsInQueue)
+                    .description("Log events waiting to be written")
+                    .register(registry);
+            Gauge.builder("logging.async.queue.remaining", async, AsyncAppender::getRemainingCapacity)
+                    .register(registry);
+        }
+
+        context.getTurboFilterList().stream()
+                .filter(CategorySamplingTurboFilter.class::isInstance)
+                .map(CategorySamplingTurboFilter.class::cast)
+                .flatMap(filter -> filter.getCategories().stream())
+                .forEach(category -> FunctionCounter.builder("logging.events.sampled.out", category,
+                                CategorySamplingTurboFilter.Category::getDropped)
+                        .description("Log events dropped because their category was over its rate")
+                        .tag("category", category.getPrefix())
+                        .register(registry));
+    }
+}
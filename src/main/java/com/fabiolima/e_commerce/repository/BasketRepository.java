@@ -5,24 +5,57 @@ import com.fabiolima.e_commerce.entities.enums.BasketStatus;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Repository
 public interface BasketRepository extends JpaRepository<Basket, UUID> {
 
     Optional<Basket> findBasketByIdAndUserId(@Param("basketId") UUID basketId, @Param("userId") UUID userId);
 
-    Page<Basket> findAllByUserId(@Param("userId") UUID userId, Pageable pageable);
+    /**
+     * Loads the page of ids first, then all baskets of the page with their items and products in one query,
+     * so a page costs the same number of queries whatever its size.
+     */
+    default Page<Basket> findAllByUserId(UUID userId, Pageable pageable) {
+        Page<UUID> ids = findIdsByUserId(userId, pageable);
+        Map<UUID, Basket> baskets = ids.hasContent()
+                ? findAllWithItemsByIdIn(ids.getContent()).stream().collect(Collectors.toMap(Basket::getId, Function.identity()))
+                : Map.of();
+        return ids.map(baskets::get);
+    }
+
+    @Query(value = "SELECT b.id FROM Basket b WHERE b.user.id = :userId",
+            countQuery = "SELECT COUNT(b) FROM Basket b WHERE b.user.id = :userId")
+    Page<UUID> findIdsByUserId(@Param("userId") UUID userId, Pageable pageable);
+
+    @Query("SELECT DISTINCT b FROM Basket b LEFT JOIN FETCH b.user LEFT JOIN FETCH b.order " +
+            "LEFT JOIN FETCH b.basketItems bi LEFT JOIN FETCH bi.product WHERE b.id IN :ids")
+    List<Basket> findAllWithItemsByIdIn(@Param("ids") Collection<UUID> ids);
 
     List<Basket> findByBasketStatusAndLastUpdatedBefore(BasketStatus basketStatus, LocalDateTime time);
 
+    /**
+     * Bulk write of basket activity (see BasketTouchTracker). Does not bump @Version: recording activity
+     * must not make a concurrent basket change fail.
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE Basket b SET b.lastUpdated = :touchedAt WHERE b.id IN :ids AND (b.lastUpdated IS NULL OR b.lastUpdated < :touchedAt)")
+    int touchAll(@Param("ids") Collection<UUID> ids, @Param("touchedAt") LocalDateTime touchedAt);
+
     @Query("SELECT b FROM Basket b WHERE b.user.id = :userId AND b.basketStatus = :status")
     Optional<Basket> findActiveBasketByUserId(@Param("userId") UUID userId, @Param("status") BasketStatus status);
 
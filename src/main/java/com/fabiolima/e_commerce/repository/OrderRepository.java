@@ -5,11 +5,17 @@ import com.fabiolima.e_commerce.entities.enums.OrderStatus;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Repository
 public interface OrderRepository extends JpaRepository<Order, UUID> {
@@ -18,9 +24,39 @@ public interface OrderRepository extends JpaRepository<Order, UUID> {
     Optional<Order> findOrderByIdAndUserId(@Param("orderId") UUID orderId, @Param("userId") UUID userId);
     // Don't need the query because JPA recognizes the method name and know what to do
 
-    Page<Order> findAllByUserId(UUID userId, Pageable pageable);
+    /**
+     * Pages are loaded in two steps: the page of ids (plus the count), then every order of the page with its
+     * items, basket and user in a single query. Fetching a collection in the paged query itself would make
+     * Hibernate paginate in memory, and loading the items lazily costs one query per order.
+     */
+    default Page<Order> findAllByUserId(UUID userId, Pageable pageable) {
+        return fetchPageWithItems(findIdsByUserId(userId, pageable));
+    }
 
-    Page<Order> findByOrderStatusAndUserId(OrderStatus orderStatus, UUID userId, Pageable pageable);
+    default Page<Order> findByOrderStatusAndUserId(OrderStatus orderStatus, UUID userId, Pageable pageable) {
+        return fetchPageWithItems(findIdsByOrderStatusAndUserId(orderStatus, userId, pageable));
+    }
+
+    // keeps the order (and sorting) of the id page
+    default Page<Order> fetchPageWithItems(Page<UUID> ids) {
+        Map<UUID, Order> orders = ids.hasContent()
+                ? findAllWithItemsByIdIn(ids.getContent()).stream().collect(Collectors.toMap(Order::getId, Function.identity()))
+                : Map.of();
+        return ids.map(orders::get);
+    }
+
+    @Query(value = "SELECT o.id FROM Order o WHERE o.user.id = :userId",
+            countQuery = "SELECT COUNT(o) FROM Order o WHERE o.user.id = :userId")
+    Page<UUID> findIdsByUserId(@Param("userId") UUID userId, Pageable pageable);
+
+    @Query(value = "SELECT o.id FROM Order o WHERE o.orderStatus = :orderStatus AND o.user.id = :userId",
+            countQuery = "SELECT COUNT(o) FROM Order o WHERE o.orderStatus = :orderStatus AND o.user.id = :userId")
+    Page<UUID> findIdsByOrderStatusAndUserId(@Param("orderStatus") OrderStatus orderStatus,
+                                             @Param("userId") UUID userId, Pageable pageable);
+
+    @Query("SELECT DISTINCT o FROM Order o LEFT JOIN FETCH o.items LEFT JOIN FETCH o.basket LEFT JOIN FETCH o.user " +
+            "WHERE o.id IN :ids")
+    List<Order> findAllWithItemsByIdIn(@Param("ids") Collection<UUID> ids);
 
     Optional<Order>  findByPaypalOrderId(String paypalOrderId);
 
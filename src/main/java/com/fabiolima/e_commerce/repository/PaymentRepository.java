@@ -1,11 +1,19 @@
 package com.fabiolima.e_commerce.repository;
 
 import com.fabiolima.e_commerce.entities.Payment;
+import com.fabiolima.e_commerce.entities.enums.PaymentStatus;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 @Repository
 public interface PaymentRepository extends JpaRepository<Payment, UUID> {
+
+    List<Payment> findByPaymentStatus(PaymentStatus paymentStatus, Pageable pageable);
+
+    Optional<Payment> findByOrder_Id(UUID orderId);
 }
@@ -4,12 +4,29 @@ import com.fabiolima.e_commerce.entities.Product;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.UUID;
 
 @Repository
 public interface ProductRepository extends JpaRepository<Product, UUID> {
 
     Page<Product> findAllByCategory(String category, Pageable pageable);
+
+    @Query("SELECT p.id FROM Product p WHERE p.stockShards > 0")
+    List<UUID> findStockShardedIds();
+
+    /** refreshes the cached total of a sharded product; not versioned, like any other cache write */
+    @Modifying
+    @Query("UPDATE Product p SET p.stock = :stock WHERE p.id = :productId AND p.stock <> :stock")
+    int updateCachedStock(@Param("productId") UUID productId, @Param("stock") int stock);
+
+    /** gives stock back to an unsharded product whose entity may be stale (it was sharded when it was read) */
+    @Modifying
+    @Query("UPDATE Product p SET p.stock = p.stock + :quantity WHERE p.id = :productId")
+    int giveStock(@Param("productId") UUID productId, @Param("quantity") int quantity);
 }
@@ -0,0 +1,52 @@
+package com.fabiolima.e_commerce.repository;
+
+import com.fabiolima.e_commerce.entities.ProductStockShard;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Stock changes are single conditional UPDATEs, so a shard row is locked only by the statement
+ * that changes it and never goes below zero.
+ */
+@Repository
+public interface ProductStockShardRepository extends JpaRepository<ProductStockShard, UUID> {
+
+    @Modifying
+    @Query("UPDATE ProductStockShard s SET s.stock = s.stock - :quantity " +
+            "WHERE s.productId = :productId AND s.shardIndex = :shardIndex AND s.stock >= :quantity")
+    int take(@Param("productId") UUID productId, @Param("shardIndex") int shardIndex, @Param("quantity") int quantity);
+
+    @Modifying
+    @Query("UPDATE ProductStockShard s SET s.stock = s.stock + :quantity " +
+            "WHERE s.productId = :productId AND s.shardIndex = :shardIndex")
+    int give(@Param("productId") UUID productId, @Param("shardIndex") int shardIndex, @Param("quantity") int quantity);
+
+    // fullest first, read as values so no stale managed shard is returned after the updates above
+    @Query("SELECT s.shardIndex AS shardIndex, s.stock AS stock FROM ProductStockShard s " +
+            "WHERE s.productId = :productId AND s.stock > 0 ORDER BY s.stock DESC")
+    List<ShardStock> findNonEmpty(@Param("productId") UUID productId);
+
+    @Query("SELECT COALESCE(SUM(s.stock), 0) FROM ProductStockShard s WHERE s.productId = :productId")
+    long sumStock(@Param("productId") UUID productId);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM ProductStockShard s WHERE s.productId = :productId ORDER BY s.shardIndex")
+    List<ProductStockShard> lockAllByProductId(@Param("productId") UUID productId);
+
+    @Modifying
+    @Query("DELETE FROM ProductStockShard s WHERE s.productId = :productId")
+    int deleteAllByProductId(@Param("productId") UUID productId);
+
+    interface ShardStock {
+        int getShardIndex();
+        int getStock();
+    }
+}
@@ -36,6 +36,12 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         this.handlerExceptionResolver = handlerExceptionResolver;
     }
 
+    // waiting room polls are answered from memory, loading the user here would put every poll on the database
+    @Override
+    protected boolean shouldNotFilter(@NonNull HttpServletRequest request) {
+        return request.getRequestURI().startsWith("/waiting-room/");
+    }
+
     @Override
     protected void doFilterInternal(
             @NonNull HttpServletRequest request,
@@ -1,12 +1,18 @@
 package com.fabiolima.e_commerce.security;
 
+import com.fabiolima.e_commerce.monitoring.jfr.JwtVerificationEvent;
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
+import io.micrometer.observation.annotation.Observed;
 
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HexFormat;
 import java.util.Map;
 import java.util.function.Function;
 
@@ -14,10 +20,15 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
 
+import javax.crypto.Mac;
 import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
 
 @Service
+@Observed(name = "ecommerce.service")
 public class JwtService {
+    private static final SecretKey SUBJECT_HASH_KEY = subjectHashKey();
+
     @Value("${security.jwt.secret-key}")
     private String secretKey;
 
@@ -74,16 +85,51 @@ public class JwtService {
     }
 
     private Claims extractAllClaims(String token) {
-        return Jwts
-                .parser()
-                .verifyWith(getSignInKey())
-                .build()
-                .parseSignedClaims(token)
-                .getPayload();
+        JwtVerificationEvent event = new JwtVerificationEvent();
+        event.begin();
+        try {
+            Claims claims = Jwts
+                    .parser()
+                    .verifyWith(getSignInKey())
+                    .build()
+                    .parseSignedClaims(token)
+                    .getPayload();
+            if (event.shouldCommit()) {
+                event.subjectHash = subjectHash(claims.getSubject());
+                event.valid = true;
+                event.commit();
+            }
+            return claims;
+        } catch (RuntimeException e) {
+            if (event.shouldCommit()) {
+                event.failure = e.getClass().getSimpleName();
+                event.commit();
+            }
+            throw e;
+        }
+    }
+
+    // HMAC with a key that never leaves this instance, so the hash cannot be reversed by hashing known emails
+    private static String subjectHash(String subject) {
+        if (subject == null)
+            return null;
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(SUBJECT_HASH_KEY);
+            return HexFormat.of().formatHex(mac.doFinal(subject.getBytes(StandardCharsets.UTF_8)), 0, 8);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 is not available", e);
+        }
     }
 
     private SecretKey getSignInKey() {
         byte[] keyBytes = Decoders.BASE64.decode(secretKey);
         return Keys.hmacShaKeyFor(keyBytes);
     }
-}
\ No newline at end of file
+
+    private static SecretKey subjectHashKey() {
+        byte[] key = new byte[32];
+        new SecureRandom().nextBytes(key);
+        return new SecretKeySpec(key, "HmacSHA256");
+    }
+}
@@ -21,11 +21,10 @@ public class BasketAuthenticationService {
     }
 
     public boolean isOwner(UUID basketUrlId, Authentication authentication){
-        log.info("Basket Id: {}",basketUrlId);
         //retrieve user from basket id
         Optional<User> expectedOptionalUser = userRepository.findByBaskets_Id(basketUrlId);
         if(expectedOptionalUser.isEmpty())
-            throw new NotFoundException(String.format("User do not contain basket with id %s", basketUrlId.toString()));
+            throw new NotFoundException("User do not contain basket with id %s", basketUrlId);
         User expectedUser = expectedOptionalUser.get();
 
         //retrieve user from authentication
@@ -33,10 +32,10 @@ public class BasketAuthenticationService {
 
         Optional<User> optional = userRepository.findByEmail(email);
         if(optional.isEmpty())
-            throw new NotFoundException(String.format("User with email %s not found.",email));
+            throw new NotFoundException("User with email %s not found.",email);
         User authenticatedUser = optional.get();
 
-        log.info("Is basket id from authenticated user ? {}", expectedUser.getId().equals(authenticatedUser.getId()));
+        log.debug("Is basket id {} from authenticated user ? {}", basketUrlId, expectedUser.getId().equals(authenticatedUser.getId()));
 
         //return if they are the same or not
         return expectedUser.getId().equals(authenticatedUser.getId());
@@ -29,12 +29,12 @@ public class OrderAuthenticationService {
 
         Optional<User> optional = userRepository.findByEmail(email);
         if(optional.isEmpty())
-            throw new NotFoundException(String.format("User with email %s not found.",email));
+            throw new NotFoundException("User with email %s not found.",email);
         User authenticatedUser = optional.get();
 
         boolean orderBelongsToUser = orderRepository.existsByIdAndUserId(urlOrderId, authenticatedUser.getId());
 
-        log.info("Does the order ID {} belong to the authenticated user {}? {}",
+        log.debug("Does the order ID {} belong to the authenticated user {}? {}",
                 urlOrderId, email, orderBelongsToUser);
 
         return orderBelongsToUser;
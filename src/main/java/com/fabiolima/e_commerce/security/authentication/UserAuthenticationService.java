@@ -25,13 +25,13 @@ public class UserAuthenticationService {
 
         Optional<User> optional = userRepository.findByEmail(email);
         if(optional.isEmpty())
-            throw new NotFoundException(String.format("User with email %s not found.",email));
+            throw new NotFoundException("User with email %s not found.",email);
 
         User authenticatedUser = optional.get();
 
         UUID authenticatedUserId = authenticatedUser.getId();
 
-        log.info("Is user id from the url the same as the authenticated user ? {}", urlId.equals(authenticatedUser.getId()));
+        log.debug("Is user id from the url the same as the authenticated user ? {}", urlId.equals(authenticatedUser.getId()));
 
         return authenticatedUserId.equals(urlId);
     }
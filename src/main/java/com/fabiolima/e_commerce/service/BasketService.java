@@ -6,6 +6,7 @@ import com.fabiolima.e_commerce.entities.User;
 import org.springframework.data.domain.Page;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.UUID;
 
 public interface BasketService {
@@ -16,6 +17,7 @@ public interface BasketService {
     Basket deactivateBasketById(UUID userId, UUID basketId);
     Basket clearBasket(UUID basketId);
     void deleteExpiredBasketAndAddNewOne();
+    boolean expireBasket(UUID basketId, LocalDateTime expirationTime);
     Basket checkoutBasket(UUID userId, UUID basketId);
     Basket findBasketById(UUID basketId);
     int getTotalQuantity(UUID basketId);
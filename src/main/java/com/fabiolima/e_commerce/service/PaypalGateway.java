@@ -0,0 +1,22 @@
+package com.fabiolima.e_commerce.service;
+
+import com.paypal.orders.Order;
+import com.paypal.orders.OrderRequest;
+import com.paypal.payments.Refund;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Every call to the PayPal API goes through this gateway, which bounds how long and how many
+ * calls may be waiting on PayPal and fails fast while PayPal is known to be unhealthy.
+ */
+public interface PaypalGateway {
+
+    CompletableFuture<Order> createOrderAsync(OrderRequest orderRequest);
+    CompletableFuture<Order> captureOrderAsync(String paypalOrderId);
+    CompletableFuture<Refund> refundCaptureAsync(String captureId);
+
+    Order createOrder(OrderRequest orderRequest);
+    Order captureOrder(String paypalOrderId);
+    Refund refundCapture(String captureId);
+}
@@ -17,4 +17,5 @@ public interface ProductService {
     Product deleteProductById(UUID productId);
     List<Product> incrementStocksWhenOrderIsCancelled(Order order);
     void updateProductStock(Product product, int delta);
+    Product shardProductStock(UUID productId, int shards);
 }
\ No newline at end of file
@@ -14,6 +14,7 @@ import com.fabiolima.e_commerce.repository.UserRepository;
 import com.fabiolima.e_commerce.security.JwtService;
 import com.fabiolima.e_commerce.service.AuthenticationService;
 import com.fabiolima.e_commerce.service.BasketService;
+import io.micrometer.observation.annotation.Observed;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
@@ -23,11 +24,14 @@ import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.util.Optional;
 
 @Slf4j
 @Service
+@Observed(name = "ecommerce.service")
 public class AuthenticationServiceImpl implements AuthenticationService {
 
     private final AuthenticationManager authenticationManager;
@@ -37,12 +41,14 @@ public class AuthenticationServiceImpl implements AuthenticationService {
     private final BasketService basketService;
     private final RoleRepository roleRepository;
     private final BCryptPasswordEncoder passwordEncoder;
+    private final TransactionTemplate transaction;
 
     public AuthenticationServiceImpl(AuthenticationManager authenticationManager, UserDetailsService userDetailsService, JwtService jwtService,
                                      UserRepository userRepository,
                                      BasketService basketService,
                                      RoleRepository roleRepository,
-                                     BCryptPasswordEncoder passwordEncoder) {
+                                     BCryptPasswordEncoder passwordEncoder,
+                                     PlatformTransactionManager transactionManager) {
 
         this.authenticationManager = authenticationManager;
         this.userDetailsService = userDetailsService;
@@ -51,6 +57,8 @@ public class AuthenticationServiceImpl implements AuthenticationService {
         this.roleRepository = roleRepository;
         this.basketService = basketService;
         this.passwordEncoder = passwordEncoder;
+        // bcrypt runs outside of it, only the database work is done in a transaction
+        this.transaction = new TransactionTemplate(transactionManager);
     }
 
     @Override
@@ -73,12 +81,15 @@ public class AuthenticationServiceImpl implements AuthenticationService {
         String jwtToken = jwtService.generateToken(userDetails);
 
         // Retrieve authenticated user and Add basket to they
-        Optional<User> result = userRepository.findByEmail(email);
-        if(result.isEmpty())
-            throw new NotFoundException("User not found");
-        User authenticatedUser = result.get();
-        Basket basket = basketService.createBasketAndAddToUser(authenticatedUser);
-        log.info("Basket id {} has been created for user id {}", basket.getId(),authenticatedUser.getId());
+        User authenticatedUser = transaction.execute(status -> {
+            Optional<User> result = userRepository.findByEmail(email);
+            if(result.isEmpty())
+                throw new NotFoundException("User not found");
+            User user = result.get();
+            Basket basket = basketService.createBasketAndAddToUser(user);
+            log.info("Basket id {} has been created for user id {}", basket.getId(),user.getId());
+            return user;
+        });
 
         // Build and return the response with token and expiring date
         JwtAuthorizationResponse jwtAuthorizationResponse = new JwtAuthorizationResponse();
@@ -98,7 +109,6 @@ public class AuthenticationServiceImpl implements AuthenticationService {
     public User registerUser(RegistrationRequest input) {
 
         //check if user already exists
-        log.info("Does email exist? {}", userRepository.existsByEmail(input.getEmail()) );
         if(userRepository.existsByEmail(input.getEmail()))
             throw new UniqueEmailException("Email address already exist. Please use a new email.");
 
@@ -110,14 +120,16 @@ public class AuthenticationServiceImpl implements AuthenticationService {
         user.setEmail(input.getEmail());
         user.setPassword(encryptedPassword);
 
-        Optional<Role> role = roleRepository.findByName(UserRole.ROLE_CUSTOMER);
+        return transaction.execute(status -> {
+            Optional<Role> role = roleRepository.findByName(UserRole.ROLE_CUSTOMER);
 
-        if(role.isEmpty()) {
-            log.info("Role could not be found");
-            throw new NotFoundException("Role not found");
-        }
-        user.addRoleToUser(role.get());
+            if(role.isEmpty()) {
+                log.info("Role could not be found");
+                throw new NotFoundException("Role not found");
+            }
+            user.addRoleToUser(role.get());
 
-        return userRepository.save(user);
+            return userRepository.save(user);
+        });
     }
 }
\ No newline at end of file
@@ -1,15 +1,17 @@
 package com.fabiolima.e_commerce.service.implementation;
 
+import com.fabiolima.e_commerce.concurrency.RetryOnConflict;
 import com.fabiolima.e_commerce.exceptions.*;
 import com.fabiolima.e_commerce.entities.Basket;
 import com.fabiolima.e_commerce.entities.BasketItem;
 import com.fabiolima.e_commerce.entities.Product;
 import com.fabiolima.e_commerce.entities.enums.BasketStatus;
+import com.fabiolima.e_commerce.monitoring.BusinessMetrics;
 import com.fabiolima.e_commerce.repository.BasketItemRepository;
-import com.fabiolima.e_commerce.repository.BasketRepository;
 import com.fabiolima.e_commerce.service.BasketItemService;
 import com.fabiolima.e_commerce.service.BasketService;
 import com.fabiolima.e_commerce.service.ProductService;
+import io.micrometer.observation.annotation.Observed;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -17,30 +19,35 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
-import java.time.LocalDateTime;
 import java.util.List;
 import java.util.UUID;
 
 @Slf4j
 @Service
+@Observed(name = "ecommerce.service")
 public class BasketItemServiceImpl implements BasketItemService {
 
     private final BasketItemRepository basketItemRepository;
-    private final BasketRepository basketRepository;
     private final BasketService basketService;
     private final ProductService productService;
+    private final BasketTouchTracker basketTouchTracker;
+    private final BusinessMetrics businessMetrics;
 
     @Autowired
-    public BasketItemServiceImpl (BasketItemRepository basketItemRepository, BasketRepository basketRepository,
+    public BasketItemServiceImpl (BasketItemRepository basketItemRepository,
                                   BasketService basketService,
-                                  ProductService productService){
+                                  ProductService productService,
+                                  BasketTouchTracker basketTouchTracker,
+                                  BusinessMetrics businessMetrics){
         this.basketItemRepository = basketItemRepository;
-        this.basketRepository = basketRepository;
         this.basketService = basketService;
         this.productService = productService;
+        this.basketTouchTracker = basketTouchTracker;
+        this.businessMetrics = businessMetrics;
     }
 
     @Override
+    @RetryOnConflict
     @Transactional
     public BasketItem addItemToBasket(UUID basketId, UUID productId, int quantity) {
 
@@ -77,7 +84,8 @@ public class BasketItemServiceImpl implements BasketItemService {
 
         if (existingItem != null) {
             existingItem.incrementQuantity(quantity);
-            log.info("Item id {} already exists in basket and its quantity is being updated", existingItem.getId());
+            basketTouchTracker.touch(theBasket.getId());
+            log.debug("Item id {} already exists in basket and its quantity is being updated", existingItem.getId());
             return basketItemRepository.save(existingItem);
         }
 
@@ -90,32 +98,35 @@ public class BasketItemServiceImpl implements BasketItemService {
         // add item to basket
         theBasket.addBasketItemToBasket(newItem);
 
-        // update the time and date of insertion in basket
-        theBasket.setLastUpdated(LocalDateTime.now());
+        // record the activity on the basket (written in bulk by BasketTouchTracker)
+        basketTouchTracker.touch(theBasket.getId());
 
         // save the Basket containing the new item
         basketService.updateBasketWhenItemsAreAddedOrModified(theBasket);
 
-        log.info("Item has been created and added to basket.");
+        log.debug("Item has been created and added to basket.");
         return newItem;
     }
 
     @Override
+    @Transactional(readOnly = true)
     public List<BasketItem> getItemsByBasket(UUID basketId) {
 
         return basketService.findBasketById(basketId).getBasketItems();
     }
 
     @Override
+    @Transactional(readOnly = true)
     public BasketItem getItemById(UUID basketItemId) {
 
         return basketItemRepository.findById(basketItemId)
-                .orElseThrow(() -> new NotFoundException(String.format(
-                        "Item with Id %s was not found.",basketItemId.toString())
+                .orElseThrow(() -> new NotFoundException(
+                        "Item with Id %s was not found.",basketItemId
                 ));
     }
 
     @Override
+    @RetryOnConflict
     @Transactional
     /**
      * Method to be used in case the user changes the quantity of a product manually providing the quantity they want
@@ -131,6 +142,8 @@ public class BasketItemServiceImpl implements BasketItemService {
 
         Product product = basketItem.getProduct();
 
+        ensureBasketIsOpen(basket);
+
         /**
          * Check if there's enough stock. If not it will throw an InsufficientStockException
          * Method also checks if the quantity is valid
@@ -147,8 +160,8 @@ public class BasketItemServiceImpl implements BasketItemService {
         if(newQuantity == 0) {
             //item still holds the older quantity, so stock can be updated inside remove
             //removeItemFromBasket method update stock automatically
-            log.info("Quantity of item id {} is zero and it will be removed from basket {}", basketItemId, basketId);
-            basket.setLastUpdated(LocalDateTime.now());
+            log.debug("Quantity of item id {} is zero and it will be removed from basket {}", basketItemId, basketId);
+            basketTouchTracker.touch(basketId);
             return basketService.removeItemFromBasket(basket, basketItem);
         }
 
@@ -159,16 +172,17 @@ public class BasketItemServiceImpl implements BasketItemService {
          */
         productService.updateProductStock(product, quantityDelta);
 
-        // update the time and date of insertion in basket
-        basket.setLastUpdated(LocalDateTime.now());
-        basketRepository.save(basket);
+        // record the activity on the basket (written in bulk by BasketTouchTracker)
+        basketTouchTracker.touch(basket.getId());
 
-        log.info("Item {} quantity has been updated", basketItemId);
+        log.debug("Item {} quantity has been updated", basketItemId);
 
         return basketItemRepository.save(basketItem);
     }
 
     @Override
+    @RetryOnConflict
+    @Transactional
     /**
      * Method to use in case the quantity is provided by pressing a button that increments the quantity by 1
      */
@@ -181,6 +195,8 @@ public class BasketItemServiceImpl implements BasketItemService {
 
         Product product = basketItem.getProduct();
 
+        ensureBasketIsOpen(basketItem.getBasket());
+
         // Check if there's enough stock. If not it will throw an InsufficientStockException
         ensureStockAvailable(product, basketItem.getQuantity());
 
@@ -188,16 +204,15 @@ public class BasketItemServiceImpl implements BasketItemService {
         basketItem.incrementQuantity(1);
         productService.updateProductStock(product, delta);
 
-        // update the time and date of insertion in basket
-        Basket theBasket = basketItem.getBasket();
-        theBasket.setLastUpdated(LocalDateTime.now());
-        basketRepository.save(theBasket);
+        // record the activity on the basket (written in bulk by BasketTouchTracker)
+        basketTouchTracker.touch(basketItem.getBasket().getId());
 
-        log.info("Item id {} quantity has been incremented by one", basketItemId);
+        log.debug("Item id {} quantity has been incremented by one", basketItemId);
         return basketItemRepository.save(basketItem);
     }
 
     @Override
+    @RetryOnConflict
     @Transactional
     /**
      * Method in case the quantity is provided by pressing a button that decrements the quantity by 1
@@ -213,12 +228,13 @@ public class BasketItemServiceImpl implements BasketItemService {
         if(basketItem.getQuantity() < 1)
             throw new InvalidQuantityException("Cannot decrement quantity below 0.");
 
+        ensureBasketIsOpen(basketItem.getBasket());
 
         //in case there's only one quantity of an item, the item will be removed from basket
         if(basketItem.getQuantity() == 1){
             Basket basket = basketService.findBasketById(basketId);
             //removeItemFromBasket method update stock automatically
-            log.info("Item id {} has been removed from basket as its quantity is now 0", basketItemId);
+            log.debug("Item id {} has been removed from basket as its quantity is now 0", basketItemId);
             return basketService.removeItemFromBasket(basket, basketItem);
         }
 
@@ -227,31 +243,39 @@ public class BasketItemServiceImpl implements BasketItemService {
 
         basketItem.decrementQuantity(1);
 
-        // update the time and date of insertion in basket
-        Basket theBasket = basketItem.getBasket();
-        theBasket.setLastUpdated(LocalDateTime.now());
-        basketRepository.save(theBasket);
+        // record the activity on the basket (written in bulk by BasketTouchTracker)
+        basketTouchTracker.touch(basketItem.getBasket().getId());
 
-        log.info("Item id {} quantity has been decremented by one", basketItemId);
+        log.debug("Item id {} quantity has been decremented by one", basketItemId);
         return basketItemRepository.save(basketItem);
     }
 
     @Override
+    @RetryOnConflict
     @Transactional
     public BasketItem removeItemFromBasket(UUID basketId, UUID basketItemId) {
 
         //retrieve the basket where the item is stored
         Basket basket = basketService.findBasketById(basketId);
+        ensureBasketIsOpen(basket);
         BasketItem item = getItemById(basketItemId);
 
-        // update the time and date of insertion in basket
-        basket.setLastUpdated(LocalDateTime.now());
-        basketRepository.save(basket);
+        // record the activity on the basket (written in bulk by BasketTouchTracker)
+        basketTouchTracker.touch(basket.getId());
 
         return basketService.removeItemFromBasket(basket,item);
 
     }
 
+    /**
+     * The items of a checked-out basket were sold with its order, and those of an inactive one are no longer counted:
+     * changing them would take or give back stock that checkout or the order cancellation has already settled.
+     */
+    private static void ensureBasketIsOpen(Basket basket) {
+        if (basket.getBasketStatus() == BasketStatus.CHECKED_OUT || basket.getBasketStatus() == BasketStatus.INACTIVE)
+            throw new ForbiddenException("Can only change items in a ACTIVE basket");
+    }
+
     @Override
     public void ensureStockAvailable(Product product, int quantity) {
         if(product == null)
@@ -260,10 +284,13 @@ public class BasketItemServiceImpl implements BasketItemService {
         if(quantity < 0)
             throw new InvalidQuantityException("Quantity cannot have negative values");
 
-        if(product.getStock() < quantity)
+        // a sharded product's stock is a cached total: taking from its shards is the check
+        if(!product.isStockSharded() && product.getStock() < quantity) {
+            businessMetrics.stockRejected(BusinessMetrics.StockRejection.BASKET);
             throw new InsufficientStockException(
-                    String.format("Not enough stock available for product '%s'. Available: %d, Requested: %d",
-                            product.getProductName(), product.getStock(), quantity));
+                    "Not enough stock available for product '%s'. Available: %d, Requested: %d",
+                    product.getProductName(), product.getStock(), quantity);
+        }
     }
 
     @Override
@@ -0,0 +1,231 @@
+package com.fabiolima.e_commerce.service.implementation;
+
+import com.fabiolima.e_commerce.dto.BasketItemResponse;
+import com.fabiolima.e_commerce.entities.BasketItem;
+import com.fabiolima.e_commerce.entities.Product;
+import com.fabiolima.e_commerce.exceptions.InsufficientStockException;
+import com.fabiolima.e_commerce.exceptions.InvalidQuantityException;
+import com.fabiolima.e_commerce.exceptions.ServiceUnavailableException;
+import com.fabiolima.e_commerce.service.BasketItemService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Serializes +1/-1 clicks per basket through a mailbox drained by one virtual thread. Deltas for the same
+ * line that arrive within the window are merged into a single quantity update (one stock write, one item
+ * write) and every caller of the batch gets the merged state. Clicks that cancel each other out write nothing.
+ * When the stock covers only part of the merged increments, the part it covers is applied and only the excess
+ * clicks (the latest ones) fail with InsufficientStockException. Likewise, decrements beyond the line's quantity
+ * fail with InvalidQuantityException, as one-by-one decrements did: the line is removed when its quantity reaches 0.
+ * For a sharded product the stock is summed over its shards in the write transaction, not read from the cached total.
+ */
+@Slf4j
+@Component
+public class BasketMutationCoalescer {
+
+    private final BasketItemService basketItemService;
+    private final ResponseAssembler responseAssembler;
+    private final ProductStockShards productStockShards;
+    private final long windowMillis;
+    private final long timeoutMillis;
+    private final ThreadFactory drainers = Thread.ofVirtual().name("basket-mailbox-", 0).factory();
+    private final Map<UUID, Mailbox> mailboxes = new ConcurrentHashMap<>();
+
+    private final LongAdder mutations = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder writes = new LongAdder();
+
+    @Autowired
+    public BasketMutationCoalescer(BasketItemService basketItemService, ResponseAssembler responseAssembler,
+                                   ProductStockShards productStockShards,
+                                   @Value("${basket.coalescing.window-ms:25}") long windowMillis,
+                                   @Value("${basket.coalescing.timeout-ms:5000}") long timeoutMillis) {
+        this.basketItemService = basketItemService;
+        this.responseAssembler = responseAssembler;
+        this.productStockShards = productStockShards;
+        this.windowMillis = windowMillis;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /** adds delta to the quantity of a basket line and waits for the batch it was merged into */
+    public BasketItemResponse submit(UUID basketId, UUID basketItemId, int delta) {
+        mutations.increment();
+        CompletableFuture<BasketItemResponse> result = new CompletableFuture<>();
+        SecurityContext securityContext = SecurityContextHolder.getContext();
+        boolean[] created = new boolean[1];
+
+        // mailboxes are only created, filled and removed inside compute, so a drainer never misses a delta
+        mailboxes.compute(basketId, (id, mailbox) -> {
+            if (mailbox == null) {
+                mailbox = new Mailbox();
+                created[0] = true;
+            }
+            mailbox.pending.computeIfAbsent(basketItemId, key -> new PendingLine()).add(delta, result);
+            return mailbox;
+        });
+        if (created[0])
+            drainers.newThread(() -> drain(basketId, securityContext)).start();
+
+        try {
+            return result.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause)
+                throw cause;
+            throw new IllegalStateException(e.getCause());
+        } catch (TimeoutException e) {
+            // the click stays queued and may still be applied: the client reloads the basket rather than clicking again
+            log.warn("Basket {} update not applied within {} ms", basketId, timeoutMillis);
+            throw new ServiceUnavailableException("Basket update is taking longer than expected. Please reload the basket.");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServiceUnavailableException("Basket update was interrupted. Please reload the basket.");
+        }
+    }
+
+    private void drain(UUID basketId, SecurityContext securityContext) {
+        // the commit marks the basket owner as a recent writer, so their next read sees it
+        SecurityContextHolder.setContext(securityContext);
+        Map<UUID, PendingLine> batch = null;
+        boolean drained = false;
+        try {
+            while ((batch = nextBatch(basketId)) != null) {
+                batches.increment();
+                batch.forEach((basketItemId, line) -> apply(basketId, basketItemId, line));
+            }
+            drained = true;
+        } finally {
+            SecurityContextHolder.clearContext();
+            if (!drained)
+                abandon(basketId, batch);
+        }
+    }
+
+    // the drainer died (an Error): nobody would ever answer the clicks of this batch or those still queued
+    private void abandon(UUID basketId, Map<UUID, PendingLine> batch) {
+        IllegalStateException failure = new IllegalStateException("Basket update was not applied");
+        if (batch != null)
+            batch.values().forEach(line -> line.fail(failure));
+        Mailbox mailbox = mailboxes.remove(basketId);
+        if (mailbox != null)
+            mailbox.pending.values().forEach(line -> line.fail(failure));
+    }
+
+    // waits for the window to collect more clicks, then takes them; null (and no mailbox) once nothing is pending
+    private Map<UUID, PendingLine> nextBatch(UUID basketId) {
+        try {
+            Thread.sleep(windowMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        List<Map<UUID, PendingLine>> taken = new ArrayList<>(1);
+        mailboxes.compute(basketId, (id, mailbox) -> {
+            if (mailbox == null || mailbox.pending.isEmpty())
+                return null;
+            taken.add(mailbox.pending);
+            mailbox.pending = new LinkedHashMap<>();
+            return mailbox;
+        });
+        return taken.isEmpty() ? null : taken.getFirst();
+    }
+
+    private void apply(UUID basketId, UUID basketItemId, PendingLine line) {
+        try {
+            if (line.delta == 0) {
+                line.complete(responseAssembler.read(() -> basketItemService.getItemById(basketItemId), BasketItemResponse::from), 0);
+                return;
+            }
+            int[] applied = new int[1];
+            BasketItemResponse merged = responseAssembler.write(() -> {
+                BasketItem item = basketItemService.getItemById(basketItemId);
+                Product product = item.getProduct();
+                int stock = product.isStockSharded() ? productStockShards.available(product) : product.getStock();
+                // as many of the clicks as the stock (or the quantity, for decrements) covers; none is a failure of all
+                applied[0] = Math.max(-item.getQuantity(), Math.min(line.delta, stock));
+                if (applied[0] == 0)
+                    throw line.delta > 0
+                            ? new InsufficientStockException("Not enough stock available for product '%s'. Available: %d, Requested: %d",
+                                    product.getProductName(), stock, line.delta)
+                            : new InvalidQuantityException("Cannot decrement quantity below 0.");
+                // a quantity of 0 removes the line and gives its stock back
+                return basketItemService.updateBasketItem(basketId, basketItemId, item.getQuantity() + applied[0]);
+            }, BasketItemResponse::from);
+            writes.increment();
+            line.complete(merged, line.delta - applied[0]);
+        } catch (RuntimeException e) {
+            log.debug("Merged update of {} clicks on item {} failed: {}", line.waiters.size(), basketItemId, e.getMessage());
+            line.fail(e);
+        } finally {
+            // no-op for the waiters answered above
+            line.fail(new IllegalStateException("Basket update was not applied"));
+        }
+    }
+
+    /** clicks received */
+    public long getMutations() {
+        return mutations.sum();
+    }
+
+    /** mailbox drains, each applying every line that had pending clicks */
+    public long getBatches() {
+        return batches.sum();
+    }
+
+    /** quantity updates written to the database */
+    public long getWrites() {
+        return writes.sum();
+    }
+
+    private static final class Mailbox {
+        private Map<UUID, PendingLine> pending = new LinkedHashMap<>();
+    }
+
+    private static final class PendingLine {
+        private int delta;
+        private final List<Waiter> waiters = new ArrayList<>();
+
+        private void add(int delta, CompletableFuture<BasketItemResponse> waiter) {
+            this.delta += delta;
+            waiters.add(new Waiter(delta, waiter));
+        }
+
+        // the latest clicks in the direction of the excess are the ones that did not fit
+        private void complete(BasketItemResponse merged, int excess) {
+            for (int i = waiters.size() - 1; i >= 0; i--) {
+                Waiter waiter = waiters.get(i);
+                if (excess != 0 && Integer.signum(waiter.delta) == Integer.signum(excess)
+                        && Math.abs(waiter.delta) <= Math.abs(excess)) {
+                    excess -= waiter.delta;
+                    waiter.result.completeExceptionally(waiter.delta > 0
+                            ? new InsufficientStockException("Not enough stock available for this item")
+                            : new InvalidQuantityException("Cannot decrement quantity below 0."));
+                } else {
+                    waiter.result.complete(merged);
+                }
+            }
+        }
+
+        private void fail(RuntimeException failure) {
+            waiters.forEach(waiter -> waiter.result.completeExceptionally(failure));
+        }
+    }
+
+    private record Waiter(int delta, CompletableFuture<BasketItemResponse> result) {
+    }
+}
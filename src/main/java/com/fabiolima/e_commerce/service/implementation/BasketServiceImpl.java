@@ -1,14 +1,19 @@
 package com.fabiolima.e_commerce.service.implementation;
 
+import com.fabiolima.e_commerce.concurrency.RetryOnConflict;
 import com.fabiolima.e_commerce.exceptions.ForbiddenException;
 import com.fabiolima.e_commerce.exceptions.InvalidQuantityException;
 import com.fabiolima.e_commerce.exceptions.NotFoundException;
 import com.fabiolima.e_commerce.entities.*;
 import com.fabiolima.e_commerce.entities.enums.BasketStatus;
 import com.fabiolima.e_commerce.entities.enums.UserStatus;
+import com.fabiolima.e_commerce.monitoring.BusinessMetrics;
+import com.fabiolima.e_commerce.monitoring.jfr.BasketExpiryEvent;
+import com.fabiolima.e_commerce.monitoring.jfr.CheckoutEvent;
 import com.fabiolima.e_commerce.repository.BasketRepository;
 import com.fabiolima.e_commerce.service.BasketService;
 import com.fabiolima.e_commerce.service.ProductService;
+import io.micrometer.observation.annotation.Observed;
 import lombok.extern.slf4j.Slf4j;
 import org.hibernate.validator.internal.util.stereotypes.Lazy;
 import org.springframework.aop.framework.AopContext;
@@ -34,16 +39,23 @@ import java.util.*;
 
 @Slf4j
 @Service
+@Observed(name = "ecommerce.service")
 public class BasketServiceImpl implements BasketService {
 
     private final BasketRepository basketRepository;
     private final ProductService productService;
+    private final BasketTouchTracker basketTouchTracker;
+    private final BusinessMetrics businessMetrics;
 
     @Autowired
     public BasketServiceImpl (BasketRepository basketRepository,
-                              ProductService productService){
+                              ProductService productService,
+                              BasketTouchTracker basketTouchTracker,
+                              BusinessMetrics businessMetrics){
         this.basketRepository = basketRepository;
         this.productService = productService;
+        this.basketTouchTracker = basketTouchTracker;
+        this.businessMetrics = businessMetrics;
     }
 
     @Override
@@ -60,10 +72,12 @@ public class BasketServiceImpl implements BasketService {
         basket.setBasketStatus(BasketStatus.ACTIVE);
         theUser.addBasketToUser(basket);
 
+        businessMetrics.basketCreated();
         return basketRepository.save(basket);
     }
 
     @Override
+    @Transactional(readOnly = true)
     public Page<Basket> getUserBaskets(int pgNum, int pgSize, UUID userId) {
 
         Pageable pageable  = PageRequest.of(pgNum, pgSize, Sort.by(Sort.Direction.DESC, "createdAt"));
@@ -77,6 +91,7 @@ public class BasketServiceImpl implements BasketService {
         return basketRepository.save(basket);
     }
 
+    @RetryOnConflict
     @Transactional
     @Override
     public Basket deactivateBasketById(UUID userId, UUID basketId) {
@@ -101,12 +116,14 @@ public class BasketServiceImpl implements BasketService {
     }
 
     @Override
+    @Transactional(readOnly = true)
     public Basket findBasketById(UUID basketId) {
         return basketRepository.findById(basketId)
-                .orElseThrow(() -> new NotFoundException(String.format("Basket with Id %s not found",basketId.toString())));
+                .orElseThrow(() -> new NotFoundException("Basket with Id %s not found",basketId));
     }
 
     @Override//I have to pass all the quantity items back to product
+    @RetryOnConflict
     @Transactional
     public Basket clearBasket(UUID basketId) {
         //find the basket
@@ -141,46 +158,97 @@ public class BasketServiceImpl implements BasketService {
     }
 
     @Override
-    @Scheduled(fixedRate = 60000) // run every 60 seconds
-    @Transactional
+    @Scheduled(fixedDelay = 60000) // run 60 seconds after the previous sweep ended, so sweeps never overlap
     public void deleteExpiredBasketAndAddNewOne() {
         // self-invocation via proxy to ensure @Transactional works
         BasketService selfProxy = (BasketService) AopContext.currentProxy();
 
+        BasketExpiryEvent event = new BasketExpiryEvent();
+        event.begin();
+
         //setting the no activity in basket for 1 day
         LocalDateTime expirationTime = LocalDateTime.now().minusDays(1);
 
-        //get all open baskets from Users
-        List<Basket> expiredBaskets = basketRepository.findByBasketStatusAndLastUpdatedBefore(BasketStatus.ACTIVE,expirationTime);
+        //get all open baskets from Users, leaving out those with activity that is not flushed to the database yet
+        List<Basket> candidates = basketRepository.findByBasketStatusAndLastUpdatedBefore(BasketStatus.ACTIVE,expirationTime);
+        List<UUID> expiredBasketIds = candidates.stream()
+                .filter(b -> basketTouchTracker.lastTouched(b.getId()).map(t -> t.isBefore(expirationTime)).orElse(true))
+                .map(Basket::getId)
+                .toList();
+        event.candidates = candidates.size();
+
+        // one transaction (and retry) per basket: a conflict on one basket neither redoes nor rolls back the others
+        int expired = 0;
+        for (UUID basketId : expiredBasketIds) {
+            try {
+                if (selfProxy.expireBasket(basketId, expirationTime))
+                    expired++;
+            } catch (RuntimeException e) {
+                log.warn("Could not expire basket {}, trying again on the next sweep: {}", basketId, e.getMessage());
+            }
+        }
+        event.expired = expired;
+
+        if (expired > 0) {
+            businessMetrics.basketsExpired(expired);
+            log.info("{} Expired Baskets have been deleted", expired);
+        }
+        event.commit();
+    }
+
+    @Override
+    @RetryOnConflict
+    @Transactional
+    public boolean expireBasket(UUID basketId, LocalDateTime expirationTime) {
+        BasketService selfProxy = (BasketService) AopContext.currentProxy();
 
-        if (!expiredBaskets.isEmpty()) {
-            //iterate through the list of baskets and clear it by returning its quantity to stock, before deleting
-            for(Basket b : expiredBaskets) {
+        // checked again: since it was listed the basket may have been used, checked out or expired by another sweep
+        Basket basket = basketRepository.findById(basketId).orElse(null);
+        if (basket == null || basket.getBasketStatus() != BasketStatus.ACTIVE
+                || (basket.getLastUpdated() != null && !basket.getLastUpdated().isBefore(expirationTime))
+                || basketTouchTracker.lastTouched(basketId).map(t -> !t.isBefore(expirationTime)).orElse(false))
+            return false;
 
-                // clear the basket, giving back to stock all the quantity in items
-                selfProxy.clearBasket(b.getId());
+        // clear the basket, giving back to stock all the quantity in items
+        selfProxy.clearBasket(basketId);
 
-                //delete basket in databases
-                basketRepository.delete(b);
-                basketRepository.flush();// ensure delete is persisted
+        //delete basket in databases
+        basketRepository.delete(basket);
+        basketRepository.flush();// ensure delete is persisted
 
-                //Add new basket to user if user is active.
-                User user = b.getUser();
-                if(user.getUserStatus().equals(UserStatus.ACTIVE))
-                    selfProxy.createBasketAndAddToUser(b.getUser());
-            }
-            log.info("{} Expired Baskets have been deleted", expiredBaskets.size());
-        }
+        //Add new basket to user if user is active.
+        User user = basket.getUser();
+        if(user.getUserStatus().equals(UserStatus.ACTIVE))
+            selfProxy.createBasketAndAddToUser(user);
+        return true;
     }
 
     @Override
+    @RetryOnConflict
     @Transactional
     public Basket checkoutBasket(UUID userId, UUID basketId) {
+        CheckoutEvent event = new CheckoutEvent();
+        event.begin();
+        try {
+            Basket checkedOut = checkout(basketId, event);
+            event.succeeded = true;
+            return checkedOut;
+        } finally {
+            if (event.shouldCommit()) {
+                event.userId = String.valueOf(userId);
+                event.basketId = String.valueOf(basketId);
+                event.commit();
+            }
+        }
+    }
+
+    private Basket checkout(UUID basketId, CheckoutEvent event) {
         // self-invocation via proxy to ensure @Transactional works
         BasketService selfProxy = (BasketService) AopContext.currentProxy();
 
         //1-Retrieve the basket
         Basket basket = findBasketById(basketId);
+        event.items = basket.getBasketItems().size();
 
         //2-Check if the basket is empty
         if(basket.getBasketItems().isEmpty())
@@ -192,6 +260,7 @@ public class BasketServiceImpl implements BasketService {
 
         //4-Change the status
         basket.setBasketStatus(BasketStatus.CHECKED_OUT);
+        businessMetrics.basketCheckedOut();
 
         //5- Create a new basket to the user
         User user = basket.getUser();
@@ -203,6 +272,7 @@ public class BasketServiceImpl implements BasketService {
     }
 
     @Override
+    @Transactional(readOnly = true)
     public int getTotalQuantity(UUID basketId) {
         Basket theBasket = findBasketById(basketId);
         int count = 0;
@@ -213,6 +283,7 @@ public class BasketServiceImpl implements BasketService {
     }
 
     @Override
+    @Transactional(readOnly = true)
     public BigDecimal calculateTotalPrice(UUID basketId) {
 
         Basket theBasket = findBasketById(basketId);
@@ -228,6 +299,7 @@ public class BasketServiceImpl implements BasketService {
     }
 
     @Override
+    @Transactional(readOnly = true)
     public Basket returnNewestActiveBasket(User user) {
 
         Optional<Basket> activeBasket = user.getBaskets().stream()
@@ -250,7 +322,7 @@ public class BasketServiceImpl implements BasketService {
         //Confirm that the item belongs to basket
         if(!listOfItems.contains(item))
             throw new NotFoundException(
-                        String.format("Basket id %d do not contain Item with id %d",basket.getId(),item.getId()));
+                        "Basket id %s do not contain Item with id %s",basket.getId(),item.getId());
 
         /**
          *As per orphanRemoval is enabled in the One-To- Many relationship between basket and item
@@ -0,0 +1,111 @@
+package com.fabiolima.e_commerce.service.implementation;
+
+import com.fabiolima.e_commerce.repository.BasketRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Write-behind for basket activity. Item changes only record the time here; the scheduled flush writes
+ * every touched basket's last_updated with one multi-row UPDATE per chunk. A crash loses at most one
+ * flush interval of touches, which only matters for baskets about to expire (after a day of inactivity).
+ */
+@Slf4j
+@Component
+public class BasketTouchTracker {
+
+    private static final int MAX_IDS_PER_UPDATE = 500;
+
+    private final BasketRepository basketRepository;
+    private final Map<UUID, LocalDateTime> pending = new ConcurrentHashMap<>();
+    private final Map<UUID, LocalDateTime> flushing = new ConcurrentHashMap<>();
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    private final LongAdder touches = new LongAdder();
+    private final LongAdder statements = new LongAdder();
+    private final LongAdder rowsUpdated = new LongAdder();
+
+    @Autowired
+    public BasketTouchTracker(BasketRepository basketRepository) {
+        this.basketRepository = basketRepository;
+    }
+
+    public void touch(UUID basketId) {
+        touches.increment();
+        pending.merge(basketId, LocalDateTime.now(), (previous, now) -> now.isAfter(previous) ? now : previous);
+    }
+
+    /** the latest activity on the basket that is not in the database yet */
+    public Optional<LocalDateTime> lastTouched(UUID basketId) {
+        LocalDateTime pendingTouch = pending.get(basketId);
+        LocalDateTime flushingTouch = flushing.get(basketId);
+        if (pendingTouch == null)
+            return Optional.ofNullable(flushingTouch);
+        if (flushingTouch == null)
+            return Optional.of(pendingTouch);
+        return Optional.of(pendingTouch.isAfter(flushingTouch) ? pendingTouch : flushingTouch);
+    }
+
+    @Scheduled(fixedDelayString = "${basket.touch.flush-interval-ms:5000}")
+    public void flush() {
+        flushLock.lock();
+        try {
+            // in flushing before it leaves pending, so lastTouched (pending, then flushing) never misses it; a touch
+            // arriving while we copy stays in pending for the next flush (remove only drops the value we copied)
+            for (Map.Entry<UUID, LocalDateTime> entry : pending.entrySet()) {
+                flushing.put(entry.getKey(), entry.getValue());
+                pending.remove(entry.getKey(), entry.getValue());
+            }
+            if (flushing.isEmpty())
+                return;
+
+            // oldest first, so each chunk is written with a time close to all of its touches
+            List<Map.Entry<UUID, LocalDateTime>> touched = new ArrayList<>(flushing.entrySet());
+            touched.sort(Map.Entry.comparingByValue());
+            for (int from = 0; from < touched.size(); from += MAX_IDS_PER_UPDATE) {
+                List<Map.Entry<UUID, LocalDateTime>> chunk = touched.subList(from, Math.min(from + MAX_IDS_PER_UPDATE, touched.size()));
+                List<UUID> ids = chunk.stream().map(Map.Entry::getKey).toList();
+                rowsUpdated.add(basketRepository.touchAll(ids, chunk.getLast().getValue()));
+                statements.increment();
+                ids.forEach(flushing::remove);
+            }
+        } catch (RuntimeException e) {
+            // keep what was not written for the next flush
+            log.warn("Could not flush {} basket touches: {}", flushing.size(), e.getMessage());
+            flushing.forEach((id, touchedAt) -> pending.merge(id, touchedAt, (a, b) -> a.isAfter(b) ? a : b));
+            flushing.clear();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    @PreDestroy
+    void flushOnShutdown() {
+        flush();
+    }
+
+    public long getTouches() {
+        return touches.sum();
+    }
+
+    /** UPDATE statements issued by flushes */
+    public long getStatements() {
+        return statements.sum();
+    }
+
+    public long getRowsUpdated() {
+        return rowsUpdated.sum();
+    }
+
+    public int getPendingCount() {
+        return pending.size();
+    }
+}
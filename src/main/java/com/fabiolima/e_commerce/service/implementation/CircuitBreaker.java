@@ -0,0 +1,67 @@
+package com.fabiolima.e_commerce.service.implementation;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Consecutive-failure circuit breaker.
+ * CLOSED: calls go through. After {@code failureThreshold} failures in a row it becomes OPEN and refuses
+ * every call for {@code openDuration}. Then a single trial call is let through (HALF_OPEN):
+ * its success closes the breaker, its failure opens it again.
+ */
+public final class CircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final int failureThreshold;
+    private final long openNanos;
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private static final long NOT_OPENED = Long.MIN_VALUE;
+
+    private final AtomicLong openedAt = new AtomicLong(NOT_OPENED);
+    private final AtomicInteger trialInFlight = new AtomicInteger();
+
+    public CircuitBreaker(int failureThreshold, Duration openDuration) {
+        this.failureThreshold = failureThreshold;
+        this.openNanos = openDuration.toNanos();
+    }
+
+    public boolean tryAcquire() {
+        return tryAcquire(System.nanoTime());
+    }
+
+    boolean tryAcquire(long now) {
+        long opened = openedAt.get();
+        if (opened == NOT_OPENED)
+            return true;
+        if (now - opened < openNanos)
+            return false;
+        // half open: only one trial call at a time
+        return trialInFlight.compareAndSet(0, 1);
+    }
+
+    public void onSuccess() {
+        consecutiveFailures.set(0);
+        openedAt.set(NOT_OPENED);
+        trialInFlight.set(0);
+    }
+
+    public void onFailure() {
+        onFailure(System.nanoTime());
+    }
+
+    void onFailure(long now) {
+        if (consecutiveFailures.incrementAndGet() >= failureThreshold || trialInFlight.get() == 1) {
+            openedAt.set(now);
+            trialInFlight.set(0);
+        }
+    }
+
+    public State getState() {
+        long opened = openedAt.get();
+        if (opened == NOT_OPENED)
+            return State.CLOSED;
+        return System.nanoTime() - opened < openNanos ? State.OPEN : State.HALF_OPEN;
+    }
+}
@@ -1,38 +1,46 @@
 package com.fabiolima.e_commerce.service.implementation;
 
+import com.fabiolima.e_commerce.concurrency.RetryOnConflict;
 import com.fabiolima.e_commerce.exceptions.ForbiddenException;
 import com.fabiolima.e_commerce.exceptions.NotFoundException;
 import com.fabiolima.e_commerce.entities.*;
+import com.fabiolima.e_commerce.entities.enums.BasketStatus;
 import com.fabiolima.e_commerce.entities.enums.OrderStatus;
+import com.fabiolima.e_commerce.monitoring.BusinessMetrics;
 import com.fabiolima.e_commerce.repository.OrderRepository;
 import com.fabiolima.e_commerce.service.OrderService;
 import com.fabiolima.e_commerce.service.ProductService;
 import com.fabiolima.e_commerce.service.UserService;
-import jakarta.transaction.Transactional;
+import io.micrometer.observation.annotation.Observed;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.util.*;
 
 @Slf4j
 @Service
+@Observed(name = "ecommerce.service")
 public class OrderServiceImpl implements OrderService {
 
     private final OrderRepository orderRepository;
     private final UserService userService;
     private final ProductService productService;
+    private final BusinessMetrics businessMetrics;
 
     @Autowired
     public OrderServiceImpl (OrderRepository orderRepository,
-                             UserService userService, ProductService productService){
+                             UserService userService, ProductService productService,
+                             BusinessMetrics businessMetrics){
         this.orderRepository = orderRepository;
         this.userService = userService;
         this.productService = productService;
+        this.businessMetrics = businessMetrics;
     }
 
     @Override
@@ -43,10 +51,12 @@ public class OrderServiceImpl implements OrderService {
         User user = userService.findUserByUserId(userId);
 
         //2 - Convert basket to order
+        OrderStatus previousStatus = basket.getOrder() == null ? null : basket.getOrder().getOrderStatus();
         Order order = convertBasketToOrder(basket);
 
         //3 - Set Pending status to order
         order.setOrderStatus(OrderStatus.PENDING);
+        businessMetrics.orderTransition(previousStatus, OrderStatus.PENDING);
 
         //4 - Link order to user
         user.addOrderToUser(order);
@@ -77,7 +87,7 @@ public class OrderServiceImpl implements OrderService {
         //transfer data from the basket to order
         transferBasketDataToOrder(basket, order);
 
-        log.info("items in order after transfer: {}", order.getItems());
+        log.debug("{} items transferred from basket {} to order", order.getItems().size(), basket.getId());
 
         return orderRepository.save(order);
     }
@@ -102,6 +112,7 @@ public class OrderServiceImpl implements OrderService {
     }
 
     @Override
+    @Transactional(readOnly = true)
     public Order returnNewestPendingOrder(UUID userId) {
         //1- Fetch user
         User user = userService.findUserByUserId(userId);
@@ -118,6 +129,7 @@ public class OrderServiceImpl implements OrderService {
     }
 
     @Override
+    @Transactional(readOnly = true)
     public Page<Order> getUserOrders(int pgNum, int pgSize, UUID userId) {
 
         userService.findUserByUserId(userId);
@@ -127,6 +139,7 @@ public class OrderServiceImpl implements OrderService {
     }
 
     @Override
+    @Transactional(readOnly = true)
     public Page<Order> getUserOrdersByStatus(int pgNum, int pgSize, UUID userId, String status) {
         //Check if orderStatus is a valid Enum
         if (!OrderStatus.isValid(status))
@@ -140,13 +153,15 @@ public class OrderServiceImpl implements OrderService {
     }
 
     @Override
+    @Transactional(readOnly = true)
     public Order findOrderById(UUID orderId){
 
         return orderRepository.findById(orderId)
-                .orElseThrow(() -> new NotFoundException(String.format("Order with Id %s not found.", orderId.toString())));
+                .orElseThrow(() -> new NotFoundException("Order with Id %s not found.", orderId));
     }
 
     @Override
+    @RetryOnConflict
     @Transactional
     public Order updateOrderStatus(UUID orderId, String orderStatus) {
 
@@ -158,6 +173,7 @@ public class OrderServiceImpl implements OrderService {
         Order order = findOrderById(orderId);
 
         // set new status to order depending on the current Status
+        OrderStatus previousStatus = order.getOrderStatus();
         String currentStatus = order.getOrderStatus().toString();
         switch (currentStatus){
             case "PENDING" : if(orderStatus.equalsIgnoreCase("PAID"))
@@ -175,16 +191,20 @@ public class OrderServiceImpl implements OrderService {
             default: throw new ForbiddenException("Current Status " + currentStatus + " cannot be updated.");
         }
 
+        businessMetrics.orderTransition(previousStatus, order.getOrderStatus());
+
         if(order.getOrderStatus().toString().equalsIgnoreCase("cancelled"))
-            productService.incrementStocksWhenOrderIsCancelled(order);
+            returnStockOfCancelledOrder(order);
 
         //persist new order
         return orderRepository.save(order);
     }
 
     @Override
+    @RetryOnConflict
+    @Transactional
     public Order cancelOrder(UUID orderId) {
-        log.info("cancel order being called");
+        log.debug("Cancelling order {}", orderId);
         //retrieve order
         Order order = findOrderById(orderId);
         //retrieve current status of order
@@ -193,13 +213,27 @@ public class OrderServiceImpl implements OrderService {
         //check if its possible to cancel order
         if (Objects.requireNonNull(currentStatus) == OrderStatus.PENDING) {
             order.setOrderStatus(OrderStatus.CANCELLED);
+            businessMetrics.orderTransition(currentStatus, OrderStatus.CANCELLED);
         } else {
             throw new ForbiddenException("Only orders with status PENDING can be cancelled");
         }
 
         log.info("Order id {} has been cancelled",orderId);
-        productService.incrementStocksWhenOrderIsCancelled(order);
+        returnStockOfCancelledOrder(order);
         return orderRepository.save(order);
     }
 
+    /**
+     * Until checkout the items of the order are still in the ACTIVE basket, which gives their stock back itself when
+     * it is cleared, deactivated or expires. A checked-out basket gives it back here and becomes INACTIVE, so its
+     * items are neither counted as sold nor returned twice.
+     */
+    private void returnStockOfCancelledOrder(Order order) {
+        Basket basket = order.getBasket();
+        if (basket == null || basket.getBasketStatus() != BasketStatus.CHECKED_OUT)
+            return;
+        productService.incrementStocksWhenOrderIsCancelled(order);
+        basket.setBasketStatus(BasketStatus.INACTIVE);
+    }
+
 }
\ No newline at end of file
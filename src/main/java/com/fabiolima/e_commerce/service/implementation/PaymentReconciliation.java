@@ -0,0 +1,153 @@
+package com.fabiolima.e_commerce.service.implementation;
+
+import com.fabiolima.e_commerce.entities.Order;
+import com.fabiolima.e_commerce.entities.Payment;
+import com.fabiolima.e_commerce.entities.enums.OrderStatus;
+import com.fabiolima.e_commerce.entities.enums.PaymentStatus;
+import com.fabiolima.e_commerce.exceptions.PayPalException;
+import com.fabiolima.e_commerce.exceptions.PaymentOutcomeUnknownException;
+import com.fabiolima.e_commerce.exceptions.ServiceUnavailableException;
+import com.fabiolima.e_commerce.repository.PaymentRepository;
+import com.fabiolima.e_commerce.service.OrderService;
+import com.fabiolima.e_commerce.service.PaypalGateway;
+import com.paypal.orders.Capture;
+import com.paypal.orders.PurchaseUnit;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * Settles the PayPal captures whose outcome is unknown, or that succeeded but could not be recorded on the order.
+ * They are recorded as a PENDING payment of the order, and a job sends the capture again: it carries the same
+ * PayPal-Request-Id, so PayPal answers with the first capture if there was one instead of taking the money twice.
+ * The order is marked PAID once PayPal reports the money taken; if it can no longer be paid (it was cancelled
+ * meanwhile and its stock is back on sale) the capture is refunded.
+ */
+@Slf4j
+@Service
+public class PaymentReconciliation {
+
+    private final PaypalGateway paypalGateway;
+    private final OrderService orderService;
+    private final PaymentRepository paymentRepository;
+    private final ResponseAssembler responseAssembler;
+    private final int batchSize;
+
+    public PaymentReconciliation(PaypalGateway paypalGateway, OrderService orderService,
+                                 PaymentRepository paymentRepository, ResponseAssembler responseAssembler,
+                                 @Value("${paypal.reconciliation.batch-size:50}") int batchSize) {
+        this.paypalGateway = paypalGateway;
+        this.orderService = orderService;
+        this.paymentRepository = paymentRepository;
+        this.responseAssembler = responseAssembler;
+        this.batchSize = batchSize;
+    }
+
+    /** records that the capture of the order's PayPal order may have taken money the order does not show */
+    public void recordUnknownOutcome(UUID orderId, String reason) {
+        Payment payment = responseAssembler.write(() -> {
+            Order order = orderService.findOrderById(orderId);
+            Payment pending = paymentRepository.findByOrder_Id(orderId).orElseGet(() -> Payment.builder()
+                    .order(order)
+                    .paymentMethod("PAYPAL")
+                    .amount(order.getTotalPrice())
+                    .build());
+            pending.setPaymentStatus(PaymentStatus.PENDING);
+            return paymentRepository.save(pending);
+        }, Function.identity());
+        log.warn("Payment {} of order {} left to reconciliation: {}", payment.getId(), orderId, reason);
+    }
+
+    @Scheduled(fixedDelayString = "${paypal.reconciliation.interval-ms:60000}")
+    public void reconcilePendingPayments() {
+        List<UUID> pending = responseAssembler.read(() -> paymentRepository.findByPaymentStatus(PaymentStatus.PENDING,
+                        PageRequest.of(0, batchSize, Sort.by("id"))),
+                payments -> payments.stream().map(Payment::getId).toList());
+        for (UUID paymentId : pending) {
+            try {
+                reconcile(paymentId);
+            } catch (RuntimeException e) {
+                log.error("Could not reconcile payment {}, trying again on the next run", paymentId, e);
+            }
+        }
+    }
+
+    void reconcile(UUID paymentId) {
+        String paypalOrderId = responseAssembler.read(() -> paymentRepository.findById(paymentId).orElseThrow(),
+                payment -> payment.getOrder().getPaypalOrderId());
+
+        com.paypal.orders.Order captured;
+        try {
+            captured = paypalGateway.captureOrder(paypalOrderId);
+        } catch (PaymentOutcomeUnknownException | ServiceUnavailableException e) {
+            log.info("PayPal order {} is still unsettled: {}", paypalOrderId, e.getMessage());
+            return;
+        } catch (PayPalException e) {
+            // PayPal answered with a refusal (not approved, expired): no money was taken
+            settle(paymentId, PaymentStatus.FAILED, null);
+            log.warn("Capture of PayPal order {} was refused: {}", paypalOrderId, e.getMessage());
+            return;
+        }
+
+        if (!"COMPLETED".equalsIgnoreCase(captured.status())) {
+            settle(paymentId, PaymentStatus.FAILED, null);
+            log.warn("PayPal order {} is {} after reconciliation", paypalOrderId, captured.status());
+            return;
+        }
+        String captureId = captureId(captured);
+        if (markPaid(paymentId, captureId)) {
+            log.info("PayPal order {} was captured, its order is paid", paypalOrderId);
+            return;
+        }
+        if (captureId == null)
+            throw new IllegalStateException("PayPal order " + paypalOrderId + " was captured but has no capture to refund");
+        // a refund with no answer throws and the payment stays PENDING: the next run refunds with the same request id
+        paypalGateway.refundCapture(captureId);
+        settle(paymentId, PaymentStatus.REFUNDED, captureId);
+        log.warn("PayPal order {} was captured for an order that can no longer be paid, capture {} refunded",
+                paypalOrderId, captureId);
+    }
+
+    // false when the order was cancelled before the capture could be recorded on it
+    private boolean markPaid(UUID paymentId, String captureId) {
+        return responseAssembler.write(() -> {
+            Payment payment = paymentRepository.findById(paymentId).orElseThrow();
+            Order order = payment.getOrder();
+            if (order.getOrderStatus() == OrderStatus.CANCELLED)
+                return false;
+            if (order.getOrderStatus() == OrderStatus.PENDING)
+                orderService.updateOrderStatus(order.getId(), "PAID");
+            payment.setPaymentStatus(PaymentStatus.COMPLETED);
+            payment.setTransactionId(captureId);
+            return true;
+        }, Function.identity());
+    }
+
+    private void settle(UUID paymentId, PaymentStatus status, String captureId) {
+        responseAssembler.write(() -> {
+            Payment payment = paymentRepository.findById(paymentId).orElseThrow();
+            payment.setPaymentStatus(status);
+            payment.setTransactionId(captureId);
+            return payment;
+        }, Function.identity());
+    }
+
+    static String captureId(com.paypal.orders.Order captured) {
+        if (captured.purchaseUnits() == null)
+            return null;
+        return captured.purchaseUnits().stream()
+                .map(PurchaseUnit::payments)
+                .filter(payments -> payments != null && payments.captures() != null)
+                .flatMap(payments -> payments.captures().stream())
+                .map(Capture::id)
+                .findFirst()
+                .orElse(null);
+    }
+}
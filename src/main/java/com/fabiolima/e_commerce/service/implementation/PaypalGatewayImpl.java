@@ -0,0 +1,260 @@
+package com.fabiolima.e_commerce.service.implementation;
+
+import com.fabiolima.e_commerce.exceptions.PayPalException;
+import com.fabiolima.e_commerce.exceptions.PaymentOutcomeUnknownException;
+import com.fabiolima.e_commerce.exceptions.ServiceUnavailableException;
+import com.fabiolima.e_commerce.monitoring.jfr.PaypalCallEvent;
+import com.fabiolima.e_commerce.service.PaypalGateway;
+import com.paypal.core.PayPalHttpClient;
+import com.paypal.http.HttpRequest;
+import com.paypal.http.exceptions.HttpException;
+import com.paypal.orders.Order;
+import com.paypal.orders.OrderRequest;
+import com.paypal.orders.OrdersCaptureRequest;
+import com.paypal.orders.OrdersCreateRequest;
+import com.paypal.payments.CapturesRefundRequest;
+import com.paypal.payments.Refund;
+import com.paypal.payments.RefundRequest;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs the PayPal SDK calls on the paypal executor with:
+ * - a deadline per call, after which the caller gets a "provider busy" answer,
+ * - a bulkhead capping the calls in flight (a hung call keeps its permit until the HTTP client's own
+ *   connect or read timeout ends it, see PaypalConfiguration),
+ * - a circuit breaker that stops calling PayPal for a while after consecutive failures (a timeout, no answer or a 5xx;
+ *   a 4xx is PayPal refusing this request, e.g. an unapproved order, and counts as a healthy answer).
+ * Each call that reaches PayPal is observed as paypal.call (a span in the caller's trace).
+ * A capture (refund) carries a PayPal-Request-Id derived from the PayPal order (capture), so sending it again returns
+ * the first one instead of moving the money twice. A capture or refund with no answer may have succeeded: it fails
+ * with PaymentOutcomeUnknownException instead of "provider busy", which would invite the client to retry.
+ */
+@Slf4j
+@Service
+public class PaypalGatewayImpl implements PaypalGateway {
+
+    public enum Operation { CREATE_ORDER, CAPTURE_ORDER, REFUND_CAPTURE }
+
+    private static final String PROVIDER_BUSY = "Payment provider is busy. Please retry in a moment.";
+
+    private final PayPalHttpClient payPalHttpClient;
+    private final Executor paypalExecutor;
+    private final Semaphore bulkhead;
+    private final CircuitBreaker circuitBreaker;
+    private final Duration timeout;
+    private final Map<Operation, OperationStats> stats = new EnumMap<>(Operation.class);
+    private final ObservationRegistry observationRegistry;
+
+    public PaypalGatewayImpl(PayPalHttpClient payPalHttpClient,
+                             @Qualifier("paypalExecutor") Executor paypalExecutor,
+                             ObservationRegistry observationRegistry,
+                             @Value("${paypal.gateway.timeout-ms:10000}") long timeoutMillis,
+                             @Value("${paypal.gateway.max-concurrent-calls:50}") int maxConcurrentCalls,
+                             @Value("${paypal.gateway.circuit-breaker.failure-threshold:5}") int failureThreshold,
+                             @Value("${paypal.gateway.circuit-breaker.open-seconds:30}") long openSeconds) {
+        this.payPalHttpClient = payPalHttpClient;
+        this.paypalExecutor = paypalExecutor;
+        this.observationRegistry = observationRegistry;
+        this.timeout = Duration.ofMillis(timeoutMillis);
+        this.bulkhead = new Semaphore(maxConcurrentCalls);
+        this.circuitBreaker = new CircuitBreaker(failureThreshold, Duration.ofSeconds(openSeconds));
+        for (Operation operation : Operation.values())
+            stats.put(operation, new OperationStats());
+    }
+
+    @Override
+    public CompletableFuture<Order> createOrderAsync(OrderRequest orderRequest) {
+        return execute(Operation.CREATE_ORDER, null, new OrdersCreateRequest().requestBody(orderRequest));
+    }
+
+    @Override
+    public CompletableFuture<Order> captureOrderAsync(String paypalOrderId) {
+        OrdersCaptureRequest request = new OrdersCaptureRequest(paypalOrderId);
+        request.header("PayPal-Request-Id", "capture-" + paypalOrderId);
+        request.requestBody(new OrderRequest());
+        return execute(Operation.CAPTURE_ORDER, paypalOrderId, request);
+    }
+
+    @Override
+    public CompletableFuture<Refund> refundCaptureAsync(String captureId) {
+        CapturesRefundRequest request = new CapturesRefundRequest(captureId);
+        request.header("PayPal-Request-Id", "refund-" + captureId);
+        request.requestBody(new RefundRequest());
+        return execute(Operation.REFUND_CAPTURE, captureId, request);
+    }
+
+    @Override
+    public Order createOrder(OrderRequest orderRequest) {
+        return await(createOrderAsync(orderRequest));
+    }
+
+    @Override
+    public Order captureOrder(String paypalOrderId) {
+        return await(captureOrderAsync(paypalOrderId));
+    }
+
+    @Override
+    public Refund refundCapture(String captureId) {
+        return await(refundCaptureAsync(captureId));
+    }
+
+    private <T> CompletableFuture<T> execute(Operation operation, String paypalOrderId, HttpRequest<T> request) {
+        OperationStats operationStats = stats.get(operation);
+
+        if (!bulkhead.tryAcquire()) {
+            operationStats.rejected.increment();
+            return CompletableFuture.failedFuture(new ServiceUnavailableException(PROVIDER_BUSY));
+        }
+        if (!circuitBreaker.tryAcquire()) {
+            bulkhead.release();
+            operationStats.rejected.increment();
+            return CompletableFuture.failedFuture(new ServiceUnavailableException(PROVIDER_BUSY, 5));
+        }
+
+        Observation observation = Observation.createNotStarted("paypal.call", observationRegistry)
+                .contextualName("paypal " + operation.name().toLowerCase().replace('_', '-'))
+                .lowCardinalityKeyValue("operation", operation.name())
+                .start();
+        PaypalCallEvent event = new PaypalCallEvent();
+        event.begin();
+        long start = System.nanoTime();
+        CompletableFuture<T> call = CompletableFuture.supplyAsync(() -> {
+            try (Observation.Scope scope = observation.openScope()) {
+                return payPalHttpClient.execute(request).result();
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            } finally {
+                bulkhead.release();
+            }
+        }, paypalExecutor);
+
+        return call.orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS)
+                .handle((result, failure) -> {
+                    long elapsed = System.nanoTime() - start;
+                    operationStats.record(elapsed, failure);
+                    commit(event, operation, result instanceof Order order ? order.id() : paypalOrderId, failure);
+                    if (failure == null) {
+                        circuitBreaker.onSuccess();
+                        observation.stop();
+                        return result;
+                    }
+                    if (isPaypalFailure(unwrap(failure)))
+                        circuitBreaker.onFailure();
+                    else
+                        circuitBreaker.onSuccess();
+                    observation.error(unwrap(failure));
+                    observation.stop();
+                    throw translate(operation, failure);
+                });
+    }
+
+    private static void commit(PaypalCallEvent event, Operation operation, String paypalOrderId, Throwable failure) {
+        if (!event.shouldCommit())
+            return;
+        event.operation = operation.name();
+        event.paypalOrderId = paypalOrderId;
+        event.outcome = failure == null ? "SUCCESS" : unwrap(failure) instanceof TimeoutException ? "TIMEOUT" : "FAILURE";
+        event.commit();
+    }
+
+    private RuntimeException translate(Operation operation, Throwable failure) {
+        Throwable cause = unwrap(failure);
+        if (operation != Operation.CREATE_ORDER && isUnanswered(cause)) {
+            log.warn("PayPal {} got no answer, the money may have been moved", operation, cause);
+            return new PaymentOutcomeUnknownException("No answer from PayPal to " + operation, cause);
+        }
+        // the 503 carries no cause (business exceptions are stackless), the log keeps it
+        if (cause instanceof TimeoutException) {
+            log.warn("PayPal {} did not answer within {} ms", operation, timeout.toMillis(), cause);
+            return new ServiceUnavailableException(PROVIDER_BUSY);
+        }
+        log.error("PayPal {} failed: {}", operation, cause.getMessage(), cause);
+        return new PayPalException("Error calling PayPal: " + cause.getMessage(), cause);
+    }
+
+    // the deadline passed or the connection failed before PayPal answered (an HttpException is an answer)
+    private static boolean isUnanswered(Throwable cause) {
+        return cause instanceof TimeoutException || (cause instanceof IOException && !(cause instanceof HttpException));
+    }
+
+    // what the breaker counts: PayPal did not answer or answered with a 5xx
+    private static boolean isPaypalFailure(Throwable cause) {
+        return isUnanswered(cause) || (cause instanceof HttpException answer && answer.statusCode() >= 500);
+    }
+
+    private static Throwable unwrap(Throwable failure) {
+        return failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+    }
+
+    private <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServiceUnavailableException(PROVIDER_BUSY);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException)
+                throw runtimeException;
+            throw new PayPalException("Error calling PayPal: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    public OperationStats getStats(Operation operation) {
+        return stats.get(operation);
+    }
+
+    public CircuitBreaker.State getCircuitBreakerState() {
+        return circuitBreaker.getState();
+    }
+
+    public int getAvailableCallPermits() {
+        return bulkhead.availablePermits();
+    }
+
+    public static final class OperationStats {
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder timeouts = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+        private void record(long elapsedNanos, Throwable failure) {
+            calls.increment();
+            totalNanos.add(elapsedNanos);
+            maxNanos.accumulate(elapsedNanos);
+            if (failure != null) {
+                failures.increment();
+                Throwable cause = unwrap(failure);
+                if (cause instanceof TimeoutException)
+                    timeouts.increment();
+            }
+        }
+
+        public long getCalls() { return calls.sum(); }
+        public long getFailures() { return failures.sum(); }
+        public long getTimeouts() { return timeouts.sum(); }
+        public long getRejected() { return rejected.sum(); }
+        public long getTotalNanos() { return totalNanos.sum(); }
+        public long getMaxNanos() { return maxNanos.get(); }
+    }
+}
@@ -1,40 +1,136 @@
 package com.fabiolima.e_commerce.service.implementation;
 
+import com.fabiolima.e_commerce.dto.OrderResponse;
 import com.fabiolima.e_commerce.exceptions.NotFoundException;
 import com.fabiolima.e_commerce.exceptions.PayPalException;
+import com.fabiolima.e_commerce.exceptions.PaymentOutcomeUnknownException;
+import com.fabiolima.e_commerce.exceptions.ServiceUnavailableException;
 import com.fabiolima.e_commerce.repository.OrderRepository;
 import com.fabiolima.e_commerce.service.OrderService;
-import com.paypal.core.PayPalHttpClient;
-import com.paypal.http.HttpResponse;
+import com.fabiolima.e_commerce.service.PaypalGateway;
 import com.paypal.orders.*;
+import io.micrometer.observation.annotation.Observed;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
-import java.io.IOException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Optional;
 import java.util.UUID;
-
+import java.util.function.Function;
+
+/**
+ * PayPal checkout flows are split in three phases: a short local transaction that reads what PayPal needs,
+ * the remote call with no transaction (and so no pooled connection) held, and a short local transaction
+ * that records the outcome. A slow PayPal therefore never pins a database connection.
+ * The commit phases go through {@link ResponseAssembler#write}, so a conflicting update (e.g. the user
+ * cancelling the order meanwhile) is retried there without calling PayPal again.
+ * A capture PayPal did not answer is not failed (the money may be taken): the order stays PENDING and the
+ * capture is left to {@link PaymentReconciliation}, as is a capture that could not be recorded on the order
+ * (which is refunded if the order can no longer be paid).
+ */
 @Slf4j
 @Service
+@Observed(name = "ecommerce.service")
 public class PaypalServiceImpl {
 
-    private final PayPalHttpClient payPalHttpClient;
+    private final PaypalGateway paypalGateway;
     private final OrderService entityOrderService;
     private final OrderRepository entityOrderRepository;
+    private final ResponseAssembler responseAssembler;
+    private final PaymentReconciliation paymentReconciliation;
+    private final TransactionTemplate readOnlyTransaction;
 
     @Autowired
-    public PaypalServiceImpl(PayPalHttpClient payPalHttpClient, OrderService entityOrderService, OrderRepository entityOrderRepository) {
-        this.payPalHttpClient = payPalHttpClient;
+    public PaypalServiceImpl(PaypalGateway paypalGateway, OrderService entityOrderService,
+                             OrderRepository entityOrderRepository, ResponseAssembler responseAssembler,
+                             PaymentReconciliation paymentReconciliation, PlatformTransactionManager transactionManager) {
+        this.paypalGateway = paypalGateway;
         this.entityOrderService = entityOrderService;
         this.entityOrderRepository = entityOrderRepository;
+        this.responseAssembler = responseAssembler;
+        this.paymentReconciliation = paymentReconciliation;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
     }
 
     public String createOrder(UUID orderId) {
-        //Retrieve entity order
-        com.fabiolima.e_commerce.entities.Order entityOrder = entityOrderService.findOrderById(orderId);
+        //1 - local prepare: read the entity order and build the PayPal request
+        OrderRequest orderRequest = readOnlyTransaction.execute(status ->
+                buildOrderRequest(entityOrderService.findOrderById(orderId)));
+
+        //2 - remote call: no transaction and no connection held from here
+        Order paypalOrder;
+        String approveUrl;
+        try {
+            paypalOrder = paypalGateway.createOrder(orderRequest);
+
+            log.info("PayPal order {} created with status {}", paypalOrder.id(), paypalOrder.status());
+
+            // Get the 'approve' URL from the PayPal response
+            approveUrl = paypalOrder.links().stream()
+                    .filter(link -> "approve".equals(link.rel()))
+                    .findFirst()
+                    .map(LinkDescription::href)
+                    .orElseThrow(() -> new RuntimeException("No approval URL found"));
+
+        } catch (ServiceUnavailableException | PayPalException e) {
+            throw e; // already translated by the gateway
+        } catch (Exception e) {
+            log.error("Error creating PayPal order: {} ", e.getMessage());
+            throw new PayPalException("Error creating PayPal order: " + e.getMessage());
+        }
+
+        //3 - local commit: bind system order with PayPal order
+        String paypalOrderId = paypalOrder.id();
+        responseAssembler.write(() -> {
+            com.fabiolima.e_commerce.entities.Order entityOrder = entityOrderService.findOrderById(orderId);
+            entityOrder.setPaypalOrderId(paypalOrderId);
+            return entityOrderRepository.save(entityOrder);
+        }, Function.identity());
+
+        // Redirect the user to the PayPal approval URL
+        return approveUrl; // This will redirect the user to the URL approval
+    }
+
+    public OrderResponse captureOrder(String token) {
+
+        //1 - local prepare: make sure the PayPal order belongs to a system order before capturing the payment
+        UUID systemOrderId = readOnlyTransaction.execute(status -> entityOrderRepository.findByPaypalOrderId(token)
+                .map(com.fabiolima.e_commerce.entities.Order::getId)
+                .orElseThrow(() -> new NotFoundException("Could Not Find Order containing paypal Id %s", token)));
+
+        //2 - remote call: execute capture request (deadline, bulkhead and circuit breaker are applied by the gateway)
+        Order capturedOrder;
+        try {
+            capturedOrder = paypalGateway.captureOrder(token);
+        } catch (PaymentOutcomeUnknownException e) {
+            paymentReconciliation.recordUnknownOutcome(systemOrderId, e.getMessage());
+            return responseAssembler.read(() -> entityOrderService.findOrderById(systemOrderId), OrderResponse::from);
+        }
+        log.info("PayPal Response: Order id {} is {}", capturedOrder.id(), capturedOrder.status());
+
+        //3 - local commit: mark the system order as paid and build the response while the order is still attached
+        OrderResponse systemOrder;
+        try {
+            systemOrder = responseAssembler.write(() ->
+                    "COMPLETED".equalsIgnoreCase(capturedOrder.status())
+                            ? entityOrderService.updateOrderStatus(systemOrderId, "PAID")
+                            : entityOrderService.findOrderById(systemOrderId), OrderResponse::from);
+        } catch (RuntimeException e) {
+            // the money is taken but the order does not show it (e.g. cancelled meanwhile)
+            if ("COMPLETED".equalsIgnoreCase(capturedOrder.status()))
+                paymentReconciliation.recordUnknownOutcome(systemOrderId, "captured but not recorded: " + e.getMessage());
+            throw e;
+        }
+
+        log.info("SystemOrder status: {}", systemOrder.getOrderStatus());
+        return systemOrder;
+    }
 
+    public OrderRequest buildOrderRequest(com.fabiolima.e_commerce.entities.Order entityOrder) {
         //create the purchase unit request list
         List<PurchaseUnitRequest> purchaseUnitRequests = new ArrayList<>();
 
@@ -65,70 +161,9 @@ public class PaypalServiceImpl {
                 .userAction("CONTINUE");
 
         //build PayPal order request
-        OrderRequest orderRequest = new OrderRequest()
+        return new OrderRequest()
                 .checkoutPaymentIntent("CAPTURE") //to capture payment
                 .purchaseUnits(purchaseUnitRequests)
                 .applicationContext(applicationContext);
-
-
-        //call PayPal to create the order
-        try {
-            OrdersCreateRequest request = new OrdersCreateRequest()
-                    .requestBody(orderRequest);
-
-            HttpResponse<Order> response = payPalHttpClient.execute(request);
-
-            log.info("PayPal Order ID: " + response.result().id());  // Log PayPal order ID
-            log.info("PayPal Order Status: " + response.result().status());  // Log PayPal order status
-
-            // Get the 'approve' URL from the PayPal response
-            String approveUrl = response.result().links().stream()
-                    .filter(link -> "approve".equals(link.rel()))
-                    .findFirst()
-                    .map(LinkDescription::href)
-                    .orElseThrow(() -> new RuntimeException("No approval URL found"));
-
-            //Bind system order with PayPal order
-            String paypalOrderId = response.result().id();
-            entityOrder.setPaypalOrderId(paypalOrderId);
-            entityOrderRepository.save(entityOrder);
-
-            // Redirect the user to the PayPal approval URL
-            return approveUrl; // This will redirect the user to the URL approval
-
-        } catch (Exception e) {
-            log.error("Error creating PayPal order: {} ", e.getMessage());
-            throw new PayPalException("Error creating PayPal order: " + e.getMessage());
-        }
-    }
-
-    public com.fabiolima.e_commerce.entities.Order captureOrder(String token) {
-
-        try {
-            //create capture request
-            OrdersCaptureRequest request = new OrdersCaptureRequest(token);
-            request.requestBody(new OrderRequest());
-
-            //execute capture request
-            HttpResponse<Order> response = payPalHttpClient.execute(request);
-            log.info("PayPal Response: Order id {} is COMPLETED", response.result().id());
-
-            Optional<com.fabiolima.e_commerce.entities.Order> systemOrder = entityOrderRepository.findByPaypalOrderId(token);
-            if(systemOrder.isEmpty())
-                throw new NotFoundException(String.format("Could Not Find Order containing paypal Id %s", token));
-
-            if("COMPLETED".equalsIgnoreCase(response.result().status())){
-                //retrieve system order from paypal id
-                UUID systemOrderId = systemOrder.get().getId();
-                entityOrderService.updateOrderStatus(systemOrderId, "PAID");
-            }
-
-            log.info("SystemOrder status: {}", systemOrder.get().getOrderStatus());
-            return systemOrder.get();
-
-        } catch (IOException e) {
-            log.error("Error capturing order: {}", e.getMessage());
-            throw new PayPalException("Error capturing order: " + e.getMessage());
-        }
     }
-}
\ No newline at end of file
+}
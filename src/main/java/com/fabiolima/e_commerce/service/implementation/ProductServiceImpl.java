@@ -1,5 +1,6 @@
 package com.fabiolima.e_commerce.service.implementation;
 
+import com.fabiolima.e_commerce.concurrency.RetryOnConflict;
 import com.fabiolima.e_commerce.exceptions.ForbiddenException;
 import com.fabiolima.e_commerce.exceptions.InsufficientStockException;
 import com.fabiolima.e_commerce.exceptions.NotFoundException;
@@ -7,8 +8,11 @@ import com.fabiolima.e_commerce.entities.Basket;
 import com.fabiolima.e_commerce.entities.BasketItem;
 import com.fabiolima.e_commerce.entities.Product;
 import com.fabiolima.e_commerce.entities.Order;
+import com.fabiolima.e_commerce.monitoring.BusinessMetrics;
+import com.fabiolima.e_commerce.monitoring.jfr.StockUpdateEvent;
 import com.fabiolima.e_commerce.repository.ProductRepository;
 import com.fabiolima.e_commerce.service.ProductService;
+import io.micrometer.observation.annotation.Observed;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
@@ -25,13 +29,19 @@ import java.util.UUID;
 
 @Slf4j
 @Service
+@Observed(name = "ecommerce.service")
 public class ProductServiceImpl implements ProductService {
 
     private final ProductRepository productRepository;
+    private final ProductStockShards productStockShards;
+    private final BusinessMetrics businessMetrics;
 
     @Autowired
-    public ProductServiceImpl(ProductRepository productRepository){
+    public ProductServiceImpl(ProductRepository productRepository, ProductStockShards productStockShards,
+                              BusinessMetrics businessMetrics){
         this.productRepository = productRepository;
+        this.productStockShards = productStockShards;
+        this.businessMetrics = businessMetrics;
     }
 
     @Override
@@ -40,6 +50,7 @@ public class ProductServiceImpl implements ProductService {
     }
 
     @Override
+    @Transactional(readOnly = true)
     public Page<Product> findAllProducts(int pgNum, int pgSize) {
 
         Pageable pageable = PageRequest.of(pgNum, pgSize);
@@ -47,6 +58,7 @@ public class ProductServiceImpl implements ProductService {
     }
 
     @Override
+    @Transactional(readOnly = true)
     public Page<Product> findProductsByCategory(int pgNum, int pgSize, String category) {
 
         Pageable pageable = PageRequest.of(pgNum, pgSize);
@@ -54,15 +66,17 @@ public class ProductServiceImpl implements ProductService {
     }
 
     @Override
+    @Transactional(readOnly = true)
     public Product findProductById(UUID productId) {
         //check if userId and basketId are valid
         if(productId == null)
             throw new IllegalArgumentException ("Product id cannot be null");
         return productRepository.findById(productId)
-                .orElseThrow(() -> new NotFoundException(String.format("Product with Id %s not found",productId.toString())));
+                .orElseThrow(() -> new NotFoundException("Product with Id %s not found",productId));
     }
 
     @Override
+    @RetryOnConflict
     @Transactional
     public Product patchUpdateProductById(UUID productId, Map<String, Object> updates) {
 
@@ -76,7 +90,11 @@ public class ProductServiceImpl implements ProductService {
                 case "productName" : theProduct.setProductName((String) value); break;
                 case "productDescription" : theProduct.setProductDescription((String) value); break;
                 case "productPrice" : theProduct.setProductPrice(new BigDecimal(value.toString())); break;
-                case "stock" : theProduct.setStock((Integer) value); break;
+                case "stock" : if (theProduct.isStockSharded())
+                                    productStockShards.setTotal(theProduct, (Integer) value);
+                               else
+                                    theProduct.setStock((Integer) value);
+                               break;
                 case "category" : theProduct.setCategory((String) value); break;
                 default: throw new ForbiddenException("Field not found or not allowed to update");
             }
@@ -88,10 +106,19 @@ public class ProductServiceImpl implements ProductService {
     @Override
     public Product deleteProductById(UUID productId) {
         Product reference = findProductById(productId);
+        if (reference.isStockSharded())
+            productStockShards.reshard(reference, 0);
         productRepository.deleteById(productId);
         return reference;
     }
 
+    @Override
+    @RetryOnConflict
+    @Transactional
+    public Product shardProductStock(UUID productId, int shards) {
+        return productStockShards.reshard(findProductById(productId), shards);
+    }
+
     @Override
     @Transactional
     //give back the item quantity to product stock if order is cancelled
@@ -111,6 +138,11 @@ public class ProductServiceImpl implements ProductService {
             int quantity = item.getQuantity();
             // retrieve the product used in item
             Product product = item.getProduct();
+            if (product.isStockSharded()) {
+                productStockShards.give(product, quantity);
+                updatedProductStock.add(product);
+                continue;
+            }
             // retrieve current quantity in stock
             int currentStock = product.getStock();
             // update stock quantity
@@ -142,12 +174,41 @@ public class ProductServiceImpl implements ProductService {
         if(product == null)
             throw new IllegalArgumentException("Product cannot be null");
 
+        StockUpdateEvent event = new StockUpdateEvent();
+        event.begin();
+        try {
+            applyStockUpdate(product, delta);
+        } catch (InsufficientStockException e) {
+            event.rejected = true;
+            throw e;
+        } finally {
+            if (event.shouldCommit()) {
+                event.productId = String.valueOf(product.getId());
+                event.delta = delta;
+                event.sharded = product.isStockSharded();
+                event.commit();
+            }
+        }
+    }
+
+    private void applyStockUpdate(Product product, int delta) {
+        // hot products: the stock is spread over shard rows, the product row is not written
+        if (product.isStockSharded()) {
+            if (delta > 0)
+                productStockShards.take(product, delta);
+            else if (delta < 0)
+                productStockShards.give(product, -delta);
+            return;
+        }
+
         int currentStock = product.getStock();
         int updatedStock = currentStock - delta;
 
-        if(updatedStock < 0)
-            throw new InsufficientStockException(String.format("Not enough stock available for product '%s'. Available: %d, Requested: %d",
-                    product.getProductName(), product.getStock(), delta));
+        if(updatedStock < 0) {
+            businessMetrics.stockRejected(BusinessMetrics.StockRejection.PRODUCT);
+            throw new InsufficientStockException("Not enough stock available for product '%s'. Available: %d, Requested: %d",
+                    product.getProductName(), product.getStock(), delta);
+        }
 
         product.setStock(updatedStock);
         productRepository.save(product);
@@ -0,0 +1,197 @@
+package com.fabiolima.e_commerce.service.implementation;
+
+import com.fabiolima.e_commerce.entities.Product;
+import com.fabiolima.e_commerce.entities.ProductStockShard;
+import com.fabiolima.e_commerce.exceptions.InsufficientStockException;
+import com.fabiolima.e_commerce.monitoring.BusinessMetrics;
+import com.fabiolima.e_commerce.repository.ProductRepository;
+import com.fabiolima.e_commerce.repository.ProductStockShardRepository;
+import com.fabiolima.e_commerce.repository.ProductStockShardRepository.ShardStock;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Opt-in stock sharding for top sellers. Taking stock decrements a random shard, scanning the others
+ * (fullest first) when that one is short; giving stock back adds to a random shard. A background job
+ * evens the shards out again and refreshes the cached total kept in product.stock, which is what reads use.
+ * Stock given back to a shard that no longer exists (the product was resharded since it was read) goes to the
+ * first remaining shard, or to product.stock once the product is not sharded anymore.
+ */
+@Slf4j
+@Component
+public class ProductStockShards {
+
+    private final ProductStockShardRepository shardRepository;
+    private final ProductRepository productRepository;
+    private final TransactionTemplate transaction;
+    private final BusinessMetrics businessMetrics;
+
+    private final LongAdder takes = new LongAdder();
+    private final LongAdder scans = new LongAdder();
+    private final LongAdder rebalances = new LongAdder();
+    private final LongAdder misplacedGives = new LongAdder();
+
+    @Autowired
+    public ProductStockShards(ProductStockShardRepository shardRepository, ProductRepository productRepository,
+                              PlatformTransactionManager transactionManager, BusinessMetrics businessMetrics) {
+        this.shardRepository = shardRepository;
+        this.productRepository = productRepository;
+        this.transaction = new TransactionTemplate(transactionManager);
+        this.businessMetrics = businessMetrics;
+    }
+
+    /** takes quantity out of the shards, in the caller's transaction so a failure gives back partial takes */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void take(Product product, int quantity) {
+        UUID productId = product.getId();
+        takes.increment();
+        if (shardRepository.take(productId, randomShard(product), quantity) == 1)
+            return;
+
+        scans.increment();
+        List<ShardStock> nonEmpty = shardRepository.findNonEmpty(productId);
+        for (ShardStock shard : nonEmpty)
+            if (shard.getStock() >= quantity && shardRepository.take(productId, shard.getShardIndex(), quantity) == 1)
+                return;
+
+        // no single shard holds enough: take what each one has
+        int remaining = quantity;
+        for (ShardStock shard : nonEmpty) {
+            int part = Math.min(remaining, shard.getStock());
+            if (shardRepository.take(productId, shard.getShardIndex(), part) == 1)
+                remaining -= part;
+            if (remaining == 0)
+                return;
+        }
+        businessMetrics.stockRejected(BusinessMetrics.StockRejection.SHARDS);
+        throw new InsufficientStockException("Not enough stock available for product '%s'. Available: %d, Requested: %d",
+                product.getProductName(), quantity - remaining + shardRepository.sumStock(productId), quantity);
+    }
+
+    /** stock the shards hold right now, unlike product.stock which is only refreshed by the rebalance job */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public int available(Product product) {
+        return (int) shardRepository.sumStock(product.getId());
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void give(Product product, int quantity) {
+        if (shardRepository.give(product.getId(), randomShard(product), quantity) == 1)
+            return;
+
+        misplacedGives.increment();
+        List<ProductStockShard> shards = shardRepository.lockAllByProductId(product.getId());
+        if (!shards.isEmpty()) {
+            ProductStockShard shard = shards.getFirst();
+            shard.setStock(shard.getStock() + quantity);
+            return;
+        }
+        if (productRepository.giveStock(product.getId(), quantity) != 1)
+            throw new IllegalStateException("Could not give " + quantity + " unit(s) back to product " + product.getId());
+        log.debug("Product {} is no longer sharded, {} unit(s) given back to its stock", product.getId(), quantity);
+    }
+
+    /** splits the product's stock over the given number of shards, or folds it back into product.stock for 0 */
+    @Transactional
+    public Product reshard(Product product, int shards) {
+        if (shards < 0)
+            throw new IllegalArgumentException("Number of stock shards cannot be negative");
+
+        int total = product.isStockSharded() ? sum(shardRepository.lockAllByProductId(product.getId())) : product.getStock();
+        shardRepository.deleteAllByProductId(product.getId());
+        shardRepository.flush();
+        if (shards > 0)
+            shardRepository.saveAll(split(product.getId(), total, shards));
+
+        product.setStockShards(shards);
+        product.setStock(total);
+        log.info("Stock of product {} is now split over {} shards", product.getId(), shards);
+        return productRepository.save(product);
+    }
+
+    /** sets the total stock of a sharded product, spread evenly over its shards */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void setTotal(Product product, int total) {
+        List<ProductStockShard> shards = shardRepository.lockAllByProductId(product.getId());
+        spread(shards, total);
+        product.setStock(total);
+    }
+
+    @Scheduled(fixedDelayString = "${product.stock-shards.rebalance-interval-ms:2000}")
+    public void rebalance() {
+        for (UUID productId : productRepository.findStockShardedIds()) {
+            try {
+                transaction.executeWithoutResult(status -> rebalance(productId));
+            } catch (RuntimeException e) {
+                log.warn("Could not rebalance the stock shards of product {}: {}", productId, e.getMessage());
+            }
+        }
+    }
+
+    private void rebalance(UUID productId) {
+        List<ProductStockShard> shards = shardRepository.lockAllByProductId(productId);
+        if (shards.isEmpty())
+            return;
+        int total = sum(shards);
+        int min = shards.stream().mapToInt(ProductStockShard::getStock).min().orElse(0);
+        int max = shards.stream().mapToInt(ProductStockShard::getStock).max().orElse(0);
+        // rebalance once the spread is larger than an even share, e.g. a shard ran dry while others are full
+        if (max - min > Math.max(1, total / shards.size())) {
+            spread(shards, total);
+            rebalances.increment();
+        }
+        productRepository.updateCachedStock(productId, total);
+    }
+
+    private static int randomShard(Product product) {
+        return ThreadLocalRandom.current().nextInt(product.getStockShards());
+    }
+
+    private static int sum(List<ProductStockShard> shards) {
+        return shards.stream().mapToInt(ProductStockShard::getStock).sum();
+    }
+
+    private static void spread(List<ProductStockShard> shards, int total) {
+        for (int i = 0; i < shards.size(); i++)
+            shards.get(i).setStock(total / shards.size() + (i < total % shards.size() ? 1 : 0));
+    }
+
+    private static List<ProductStockShard> split(UUID productId, int total, int shards) {
+        List<ProductStockShard> rows = new ArrayList<>(shards);
+        for (int i = 0; i < shards; i++)
+            rows.add(ProductStockShard.builder().productId(productId).shardIndex(i).build());
+        spread(rows, total);
+        return rows;
+    }
+
+    /** stock taken from shards */
+    public long getTakes() {
+        return takes.sum();
+    }
+
+    /** takes whose random shard was short, so the other shards were scanned */
+    public long getScans() {
+        return scans.sum();
+    }
+
+    public long getRebalances() {
+        return rebalances.sum();
+    }
+
+    /** gives whose random shard no longer existed, so the stock went to another shard or to product.stock */
+    public long getMisplacedGives() {
+        return misplacedGives.sum();
+    }
+}
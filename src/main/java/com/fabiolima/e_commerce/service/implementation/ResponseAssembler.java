@@ -0,0 +1,29 @@
+package com.fabiolima.e_commerce.service.implementation;
+
+import com.fabiolima.e_commerce.concurrency.RetryOnConflict;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * With open-in-view disabled, lazy associations can only be read inside a transaction.
+ * Controllers run the service call and the mapping to a response DTO through here, so the
+ * whole graph is read in one transaction and the connection is back in the pool before JSON is written.
+ * Writes are the outermost transaction of the request, so this is where an optimistic lock conflict is retried.
+ */
+@Component
+public class ResponseAssembler {
+
+    @Transactional(readOnly = true)
+    public <T, R> R read(Supplier<T> query, Function<? super T, R> mapper) {
+        return mapper.apply(query.get());
+    }
+
+    @RetryOnConflict
+    @Transactional
+    public <T, R> R write(Supplier<T> command, Function<? super T, R> mapper) {
+        return mapper.apply(command.get());
+    }
+}
@@ -11,13 +11,14 @@ import com.fabiolima.e_commerce.repository.RoleRepository;
 import com.fabiolima.e_commerce.repository.UserRepository;
 import com.fabiolima.e_commerce.service.BasketService;
 import com.fabiolima.e_commerce.service.UserService;
-import jakarta.transaction.Transactional;
+import io.micrometer.observation.annotation.Observed;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.*;
 
@@ -25,6 +26,7 @@ import static com.fabiolima.e_commerce.entities.enums.UserStatus.*;
 
 @Service
 @Slf4j
+@Observed(name = "ecommerce.service")
 public class UserServiceImpl implements UserService {
 
     private final UserRepository userRepository;
@@ -49,6 +51,7 @@ public class UserServiceImpl implements UserService {
     }
 
     @Override
+    @Transactional
     public User addRoleToUser(UUID userId, String roleName) {
         //fetch user
         User user = findUserByUserId(userId);
@@ -71,12 +74,14 @@ public class UserServiceImpl implements UserService {
     }
 
     @Override
+    @Transactional(readOnly = true)
     public Page<User> findAllUsers(int pgNum, int pgSize) {
         Pageable pageable = PageRequest.of(pgNum,pgSize);
         return userRepository.findAll(pageable);
     }
 
     @Override
+    @Transactional(readOnly = true)
     public Page<User> findAllUsersWithStatus(int pgNum, int pgSize, String status) {
 
         //validate and transform string into enum
@@ -88,6 +93,7 @@ public class UserServiceImpl implements UserService {
     }
 
     @Override
+    @Transactional(readOnly = true)
     public User findUserByUserId(UUID userId){
         Optional<User> result = userRepository.findById(userId);
         if (result.isEmpty()) throw new NotFoundException("User not found");
@@ -106,6 +112,7 @@ public class UserServiceImpl implements UserService {
     }
 
     @Override
+    @Transactional
     public User patchUpdateUserByUserId(UUID userId, Map<String, Object> updates) {
 
         // Check if user exists; throw an error if it doesn't
@@ -134,6 +141,7 @@ public class UserServiceImpl implements UserService {
     }
 
     @Override
+    @Transactional
     public User deactivateUserByUserId(UUID userId) {
         //1- Retrieve the user
         User theUser = findUserByUserId(userId);
@@ -0,0 +1,74 @@
+package com.fabiolima.e_commerce.waitingroom;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Base64;
+
+/**
+ * Signs and checks admission tokens: "room|user|expiry" signed with HMAC-SHA256.
+ * Checking a token is a hash computation, so guarded endpoints validate it without any lookup.
+ */
+@Component
+public class AdmissionTokens {
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private final SecretKeySpec key;
+
+    @Autowired
+    public AdmissionTokens(@Value("${waiting-room.token-secret:${security.jwt.secret-key}}") String secret) {
+        this.key = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), ALGORITHM);
+    }
+
+    public String issue(String roomId, String user, long expiresAtMillis) {
+        String payload = roomId + "|" + user + "|" + expiresAtMillis;
+        return ENCODER.encodeToString(payload.getBytes(StandardCharsets.UTF_8)) + "." + ENCODER.encodeToString(sign(payload));
+    }
+
+    /** the admission carried by the token, or null when it is malformed, tampered with or expired */
+    public Admission verify(String token, long now) {
+        if (token == null)
+            return null;
+        int dot = token.indexOf('.');
+        if (dot <= 0)
+            return null;
+        try {
+            String payload = new String(DECODER.decode(token.substring(0, dot)), StandardCharsets.UTF_8);
+            if (!MessageDigest.isEqual(sign(payload), DECODER.decode(token.substring(dot + 1))))
+                return null;
+
+            // room ids may not contain '|', emails may, so split on the first and last separators
+            int first = payload.indexOf('|');
+            int last = payload.lastIndexOf('|');
+            if (first < 0 || last <= first)
+                return null;
+            long expiresAt = Long.parseLong(payload.substring(last + 1));
+            if (expiresAt < now)
+                return null;
+            return new Admission(payload.substring(0, first), payload.substring(first + 1, last), expiresAt);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private byte[] sign(String payload) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return mac.doFinal(payload.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 is not available", e);
+        }
+    }
+
+    public record Admission(String roomId, String user, long expiresAtMillis) {}
+}
@@ -0,0 +1,173 @@
+package com.fabiolima.e_commerce.waitingroom;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * One FIFO queue in front of a set of products (a single SKU or a whole campaign).
+ * Users get a ticket numbered in arrival order and are admitted strictly in that order, at most
+ * admissionsPerSecond of them per second. Joining again returns the same ticket, so reconnecting or
+ * polling faster never moves anyone forward. Tickets that stop polling are skipped without using a slot.
+ * Everything lives in memory: polling a ticket never touches the database.
+ */
+public class WaitingRoom {
+
+    private final String id;
+    private volatile Set<UUID> productIds;
+    private volatile double admissionsPerSecond;
+
+    private final Map<String, Ticket> tickets = new ConcurrentHashMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    // guarded by lock
+    private final Deque<Ticket> waiting = new ArrayDeque<>();
+    private final Deque<Ticket> admitted = new ArrayDeque<>();
+    private volatile long nextSequence;
+    private double credit;
+    private long lastRefillMillis = -1;
+    // sequence of the first ticket still waiting, read without the lock for position reporting
+    private volatile long headSequence;
+
+    private final LongAdder joins = new LongAdder();
+    private final LongAdder admissions = new LongAdder();
+    private final LongAdder abandons = new LongAdder();
+
+    public WaitingRoom(String id, Set<UUID> productIds, double admissionsPerSecond) {
+        if (admissionsPerSecond <= 0)
+            throw new IllegalArgumentException("admissionsPerSecond must be positive");
+        this.id = id;
+        this.productIds = Set.copyOf(productIds);
+        this.admissionsPerSecond = admissionsPerSecond;
+    }
+
+    /** the user's ticket, created at the back of the queue on the first call */
+    Ticket join(String user, long now) {
+        Ticket ticket = tickets.get(user);
+        if (ticket == null) {
+            lock.lock();
+            try {
+                // sequence and queue order are assigned together, so the queue is in sequence order
+                ticket = tickets.get(user);
+                if (ticket == null) {
+                    ticket = new Ticket(user, nextSequence++, now);
+                    waiting.addLast(ticket);
+                    tickets.put(user, ticket);
+                    joins.increment();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        ticket.lastSeenMillis = now;
+        return ticket;
+    }
+
+    /** the user's ticket or null when they never joined, were skipped or their admission expired */
+    Ticket poll(String user, long now) {
+        Ticket ticket = tickets.get(user);
+        if (ticket != null)
+            ticket.lastSeenMillis = now;
+        return ticket;
+    }
+
+    /** 0 once admitted, otherwise 1 for the next ticket to be admitted (abandoned tickets ahead still count until skipped) */
+    long position(Ticket ticket) {
+        if (ticket.isAdmitted())
+            return 0;
+        return Math.max(1, ticket.sequence - headSequence + 1);
+    }
+
+    /**
+     * Admits the head of the queue at the configured rate. Unused credit is capped at one second's worth,
+     * so an idle room cannot release a burst later on.
+     */
+    void admit(long now, long abandonAfterMillis, long admissionTtlMillis) {
+        lock.lock();
+        try {
+            if (lastRefillMillis >= 0) {
+                double refill = admissionsPerSecond * (now - lastRefillMillis) / 1000.0;
+                credit = Math.min(credit + refill, Math.max(1.0, admissionsPerSecond));
+            }
+            lastRefillMillis = now;
+
+            while (credit >= 1.0 && !waiting.isEmpty()) {
+                Ticket ticket = waiting.pollFirst();
+                if (now - ticket.lastSeenMillis > abandonAfterMillis) {
+                    tickets.remove(ticket.user, ticket);
+                    abandons.increment();
+                    continue;
+                }
+                ticket.admittedAtMillis = now;
+                admitted.addLast(ticket);
+                admissions.increment();
+                credit -= 1.0;
+            }
+            headSequence = waiting.isEmpty() ? nextSequence : waiting.peekFirst().sequence;
+
+            // admissions are in time order, so the expired ones are at the front
+            while (!admitted.isEmpty() && now - admitted.peekFirst().admittedAtMillis > admissionTtlMillis) {
+                Ticket expired = admitted.pollFirst();
+                tickets.remove(expired.user, expired);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void update(Set<UUID> productIds, double admissionsPerSecond) {
+        if (admissionsPerSecond <= 0)
+            throw new IllegalArgumentException("admissionsPerSecond must be positive");
+        this.productIds = Set.copyOf(productIds);
+        this.admissionsPerSecond = admissionsPerSecond;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public Set<UUID> getProductIds() {
+        return productIds;
+    }
+
+    public double getAdmissionsPerSecond() {
+        return admissionsPerSecond;
+    }
+
+    public long getWaiting() {
+        return nextSequence - headSequence;
+    }
+
+    public long getJoins() {
+        return joins.sum();
+    }
+
+    public long getAdmissions() {
+        return admissions.sum();
+    }
+
+    public long getAbandons() {
+        return abandons.sum();
+    }
+
+    static final class Ticket {
+        final String user;
+        final long sequence;
+        volatile long lastSeenMillis;
+        volatile long admittedAtMillis = -1;
+
+        Ticket(String user, long sequence, long now) {
+            this.user = user;
+            this.sequence = sequence;
+            this.lastSeenMillis = now;
+        }
+
+        boolean isAdmitted() {
+            return admittedAtMillis >= 0;
+        }
+    }
+}
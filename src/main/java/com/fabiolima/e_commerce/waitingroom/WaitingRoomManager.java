@@ -0,0 +1,223 @@
+package com.fabiolima.e_commerce.waitingroom;
+
+import com.fabiolima.e_commerce.dto.WaitingRoomResponse;
+import com.fabiolima.e_commerce.exceptions.BadRequestException;
+import com.fabiolima.e_commerce.exceptions.ForbiddenException;
+import com.fabiolima.e_commerce.exceptions.NotFoundException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * Waiting rooms for flash sales, opened by an admin for one product or a campaign of products.
+ * While a room is open, every basket change of one of its products (add, increment, decrement, set quantity)
+ * requires an admission token from the room, so the database only sees as many basket writes as the room admits
+ * per second. An admission covers at most units-per-admission units taken from the stock, whatever the number
+ * of calls made with its token.
+ * Rooms and the units taken are kept in memory by each instance; the admission rate is per instance.
+ */
+@Slf4j
+@Component
+public class WaitingRoomManager {
+
+    public static final String ADMISSION_TOKEN_HEADER = "X-Admission-Token";
+    private static final Pattern ROOM_ID = Pattern.compile("[A-Za-z0-9_-]{1,64}");
+
+    private final AdmissionTokens admissionTokens;
+    private final long admissionTtlMillis;
+    private final long abandonAfterMillis;
+    private final int unitsPerAdmission;
+    private final Map<String, WaitingRoom> rooms = new ConcurrentHashMap<>();
+    private final Map<UUID, WaitingRoom> roomsByProduct = new ConcurrentHashMap<>();
+    // one rejection per room, thrown for every request without a valid token
+    private final Map<String, ForbiddenException> rejections = new ConcurrentHashMap<>();
+    // units taken from the stock with each admission, until it expires
+    private final Map<AdmissionTokens.Admission, AtomicInteger> unitsTaken = new ConcurrentHashMap<>();
+
+    private final LongAdder guardedRequests = new LongAdder();
+    private final LongAdder rejectedRequests = new LongAdder();
+
+    @Autowired
+    public WaitingRoomManager(AdmissionTokens admissionTokens,
+                              @Value("${waiting-room.admission-ttl-seconds:300}") long admissionTtlSeconds,
+                              @Value("${waiting-room.abandon-after-seconds:30}") long abandonAfterSeconds,
+                              @Value("${waiting-room.units-per-admission:2}") int unitsPerAdmission) {
+        this.admissionTokens = admissionTokens;
+        this.admissionTtlMillis = admissionTtlSeconds * 1000;
+        this.abandonAfterMillis = abandonAfterSeconds * 1000;
+        this.unitsPerAdmission = unitsPerAdmission;
+    }
+
+    /** opens a room, or changes the products and rate of an open one (people in the queue keep their place) */
+    public RoomSnapshot open(String roomId, Set<UUID> productIds, double admissionsPerSecond) {
+        if (!ROOM_ID.matcher(roomId).matches())
+            throw new BadRequestException("Room id must be 1 to 64 letters, digits, '-' or '_'.");
+        if (productIds.isEmpty())
+            throw new BadRequestException("A waiting room must guard at least one product.");
+        if (admissionsPerSecond <= 0)
+            throw new BadRequestException("admissionsPerSecond must be positive.");
+        for (UUID productId : productIds) {
+            WaitingRoom other = roomsByProduct.get(productId);
+            if (other != null && !other.getId().equals(roomId))
+                throw new BadRequestException("Product " + productId + " is already guarded by room " + other.getId());
+        }
+
+        WaitingRoom room = rooms.compute(roomId, (id, existing) -> {
+            if (existing == null)
+                return new WaitingRoom(id, productIds, admissionsPerSecond);
+            existing.update(productIds, admissionsPerSecond);
+            return existing;
+        });
+        roomsByProduct.values().removeIf(guarding -> guarding == room);
+        productIds.forEach(productId -> roomsByProduct.put(productId, room));
+        log.info("Waiting room {} open for {} product(s) at {} admissions/s", roomId, productIds.size(), admissionsPerSecond);
+        return snapshot(room);
+    }
+
+    /** closes a room: its products can be added to baskets freely again */
+    public void close(String roomId) {
+        WaitingRoom room = rooms.remove(roomId);
+        if (room == null)
+            throw new NotFoundException("Waiting room " + roomId + " not found");
+        roomsByProduct.values().removeIf(guarding -> guarding == room);
+        rejections.remove(roomId);
+        log.info("Waiting room {} closed after {} admissions", roomId, room.getAdmissions());
+    }
+
+    public WaitingRoomResponse join(String roomId, String user) {
+        return join(roomId, user, System.currentTimeMillis());
+    }
+
+    WaitingRoomResponse join(String roomId, String user, long now) {
+        WaitingRoom room = findRoom(roomId);
+        return toResponse(room, room.join(user, now));
+    }
+
+    public WaitingRoomResponse status(String roomId, String user) {
+        return status(roomId, user, System.currentTimeMillis());
+    }
+
+    WaitingRoomResponse status(String roomId, String user, long now) {
+        WaitingRoom room = findRoom(roomId);
+        WaitingRoom.Ticket ticket = room.poll(user, now);
+        if (ticket == null)
+            throw new NotFoundException("You are not in the waiting room " + roomId + ", please join it again");
+        return toResponse(room, ticket);
+    }
+
+    /** true while a room is open, so callers can skip looking up the product of a basket line otherwise */
+    public boolean isGuarding() {
+        return !roomsByProduct.isEmpty();
+    }
+
+    /**
+     * lets the call through when the product is not guarded, or the token admits this user to its room and still
+     * covers the units the call takes from the stock (0 for a call that takes none, e.g. a decrement)
+     */
+    public void checkAdmission(UUID productId, String user, String admissionToken, int units) {
+        checkAdmission(productId, user, admissionToken, units, System.currentTimeMillis());
+    }
+
+    void checkAdmission(UUID productId, String user, String admissionToken, int units, long now) {
+        WaitingRoom room = roomsByProduct.get(productId);
+        if (room == null)
+            return;
+        guardedRequests.increment();
+
+        AdmissionTokens.Admission admission = admissionTokens.verify(admissionToken, now);
+        if (admission == null || !admission.roomId().equals(room.getId()) || !admission.user().equals(user)) {
+            rejectedRequests.increment();
+            throw rejections.computeIfAbsent(room.getId(), id -> new ForbiddenException(
+                    "This product is only available through the waiting room " + id + ". Join it at /waiting-room/" + id
+                            + " and send the admission token in the " + ADMISSION_TOKEN_HEADER + " header."));
+        }
+        if (units <= 0)
+            return;
+        // units are counted when admitted, so a call that then fails (e.g. no stock left) still uses them
+        AtomicInteger taken = unitsTaken.computeIfAbsent(admission, key -> new AtomicInteger());
+        if (taken.addAndGet(units) > unitsPerAdmission) {
+            taken.addAndGet(-units);
+            rejectedRequests.increment();
+            throw new ForbiddenException("Your admission to the waiting room " + room.getId() + " covers at most "
+                    + unitsPerAdmission + " unit(s) of its products.");
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${waiting-room.admit-interval-ms:100}")
+    public void admit() {
+        admit(System.currentTimeMillis());
+    }
+
+    void admit(long now) {
+        for (WaitingRoom room : rooms.values())
+            room.admit(now, abandonAfterMillis, admissionTtlMillis);
+        unitsTaken.keySet().removeIf(admission -> admission.expiresAtMillis() < now);
+    }
+
+    public List<RoomSnapshot> getRooms() {
+        return rooms.values().stream()
+                .sorted(Comparator.comparing(WaitingRoom::getId))
+                .map(this::snapshot)
+                .toList();
+    }
+
+    private RoomSnapshot snapshot(WaitingRoom room) {
+        return new RoomSnapshot(room.getId(), room.getProductIds(), room.getAdmissionsPerSecond(),
+                room.getWaiting(), room.getJoins(), room.getAdmissions(), room.getAbandons());
+    }
+
+    public long getGuardedRequests() {
+        return guardedRequests.sum();
+    }
+
+    public long getRejectedRequests() {
+        return rejectedRequests.sum();
+    }
+
+    private WaitingRoom findRoom(String roomId) {
+        WaitingRoom room = rooms.get(roomId);
+        if (room == null)
+            throw new NotFoundException("Waiting room " + roomId + " not found");
+        return room;
+    }
+
+    private WaitingRoomResponse toResponse(WaitingRoom room, WaitingRoom.Ticket ticket) {
+        if (ticket.isAdmitted()) {
+            long expiresAt = ticket.admittedAtMillis + admissionTtlMillis;
+            return WaitingRoomResponse.builder()
+                    .roomId(room.getId())
+                    .admitted(true)
+                    .admissionToken(admissionTokens.issue(room.getId(), ticket.user, expiresAt))
+                    .admissionExpiresAt(Instant.ofEpochMilli(expiresAt))
+                    .build();
+        }
+
+        long position = room.position(ticket);
+        double waitSeconds = position / room.getAdmissionsPerSecond();
+        // poll about five times before the turn comes, between once a second and well within the abandon timeout
+        long pollAfter = Math.clamp((long) (waitSeconds * 200), 1000, Math.max(1000, abandonAfterMillis / 3));
+        return WaitingRoomResponse.builder()
+                .roomId(room.getId())
+                .admitted(false)
+                .position(position)
+                .estimatedWaitSeconds((long) Math.ceil(waitSeconds))
+                .pollAfterMillis(pollAfter)
+                .build();
+    }
+
+    public record RoomSnapshot(String id, Set<UUID> productIds, double admissionsPerSecond,
+                               long waiting, long joins, long admissions, long abandons) {}
+}
@@ -0,0 +1,55 @@
+package com.fabiolima.e_commerce.queryplan;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * The full scans and filesorts over the row threshold that were reviewed and accepted, one per line:
+ * <pre>
+ * Repository.method &lt;TAB&gt; table &lt;TAB&gt; full scan|filesort &lt;TAB&gt; why it is accepted
+ * </pre>
+ * Lines starting with # are comments. The reason is for the reviewer and is not compared.
+ */
+final class QueryPlanBaseline {
+
+    static final String UNREVIEWED = "UNREVIEWED: add an index, or say why this plan is acceptable";
+
+    private static final String HEADER = """
+            # Query plan findings accepted after review (see QueryPlanRegressionTest).
+            # A finding is a full scan or a filesort over the row threshold in the EXPLAIN of a repository method.
+            # Repository.method<TAB>table<TAB>finding<TAB>why it is accepted
+            """;
+
+    private QueryPlanBaseline() {
+    }
+
+    /** accepted findings (the first three columns, tab separated) and their reasons */
+    static Map<String, String> read(Path file) throws IOException {
+        Map<String, String> accepted = new TreeMap<>();
+        if (!Files.exists(file))
+            return accepted;
+        for (String line : Files.readAllLines(file)) {
+            if (line.isBlank() || line.startsWith("#"))
+                continue;
+            String[] columns = line.split("\t", 4);
+            if (columns.length < 3)
+                throw new IllegalStateException("Expected method, table and finding separated by tabs in " + file + ": " + line);
+            accepted.put(String.join("\t", columns[0], columns[1], columns[2]), columns.length == 4 ? columns[3] : "");
+        }
+        return accepted;
+    }
+
+    /** rewrites the baseline with the given findings, keeping the reasons already given */
+    static void write(Path file, Set<String> findings, Map<String, String> previous) throws IOException {
+        List<String> lines = new ArrayList<>();
+        for (String finding : findings)
+            lines.add(finding + "\t" + previous.getOrDefault(finding, UNREVIEWED));
+        Files.writeString(file, HEADER + String.join("\n", lines) + (lines.isEmpty() ? "" : "\n"));
+    }
+}
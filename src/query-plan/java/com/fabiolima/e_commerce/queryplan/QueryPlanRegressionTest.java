@@ -0,0 +1,384 @@
+package com.fabiolima.e_commerce.queryplan;
+
+import ch.vorburger.mariadb4j.DB;
+import ch.vorburger.mariadb4j.DBConfigurationBuilder;
+import com.fabiolima.e_commerce.entities.Basket;
+import com.fabiolima.e_commerce.entities.Product;
+import com.fabiolima.e_commerce.entities.enums.BasketStatus;
+import com.fabiolima.e_commerce.entities.enums.OrderStatus;
+import com.fabiolima.e_commerce.entities.enums.PaymentStatus;
+import com.fabiolima.e_commerce.entities.enums.UserRole;
+import com.fabiolima.e_commerce.entities.enums.UserStatus;
+import com.fabiolima.e_commerce.queryplan.StatementCapture.CapturedStatement;
+import com.fabiolima.e_commerce.repository.*;
+import com.fabiolima.e_commerce.seed.DataSeeder;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import net.ttddyy.dsproxy.proxy.ParameterSetOperation;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.repository.support.Repositories;
+import org.springframework.lang.NonNull;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.SecureRandom;
+import java.sql.*;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * EXPLAIN of the SQL every repository method sends, on an embedded MariaDB loaded with MySQL/initdb/schema.sql and
+ * a dataset written by {@link DataSeeder} (5k users, 20k products, 20k orders by default; the seed.* properties
+ * change it). Hibernate generates its MySQL 8 SQL, as in production.
+ * <p>
+ * A full scan (type ALL or index) or a filesort over -Dquery-plans.max-rows (1000) estimated rows is a finding.
+ * The test fails on a finding that is not in src/query-plan/baseline.txt, on a baseline entry that no longer
+ * happens or has no reason yet, and on a repository method with no invocation below, so a new finder cannot be
+ * added without its plan being looked at. -Dquery-plans.update=true rewrites the baseline for review.
+ * Every plan is written to target/query-plans/plans.txt.
+ * <p>
+ * Only runs with the query-plans profile: mvn -P query-plans test
+ */
+@Tag("query-plan")
+@SpringBootTest(properties = {
+        "spring.jpa.hibernate.ddl-auto=none",
+        "spring.jpa.database-platform=org.hibernate.dialect.MySQLDialect",
+        // generate the SQL of MySQL 8, not of the MariaDB version the driver would report
+        "spring.jpa.properties.hibernate.boot.allow_jdbc_metadata_access=false",
+        "spring.jpa.properties.jakarta.persistence.database-product-name=MySQL",
+        "spring.jpa.properties.jakarta.persistence.database-major-version=8",
+        "spring.jpa.properties.jakarta.persistence.database-minor-version=0"
+})
+class QueryPlanRegressionTest {
+
+    private static final Path SCHEMA = Path.of("MySQL/initdb/schema.sql");
+    private static final Path BASELINE = Path.of("src/query-plan/baseline.txt");
+    private static final Path REPORT = Path.of("target/query-plans/plans.txt");
+    private static final long MAX_ROWS = Long.getLong("query-plans.max-rows", 1000);
+    private static final Map<String, String> DATASET = Map.of(
+            "seed.users", "5000",
+            "seed.products", "20000",
+            "seed.categories", "50",
+            "seed.orders", "20000",
+            "seed.stale-baskets", "1000");
+
+    private static final Pattern LOCKING_CLAUSE = Pattern.compile("(?i)\\s+for\\s+(update|share)\\b.*$");
+    private static final Pattern TABLE_ALIAS = Pattern.compile("(?i)\\b(?:from|join)\\s+`?([\\w-]+)`?\\s+(?:as\\s+)?`?(\\w+)`?");
+    private static final StatementCapture CAPTURE = new StatementCapture();
+
+    private static DB database;
+    private static String url;
+
+    @Autowired
+    private ApplicationContext applicationContext;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @PersistenceContext
+    private EntityManager entityManager;
+    @Autowired
+    private BasketRepository basketRepository;
+    @Autowired
+    private BasketItemRepository basketItemRepository;
+    @Autowired
+    private OrderRepository orderRepository;
+    @Autowired
+    private PaymentRepository paymentRepository;
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private ProductStockShardRepository productStockShardRepository;
+    @Autowired
+    private RoleRepository roleRepository;
+    @Autowired
+    private UserRepository userRepository;
+
+    @DynamicPropertySource
+    static void database(DynamicPropertyRegistry registry) throws Exception {
+        DBConfigurationBuilder configuration = DBConfigurationBuilder.newBuilder();
+        configuration.setPort(0);
+        database = DB.newEmbeddedDB(configuration.build());
+        database.start();
+        url = "jdbc:mariadb://localhost:" + database.getConfiguration().getPort() + "/e-commerce";
+
+        try (Connection connection = DriverManager.getConnection(
+                "jdbc:mariadb://localhost:" + database.getConfiguration().getPort() + "/", "root", "")) {
+            loadSchema(connection);
+        }
+        DATASET.forEach(System.getProperties()::putIfAbsent);
+        System.setProperty("seed.url", url);
+        DataSeeder.main(new String[0]);
+        try (Connection connection = DriverManager.getConnection(url, "root", "");
+             Statement statement = connection.createStatement()) {
+            // fresh statistics, so the estimates do not depend on when InnoDB last sampled the tables
+            statement.execute("ANALYZE TABLE `user`, `product`, `basket`, `basket_item`, `order`, `order_item`");
+        }
+
+        byte[] key = new byte[32];
+        new SecureRandom().nextBytes(key);
+        registry.add("spring.datasource.url", () -> url);
+        registry.add("spring.datasource.username", () -> "root");
+        registry.add("spring.datasource.password", () -> "");
+        registry.add("security.jwt.secret-key", () -> Base64.getEncoder().encodeToString(key));
+    }
+
+    @AfterAll
+    static void stopDatabase() throws Exception {
+        if (database != null)
+            database.stop();
+    }
+
+    @Test
+    void everyRepositoryMethod_ShouldHaveNoFullScanOrFilesortOutsideTheBaseline() throws Exception {
+        //given
+        Map<String, Runnable> invocations = invocations(Sample.load(url));
+        Set<String> declared = declaredQueryMethods();
+        Set<String> notInvoked = new TreeSet<>(declared);
+        notInvoked.removeAll(invocations.keySet());
+        assertTrue(notInvoked.isEmpty(), "Repository methods with no invocation in QueryPlanRegressionTest: " + notInvoked);
+        Set<String> noLongerDeclared = new TreeSet<>(invocations.keySet());
+        noLongerDeclared.removeAll(declared);
+        assertTrue(noLongerDeclared.isEmpty(), "Invocations of repository methods that no longer exist: " + noLongerDeclared);
+
+        //when
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        Set<String> findings = new TreeSet<>();
+        StringBuilder report = new StringBuilder();
+        try (Connection connection = DriverManager.getConnection(url, "root", "")) {
+            for (Map.Entry<String, Runnable> invocation : invocations.entrySet()) {
+                List<CapturedStatement> statements = CAPTURE.record(() -> transaction.executeWithoutResult(status -> {
+                    status.setRollbackOnly();
+                    invocation.getValue().run();
+                }));
+                assertFalse(statements.isEmpty(), invocation.getKey() + " sent no statement");
+
+                report.append("## ").append(invocation.getKey()).append('\n');
+                for (CapturedStatement statement : statements) {
+                    report.append(statement.sql()).append('\n');
+                    Map<String, String> tables = tablesByAlias(statement.sql());
+                    for (PlanRow row : explain(connection, statement)) {
+                        String table = tables.getOrDefault(row.table(), row.table());
+                        report.append("    ").append(row.format(table)).append('\n');
+                        for (String finding : row.findings())
+                            findings.add(String.join("\t", invocation.getKey(), table, finding));
+                    }
+                }
+                report.append('\n');
+            }
+        }
+        Files.createDirectories(REPORT.getParent());
+        Files.writeString(REPORT, report);
+
+        //then
+        Map<String, String> baseline = QueryPlanBaseline.read(BASELINE);
+        if (Boolean.getBoolean("query-plans.update")) {
+            QueryPlanBaseline.write(BASELINE, findings, baseline);
+            baseline = QueryPlanBaseline.read(BASELINE);
+        }
+        Set<String> unreviewed = new TreeSet<>(findings);
+        unreviewed.removeAll(baseline.keySet());
+        Set<String> resolved = new TreeSet<>(baseline.keySet());
+        resolved.removeAll(findings);
+        List<String> withoutReason = baseline.entrySet().stream()
+                .filter(entry -> entry.getValue().isBlank() || entry.getValue().equals(QueryPlanBaseline.UNREVIEWED))
+                .map(Map.Entry::getKey)
+                .toList();
+
+        String details = " (over " + MAX_ROWS + " rows, plans in " + REPORT + ", rerun with -Dquery-plans.update=true "
+                + "to rewrite " + BASELINE + "):\n";
+        assertTrue(unreviewed.isEmpty(), "New full scans or filesorts" + details + String.join("\n", unreviewed));
+        assertTrue(resolved.isEmpty(), "Baseline findings that no longer happen" + details + String.join("\n", resolved));
+        assertTrue(withoutReason.isEmpty(), "Baseline findings with no reason given" + details + String.join("\n", withoutReason));
+    }
+
+    /**
+     * One call per query method, with the arguments (and paging) the services use. Pages hold a single row so the
+     * count query runs too. Each call runs in a transaction that is rolled back, so the updates change nothing.
+     */
+    private Map<String, Runnable> invocations(Sample sample) {
+        Map<String, Runnable> invocations = new TreeMap<>();
+        invocations.put("BasketItemRepository.findByBasketAndProduct", () -> basketItemRepository.findByBasketAndProduct(
+                entityManager.getReference(Basket.class, sample.basketId()),
+                entityManager.getReference(Product.class, sample.productId())));
+
+        invocations.put("BasketRepository.findBasketByIdAndUserId", () -> basketRepository.findBasketByIdAndUserId(sample.basketId(), sample.userId()));
+        invocations.put("BasketRepository.findIdsByUserId", () -> basketRepository.findIdsByUserId(sample.userId(),
+                PageRequest.of(0, 1, Sort.by(Sort.Direction.DESC, "createdAt"))));
+        invocations.put("BasketRepository.findAllWithItemsByIdIn", () -> basketRepository.findAllWithItemsByIdIn(List.of(sample.basketId())));
+        invocations.put("BasketRepository.findByBasketStatusAndLastUpdatedBefore", () ->
+                basketRepository.findByBasketStatusAndLastUpdatedBefore(BasketStatus.ACTIVE, LocalDateTime.now().minusDays(1)));
+        invocations.put("BasketRepository.touchAll", () -> basketRepository.touchAll(List.of(sample.basketId()), LocalDateTime.now()));
+        invocations.put("BasketRepository.findActiveBasketByUserId", () -> basketRepository.findActiveBasketByUserId(sample.userId(), BasketStatus.ACTIVE));
+
+        invocations.put("OrderRepository.findOrderByIdAndUserId", () -> orderRepository.findOrderByIdAndUserId(sample.orderId(), sample.userId()));
+        invocations.put("OrderRepository.findIdsByUserId", () -> orderRepository.findIdsByUserId(sample.userId(), PageRequest.of(0, 1)));
+        invocations.put("OrderRepository.findIdsByOrderStatusAndUserId", () ->
+                orderRepository.findIdsByOrderStatusAndUserId(sample.orderStatus(), sample.userId(), PageRequest.of(0, 1)));
+        invocations.put("OrderRepository.findAllWithItemsByIdIn", () -> orderRepository.findAllWithItemsByIdIn(List.of(sample.orderId())));
+        invocations.put("OrderRepository.findByPaypalOrderId", () -> orderRepository.findByPaypalOrderId(sample.paypalOrderId()));
+        invocations.put("OrderRepository.existsByIdAndUserId", () -> orderRepository.existsByIdAndUserId(sample.orderId(), sample.userId()));
+
+        invocations.put("PaymentRepository.findByPaymentStatus", () -> paymentRepository.findByPaymentStatus(PaymentStatus.PENDING, PageRequest.of(0, 50)));
+        invocations.put("PaymentRepository.findByOrder_Id", () -> paymentRepository.findByOrder_Id(sample.orderId()));
+
+        invocations.put("ProductRepository.findAllByCategory", () -> productRepository.findAllByCategory(sample.category(), PageRequest.of(0, 1)));
+        invocations.put("ProductRepository.findStockShardedIds", () -> productRepository.findStockShardedIds());
+        invocations.put("ProductRepository.updateCachedStock", () -> productRepository.updateCachedStock(sample.productId(), 1));
+        invocations.put("ProductRepository.giveStock", () -> productRepository.giveStock(sample.productId(), 1));
+
+        invocations.put("ProductStockShardRepository.take", () -> productStockShardRepository.take(sample.productId(), 0, 1));
+        invocations.put("ProductStockShardRepository.give", () -> productStockShardRepository.give(sample.productId(), 0, 1));
+        invocations.put("ProductStockShardRepository.findNonEmpty", () -> productStockShardRepository.findNonEmpty(sample.productId()));
+        invocations.put("ProductStockShardRepository.sumStock", () -> productStockShardRepository.sumStock(sample.productId()));
+        invocations.put("ProductStockShardRepository.lockAllByProductId", () -> productStockShardRepository.lockAllByProductId(sample.productId()));
+        invocations.put("ProductStockShardRepository.deleteAllByProductId", () -> productStockShardRepository.deleteAllByProductId(sample.productId()));
+
+        invocations.put("RoleRepository.findByName", () -> roleRepository.findByName(UserRole.ROLE_CUSTOMER));
+
+        invocations.put("UserRepository.existsByEmail", () -> userRepository.existsByEmail(sample.email()));
+        invocations.put("UserRepository.findAllByUserStatus", () -> userRepository.findAllByUserStatus(UserStatus.ACTIVE, PageRequest.of(0, 1)));
+        invocations.put("UserRepository.findByEmail", () -> userRepository.findByEmail(sample.email()));
+        invocations.put("UserRepository.findByBaskets_Id", () -> userRepository.findByBaskets_Id(sample.basketId()));
+        return invocations;
+    }
+
+    // the query methods declared by the repositories themselves; the default methods only combine them
+    private Set<String> declaredQueryMethods() {
+        Set<String> methods = new TreeSet<>();
+        Repositories repositories = new Repositories(applicationContext);
+        for (Class<?> domainType : repositories) {
+            Class<?> repository = repositories.getRequiredRepositoryInformation(domainType).getRepositoryInterface();
+            for (Method method : repository.getDeclaredMethods())
+                if (!method.isDefault() && !method.isSynthetic() && !Modifier.isStatic(method.getModifiers()))
+                    methods.add(repository.getSimpleName() + "." + method.getName());
+        }
+        return methods;
+    }
+
+    private static List<PlanRow> explain(Connection connection, CapturedStatement statement) throws Exception {
+        // the plan of a locking read is the plan of the read
+        String sql = LOCKING_CLAUSE.matcher(statement.sql()).replaceFirst("");
+        try (PreparedStatement explain = connection.prepareStatement("EXPLAIN " + sql)) {
+            for (ParameterSetOperation operation : statement.parameters())
+                operation.getMethod().invoke(explain, operation.getArgs());
+            List<PlanRow> rows = new ArrayList<>();
+            try (ResultSet result = explain.executeQuery()) {
+                while (result.next())
+                    rows.add(new PlanRow(result.getString("table"), result.getString("type"), result.getString("key"),
+                            result.getLong("rows"), Objects.requireNonNullElse(result.getString("Extra"), "")));
+            }
+            return rows;
+        }
+    }
+
+    // EXPLAIN names the tables by the aliases Hibernate gives them (b1_0, ...)
+    private static Map<String, String> tablesByAlias(String sql) {
+        Map<String, String> tables = new HashMap<>();
+        Matcher matcher = TABLE_ALIAS.matcher(sql);
+        while (matcher.find())
+            tables.put(matcher.group(2), matcher.group(1));
+        return tables;
+    }
+
+    private static void loadSchema(Connection connection) throws Exception {
+        try (Statement statement = connection.createStatement()) {
+            for (String sql : Files.readString(SCHEMA).split(";\\s*(\\R|$)")) {
+                if (sql.isBlank())
+                    continue;
+                statement.execute(sql);
+                if (sql.strip().toUpperCase(Locale.ROOT).startsWith("USE "))
+                    defineUuidToBin(statement);
+            }
+        }
+    }
+
+    // the sample rows of schema.sql use UUID_TO_BIN, a MySQL 8 function MariaDB does not have
+    private static void defineUuidToBin(Statement statement) throws SQLException {
+        try {
+            statement.executeQuery("SELECT UUID_TO_BIN(UUID())").close();
+        } catch (SQLException missing) {
+            statement.execute("CREATE FUNCTION UUID_TO_BIN(uuid CHAR(36)) RETURNS BINARY(16) DETERMINISTIC "
+                    + "RETURN UNHEX(REPLACE(uuid, '-', ''))");
+        }
+    }
+
+    private record PlanRow(String table, String type, String key, long rows, String extra) {
+
+        List<String> findings() {
+            List<String> findings = new ArrayList<>();
+            if (rows >= MAX_ROWS && ("ALL".equals(type) || "index".equals(type)))
+                findings.add("full scan");
+            if (rows >= MAX_ROWS && extra.contains("Using filesort"))
+                findings.add("filesort");
+            return findings;
+        }
+
+        String format(String tableName) {
+            return "%-22s %-8s %-28s %10d  %s".formatted(tableName, type, Objects.requireNonNullElse(key, "-"), rows, extra);
+        }
+    }
+
+    // existing rows to call the repository methods with: a paid order, its user and basket, a line of that basket
+    private record Sample(UUID orderId, UUID userId, UUID basketId, UUID productId, String email, String category,
+                          String paypalOrderId, OrderStatus orderStatus) {
+
+        static Sample load(String url) throws SQLException {
+            try (Connection connection = DriverManager.getConnection(url, "root", "");
+                 Statement statement = connection.createStatement();
+                 ResultSet result = statement.executeQuery(
+                         "SELECT o.id, o.user_id, o.basket_id, bi.product_id, u.email, p.category, o.paypal_order_id, o.order_status "
+                                 + "FROM `order` o JOIN `user` u ON u.id = o.user_id JOIN basket_item bi ON bi.basket_id = o.basket_id "
+                                 + "JOIN product p ON p.id = bi.product_id WHERE o.paypal_order_id IS NOT NULL LIMIT 1")) {
+                if (!result.next())
+                    throw new IllegalStateException("The seeded dataset has no paid order");
+                return new Sample(uuid(result.getBytes(1)), uuid(result.getBytes(2)), uuid(result.getBytes(3)),
+                        uuid(result.getBytes(4)), result.getString(5), result.getString(6), result.getString(7),
+                        OrderStatus.valueOf(result.getString(8)));
+            }
+        }
+
+        private static UUID uuid(byte[] bytes) {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            return new UUID(buffer.getLong(), buffer.getLong());
+        }
+    }
+
+    @TestConfiguration
+    static class CaptureConfiguration {
+
+        // outermost proxy around the application DataSource, so it sees the SQL exactly as it is sent
+        @Bean
+        static BeanPostProcessor capturingDataSource() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(@NonNull Object bean, @NonNull String beanName) {
+                    if ("dataSource".equals(beanName) && bean instanceof DataSource dataSource)
+                        return ProxyDataSourceBuilder.create("query-plans", dataSource).listener(CAPTURE).build();
+                    return bean;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.fabiolima.e_commerce.queryplan;
+
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import net.ttddyy.dsproxy.proxy.ParameterSetOperation;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Records the statements sent through the application DataSource, with their bind values, while the thread that
+ * called {@link #record} runs the invocation. The scheduled jobs of the application run on other threads and are
+ * left out.
+ */
+class StatementCapture implements QueryExecutionListener {
+
+    private final List<CapturedStatement> statements = new ArrayList<>();
+    private volatile Thread recordingThread;
+
+    List<CapturedStatement> record(Runnable invocation) {
+        statements.clear();
+        recordingThread = Thread.currentThread();
+        try {
+            invocation.run();
+        } finally {
+            recordingThread = null;
+        }
+        return List.copyOf(statements);
+    }
+
+    @Override
+    public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+    }
+
+    @Override
+    public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        if (Thread.currentThread() != recordingThread)
+            return;
+        for (QueryInfo query : queryInfoList) {
+            List<List<ParameterSetOperation>> parameters = query.getParametersList();
+            statements.add(new CapturedStatement(query.getQuery(),
+                    parameters.isEmpty() ? List.of() : List.copyOf(parameters.getFirst())));
+        }
+    }
+
+    /** the first set of bind values only: a batch runs the same plan for every set */
+    record CapturedStatement(String sql, List<ParameterSetOperation> parameters) {}
+}
@@ -0,0 +1,371 @@
+package com.fabiolima.e_commerce.seed;
+
+import org.springframework.security.crypto.bcrypt.BCrypt;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.sql.*;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Writes a benchmark-scale dataset straight into the schema of MySQL/initdb/schema.sql, without going through
+ * the services: customers, a catalog split in categories, historical orders (each with its checked-out basket and
+ * its items) and ACTIVE baskets idle for longer than the expiry job allows. Products are picked with a Zipfian
+ * popularity, so a few products appear in most orders and baskets as they do in production.
+ * <p>
+ * Every row is derived from (seed, table, row number) only: the same settings write the same rows whatever the
+ * number of threads, and a row another table points to (e.g. the product of an order item) is recomputed instead
+ * of read back. The row ranges are split in chunks written in parallel, each over its own connection with
+ * multi-row inserts (rewriteBatchedStatements), foreign key and unique checks off, and one commit per chunk.
+ * <p>
+ * Run it on a freshly created schema (the roles of schema.sql are reused):
+ * <pre>
+ * mvn -P seed compile exec:java -Dseed.url=jdbc:mysql://localhost:3306/e-commerce -Dseed.user=root -Dseed.password=...
+ * </pre>
+ * Volumes and skew are set with -Dseed.users, seed.products, seed.categories, seed.orders, seed.max-items-per-order,
+ * seed.stale-baskets, seed.stale-days, seed.zipf-exponent, seed.seed and seed.reference-date (see {@link SeedConfig}).
+ * Seeded users log in with their email (userN@seed.com) and {@link #PASSWORD}.
+ */
+public final class DataSeeder {
+
+    static final String PASSWORD = "Seeded1!";
+    // a fixed salt keeps the hash, and so the user rows, the same on every run
+    private static final String PASSWORD_HASH = BCrypt.hashpw(PASSWORD, "$2a$10$SeededUsersShareOneSal");
+
+    private static final int USER = 1;
+    private static final int PRODUCT = 2;
+    private static final int ORDER = 3;
+    private static final int STALE_BASKET = 4;
+    private static final int ROLE = 5;
+    private static final long HISTORY_MINUTES = 2L * 365 * 24 * 60;
+
+    private static final String INSERT_USER = "INSERT INTO `user` (id, name, email, password, address, status, created_at, updated_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String INSERT_USER_ROLE = "INSERT INTO `user_roles` (user_id, role_id) VALUES (?, ?)";
+    private static final String INSERT_PRODUCT = "INSERT INTO `product` (id, version, name, description, price, image_src, stock, stock_shards, category, created_at, updated_at) VALUES (?, 0, ?, ?, ?, ?, ?, 0, ?, ?, ?)";
+    private static final String INSERT_BASKET = "INSERT INTO `basket` (id, version, user_id, status, created_at, updated_at) VALUES (?, 0, ?, ?, ?, ?)";
+    private static final String INSERT_BASKET_ITEM = "INSERT INTO `basket_item` (id, version, basket_id, product_id, quantity, created_at, updated_at) VALUES (?, 0, ?, ?, ?, ?, ?)";
+    private static final String INSERT_ORDER = "INSERT INTO `order` (id, version, user_id, basket_id, total_price, payment_status, order_status, paypal_order_id, created_at, updated_at) VALUES (?, 0, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String INSERT_ORDER_ITEM = "INSERT INTO `order_item` (id, order_id, product_id, product_name, product_price, quantity, created_at, updated_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final SeedConfig config;
+    private final String url;
+    private ZipfianSampler popularity;
+
+    DataSeeder(SeedConfig config) {
+        this.config = config;
+        this.url = config.url().contains("rewriteBatchedStatements") ? config.url()
+                : config.url() + (config.url().contains("?") ? "&" : "?") + "rewriteBatchedStatements=true";
+    }
+
+    public static void main(String[] args) throws Exception {
+        new DataSeeder(SeedConfig.fromSystemProperties()).run();
+    }
+
+    void run() throws Exception {
+        System.out.printf("Seeding %s: %,d users, %,d products in %d categories, %,d orders, %,d stale baskets "
+                        + "(zipf %.2f, seed %d, %d threads)%n", config.url(), config.users(), config.products(),
+                config.categories(), config.orders(), config.staleBaskets(), config.zipfExponent(), config.seed(),
+                config.threads());
+        long start = System.nanoTime();
+        popularity = new ZipfianSampler(config.products(), config.zipfExponent());
+        byte[] customerRole = customerRoleId();
+
+        try (ExecutorService executor = Executors.newFixedThreadPool(config.threads())) {
+            write(executor, "users", config.users(), (connection, from, to) -> writeUsers(connection, from, to, customerRole));
+            write(executor, "products", config.products(), this::writeProducts);
+            write(executor, "orders", config.orders(), this::writeOrders);
+            write(executor, "stale baskets", config.staleBaskets(), this::writeStaleBaskets);
+        }
+        System.out.printf("Done in %.1fs%n", (System.nanoTime() - start) / 1e9);
+    }
+
+    private long writeUsers(Connection connection, long from, long to, byte[] customerRole) throws SQLException {
+        try (Batch users = new Batch(connection, INSERT_USER);
+             Batch userRoles = new Batch(connection, INSERT_USER_ROLE)) {
+            for (long i = from; i < to; i++) {
+                SplittableRandom random = row(USER, i);
+                byte[] id = uuid(random);
+                Timestamp createdAt = minutesAgo(random.nextLong(HISTORY_MINUTES));
+                PreparedStatement user = users.row();
+                user.setBytes(1, id);
+                user.setString(2, "Seeded User " + i);
+                user.setString(3, "user" + i + "@seed.com");
+                user.setString(4, PASSWORD_HASH);
+                user.setString(5, i + " Seed Street");
+                user.setString(6, "ACTIVE");
+                user.setTimestamp(7, createdAt);
+                user.setTimestamp(8, createdAt);
+                users.add();
+
+                userRoles.row().setBytes(1, id);
+                userRoles.row().setBytes(2, customerRole);
+                userRoles.add();
+            }
+        }
+        connection.commit();
+        return 2 * (to - from);
+    }
+
+    private long writeProducts(Connection connection, long from, long to) throws SQLException {
+        try (Batch products = new Batch(connection, INSERT_PRODUCT)) {
+            for (long i = from; i < to; i++) {
+                CatalogEntry entry = product(i);
+                Timestamp createdAt = minutesAgo(HISTORY_MINUTES);
+                PreparedStatement product = products.row();
+                product.setBytes(1, entry.id());
+                product.setString(2, entry.name());
+                product.setString(3, "Seeded product " + i + " of " + entry.category());
+                product.setBigDecimal(4, entry.price());
+                product.setString(5, "https://cdn.example.com/products/" + i + ".jpg");
+                product.setInt(6, entry.stock());
+                product.setString(7, entry.category());
+                product.setTimestamp(8, createdAt);
+                product.setTimestamp(9, createdAt);
+                products.add();
+            }
+        }
+        connection.commit();
+        return to - from;
+    }
+
+    // an order, the basket it was checked out from and its items
+    private long writeOrders(Connection connection, long from, long to) throws SQLException {
+        long rows = 0;
+        try (Batch baskets = new Batch(connection, INSERT_BASKET);
+             Batch orders = new Batch(connection, INSERT_ORDER);
+             Batch orderItems = new Batch(connection, INSERT_ORDER_ITEM)) {
+            for (long i = from; i < to; i++) {
+                SplittableRandom random = row(ORDER, i);
+                byte[] orderId = uuid(random);
+                byte[] basketId = uuid(random);
+                byte[] userId = uuid(row(USER, random.nextInt(config.users())));
+                long minutesAgo = random.nextLong(HISTORY_MINUTES);
+                Timestamp createdAt = minutesAgo(minutesAgo);
+
+                BigDecimal total = BigDecimal.ZERO;
+                for (int productIndex : distinctProducts(random, 1 + random.nextInt(config.maxItemsPerOrder()))) {
+                    CatalogEntry entry = product(productIndex);
+                    int quantity = 1 + random.nextInt(3);
+                    PreparedStatement item = orderItems.row();
+                    item.setBytes(1, uuid(random));
+                    item.setBytes(2, orderId);
+                    item.setBytes(3, entry.id());
+                    item.setString(4, entry.name());
+                    item.setBigDecimal(5, entry.price());
+                    item.setInt(6, quantity);
+                    item.setTimestamp(7, createdAt);
+                    item.setTimestamp(8, createdAt);
+                    orderItems.add();
+                    total = total.add(entry.price().multiply(BigDecimal.valueOf(quantity)));
+                    rows++;
+                }
+
+                int outcome = random.nextInt(100);
+                String orderStatus = outcome < 80 ? "COMPLETED" : outcome < 92 ? "PAID" : outcome < 97 ? "CANCELLED" : "PENDING";
+                boolean paid = outcome < 92;
+
+                PreparedStatement basket = baskets.row();
+                basket.setBytes(1, basketId);
+                basket.setBytes(2, userId);
+                basket.setString(3, "CHECKED_OUT");
+                basket.setTimestamp(4, minutesAgo(minutesAgo + 30));
+                basket.setTimestamp(5, createdAt);
+                baskets.add();
+
+                PreparedStatement order = orders.row();
+                order.setBytes(1, orderId);
+                order.setBytes(2, userId);
+                order.setBytes(3, basketId);
+                order.setBigDecimal(4, total);
+                order.setString(5, paid ? "COMPLETED" : "PENDING");
+                order.setString(6, orderStatus);
+                order.setString(7, paid ? paypalOrderId(random) : null);
+                order.setTimestamp(8, createdAt);
+                order.setTimestamp(9, minutesAgo(Math.max(0, minutesAgo - 10)));
+                orders.add();
+                rows += 2;
+            }
+        }
+        connection.commit();
+        return rows;
+    }
+
+    // ACTIVE baskets of the first users, idle for more than stale-days
+    private long writeStaleBaskets(Connection connection, long from, long to) throws SQLException {
+        long rows = 0;
+        try (Batch baskets = new Batch(connection, INSERT_BASKET);
+             Batch basketItems = new Batch(connection, INSERT_BASKET_ITEM)) {
+            for (long i = from; i < to; i++) {
+                SplittableRandom random = row(STALE_BASKET, i);
+                byte[] basketId = uuid(random);
+                long idleMinutes = config.staleDays() * 24L * 60 + random.nextLong(60L * 24 * 60);
+                Timestamp lastUpdated = minutesAgo(idleMinutes);
+
+                PreparedStatement basket = baskets.row();
+                basket.setBytes(1, basketId);
+                basket.setBytes(2, uuid(row(USER, i)));
+                basket.setString(3, "ACTIVE");
+                basket.setTimestamp(4, minutesAgo(idleMinutes + random.nextInt(24 * 60)));
+                basket.setTimestamp(5, lastUpdated);
+                baskets.add();
+
+                for (int productIndex : distinctProducts(random, 1 + random.nextInt(5))) {
+                    PreparedStatement item = basketItems.row();
+                    item.setBytes(1, uuid(random));
+                    item.setBytes(2, basketId);
+                    item.setBytes(3, product(productIndex).id());
+                    item.setInt(4, 1 + random.nextInt(3));
+                    item.setTimestamp(5, lastUpdated);
+                    item.setTimestamp(6, lastUpdated);
+                    basketItems.add();
+                    rows++;
+                }
+                rows++;
+            }
+        }
+        connection.commit();
+        return rows;
+    }
+
+    private CatalogEntry product(long index) {
+        SplittableRandom random = row(PRODUCT, index);
+        byte[] id = uuid(random);
+        return new CatalogEntry(id, "Product " + index, "Category " + (index % config.categories()),
+                BigDecimal.valueOf(100 + random.nextInt(99_900), 2), 100 + random.nextInt(10_000));
+    }
+
+    // a basket or an order holds a product at most once
+    private int[] distinctProducts(SplittableRandom random, int count) {
+        int[] products = new int[Math.min(count, config.products())];
+        for (int i = 0; i < products.length; i++) {
+            int candidate;
+            boolean duplicate;
+            do {
+                candidate = popularity.sample(random);
+                duplicate = false;
+                for (int j = 0; j < i && !duplicate; j++)
+                    duplicate = products[j] == candidate;
+            } while (duplicate);
+            products[i] = candidate;
+        }
+        return products;
+    }
+
+    private byte[] customerRoleId() throws SQLException {
+        try (Connection connection = connect();
+             PreparedStatement select = connection.prepareStatement("SELECT id FROM `role` WHERE name = 'ROLE_CUSTOMER'")) {
+            try (ResultSet result = select.executeQuery()) {
+                if (result.next())
+                    return result.getBytes(1);
+            }
+            byte[] id = uuid(row(ROLE, 0));
+            try (PreparedStatement insert = connection.prepareStatement("INSERT INTO `role` (id, name) VALUES (?, 'ROLE_CUSTOMER')")) {
+                insert.setBytes(1, id);
+                insert.executeUpdate();
+            }
+            connection.commit();
+            return id;
+        }
+    }
+
+    private void write(ExecutorService executor, String label, long count, ChunkWriter writer) throws Exception {
+        long start = System.nanoTime();
+        List<Future<Long>> chunks = new ArrayList<>();
+        for (long from = 0; from < count; from += config.chunkSize()) {
+            long chunkFrom = from;
+            long chunkTo = Math.min(count, from + config.chunkSize());
+            chunks.add(executor.submit(() -> {
+                try (Connection connection = connect()) {
+                    return writer.write(connection, chunkFrom, chunkTo);
+                }
+            }));
+        }
+        long rows = 0;
+        for (Future<Long> chunk : chunks)
+            rows += chunk.get();
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%-14s %,13d rows in %7.1fs (%,.0f rows/s)%n", label, rows, seconds, rows / Math.max(seconds, 1e-3));
+    }
+
+    private Connection connect() throws SQLException {
+        Connection connection = DriverManager.getConnection(url, config.user(), config.password());
+        connection.setAutoCommit(false);
+        try (Statement session = connection.createStatement()) {
+            session.execute("SET foreign_key_checks = 0");
+            session.execute("SET unique_checks = 0");
+        }
+        return connection;
+    }
+
+    private SplittableRandom row(int table, long index) {
+        return new SplittableRandom(config.seed() * 1_000_003L ^ ((long) table << 48) ^ index);
+    }
+
+    private Timestamp minutesAgo(long minutes) {
+        return Timestamp.valueOf(config.referenceTime().minusMinutes(minutes));
+    }
+
+    // random (version 4) UUID as stored in the BINARY(16) columns
+    private static byte[] uuid(SplittableRandom random) {
+        long high = (random.nextLong() & ~0xF000L) | 0x4000L;
+        long low = (random.nextLong() & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+        return ByteBuffer.allocate(16).putLong(high).putLong(low).array();
+    }
+
+    private static String paypalOrderId(SplittableRandom random) {
+        StringBuilder id = new StringBuilder(17);
+        for (int i = 0; i < 17; i++)
+            id.append("0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ".charAt(random.nextInt(36)));
+        return id.toString();
+    }
+
+    private record CatalogEntry(byte[] id, String name, String category, BigDecimal price, int stock) {}
+
+    @FunctionalInterface
+    private interface ChunkWriter {
+        /** writes rows [from, to) and returns the number of rows inserted in all tables */
+        long write(Connection connection, long from, long to) throws SQLException;
+    }
+
+    // rows of one statement, sent as a multi-row insert every batch-size rows
+    private final class Batch implements AutoCloseable {
+        private final PreparedStatement statement;
+        private int pending;
+
+        Batch(Connection connection, String sql) throws SQLException {
+            statement = connection.prepareStatement(sql);
+        }
+
+        PreparedStatement row() {
+            return statement;
+        }
+
+        void add() throws SQLException {
+            statement.addBatch();
+            if (++pending == config.batchSize())
+                flush();
+        }
+
+        private void flush() throws SQLException {
+            if (pending > 0) {
+                statement.executeBatch();
+                pending = 0;
+            }
+        }
+
+        @Override
+        public void close() throws SQLException {
+            try {
+                flush();
+            } finally {
+                statement.close();
+            }
+        }
+    }
+}
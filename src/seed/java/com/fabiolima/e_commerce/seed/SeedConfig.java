@@ -0,0 +1,41 @@
+package com.fabiolima.e_commerce.seed;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Seeder settings, read from -Dseed.* system properties. The defaults are the benchmark-scale dataset.
+ */
+record SeedConfig(String url, String user, String password,
+                  int users, int products, int categories, long orders, int maxItemsPerOrder, int staleBaskets,
+                  int staleDays, double zipfExponent, long seed, LocalDateTime referenceTime,
+                  int threads, int batchSize, int chunkSize) {
+
+    static SeedConfig fromSystemProperties() {
+        return new SeedConfig(
+                System.getProperty("seed.url", "jdbc:mysql://localhost:3306/e-commerce"),
+                System.getProperty("seed.user", "root"),
+                System.getProperty("seed.password", ""),
+                Integer.getInteger("seed.users", 500_000),
+                Integer.getInteger("seed.products", 1_000_000),
+                Integer.getInteger("seed.categories", 50),
+                Long.getLong("seed.orders", 4_000_000L),
+                Integer.getInteger("seed.max-items-per-order", 7),
+                Integer.getInteger("seed.stale-baskets", 100_000),
+                Integer.getInteger("seed.stale-days", 30),
+                Double.parseDouble(System.getProperty("seed.zipf-exponent", "1.0")),
+                Long.getLong("seed.seed", 42L),
+                // every timestamp is relative to this, so two runs with the same settings write the same rows
+                LocalDate.parse(System.getProperty("seed.reference-date", LocalDate.now().toString())).atStartOfDay(),
+                Integer.getInteger("seed.threads", Runtime.getRuntime().availableProcessors()),
+                Integer.getInteger("seed.batch-size", 1_000),
+                Integer.getInteger("seed.chunk-size", 20_000));
+    }
+
+    SeedConfig {
+        if (staleBaskets > users)
+            throw new IllegalArgumentException("Every stale basket belongs to its own user: seed.stale-baskets must not exceed seed.users");
+        if (maxItemsPerOrder > products)
+            throw new IllegalArgumentException("seed.max-items-per-order must not exceed seed.products");
+    }
+}
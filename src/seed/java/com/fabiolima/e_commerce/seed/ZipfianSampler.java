@@ -0,0 +1,33 @@
+package com.fabiolima.e_commerce.seed;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Draws ranks 0..n-1 with probability proportional to 1/(rank+1)^exponent, so rank 0 is the most popular.
+ * An exponent of 0 is uniform, around 1 is the usual long tail of a catalog. Sampling is a binary search
+ * in the cumulative distribution (8 bytes per rank, built once and shared by all threads).
+ */
+final class ZipfianSampler {
+
+    private final double[] cumulative;
+
+    ZipfianSampler(int n, double exponent) {
+        if (n <= 0)
+            throw new IllegalArgumentException("n must be positive");
+        cumulative = new double[n];
+        double sum = 0;
+        for (int rank = 0; rank < n; rank++) {
+            sum += 1 / Math.pow(rank + 1, exponent);
+            cumulative[rank] = sum;
+        }
+        for (int rank = 0; rank < n; rank++)
+            cumulative[rank] /= sum;
+    }
+
+    int sample(SplittableRandom random) {
+        int index = Arrays.binarySearch(cumulative, random.nextDouble());
+        int rank = index >= 0 ? index : -index - 1;
+        return Math.min(rank, cumulative.length - 1);
+    }
+}
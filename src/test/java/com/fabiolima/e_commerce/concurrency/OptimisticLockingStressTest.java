@@ -0,0 +1,212 @@
+package com.fabiolima.e_commerce.concurrency;
+
+import com.fabiolima.e_commerce.entities.*;
+import com.fabiolima.e_commerce.entities.enums.BasketStatus;
+import com.fabiolima.e_commerce.entities.enums.OrderStatus;
+import com.fabiolima.e_commerce.exceptions.ForbiddenException;
+import com.fabiolima.e_commerce.repository.*;
+import com.fabiolima.e_commerce.service.BasketItemService;
+import com.fabiolima.e_commerce.service.OrderService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Concurrent writers on the same rows, with no pessimistic locks: every call either commits on top of the
+ * latest version (after retrying) or fails as a whole, so no update is lost.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:optimistic-locking;DB_CLOSE_DELAY=-1",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.globally_quoted_identifiers=true",
+        "spring.jpa.properties.hibernate.type.preferred_uuid_jdbc_type=BINARY"
+})
+class OptimisticLockingStressTest {
+
+    private static final int INITIAL_STOCK = 10_000;
+
+    @Autowired
+    private BasketItemService basketItemService;
+    @Autowired
+    private OrderService orderService;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private BasketRepository basketRepository;
+    @Autowired
+    private BasketItemRepository basketItemRepository;
+    @Autowired
+    private OrderRepository orderRepository;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void concurrentIncrements_ShouldNotLoseUpdates() throws Exception {
+        //given
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        UUID[] ids = transaction.execute(status -> {
+            Product product = product();
+            Basket basket = basket(user("increment@user.com"), product);
+            return new UUID[]{product.getId(), basket.getBasketItems().getFirst().getId()};
+        });
+        UUID productId = ids[0];
+        UUID itemId = ids[1];
+
+        //when
+        int threads = 8;
+        int incrementsPerThread = 10;
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger gaveUp = new AtomicInteger();
+        runConcurrently(threads, () -> {
+            for (int i = 0; i < incrementsPerThread; i++) {
+                try {
+                    basketItemService.incrementItemQuantity(itemId);
+                    succeeded.incrementAndGet();
+                } catch (OptimisticLockingFailureException e) {
+                    gaveUp.incrementAndGet();
+                }
+            }
+        });
+
+        //then
+        assertEquals(threads * incrementsPerThread, succeeded.get() + gaveUp.get());
+        assertEquals(1 + succeeded.get(), basketItemRepository.findById(itemId).orElseThrow().getQuantity());
+        assertEquals(INITIAL_STOCK - succeeded.get(), productRepository.findById(productId).orElseThrow().getStock());
+    }
+
+    @Test
+    void captureRacingCancel_ShouldLeaveEachOrderInExactlyOneFinalState() throws Exception {
+        //given
+        int orders = 10;
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        List<UUID> orderIds = new ArrayList<>();
+        List<UUID> productIds = new ArrayList<>();
+        transaction.executeWithoutResult(status -> {
+            for (int i = 0; i < orders; i++) {
+                Product product = product();
+                productIds.add(product.getId());
+                orderIds.add(pendingOrder(basket(user("race" + i + "@user.com"), product)).getId());
+            }
+        });
+
+        //when: for every order, a PayPal capture (PENDING -> PAID) and a user cancel start at the same time
+        AtomicInteger paid = new AtomicInteger();
+        AtomicInteger cancelled = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        AtomicInteger gaveUp = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(2 * orders);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> futures = new ArrayList<>();
+            for (UUID orderId : orderIds) {
+                futures.add(executor.submit(() -> race(start, rejected, gaveUp,
+                        () -> orderService.updateOrderStatus(orderId, "PAID"), paid)));
+                futures.add(executor.submit(() -> race(start, rejected, gaveUp,
+                        () -> orderService.cancelOrder(orderId), cancelled)));
+            }
+            start.countDown();
+            for (Future<?> future : futures)
+                future.get(30, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        //then: never two winners for one order; a loser normally sees the new status after its retry
+        assertEquals(2 * orders, paid.get() + cancelled.get() + rejected.get() + gaveUp.get());
+        assertEquals(orders, paid.get() + cancelled.get());
+        long paidOrders = orderIds.stream()
+                .filter(id -> orderRepository.findById(id).orElseThrow().getOrderStatus() == OrderStatus.PAID).count();
+        long cancelledOrders = orderIds.stream()
+                .filter(id -> orderRepository.findById(id).orElseThrow().getOrderStatus() == OrderStatus.CANCELLED).count();
+        assertEquals(paid.get(), paidOrders);
+        assertEquals(cancelled.get(), cancelledOrders);
+        // every cancelled order gave its single unit back exactly once
+        int stock = productIds.stream().mapToInt(id -> productRepository.findById(id).orElseThrow().getStock()).sum();
+        assertEquals(orders * INITIAL_STOCK + cancelled.get(), stock);
+    }
+
+    private static void race(CountDownLatch start, AtomicInteger rejected, AtomicInteger gaveUp,
+                             Runnable call, AtomicInteger won) {
+        try {
+            start.await();
+            call.run();
+            won.incrementAndGet();
+        } catch (ForbiddenException e) {
+            rejected.incrementAndGet();
+        } catch (OptimisticLockingFailureException e) {
+            gaveUp.incrementAndGet();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void runConcurrently(int threads, Runnable task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            CyclicBarrier barrier = new CyclicBarrier(threads);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++)
+                futures.add(executor.submit(() -> {
+                    barrier.await();
+                    task.run();
+                    return null;
+                }));
+            for (Future<?> future : futures)
+                future.get(60, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private User user(String email) {
+        User user = new User();
+        user.setName("Stress User");
+        user.setEmail(email);
+        user.setPassword("secret");
+        return userRepository.save(user);
+    }
+
+    private Product product() {
+        Product product = new Product();
+        product.setProductName("Console");
+        product.setProductPrice(new BigDecimal("10.00"));
+        product.setCategory("Electronics");
+        product.setStock(INITIAL_STOCK);
+        return productRepository.save(product);
+    }
+
+    private Basket basket(User user, Product product) {
+        Basket basket = new Basket();
+        user.addBasketToUser(basket);
+        basket.addBasketItemToBasket(BasketItem.builder().product(product).quantity(1).build());
+        return basketRepository.save(basket);
+    }
+
+    // a checked-out basket, so a cancelled order gives its unit back
+    private Order pendingOrder(Basket basket) {
+        basket.setBasketStatus(BasketStatus.CHECKED_OUT);
+        Order order = new Order();
+        order.setBasket(basket);
+        order.setTotalPrice(new BigDecimal("10.00"));
+        basket.getUser().addOrderToUser(order);
+        order.addOrderItemToOrder(OrderItem.builder().productId(basket.getBasketItems().getFirst().getProduct().getId())
+                .productName("Console").price(new BigDecimal("10.00")).quantity(1).build());
+        return orderRepository.save(order);
+    }
+}
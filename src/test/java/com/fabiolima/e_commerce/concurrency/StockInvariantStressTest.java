@@ -0,0 +1,364 @@
+package com.fabiolima.e_commerce.concurrency;
+
+import com.fabiolima.e_commerce.entities.*;
+import com.fabiolima.e_commerce.entities.enums.BasketStatus;
+import com.fabiolima.e_commerce.entities.enums.OrderStatus;
+import com.fabiolima.e_commerce.exceptions.BusinessException;
+import com.fabiolima.e_commerce.repository.*;
+import com.fabiolima.e_commerce.service.BasketItemService;
+import com.fabiolima.e_commerce.service.BasketService;
+import com.fabiolima.e_commerce.service.OrderService;
+import com.fabiolima.e_commerce.service.UserService;
+import com.fabiolima.e_commerce.service.implementation.ResponseAssembler;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Thousands of randomized basket and order operations from concurrent shoppers, with the expiry job sweeping
+ * at the same time, then a check of what must hold whatever the interleaving:
+ * for every product, initial stock = stock + quantities in ACTIVE baskets + quantities sold (CHECKED_OUT baskets);
+ * no negative stock, no basket with two lines for one product or an empty line, at most one ACTIVE basket per user.
+ * <p>
+ * Each worker plays its own shoppers, one request after the other as a client would; they meet on the shared
+ * products and, through the expiry job, on each other's baskets. The schedules come from -Dstress.seed (random
+ * when not set, and printed on failure): the same seed replays the same schedules, the thread interleaving
+ * still varies between runs. -Dstress.operations and -Dstress.workers change the size of the run.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:stock-invariants;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.globally_quoted_identifiers=true",
+        "spring.jpa.properties.hibernate.type.preferred_uuid_jdbc_type=BINARY"
+})
+class StockInvariantStressTest {
+
+    private static final int INITIAL_STOCK = 300;
+    private static final int PRODUCTS = 6;
+    private static final int USERS_PER_WORKER = 3;
+
+    @Autowired
+    private BasketItemService basketItemService;
+    @Autowired
+    private BasketService basketService;
+    @Autowired
+    private OrderService orderService;
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private ResponseAssembler responseAssembler;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private BasketRepository basketRepository;
+    @Autowired
+    private OrderRepository orderRepository;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final List<UUID> productIds = new ArrayList<>();
+    private final List<UUID> userIds = new ArrayList<>();
+    private final Map<Kind, Outcome> outcomes = new EnumMap<>(Kind.class);
+    private final Queue<String> unexpected = new ConcurrentLinkedQueue<>();
+
+    @Test
+    void randomizedConcurrentOperations_ShouldKeepStockAndBasketInvariants() throws Exception {
+        //given
+        long seed = Long.getLong("stress.seed", new SplittableRandom().nextLong());
+        int workers = Integer.getInteger("stress.workers", 8);
+        int operations = Integer.getInteger("stress.operations", 4000);
+        for (Kind kind : Kind.values())
+            outcomes.put(kind, new Outcome());
+
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.executeWithoutResult(status -> {
+            for (int p = 0; p < PRODUCTS; p++)
+                productIds.add(product(p).getId());
+            for (int u = 0; u < workers * USERS_PER_WORKER; u++) {
+                User user = user("stress" + u + "@user.com");
+                basketService.createBasketAndAddToUser(user);
+                userIds.add(user.getId());
+            }
+        });
+
+        List<List<Op>> schedules = new ArrayList<>();
+        for (int w = 0; w < workers; w++)
+            schedules.add(schedule(new SplittableRandom(seed + w), w, operations / workers));
+
+        //when: the workers run their schedules while the expiry job keeps sweeping
+        AtomicBoolean running = new AtomicBoolean(true);
+        ExecutorService executor = Executors.newFixedThreadPool(workers + 1);
+        try {
+            Future<?> sweeper = executor.submit(() -> {
+                while (running.get()) {
+                    run(Kind.EXPIRY_SWEEP, () -> {
+                        basketService.deleteExpiredBasketAndAddNewOne();
+                        return true;
+                    });
+                    Thread.sleep(10);
+                }
+                return null;
+            });
+            CyclicBarrier barrier = new CyclicBarrier(workers);
+            List<Future<?>> futures = new ArrayList<>();
+            for (List<Op> schedule : schedules)
+                futures.add(executor.submit(() -> {
+                    barrier.await();
+                    for (Op op : schedule)
+                        run(op.kind(), () -> execute(op));
+                    return null;
+                }));
+            for (Future<?> future : futures)
+                future.get(5, TimeUnit.MINUTES);
+            running.set(false);
+            sweeper.get(1, TimeUnit.MINUTES);
+        } finally {
+            running.set(false);
+            executor.shutdownNow();
+        }
+
+        //then
+        String run = "seed " + seed + " (rerun with -Dstress.seed=" + seed + "), " + outcomes;
+        assertTrue(unexpected.isEmpty(), "unexpected failures with " + run + ":\n" + String.join("\n", unexpected));
+        List<String> violations = violations();
+        assertTrue(violations.isEmpty(), "invariants broken with " + run + ":\n" + String.join("\n", violations));
+        assertTrue(outcomes.get(Kind.CHECKOUT).completed.sum() > 0, "nothing was checked out with " + run);
+        assertTrue(outcomes.get(Kind.CANCEL_ORDER).completed.sum() > 0, "no order was cancelled with " + run);
+    }
+
+    private List<Op> schedule(SplittableRandom random, int worker, int length) {
+        List<Op> schedule = new ArrayList<>(length);
+        int totalWeight = Arrays.stream(Kind.values()).mapToInt(Kind::weight).sum();
+        for (int i = 0; i < length; i++) {
+            int pick = random.nextInt(totalWeight);
+            Kind kind = null;
+            for (Kind candidate : Kind.values()) {
+                pick -= candidate.weight();
+                if (pick < 0) {
+                    kind = candidate;
+                    break;
+                }
+            }
+            schedule.add(new Op(kind, worker * USERS_PER_WORKER + random.nextInt(USERS_PER_WORKER),
+                    random.nextInt(PRODUCTS), 1 + random.nextInt(4), random.nextInt(Integer.MAX_VALUE)));
+        }
+        return schedule;
+    }
+
+    private void run(Kind kind, Callable<Boolean> call) {
+        Outcome outcome = outcomes.get(kind);
+        try {
+            if (call.call())
+                outcome.completed.increment();
+            else
+                outcome.skipped.increment();
+        } catch (BusinessException e) {
+            outcome.rejected.increment();
+        } catch (ConcurrencyFailureException | DataIntegrityViolationException e) {
+            // out of retries, or a line added to a basket the expiry job has just deleted:
+            // either way the whole transaction rolled back
+            outcome.gaveUp.increment();
+        } catch (Exception e) {
+            unexpected.add(kind + ": " + e);
+        }
+    }
+
+    private boolean execute(Op op) {
+        UUID userId = userIds.get(op.user());
+        switch (op.kind()) {
+            case ADD -> {
+                Optional<UUID> basketId = activeBasket(userId);
+                basketId.ifPresent(id -> basketItemService.addItemToBasket(id, productIds.get(op.product()), op.quantity()));
+                return basketId.isPresent();
+            }
+            case INCREMENT -> {
+                Optional<Line> line = line(userId, op.pick());
+                line.ifPresent(l -> basketItemService.incrementItemQuantity(l.itemId()));
+                return line.isPresent();
+            }
+            case DECREMENT -> {
+                Optional<Line> line = line(userId, op.pick());
+                line.ifPresent(l -> basketItemService.decrementItemQuantity(l.basketId(), l.itemId()));
+                return line.isPresent();
+            }
+            case UPDATE -> {
+                Optional<Line> line = line(userId, op.pick());
+                line.ifPresent(l -> basketItemService.updateBasketItem(l.basketId(), l.itemId(), op.quantity() - 1));
+                return line.isPresent();
+            }
+            case CLEAR -> {
+                Optional<UUID> basketId = activeBasket(userId);
+                basketId.ifPresent(basketService::clearBasket);
+                return basketId.isPresent();
+            }
+            case DEACTIVATE -> {
+                Optional<UUID> basketId = activeBasket(userId);
+                basketId.ifPresent(id -> basketService.deactivateBasketById(userId, id));
+                return basketId.isPresent();
+            }
+            case OPEN_BASKET -> {
+                new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+                        basketService.createBasketAndAddToUser(userService.findUserByUserId(userId)));
+                return true;
+            }
+            case CREATE_ORDER -> {
+                // as OrderController does it
+                responseAssembler.write(() -> orderService.createOrderAndAddToUser(userId,
+                        basketService.returnNewestActiveBasket(userService.findUserByUserId(userId))), Order::getId);
+                return true;
+            }
+            case CHECKOUT -> {
+                Optional<UUID> basketId = activeBasket(userId);
+                basketId.ifPresent(id -> basketService.checkoutBasket(userId, id));
+                return basketId.isPresent();
+            }
+            case CANCEL_ORDER -> {
+                List<Order> pending = orderRepository.findByOrderStatusAndUserId(OrderStatus.PENDING, userId,
+                        PageRequest.of(0, 20)).getContent();
+                if (pending.isEmpty())
+                    return false;
+                orderService.cancelOrder(pending.get(op.pick() % pending.size()).getId());
+                return true;
+            }
+            case AGE_BASKET -> {
+                // a day and more without activity, so the next sweep expires it (unless it is touched meanwhile)
+                Optional<UUID> basketId = activeBasket(userId);
+                basketId.ifPresent(id -> new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+                        entityManager.createQuery("UPDATE Basket b SET b.lastUpdated = :lastUpdated WHERE b.id = :id")
+                                .setParameter("lastUpdated", LocalDateTime.now().minusDays(2))
+                                .setParameter("id", id)
+                                .executeUpdate()));
+                return basketId.isPresent();
+            }
+            default -> throw new IllegalStateException(op.kind() + " is not a shopper operation");
+        }
+    }
+
+    private Optional<UUID> activeBasket(UUID userId) {
+        return basketRepository.findActiveBasketByUserId(userId, BasketStatus.ACTIVE).map(Basket::getId);
+    }
+
+    private Optional<Line> line(UUID userId, int pick) {
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        return readOnly.execute(status -> basketRepository.findActiveBasketByUserId(userId, BasketStatus.ACTIVE)
+                .filter(basket -> !basket.getBasketItems().isEmpty())
+                .map(basket -> new Line(basket.getId(),
+                        basket.getBasketItems().get(pick % basket.getBasketItems().size()).getId())));
+    }
+
+    private List<String> violations() {
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        return readOnly.execute(status -> {
+            List<String> violations = new ArrayList<>();
+            Map<UUID, Integer> live = new HashMap<>();
+            Map<UUID, Integer> sold = new HashMap<>();
+            Map<UUID, Integer> activeBaskets = new HashMap<>();
+
+            for (Basket basket : basketRepository.findAll()) {
+                if (basket.getBasketStatus() == BasketStatus.ACTIVE)
+                    activeBaskets.merge(basket.getUser().getId(), 1, Integer::sum);
+                Set<UUID> lines = new HashSet<>();
+                for (BasketItem item : basket.getBasketItems()) {
+                    UUID productId = item.getProduct().getId();
+                    if (!lines.add(productId))
+                        violations.add("basket " + basket.getId() + " has two lines for product " + productId);
+                    if (item.getQuantity() <= 0)
+                        violations.add("basket " + basket.getId() + " has a line of quantity " + item.getQuantity());
+                    if (basket.getBasketStatus() == BasketStatus.ACTIVE)
+                        live.merge(productId, item.getQuantity(), Integer::sum);
+                    else if (basket.getBasketStatus() == BasketStatus.CHECKED_OUT)
+                        sold.merge(productId, item.getQuantity(), Integer::sum);
+                }
+            }
+            activeBaskets.forEach((userId, count) -> {
+                if (count > 1)
+                    violations.add("user " + userId + " has " + count + " ACTIVE baskets");
+            });
+
+            for (Product product : productRepository.findAllById(productIds)) {
+                int stock = product.getStock();
+                int inBaskets = live.getOrDefault(product.getId(), 0);
+                int inOrders = sold.getOrDefault(product.getId(), 0);
+                if (stock < 0)
+                    violations.add(product.getProductName() + " has a negative stock of " + stock);
+                if (stock + inBaskets + inOrders != INITIAL_STOCK)
+                    violations.add("%s: stock %d + in ACTIVE baskets %d + sold %d != %d"
+                            .formatted(product.getProductName(), stock, inBaskets, inOrders, INITIAL_STOCK));
+            }
+            return violations;
+        });
+    }
+
+    private User user(String email) {
+        User user = new User();
+        user.setName("Stress User");
+        user.setEmail(email);
+        user.setPassword("secret");
+        return userRepository.save(user);
+    }
+
+    private Product product(int index) {
+        Product product = new Product();
+        product.setProductName("Console " + index);
+        product.setProductPrice(new BigDecimal("10.00"));
+        product.setCategory("Electronics");
+        product.setStock(INITIAL_STOCK);
+        return productRepository.save(product);
+    }
+
+    private enum Kind {
+        ADD(20), INCREMENT(15), DECREMENT(10), UPDATE(10), CLEAR(4), DEACTIVATE(3), OPEN_BASKET(8),
+        CREATE_ORDER(8), CHECKOUT(6), CANCEL_ORDER(8), AGE_BASKET(4), EXPIRY_SWEEP(0);
+
+        private final int weight;
+
+        Kind(int weight) {
+            this.weight = weight;
+        }
+
+        int weight() {
+            return weight;
+        }
+    }
+
+    /** pick chooses the line or order to act on among those there are when the operation runs */
+    private record Op(Kind kind, int user, int product, int quantity, int pick) {}
+
+    private record Line(UUID basketId, UUID itemId) {}
+
+    private static final class Outcome {
+        private final LongAdder completed = new LongAdder();
+        private final LongAdder skipped = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+        private final LongAdder gaveUp = new LongAdder();
+
+        @Override
+        public String toString() {
+            return "completed=" + completed + " skipped=" + skipped + " rejected=" + rejected + " gaveUp=" + gaveUp;
+        }
+    }
+}
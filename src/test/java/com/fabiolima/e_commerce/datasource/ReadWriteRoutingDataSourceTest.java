@@ -0,0 +1,214 @@
+package com.fabiolima.e_commerce.datasource;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Three embedded databases stand in for the primary and two replicas; each one knows its own name.
+ */
+class ReadWriteRoutingDataSourceTest {
+
+    private static final Duration READ_YOUR_WRITES = Duration.ofSeconds(5);
+
+    private final List<HikariDataSource> pools = new ArrayList<>();
+    private HikariDataSource primary;
+    private ReadWriteRoutingDataSource.Replica replica1;
+    private ReadWriteRoutingDataSource.Replica replica2;
+
+    // called by the databases through the SLOW_QUERY alias
+    public static String slowQuery(String name, int millis) throws InterruptedException {
+        Thread.sleep(millis);
+        return name;
+    }
+
+    @BeforeEach
+    void setUp() {
+        primary = database("primary");
+        replica1 = new ReadWriteRoutingDataSource.Replica("replica-1", database("replica-1"));
+        replica2 = new ReadWriteRoutingDataSource.Replica("replica-2", database("replica-2"));
+        // in sync, as if the lag monitor had checked them
+        replica1.setLagMillis(0);
+        replica2.setLagMillis(0);
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+        pools.forEach(HikariDataSource::close);
+    }
+
+    @Test
+    void readOnlyTransactions_ShouldGoToReplica_AndReadWriteTransactionsToPrimary() {
+        Routing routing = routing(List.of(replica1));
+
+        assertEquals("replica-1", routing.readOnly());
+        assertEquals("primary", routing.readWrite());
+        assertEquals("primary", routing.jdbc.queryForObject("SELECT name FROM node", String.class)); // no transaction
+    }
+
+    @Test
+    void readOnlyTransactions_ShouldRoundRobinOverReplicas() {
+        Routing routing = routing(List.of(replica1, replica2));
+
+        for (int i = 0; i < 10; i++)
+            routing.readOnly();
+
+        assertEquals(5, replica1.getReads());
+        assertEquals(5, replica2.getReads());
+    }
+
+    @Test
+    void laggingReplica_ShouldBeSkipped_AndPrimaryUsedWhenAllReplicasLag() {
+        Routing routing = routing(List.of(replica1, replica2));
+
+        replica1.setLagMillis(10_000);
+        assertEquals("replica-2", routing.readOnly());
+        assertEquals("replica-2", routing.readOnly());
+
+        replica2.setLagMillis(Long.MAX_VALUE);
+        assertEquals("primary", routing.readOnly());
+        assertEquals(1, routing.dataSource.getPrimaryReads());
+    }
+
+    @Test
+    void newReplica_ShouldStayOutOfRotation_UntilTheLagMonitorHasCheckedIt() {
+        ReadWriteRoutingDataSource.Replica unchecked =
+                new ReadWriteRoutingDataSource.Replica("replica-3", database("replica-3"));
+        Routing routing = routing(List.of(unchecked));
+        ReplicaLagMonitor monitor = new ReplicaLagMonitor(routing.dataSource, "SELECT 1 AS seconds_behind", "seconds_behind");
+
+        assertEquals(Long.MAX_VALUE, unchecked.getLagMillis());
+        assertEquals("primary", routing.readOnly());
+
+        monitor.checkReplicas();
+
+        assertEquals(1000, unchecked.getLagMillis());
+        assertEquals("replica-3", routing.readOnly());
+    }
+
+    @Test
+    void unreachableReplica_ShouldBeTakenOutOfRotation_ByTheLagMonitor() {
+        Routing routing = routing(List.of(replica1));
+        ReplicaLagMonitor monitor = new ReplicaLagMonitor(routing.dataSource, "SELECT missing FROM nowhere", "seconds_behind");
+
+        monitor.checkReplicas();
+
+        assertEquals(Long.MAX_VALUE, replica1.getLagMillis());
+        assertEquals("primary", routing.readOnly());
+    }
+
+    @Test
+    void userWhoJustWrote_ShouldReadFromPrimary_UntilTheWindowEnds() {
+        Routing routing = routing(List.of(replica1));
+
+        authenticate("alice@mail.com");
+        routing.readWrite();
+        assertEquals("primary", routing.readOnly());
+        assertEquals(1, routing.dataSource.getStickyReads());
+
+        authenticate("bob@mail.com");
+        assertEquals("replica-1", routing.readOnly());
+
+        long afterWindow = System.nanoTime() + READ_YOUR_WRITES.plusSeconds(1).toNanos();
+        assertFalse(routing.dataSource.isRecentWriter("alice@mail.com", afterWindow));
+        routing.dataSource.evictExpiredWriters(afterWindow);
+        assertEquals(0, routing.dataSource.getTrackedWriters());
+    }
+
+    @Tag("load")
+    @Test
+    void readThroughput_ShouldScaleWithTheNumberOfReplicas() throws Exception {
+        double oneReplica = readsPerSecond(routing(List.of(replica1)));
+        double twoReplicas = readsPerSecond(routing(List.of(replica1, replica2)));
+
+        assertTrue(twoReplicas > oneReplica * 1.5,
+                String.format("1 replica: %.0f reads/s, 2 replicas: %.0f reads/s", oneReplica, twoReplicas));
+    }
+
+    // 8 clients run slow (20ms) read-only transactions against replicas that have 2 connections each
+    private double readsPerSecond(Routing routing) throws Exception {
+        int clients = 8;
+        int readsPerClient = 20;
+        try (ExecutorService executor = Executors.newFixedThreadPool(clients)) {
+            long start = System.nanoTime();
+            List<Future<?>> futures = new ArrayList<>();
+            for (int c = 0; c < clients; c++)
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < readsPerClient; i++)
+                        routing.readOnly.execute(status ->
+                                routing.jdbc.queryForObject("SELECT SLOW_QUERY(name, 20) FROM node", String.class));
+                }));
+            for (Future<?> future : futures)
+                future.get();
+            return clients * readsPerClient / ((System.nanoTime() - start) / 1e9);
+        }
+    }
+
+    private Routing routing(List<ReadWriteRoutingDataSource.Replica> replicas) {
+        return new Routing(new ReadWriteRoutingDataSource(primary, null, replicas, Duration.ofSeconds(2), READ_YOUR_WRITES));
+    }
+
+    private HikariDataSource database(String name) {
+        HikariConfig config = new HikariConfig();
+        config.setJdbcUrl("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1");
+        config.setMaximumPoolSize(2);
+        config.setPoolName(name);
+        HikariDataSource dataSource = new HikariDataSource(config);
+        pools.add(dataSource);
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        jdbc.execute("CREATE TABLE IF NOT EXISTS node (name VARCHAR(20))");
+        jdbc.execute("DELETE FROM node");
+        jdbc.update("INSERT INTO node VALUES (?)", name);
+        jdbc.execute("CREATE ALIAS IF NOT EXISTS SLOW_QUERY FOR '" + getClass().getName() + ".slowQuery'");
+        return dataSource;
+    }
+
+    private static void authenticate(String email) {
+        SecurityContextHolder.getContext().setAuthentication(
+                UsernamePasswordAuthenticationToken.authenticated(email, null, List.of()));
+    }
+
+    private static final class Routing {
+        final ReadWriteRoutingDataSource dataSource;
+        final JdbcTemplate jdbc;
+        final TransactionTemplate readOnly;
+        final TransactionTemplate readWrite;
+
+        Routing(ReadWriteRoutingDataSource dataSource) {
+            this.dataSource = dataSource;
+            LazyConnectionDataSourceProxy proxy = new LazyConnectionDataSourceProxy(dataSource);
+            DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(proxy);
+            this.jdbc = new JdbcTemplate(proxy);
+            this.readWrite = new TransactionTemplate(transactionManager);
+            this.readOnly = new TransactionTemplate(transactionManager);
+            this.readOnly.setReadOnly(true);
+        }
+
+        String readOnly() {
+            return readOnly.execute(status -> jdbc.queryForObject("SELECT name FROM node", String.class));
+        }
+
+        String readWrite() {
+            return readWrite.execute(status -> jdbc.queryForObject("SELECT name FROM node", String.class));
+        }
+    }
+}
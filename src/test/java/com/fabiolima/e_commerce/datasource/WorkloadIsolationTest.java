@@ -0,0 +1,124 @@
+package com.fabiolima.e_commerce.datasource;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Connection;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The primary pool has 4 connections, 2 of them reserved for CRITICAL work; jobs have their own pool.
+ */
+class WorkloadIsolationTest {
+
+    private HikariDataSource primaryPool;
+    private HikariDataSource jobsPool;
+    private ReservedCapacityDataSource primary;
+    private ReadWriteRoutingDataSource routing;
+
+    @BeforeEach
+    void setUp() {
+        primaryPool = database("primary", 4);
+        jobsPool = database("jobs", 2);
+        primary = new ReservedCapacityDataSource(primaryPool, 2, 200);
+        routing = new ReadWriteRoutingDataSource(primary, jobsPool, List.of(), Duration.ofSeconds(2), Duration.ZERO);
+    }
+
+    @AfterEach
+    void tearDown() {
+        routing.close();
+    }
+
+    @Test
+    void backgroundWork_ShouldUseTheJobsPool() {
+        JdbcTemplate jdbc = new JdbcTemplate(routing);
+
+        assertEquals("primary", jdbc.queryForObject("SELECT name FROM node", String.class));
+        WorkloadContext.runAs(Workload.BACKGROUND, () ->
+                assertEquals("jobs", jdbc.queryForObject("SELECT name FROM node", String.class)));
+        assertEquals(Workload.INTERACTIVE, WorkloadContext.current());
+    }
+
+    @Test
+    void busyJobs_ShouldNotTakeConnectionsFromRequests() throws Exception {
+        List<Connection> held = new ArrayList<>();
+        try {
+            WorkloadContext.runAs(Workload.BACKGROUND, () -> {
+                try {
+                    held.add(routing.getConnection());
+                    held.add(routing.getConnection());
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            assertEquals(2, jobsPool.getHikariPoolMXBean().getActiveConnections());
+
+            try (Connection connection = routing.getConnection()) {
+                assertEquals(1, primaryPool.getHikariPoolMXBean().getActiveConnections());
+            }
+        } finally {
+            for (Connection connection : held)
+                connection.close();
+        }
+    }
+
+    @Test
+    void criticalWork_ShouldStillGetAConnection_WhenInteractiveWorkHasUsedTheSharedOnes() throws Exception {
+        List<Connection> held = new ArrayList<>();
+        try {
+            held.add(routing.getConnection());
+            held.add(routing.getConnection());
+            assertEquals(0, primary.getAvailableSharedConnections());
+
+            assertThrows(SQLTransientConnectionException.class, routing::getConnection);
+            assertEquals(1, primary.getRejectedCount());
+
+            Workload previous = WorkloadContext.enter(Workload.CRITICAL);
+            try (Connection connection = routing.getConnection()) {
+                assertTrue(connection.isValid(1));
+            } finally {
+                WorkloadContext.restore(previous);
+            }
+        } finally {
+            for (Connection connection : held)
+                connection.close();
+        }
+        assertEquals(2, primary.getAvailableSharedConnections());
+    }
+
+    @Test
+    void connectionWaits_ShouldBeRecordedPerWorkload() throws Exception {
+        try (Connection connection = routing.getConnection()) {
+            assertNotNull(connection);
+        }
+        WorkloadContext.runAs(Workload.BACKGROUND, () -> new JdbcTemplate(routing).execute("SELECT 1"));
+
+        assertEquals(1, routing.getWaitStats(Workload.INTERACTIVE).getCount());
+        assertEquals(1, routing.getWaitStats(Workload.BACKGROUND).getCount());
+        assertEquals(0, routing.getWaitStats(Workload.CRITICAL).getCount());
+        assertEquals(List.of("primary", "jobs"),
+                routing.getPoolSnapshots().stream().map(ReadWriteRoutingDataSource.PoolSnapshot::pool).toList());
+    }
+
+    private static HikariDataSource database(String name, int poolSize) {
+        HikariConfig config = new HikariConfig();
+        config.setJdbcUrl("jdbc:h2:mem:workload-" + name + ";DB_CLOSE_DELAY=-1");
+        config.setMaximumPoolSize(poolSize);
+        config.setPoolName(name);
+        HikariDataSource dataSource = new HikariDataSource(config);
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        jdbc.execute("CREATE TABLE IF NOT EXISTS node (name VARCHAR(20))");
+        jdbc.execute("DELETE FROM node");
+        jdbc.update("INSERT INTO node VALUES (?)", name);
+        return dataSource;
+    }
+}
@@ -0,0 +1,54 @@
+package com.fabiolima.e_commerce.exceptions;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BusinessExceptionTest {
+
+    @Test
+    void businessExceptions_ShouldNotCaptureAStackTrace() {
+        InsufficientStockException ex = new InsufficientStockException("Out of stock");
+
+        assertEquals(0, ex.getStackTrace().length);
+        assertSame(ex, ex.fillInStackTrace());
+        assertEquals("Out of stock", ex.getMessage());
+    }
+
+    @Test
+    void getMessage_ShouldFormatTheTemplateOnlyWhenRead() {
+        AtomicInteger formatted = new AtomicInteger();
+        Object name = new Object() {
+            @Override
+            public String toString() {
+                formatted.incrementAndGet();
+                return "Test";
+            }
+        };
+
+        InsufficientStockException ex = new InsufficientStockException(
+                "Not enough stock available for product '%s'. Available: %d, Requested: %d", name, 6, 10);
+        assertEquals(0, formatted.get());
+
+        assertEquals("Not enough stock available for product 'Test'. Available: 6, Requested: 10", ex.getMessage());
+        assertEquals("Not enough stock available for product 'Test'. Available: 6, Requested: 10", ex.getMessage());
+        assertEquals(1, formatted.get());
+    }
+
+    @Test
+    void singleArgumentConstructor_ShouldKeepTheMessageAsIs() {
+        assertEquals("100% sold out", new NotFoundException("100% sold out").getMessage());
+    }
+
+    @Test
+    void preallocatedException_CanBeThrownRepeatedly() {
+        TooManyRequestsException shared = new TooManyRequestsException("Too many requests. Please retry later.");
+        for (int i = 0; i < 3; i++) {
+            TooManyRequestsException thrown = assertThrows(TooManyRequestsException.class, () -> { throw shared; });
+            assertSame(shared, thrown);
+            assertEquals(0, thrown.getSuppressed().length);
+        }
+    }
+}
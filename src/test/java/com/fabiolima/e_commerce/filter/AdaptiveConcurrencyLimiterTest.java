@@ -0,0 +1,214 @@
+package com.fabiolima.e_commerce.filter;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The limit is driven with synthetic latencies, so these tests do not depend on the machine running them.
+ * The overload test against a slow embedded database is tagged {@code load}.
+ */
+class AdaptiveConcurrencyLimiterTest {
+
+    private static final long HEALTHY_RTT = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long SLOW_RTT = TimeUnit.MILLISECONDS.toNanos(50);
+    private static final int CLIENTS = 48;
+    private static final int REQUESTS_PER_CLIENT = 40;
+
+    // called by the database through the SLOW_QUERY alias
+    public static int slowQuery(int millis) throws InterruptedException {
+        Thread.sleep(millis);
+        return millis;
+    }
+
+    @Test
+    void release_ShouldShrinkTheLimit_WhenLatencyGrowsAtFullLoad() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(20, 4, 200);
+        saturate(limiter, HEALTHY_RTT, 5);
+        int healthyLimit = limiter.getLimit();
+
+        saturate(limiter, SLOW_RTT, 5);
+
+        assertTrue(healthyLimit >= 20, "limit should hold while latency is steady, was " + healthyLimit);
+        assertTrue(limiter.getLimit() < healthyLimit, "limit should have shrunk, was " + limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    void release_ShouldBackOff_WhenTheRequestFailedOnTheServerSide() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(20, 4, 200);
+
+        // a fast failure while nearly idle: it would not even count as a latency sample
+        assertTrue(limiter.tryAcquire(RouteGroup.PAYMENT));
+        limiter.release(TimeUnit.MILLISECONDS.toNanos(1), AdaptiveConcurrencyLimiter.Outcome.DROPPED);
+
+        assertEquals(18, limiter.getLimit());
+        assertEquals(1, limiter.getDroppedCount());
+
+        for (int i = 0; i < 50; i++) {
+            assertTrue(limiter.tryAcquire(RouteGroup.PAYMENT));
+            limiter.release(TimeUnit.MILLISECONDS.toNanos(1), AdaptiveConcurrencyLimiter.Outcome.DROPPED);
+        }
+        assertEquals(4, limiter.getLimit());
+    }
+
+    @Test
+    void release_ShouldNotMoveTheLimit_ForClientErrors() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(20, 4, 200);
+        saturate(limiter, HEALTHY_RTT, 1);
+        int limit = limiter.getLimit();
+
+        for (int i = 0; i < 20; i++)
+            assertTrue(limiter.tryAcquire(RouteGroup.PAYMENT));
+        for (int i = 0; i < 20; i++)
+            limiter.release(SLOW_RTT, AdaptiveConcurrencyLimiter.Outcome.IGNORED);
+
+        assertEquals(limit, limiter.getLimit());
+        assertEquals(0, limiter.getDroppedCount());
+    }
+
+    @Test
+    void outcome_ShouldCountServerErrorsAsDrops_AndIgnoreClientErrors() {
+        assertEquals(AdaptiveConcurrencyLimiter.Outcome.SUCCESS, ConcurrencyLimitFilter.outcome(200));
+        assertEquals(AdaptiveConcurrencyLimiter.Outcome.SUCCESS, ConcurrencyLimitFilter.outcome(302));
+        assertEquals(AdaptiveConcurrencyLimiter.Outcome.IGNORED, ConcurrencyLimitFilter.outcome(404));
+        assertEquals(AdaptiveConcurrencyLimiter.Outcome.IGNORED, ConcurrencyLimitFilter.outcome(409));
+        assertEquals(AdaptiveConcurrencyLimiter.Outcome.DROPPED, ConcurrencyLimitFilter.outcome(500));
+        assertEquals(AdaptiveConcurrencyLimiter.Outcome.DROPPED, ConcurrencyLimitFilter.outcome(503));
+    }
+
+    @Test
+    void tryAcquire_ShouldReserveCapacityForPayment() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(10, 4, 200);
+
+        for (int i = 0; i < 6; i++)
+            assertTrue(limiter.tryAcquire(RouteGroup.CATALOG));
+
+        assertFalse(limiter.tryAcquire(RouteGroup.CATALOG));
+        assertTrue(limiter.tryAcquire(RouteGroup.PAYMENT));
+        assertTrue(limiter.tryAcquire(RouteGroup.CHECKOUT));
+    }
+
+    @Test
+    void tryAcquire_ShouldShedCatalogButAdmitPayment_AtTheSameLoad() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(20, 4, 200);
+        // 12 requests in flight: the catalog share (60% of 20) is used up, payment may still use all 20
+        for (int i = 0; i < 12; i++)
+            assertTrue(limiter.tryAcquire(RouteGroup.DEFAULT));
+
+        for (int i = 0; i < 5; i++) {
+            assertFalse(limiter.tryAcquire(RouteGroup.CATALOG));
+            assertTrue(limiter.tryAcquire(RouteGroup.PAYMENT));
+            limiter.release(HEALTHY_RTT, AdaptiveConcurrencyLimiter.Outcome.IGNORED);
+        }
+
+        assertEquals(5, limiter.getRejectedCount(RouteGroup.CATALOG));
+        assertEquals(0, limiter.getRejectedCount(RouteGroup.PAYMENT));
+    }
+
+    @Test
+    void tryAcquire_ShouldKeepTheMinimumLimitForPayment_WhenTheLimitHasCollapsed() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(4, 4, 200);
+
+        // catalog gets 60% of 4, payment the whole minimum limit
+        assertTrue(limiter.tryAcquire(RouteGroup.CATALOG));
+        assertTrue(limiter.tryAcquire(RouteGroup.CATALOG));
+        assertFalse(limiter.tryAcquire(RouteGroup.CATALOG));
+        assertTrue(limiter.tryAcquire(RouteGroup.PAYMENT));
+        assertTrue(limiter.tryAcquire(RouteGroup.PAYMENT));
+        assertFalse(limiter.tryAcquire(RouteGroup.PAYMENT));
+    }
+
+    @Tag("load")
+    @Test
+    void limiter_ShouldKeepP99Bounded_WhenDatabaseIsSlow() throws Exception {
+        HikariConfig config = new HikariConfig();
+        config.setJdbcUrl("jdbc:h2:mem:overload;DB_CLOSE_DELAY=-1");
+        config.setMaximumPoolSize(4);
+        config.setConnectionTimeout(30_000);
+        try (HikariDataSource dataSource = new HikariDataSource(config)) {
+            try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+                statement.execute("CREATE ALIAS IF NOT EXISTS SLOW_QUERY FOR '" + getClass().getName() + ".slowQuery'");
+            }
+            Result unlimited = run(dataSource, null);
+            AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(20, 4, 200);
+            Result limited = run(dataSource, limiter);
+
+            assertAll(
+                    () -> assertTrue(limited.p99Millis() < unlimited.p99Millis() / 2,
+                            "p99 with limiter " + limited.p99Millis() + "ms, without " + unlimited.p99Millis() + "ms"),
+                    () -> assertTrue(limiter.getLimit() < 20, "limit should have shrunk, was " + limiter.getLimit()),
+                    () -> assertEquals(0, limiter.getInFlight())
+            );
+        }
+    }
+
+    // fills the limit with payment requests, then completes them all with the given latency, a few times over
+    private static void saturate(AdaptiveConcurrencyLimiter limiter, long rttNanos, int rounds) {
+        for (int round = 0; round < rounds; round++) {
+            int admitted = 0;
+            while (limiter.tryAcquire(RouteGroup.PAYMENT))
+                admitted++;
+            for (int i = 0; i < admitted; i++)
+                limiter.release(rttNanos, AdaptiveConcurrencyLimiter.Outcome.SUCCESS);
+        }
+    }
+
+    private Result run(HikariDataSource dataSource, AdaptiveConcurrencyLimiter limiter) throws InterruptedException {
+        List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger shed = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(CLIENTS);
+
+        for (int client = 0; client < CLIENTS; client++) {
+            // a quarter of the clients are paying, the rest browse the catalog
+            RouteGroup group = client % 4 == 0 ? RouteGroup.PAYMENT : RouteGroup.CATALOG;
+            executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < REQUESTS_PER_CLIENT; i++) {
+                    if (limiter != null && !limiter.tryAcquire(group)) {
+                        shed.incrementAndGet();
+                        Thread.sleep(5); // client backs off as told by Retry-After
+                        continue;
+                    }
+                    long begin = System.nanoTime();
+                    try (Connection connection = dataSource.getConnection();
+                         Statement statement = connection.createStatement()) {
+                        statement.execute("SELECT SLOW_QUERY(20)");
+                    } finally {
+                        long elapsed = System.nanoTime() - begin;
+                        latencies.add(elapsed);
+                        if (limiter != null)
+                            limiter.release(elapsed, AdaptiveConcurrencyLimiter.Outcome.SUCCESS);
+                    }
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.MINUTES));
+
+        List<Long> sorted = new ArrayList<>(latencies);
+        Collections.sort(sorted);
+        long p99 = sorted.get((int) (sorted.size() * 0.99) - 1);
+        return new Result(TimeUnit.NANOSECONDS.toMillis(p99), shed.get());
+    }
+
+    private record Result(long p99Millis, int shed) {
+    }
+}
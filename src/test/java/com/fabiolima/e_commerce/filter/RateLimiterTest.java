@@ -0,0 +1,122 @@
+package com.fabiolima.e_commerce.filter;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RateLimiterTest {
+
+    // auth: 3 per 60s, every other group 5 per 10s
+    private final RateLimiter rateLimiter = new RateLimiter(3, 60, 5, 10, 5, 10, 5, 10, 5, 10, 100);
+
+    @Test
+    void tryAcquire_ShouldRejectRequestsAboveCapacity_AndReportRetryAfter() {
+        long now = 0;
+
+        for (int i = 0; i < 3; i++) {
+            RateLimiter.Decision decision = rateLimiter.tryAcquire(RouteGroup.AUTH, "10.0.0.1", now);
+            assertTrue(decision.allowed());
+            assertEquals(2 - i, decision.remaining());
+        }
+        RateLimiter.Decision rejected = rateLimiter.tryAcquire(RouteGroup.AUTH, "10.0.0.1", now);
+
+        assertAll(
+                () -> assertFalse(rejected.allowed()),
+                () -> assertEquals(0, rejected.remaining()),
+                () -> assertEquals(20, rejected.waitSeconds()), // one token every 20s
+                () -> assertEquals(1, rateLimiter.getRejectedCount(RouteGroup.AUTH))
+        );
+    }
+
+    @Test
+    void tryAcquire_ShouldRefillOverTime() {
+        long now = 0;
+        for (int i = 0; i < 3; i++)
+            rateLimiter.tryAcquire(RouteGroup.AUTH, "user@mail.com", now);
+
+        assertFalse(rateLimiter.tryAcquire(RouteGroup.AUTH, "user@mail.com", now).allowed());
+        assertTrue(rateLimiter.tryAcquire(RouteGroup.AUTH, "user@mail.com", now + TimeUnit.SECONDS.toNanos(20)).allowed());
+    }
+
+    @Test
+    void tryAcquire_ShouldKeepClientsAndGroupsIndependent() {
+        long now = 0;
+        for (int i = 0; i < 3; i++)
+            rateLimiter.tryAcquire(RouteGroup.AUTH, "10.0.0.1", now);
+
+        assertTrue(rateLimiter.tryAcquire(RouteGroup.AUTH, "10.0.0.2", now).allowed());
+        assertTrue(rateLimiter.tryAcquire(RouteGroup.CATALOG, "10.0.0.1", now).allowed());
+    }
+
+    @Test
+    void tryAcquire_ShouldNeverGrantMoreThanCapacity_UnderContention() throws InterruptedException {
+        int threads = 16;
+        AtomicInteger granted = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        long now = System.nanoTime();
+
+        for (int t = 0; t < threads; t++) {
+            executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < 100; i++)
+                    if (rateLimiter.tryAcquire(RouteGroup.BASKET, "user@mail.com", now).allowed())
+                        granted.incrementAndGet();
+                return null;
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(5, granted.get());
+    }
+
+    @Test
+    void evictIdleBuckets_ShouldDropOnlyRefilledBuckets() {
+        long now = TimeUnit.MINUTES.toNanos(1);
+        rateLimiter.tryAcquire(RouteGroup.CATALOG, "10.0.0.1", 0);
+        rateLimiter.tryAcquire(RouteGroup.CATALOG, "10.0.0.2", now);
+
+        rateLimiter.evictIdleBuckets(now);
+
+        assertEquals(1, rateLimiter.getTrackedClients(RouteGroup.CATALOG));
+    }
+
+    @Test
+    void evictIdleBuckets_ShouldDropTheBucketsClosestToFull_WhenAGroupHoldsTooMany() {
+        RateLimiter small = new RateLimiter(3, 60, 5, 10, 5, 10, 5, 10, 5, 10, 2);
+        // a client that spent its whole bucket, and two that spent a single token
+        for (int i = 0; i < 5; i++)
+            small.tryAcquire(RouteGroup.CATALOG, "10.0.0.1", 0);
+        small.tryAcquire(RouteGroup.CATALOG, "10.0.0.2", 0);
+        small.tryAcquire(RouteGroup.CATALOG, "10.0.0.3", 1);
+
+        small.evictIdleBuckets(1);
+
+        assertEquals(2, small.getTrackedClients(RouteGroup.CATALOG));
+        assertEquals(1, small.getEvictedOverCapacity(RouteGroup.CATALOG));
+        // the client over its limit is still limited
+        assertFalse(small.tryAcquire(RouteGroup.CATALOG, "10.0.0.1", 1).allowed());
+    }
+
+    @Test
+    void routeGroup_ShouldClassifyApiRoutes() {
+        assertAll(
+                () -> assertEquals(RouteGroup.AUTH, RouteGroup.of("/api/auth/login")),
+                () -> assertEquals(RouteGroup.CATALOG, RouteGroup.of("/product/category")),
+                () -> assertEquals(RouteGroup.BASKET, RouteGroup.of("/basket/123/item")),
+                () -> assertEquals(RouteGroup.BASKET, RouteGroup.of("/user/1/basket/2/total-price")),
+                () -> assertEquals(RouteGroup.CHECKOUT, RouteGroup.of("/user/1/basket/2/checkout")),
+                () -> assertEquals(RouteGroup.CHECKOUT, RouteGroup.of("/user/1/order/create-order")),
+                () -> assertEquals(RouteGroup.PAYMENT, RouteGroup.of("/user/1/order/2/payments/capture")),
+                () -> assertEquals(RouteGroup.DEFAULT, RouteGroup.of("/user/1"))
+        );
+    }
+}
@@ -0,0 +1,177 @@
+package com.fabiolima.e_commerce.loadtest;
+
+import com.fabiolima.e_commerce.entities.Product;
+import com.fabiolima.e_commerce.entities.Role;
+import com.fabiolima.e_commerce.entities.enums.UserRole;
+import com.fabiolima.e_commerce.repository.ProductRepository;
+import com.fabiolima.e_commerce.repository.RoleRepository;
+import com.fabiolima.e_commerce.support.PayPalStub;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.net.http.HttpClient;
+import java.nio.file.Path;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Drives the whole application over HTTP with an open workload: shoppers (see {@link ShopperScenario}) arrive at
+ * a fixed rate per stage whether or not earlier ones are done, so a slow server shows up as latency instead of
+ * being hidden by fewer requests. Runs against H2 in MySQL mode and the local PayPal stand-in, with no network access.
+ * Only run by the load-test profile:
+ * <pre>
+ * mvn -P load-test test -Dloadtest.stages=5:30,20:60
+ * </pre>
+ * loadtest.stages: comma separated arrivalsPerSecond:seconds (default 2:10,5:20)
+ * loadtest.products / loadtest.categories: catalog seeded before the run (default 200 products in 8 categories)
+ * loadtest.cancel-ratio: share of orders cancelled instead of paid (default 0.2)
+ * loadtest.paypal-latency-ms: latency added by the PayPal stand-in (default 150)
+ * loadtest.rate-limit-enabled: keep the per-client rate limits, which all shoppers share here as one IP (default false)
+ * loadtest.seed: makes the shoppers' choices repeatable (default 42)
+ * loadtest.max-error-rate: failed calls above this share fail the run (default 0.05)
+ * The report is printed and written to target/load-test/report.json.
+ */
+@Tag("load")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.datasource.url=jdbc:h2:mem:load-test;MODE=MySQL;DB_CLOSE_DELAY=-1",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.globally_quoted_identifiers=true",
+        "spring.jpa.properties.hibernate.type.preferred_uuid_jdbc_type=BINARY",
+        "paypal.client-id=load-test",
+        "paypal.secret=load-test",
+        "security.jwt.expiration-time=3600000"
+})
+class CheckoutLoadTest {
+
+    private static final PayPalStub PAYPAL = startPayPalStub();
+
+    @Autowired
+    private RoleRepository roleRepository;
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @LocalServerPort
+    private int port;
+
+    @DynamicPropertySource
+    static void environment(DynamicPropertyRegistry registry) {
+        byte[] key = new byte[32];
+        new SecureRandom().nextBytes(key);
+        registry.add("security.jwt.secret-key", () -> Base64.getEncoder().encodeToString(key));
+        registry.add("paypal.base-url", PAYPAL::getBaseUrl);
+        registry.add("rate-limit.enabled", () -> System.getProperty("loadtest.rate-limit-enabled", "false"));
+    }
+
+    @AfterAll
+    static void stopPayPalStub() {
+        PAYPAL.close();
+    }
+
+    @Test
+    void shoppersArrivingAtTheConfiguredRates() throws Exception {
+        //given
+        List<String> categories = seedCatalog(Integer.getInteger("loadtest.products", 200),
+                Integer.getInteger("loadtest.categories", 8));
+        PAYPAL.setLatencyMillis(Long.getLong("loadtest.paypal-latency-ms", 150));
+        double cancelRatio = Double.parseDouble(System.getProperty("loadtest.cancel-ratio", "0.2"));
+        long seed = Long.getLong("loadtest.seed", 42);
+        LoadReport report = new LoadReport(ShopperScenario.STEPS);
+        HttpClient http = HttpClient.newBuilder().executor(Executors.newVirtualThreadPerTaskExecutor()).build();
+        String baseUrl = "http://127.0.0.1:" + port;
+
+        //when
+        long start = System.nanoTime();
+        int shoppers = 0;
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (Stage stage : stages(System.getProperty("loadtest.stages", "2:10,5:20"))) {
+                long interval = TimeUnit.SECONDS.toNanos(1) / stage.arrivalsPerSecond();
+                long next = System.nanoTime();
+                long end = next + TimeUnit.SECONDS.toNanos(stage.seconds());
+                // arrivals are scheduled from the start of the stage, a late wake-up does not shift the next ones
+                for (; next < end; next += interval) {
+                    LockSupport.parkNanos(next - System.nanoTime());
+                    int shopper = shoppers++;
+                    executor.execute(new ShopperScenario(http, objectMapper, baseUrl, report, categories, cancelRatio,
+                            seed + shopper, "shopper" + shopper + "@loadtest.com"));
+                }
+            }
+        } // waits for the shoppers still in the shop
+        double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+
+        //then
+        report.print(System.out, elapsedSeconds);
+        report.write(Path.of("target", "load-test", "report.json"), elapsedSeconds);
+        assertEquals(shoppers, report.getScenariosStarted());
+        assertTrue(report.getScenariosCompleted() > 0, "no shopper got through checkout");
+        double maxErrorRate = Double.parseDouble(System.getProperty("loadtest.max-error-rate", "0.05"));
+        assertTrue(report.getErrorRate() <= maxErrorRate,
+                "error rate " + report.getErrorRate() + " above " + maxErrorRate);
+    }
+
+    private List<String> seedCatalog(int products, int categoryCount) {
+        Role customer = new Role();
+        customer.setName(UserRole.ROLE_CUSTOMER);
+        roleRepository.save(customer);
+
+        List<String> categories = new ArrayList<>();
+        for (int i = 0; i < categoryCount; i++)
+            categories.add("Category " + i);
+        SplittableRandom random = new SplittableRandom(Long.getLong("loadtest.seed", 42));
+        List<Product> catalog = new ArrayList<>(products);
+        for (int i = 0; i < products; i++) {
+            Product product = new Product();
+            product.setProductName("Product " + i);
+            product.setProductDescription("Load test product " + i);
+            product.setProductPrice(BigDecimal.valueOf(100 + random.nextInt(20_000), 2));
+            product.setCategory(categories.get(i % categoryCount));
+            // enough that no shopper is turned away for stock
+            product.setStock(1_000_000);
+            catalog.add(product);
+        }
+        productRepository.saveAll(catalog);
+        return categories;
+    }
+
+    private static List<Stage> stages(String stages) {
+        return Arrays.stream(stages.split(","))
+                .map(String::trim)
+                .map(stage -> {
+                    String[] parts = stage.split(":");
+                    return new Stage(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]));
+                })
+                .toList();
+    }
+
+    private static PayPalStub startPayPalStub() {
+        try {
+            return new PayPalStub();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private record Stage(int arrivalsPerSecond, int seconds) {}
+}
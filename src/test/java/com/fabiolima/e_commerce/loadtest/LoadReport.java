@@ -0,0 +1,129 @@
+package com.fabiolima.e_commerce.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency of every scenario step (successful and failed calls alike, in one HdrHistogram per step)
+ * and the failures per step and cause: the http status, or the exception for calls that got no response.
+ */
+final class LoadReport {
+
+    private static final long MAX_RECORDED_MICROS = TimeUnit.MINUTES.toMicros(2);
+
+    private final Map<String, Step> steps = new LinkedHashMap<>();
+    private final LongAdder scenariosStarted = new LongAdder();
+    private final LongAdder scenariosCompleted = new LongAdder();
+
+    // steps are registered up front, in scenario order, so the report keeps that order
+    LoadReport(List<String> stepNames) {
+        stepNames.forEach(name -> steps.put(name, new Step()));
+    }
+
+    void scenarioStarted() {
+        scenariosStarted.increment();
+    }
+
+    void scenarioCompleted() {
+        scenariosCompleted.increment();
+    }
+
+    void success(String step, long nanos) {
+        steps.get(step).record(nanos);
+    }
+
+    void failure(String step, long nanos, String cause) {
+        Step stats = steps.get(step);
+        stats.record(nanos);
+        stats.errors.computeIfAbsent(cause, c -> new LongAdder()).increment();
+    }
+
+    long getScenariosStarted() {
+        return scenariosStarted.sum();
+    }
+
+    long getScenariosCompleted() {
+        return scenariosCompleted.sum();
+    }
+
+    double getErrorRate() {
+        long calls = steps.values().stream().mapToLong(step -> step.latency.getTotalCount()).sum();
+        long errors = steps.values().stream().mapToLong(Step::errorCount).sum();
+        return calls == 0 ? 0 : (double) errors / calls;
+    }
+
+    double getPercentileMillis(String step, double percentile) {
+        return millis(steps.get(step).latency, percentile);
+    }
+
+    void print(PrintStream out, double elapsedSeconds) {
+        out.printf("%nscenarios: %d started, %d completed in %.1fs%n",
+                getScenariosStarted(), getScenariosCompleted(), elapsedSeconds);
+        out.printf("%-16s %8s %10s %10s %10s %10s %10s  %s%n",
+                "step", "calls", "calls/s", "p50 ms", "p99 ms", "p99.9 ms", "max ms", "errors");
+        steps.forEach((name, step) -> out.printf("%-16s %8d %10.1f %10.1f %10.1f %10.1f %10.1f  %s%n",
+                name, step.latency.getTotalCount(), step.latency.getTotalCount() / elapsedSeconds,
+                millis(step.latency, 50), millis(step.latency, 99), millis(step.latency, 99.9),
+                step.latency.getMaxValue() / 1000.0, step.errorsByCause()));
+    }
+
+    void write(Path file, double elapsedSeconds) throws IOException {
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("elapsedSeconds", elapsedSeconds);
+        report.put("scenariosStarted", getScenariosStarted());
+        report.put("scenariosCompleted", getScenariosCompleted());
+        Map<String, Object> stepReports = new LinkedHashMap<>();
+        steps.forEach((name, step) -> {
+            Map<String, Object> stepReport = new LinkedHashMap<>();
+            stepReport.put("calls", step.latency.getTotalCount());
+            stepReport.put("throughputPerSecond", step.latency.getTotalCount() / elapsedSeconds);
+            stepReport.put("p50Millis", millis(step.latency, 50));
+            stepReport.put("p99Millis", millis(step.latency, 99));
+            stepReport.put("p999Millis", millis(step.latency, 99.9));
+            stepReport.put("maxMillis", step.latency.getMaxValue() / 1000.0);
+            stepReport.put("errors", step.errorsByCause());
+            stepReports.put(name, stepReport);
+        });
+        report.put("steps", stepReports);
+
+        Files.createDirectories(file.getParent());
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(file.toFile(), report);
+    }
+
+    private static double millis(Histogram histogram, double percentile) {
+        return histogram.getValueAtPercentile(percentile) / 1000.0;
+    }
+
+    private static final class Step {
+        private final Histogram latency = new ConcurrentHistogram(MAX_RECORDED_MICROS, 3);
+        private final Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+
+        void record(long nanos) {
+            latency.recordValue(Math.min(TimeUnit.NANOSECONDS.toMicros(nanos), MAX_RECORDED_MICROS));
+        }
+
+        long errorCount() {
+            return errors.values().stream().mapToLong(LongAdder::sum).sum();
+        }
+
+        Map<String, Long> errorsByCause() {
+            Map<String, Long> byCause = new TreeMap<>();
+            errors.forEach((cause, count) -> byCause.put(cause, count.sum()));
+            return byCause;
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.fabiolima.e_commerce.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * One shopper's visit through the public API: sign up, log in, browse a category, add a few of the products seen
+ * (incrementing one of them), create the order, then either pay for it through PayPal (create and capture)
+ * or cancel it. A failed step ends the visit, as it would for a real client.
+ */
+final class ShopperScenario implements Runnable {
+
+    static final String SIGNUP = "signup";
+    static final String LOGIN = "login";
+    static final String BROWSE = "browse";
+    static final String ACTIVE_BASKET = "activeBasket";
+    static final String ADD_ITEM = "addItem";
+    static final String INCREMENT_ITEM = "incrementItem";
+    static final String CREATE_ORDER = "createOrder";
+    static final String CREATE_PAYMENT = "createPayment";
+    static final String CAPTURE_PAYMENT = "capturePayment";
+    static final String CANCEL_ORDER = "cancelOrder";
+    static final List<String> STEPS = List.of(SIGNUP, LOGIN, BROWSE, ACTIVE_BASKET, ADD_ITEM, INCREMENT_ITEM,
+            CREATE_ORDER, CREATE_PAYMENT, CAPTURE_PAYMENT, CANCEL_ORDER);
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(30);
+    private static final String PASSWORD = "Loadtest1!";
+
+    private final HttpClient http;
+    private final ObjectMapper objectMapper;
+    private final String baseUrl;
+    private final LoadReport report;
+    private final List<String> categories;
+    private final double cancelRatio;
+    private final SplittableRandom random;
+    private final String email;
+    private String token;
+
+    ShopperScenario(HttpClient http, ObjectMapper objectMapper, String baseUrl, LoadReport report,
+                    List<String> categories, double cancelRatio, long seed, String email) {
+        this.http = http;
+        this.objectMapper = objectMapper;
+        this.baseUrl = baseUrl;
+        this.report = report;
+        this.categories = categories;
+        this.cancelRatio = cancelRatio;
+        this.random = new SplittableRandom(seed);
+        this.email = email;
+    }
+
+    @Override
+    public void run() {
+        report.scenarioStarted();
+        try {
+            visit();
+            report.scenarioCompleted();
+        } catch (StepFailedException e) {
+            // recorded against the step already
+        }
+    }
+
+    private void visit() {
+        call(SIGNUP, post("/api/auth/signup", Map.of("name", "Load Shopper", "email", email, "password", PASSWORD)));
+        JsonNode login = call(LOGIN, post("/api/auth/login", Map.of("username", email, "password", PASSWORD)));
+        token = login.path("token").asText();
+        String userId = login.path("userId").asText();
+
+        String category = categories.get(random.nextInt(categories.size()));
+        JsonNode page = call(BROWSE, get("/product/category?pgSize=25&category=" + URLEncoder.encode(category, StandardCharsets.UTF_8)));
+        JsonNode products = page.path("content");
+        String basketId = call(ACTIVE_BASKET, get("/user/" + userId + "/basket/active-basket")).path("id").asText();
+
+        int lines = Math.min(products.size(), 1 + random.nextInt(3));
+        int first = products.isEmpty() ? 0 : random.nextInt(products.size());
+        String itemId = null;
+        for (int i = 0; i < lines; i++) {
+            String productId = products.get((first + i) % products.size()).path("id").asText();
+            itemId = call(ADD_ITEM, post("/basket/" + basketId + "/item?quant=1&productId=" + productId, null))
+                    .path("id").asText();
+        }
+        if (itemId != null)
+            call(INCREMENT_ITEM, post("/basket/" + basketId + "/item/" + itemId + "/increment", null));
+
+        String orderPath = "/user/" + userId + "/order";
+        String orderId = call(CREATE_ORDER, post(orderPath + "/create-order", null)).path("id").asText();
+
+        if (random.nextDouble() < cancelRatio) {
+            call(CANCEL_ORDER, request(orderPath + "/" + orderId + "/cancel").DELETE().build());
+            return;
+        }
+        String approveUrl = callForText(CREATE_PAYMENT, post(orderPath + "/" + orderId + "/payments/create", null));
+        String paypalOrderId = approveUrl.substring(approveUrl.indexOf("token=") + "token=".length());
+        call(CAPTURE_PAYMENT, post(orderPath + "/" + orderId + "/payments/capture?token=" + paypalOrderId, null));
+    }
+
+    private JsonNode call(String step, HttpRequest request) {
+        String body = callForText(step, request);
+        try {
+            return body.isEmpty() ? objectMapper.missingNode() : objectMapper.readTree(body);
+        } catch (IOException e) {
+            report.failure(step, 0, "unreadable response");
+            throw new StepFailedException();
+        }
+    }
+
+    private String callForText(String step, HttpRequest request) {
+        long start = System.nanoTime();
+        try {
+            HttpResponse<String> response = http.send(request, HttpResponse.BodyHandlers.ofString());
+            long elapsed = System.nanoTime() - start;
+            if (response.statusCode() >= 400) {
+                report.failure(step, elapsed, String.valueOf(response.statusCode()));
+                throw new StepFailedException();
+            }
+            report.success(step, elapsed);
+            return response.body();
+        } catch (IOException e) {
+            report.failure(step, System.nanoTime() - start, e.getClass().getSimpleName());
+            throw new StepFailedException();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            report.failure(step, System.nanoTime() - start, "interrupted");
+            throw new StepFailedException();
+        }
+    }
+
+    private HttpRequest get(String path) {
+        return request(path).GET().build();
+    }
+
+    private HttpRequest post(String path, Object body) {
+        try {
+            return request(path)
+                    .header("Content-Type", "application/json")
+                    .POST(body == null ? HttpRequest.BodyPublishers.noBody()
+                            : HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body)))
+                    .build();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private HttpRequest.Builder request(String path) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(baseUrl + path)).timeout(TIMEOUT);
+        return token == null ? builder : builder.header("Authorization", "Bearer " + token);
+    }
+
+    private static final class StepFailedException extends RuntimeException {
+        StepFailedException() {
+            super(null, null, false, false);
+        }
+    }
+}
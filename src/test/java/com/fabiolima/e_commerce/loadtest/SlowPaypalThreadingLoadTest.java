@@ -0,0 +1,263 @@
+package com.fabiolima.e_commerce.loadtest;
+
+import com.fabiolima.e_commerce.OnlineShopApplication;
+import com.fabiolima.e_commerce.entities.Basket;
+import com.fabiolima.e_commerce.entities.Order;
+import com.fabiolima.e_commerce.entities.Role;
+import com.fabiolima.e_commerce.entities.User;
+import com.fabiolima.e_commerce.entities.enums.BasketStatus;
+import com.fabiolima.e_commerce.entities.enums.UserRole;
+import com.fabiolima.e_commerce.repository.BasketRepository;
+import com.fabiolima.e_commerce.repository.OrderRepository;
+import com.fabiolima.e_commerce.repository.RoleRepository;
+import com.fabiolima.e_commerce.repository.UserRepository;
+import com.fabiolima.e_commerce.support.PayPalStub;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the same burst of concurrent payment captures, each waiting on a slow PayPal, against the application on
+ * platform threads (Tomcat pool) and then on virtual threads, and compares throughput, latency, platform threads
+ * and heap. Each mode gets its own application context and H2 database; PayPal is the local stand-in.
+ * Only run by the load-test profile:
+ * <pre>
+ * mvn -P load-test test -Dtest=SlowPaypalThreadingLoadTest -Dloadtest.concurrent-calls=5000
+ * </pre>
+ * loadtest.concurrent-calls: captures sent at once (default 5000)
+ * loadtest.paypal-latency-ms: latency added by the PayPal stand-in (default 1000)
+ * The reports are printed and written to target/load-test/slow-paypal-{platform,virtual}.json.
+ */
+@Tag("load")
+class SlowPaypalThreadingLoadTest {
+
+    private static final PayPalStub PAYPAL = startPayPalStub();
+    private static final String PASSWORD = "load-test-password";
+    private static final String STEP = "capturePayment";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @AfterAll
+    static void stopPayPalStub() {
+        PAYPAL.close();
+    }
+
+    @Test
+    void virtualThreads_ShouldServeMoreSlowPaypalCalls_WithFewerPlatformThreads() throws Exception {
+        int calls = Integer.getInteger("loadtest.concurrent-calls", 5000);
+        PAYPAL.setLatencyMillis(Long.getLong("loadtest.paypal-latency-ms", 1000));
+
+        Result platform = run(false, calls);
+        Result virtual = run(true, calls);
+
+        System.out.printf("%n%-10s %10s %10s %10s %10s %16s %14s%n",
+                "threads", "calls/s", "p50 ms", "p99 ms", "errors", "platform threads", "heap used MB");
+        for (Result result : List.of(platform, virtual))
+            System.out.printf("%-10s %10.1f %10.1f %10.1f %10.4f %16d %14.1f%n", result.mode(), result.throughput(),
+                    result.p50Millis(), result.p99Millis(), result.errorRate(), result.peakPlatformThreads(),
+                    result.peakHeapBytes() / (1024.0 * 1024));
+
+        assertAll(
+                () -> assertEquals(0, platform.errorRate(), "platform thread captures failed"),
+                () -> assertEquals(0, virtual.errorRate(), "virtual thread captures failed"),
+                () -> assertTrue(virtual.throughput() > platform.throughput(),
+                        "virtual " + virtual.throughput() + " calls/s, platform " + platform.throughput() + " calls/s"),
+                () -> assertTrue(virtual.peakPlatformThreads() < platform.peakPlatformThreads(),
+                        "virtual " + virtual.peakPlatformThreads() + " platform threads, platform " + platform.peakPlatformThreads())
+        );
+    }
+
+    private Result run(boolean virtualThreads, int calls) throws Exception {
+        String mode = virtualThreads ? "virtual" : "platform";
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(OnlineShopApplication.class)
+                .properties(properties(mode, virtualThreads, calls))
+                .run()) {
+            int port = ((ServletWebServerApplicationContext) context).getWebServer().getPort();
+            String baseUrl = "http://127.0.0.1:" + port;
+            HttpClient http = HttpClient.newBuilder().executor(Executors.newVirtualThreadPerTaskExecutor()).build();
+
+            seedCustomerRole(context);
+            JsonNode login = login(http, baseUrl, mode + "@loadtest.com");
+            String token = login.path("token").asText();
+            UUID userId = UUID.fromString(login.path("userId").asText());
+            List<PendingOrder> orders = seedPendingOrders(context, userId, mode, calls);
+
+            LoadReport report = new LoadReport(List.of(STEP));
+            MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+            ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+            System.gc();
+            long heapBefore = memory.getHeapMemoryUsage().getUsed();
+            threads.resetPeakThreadCount();
+            AtomicLong peakHeap = new AtomicLong(heapBefore);
+            AtomicBoolean running = new AtomicBoolean(true);
+            Thread sampler = Thread.ofPlatform().daemon().start(() -> {
+                while (running.get()) {
+                    peakHeap.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(), Math::max);
+                    try {
+                        Thread.sleep(20);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            });
+
+            long start = System.nanoTime();
+            try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                for (PendingOrder order : orders) {
+                    String path = "/user/" + userId + "/order/" + order.id() + "/payments/capture?token=" + order.paypalOrderId();
+                    HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                            .timeout(Duration.ofMinutes(2))
+                            .header("Authorization", "Bearer " + token)
+                            .POST(HttpRequest.BodyPublishers.noBody())
+                            .build();
+                    executor.execute(() -> capture(http, request, report));
+                }
+            }
+            double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+            running.set(false);
+            sampler.join();
+
+            report.print(System.out, elapsedSeconds);
+            report.write(Path.of("target", "load-test", "slow-paypal-" + mode + ".json"), elapsedSeconds);
+            return new Result(mode, calls / elapsedSeconds, report.getPercentileMillis(STEP, 50), report.getPercentileMillis(STEP, 99),
+                    report.getErrorRate(), threads.getPeakThreadCount(), peakHeap.get() - heapBefore);
+        }
+    }
+
+    private static void capture(HttpClient http, HttpRequest request, LoadReport report) {
+        long begin = System.nanoTime();
+        try {
+            HttpResponse<Void> response = http.send(request, HttpResponse.BodyHandlers.discarding());
+            if (response.statusCode() == 200)
+                report.success(STEP, System.nanoTime() - begin);
+            else
+                report.failure(STEP, System.nanoTime() - begin, String.valueOf(response.statusCode()));
+        } catch (IOException e) {
+            report.failure(STEP, System.nanoTime() - begin, e.getClass().getSimpleName());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static Map<String, Object> properties(String mode, boolean virtualThreads, int calls) {
+        byte[] key = new byte[32];
+        new SecureRandom().nextBytes(key);
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("server.port", "0");
+        properties.put("spring.main.keep-alive", "false");
+        properties.put("spring.threads.virtual.enabled", String.valueOf(virtualThreads));
+        properties.put("spring.datasource.url", "jdbc:h2:mem:slow-paypal-" + mode + ";MODE=MySQL;DB_CLOSE_DELAY=-1");
+        properties.put("spring.datasource.username", "sa");
+        properties.put("spring.datasource.password", "");
+        properties.put("spring.datasource.hikari.connection-timeout", "30000");
+        properties.put("spring.jpa.hibernate.ddl-auto", "create-drop");
+        properties.put("spring.jpa.properties.hibernate.globally_quoted_identifiers", "true");
+        properties.put("spring.jpa.properties.hibernate.type.preferred_uuid_jdbc_type", "BINARY");
+        properties.put("security.jwt.secret-key", Base64.getEncoder().encodeToString(key));
+        properties.put("security.jwt.expiration-time", "3600000");
+        properties.put("paypal.client-id", "load-test");
+        properties.put("paypal.secret", "load-test");
+        properties.put("paypal.base-url", PAYPAL.getBaseUrl());
+        // only the threading model may limit the calls in flight
+        properties.put("paypal.gateway.max-concurrent-calls", String.valueOf(calls));
+        properties.put("paypal.gateway.timeout-ms", "120000");
+        properties.put("paypal.http.read-timeout-ms", "120000");
+        properties.put("paypal.reconciliation.interval-ms", "3600000");
+        properties.put("concurrency-limit.enabled", "false");
+        properties.put("rate-limit.enabled", "false");
+        return properties;
+    }
+
+    private static void seedCustomerRole(ConfigurableApplicationContext context) {
+        Role customer = new Role();
+        customer.setName(UserRole.ROLE_CUSTOMER);
+        context.getBean(RoleRepository.class).save(customer);
+    }
+
+    private JsonNode login(HttpClient http, String baseUrl, String email) throws Exception {
+        post(http, baseUrl + "/api/auth/signup", Map.of("name", "Slow PayPal Shopper", "email", email, "password", PASSWORD));
+        return objectMapper.readTree(post(http, baseUrl + "/api/auth/login", Map.of("username", email, "password", PASSWORD)));
+    }
+
+    private String post(HttpClient http, String url, Object body) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(body)))
+                .build();
+        HttpResponse<String> response = http.send(request, HttpResponse.BodyHandlers.ofString());
+        assertTrue(response.statusCode() < 300, url + " answered " + response.statusCode() + ": " + response.body());
+        return response.body();
+    }
+
+    // one pending order (of its own checked-out basket) per capture
+    private static List<PendingOrder> seedPendingOrders(ConfigurableApplicationContext context, UUID userId,
+                                                        String mode, int count) {
+        UserRepository userRepository = context.getBean(UserRepository.class);
+        BasketRepository basketRepository = context.getBean(BasketRepository.class);
+        OrderRepository orderRepository = context.getBean(OrderRepository.class);
+        return new TransactionTemplate(context.getBean(PlatformTransactionManager.class)).execute(status -> {
+            User user = userRepository.findById(userId).orElseThrow();
+            List<PendingOrder> orders = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                Basket basket = new Basket();
+                user.addBasketToUser(basket);
+                basket.setBasketStatus(BasketStatus.CHECKED_OUT);
+                basketRepository.save(basket);
+
+                Order order = new Order();
+                order.setBasket(basket);
+                order.setTotalPrice(new BigDecimal("10.00"));
+                order.setPaypalOrderId("SLOW-" + mode + "-" + i);
+                user.addOrderToUser(order);
+                orders.add(new PendingOrder(orderRepository.save(order).getId(), order.getPaypalOrderId()));
+            }
+            return orders;
+        });
+    }
+
+    private static PayPalStub startPayPalStub() {
+        try {
+            return new PayPalStub();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private record PendingOrder(UUID id, String paypalOrderId) {}
+
+    private record Result(String mode, double throughput, double p50Millis, double p99Millis, double errorRate,
+                          int peakPlatformThreads, long peakHeapBytes) {}
+}
@@ -0,0 +1,81 @@
+package com.fabiolima.e_commerce.monitoring;
+
+import com.fabiolima.e_commerce.entities.enums.OrderStatus;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BusinessMetricsTest {
+
+    private MeterRegistry registry;
+    private BusinessMetrics metrics;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        metrics = new BusinessMetrics(registry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive())
+            TransactionSynchronizationManager.clearSynchronization();
+    }
+
+    @Test
+    void basketCounters_ShouldCountRightAway_WhenNoTransactionIsActive() {
+        metrics.basketCreated();
+        metrics.basketsExpired(3);
+        metrics.basketCheckedOut();
+
+        assertEquals(1, registry.get("ecommerce.baskets.created").counter().count());
+        assertEquals(3, registry.get("ecommerce.baskets.expired").counter().count());
+        assertEquals(1, registry.get("ecommerce.baskets.checked.out").counter().count());
+    }
+
+    @Test
+    void orderTransition_ShouldOnlyCount_WhenTheTransactionCommits() {
+        TransactionSynchronizationManager.initSynchronization();
+        metrics.orderTransition(OrderStatus.PENDING, OrderStatus.PAID);
+        metrics.orderTransition(null, OrderStatus.PENDING);
+
+        assertEquals(0, registry.get("ecommerce.orders.transitions").tag("to", "PAID").counter().count());
+
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+
+        assertEquals(1, registry.get("ecommerce.orders.transitions")
+                .tag("from", "PENDING").tag("to", "PAID").counter().count());
+        assertEquals(1, registry.get("ecommerce.orders.transitions")
+                .tag("from", "NEW").tag("to", "PENDING").counter().count());
+    }
+
+    @Test
+    void stockRejected_ShouldCountEvenWhenTheTransactionRollsBack() {
+        TransactionSynchronizationManager.initSynchronization();
+        metrics.stockRejected(BusinessMetrics.StockRejection.SHARDS);
+
+        assertEquals(1, registry.get("ecommerce.stock.rejections").tag("source", "shards").counter().count());
+    }
+
+    @Test
+    void schedulerLag_ShouldMeasureAgainstTheFixedRateCadence() {
+        SchedulerLagProbe probe = new SchedulerLagProbe(registry, 1000);
+
+        probe.record(10_000);
+        assertEquals(0, probe.getLagMillis());
+        // started 250 ms late
+        probe.record(11_250);
+        assertEquals(250, probe.getLagMillis());
+        // the next run keeps the original cadence instead of shifting by the delay
+        probe.record(12_000);
+        assertEquals(0, probe.getLagMillis());
+        probe.record(13_400);
+        assertEquals(400, registry.get("jobs.scheduler.lag").gauge().value());
+    }
+}
@@ -0,0 +1,187 @@
+package com.fabiolima.e_commerce.monitoring;
+
+import com.fabiolima.e_commerce.exceptions.BadRequestException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.MethodExecutionContext;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class SlowQueryDetectorTest {
+
+    private static final long THRESHOLD_MILLIS = 200;
+
+    private SimpleMeterRegistry registry;
+    private SlowQueryDetector detector;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        detector = detector(100);
+    }
+
+    @Test
+    void fastExecution_ShouldNotBeRecorded() {
+        detector.afterQuery(execution(THRESHOLD_MILLIS - 1, 1), queries("update product set stock=? where id=?"));
+
+        assertEquals(0, detector.getRecorded());
+        assertTrue(detector.getSlowest(10).isEmpty());
+    }
+
+    @Test
+    void slowUpdate_ShouldBeRecordedWithItsUpdateCount() {
+        detector.afterQuery(execution(THRESHOLD_MILLIS + 50, 3), queries("update basket set status='INACTIVE' where id in (?,?,?)"));
+
+        SlowQueryDetector.ShapeSnapshot shape = detector.getSlowest(10).getFirst();
+        assertEquals("update basket set status=? where id in (?)", shape.sql());
+        assertEquals(1, shape.count());
+        assertEquals(THRESHOLD_MILLIS + 50, shape.maxMillis());
+        assertEquals(3, shape.maxRows());
+        // outside a request, called from this (monitoring) class: no application caller
+        SlowQueryDetector.CallSiteSnapshot callSite = shape.callSites().getFirst();
+        assertEquals("background", callSite.route());
+        assertEquals("-", callSite.caller());
+        assertEquals(1, registry.get("datasource.query.slow").timer().count());
+    }
+
+    @Test
+    void slowSelect_ShouldBeRecordedWithTheRowsRead_WhenItsResultSetIsClosed() throws Exception {
+        ResultSet resultSet = mock(ResultSet.class);
+        detector.afterQuery(execution(THRESHOLD_MILLIS, resultSet), queries("select * from product where category=?"));
+        assertEquals(0, detector.getRecorded());
+
+        detector.afterMethod(method(resultSet, "next", true));
+        detector.afterMethod(method(resultSet, "next", true));
+        detector.afterMethod(method(resultSet, "next", false));
+        detector.afterMethod(method(resultSet, "close", null));
+
+        assertEquals(1, detector.getRecorded());
+        assertEquals(2, detector.getSlowest(10).getFirst().maxRows());
+    }
+
+    @Test
+    void slowSelect_ShouldOnlyBeCompletedByTheCloseOfItsOwnResultSet() throws Exception {
+        ResultSet products = mock(ResultSet.class);
+        ResultSet orders = mock(ResultSet.class);
+        detector.afterQuery(execution(THRESHOLD_MILLIS, products), queries("select * from product"));
+        detector.afterQuery(execution(THRESHOLD_MILLIS, orders), queries("select * from orders"));
+
+        detector.afterMethod(method(products, "next", true));
+        detector.afterMethod(method(orders, "next", true));
+        detector.afterMethod(method(products, "next", true));
+        // another statement and another result set closing do not complete the product query
+        detector.afterMethod(method(mock(Statement.class), Statement.class, "close", null));
+        detector.afterMethod(method(orders, "close", null));
+        assertEquals(1, detector.getRecorded());
+
+        detector.afterMethod(method(products, "close", null));
+
+        assertEquals(2, detector.getRecorded());
+        Map<String, Long> rows = detector.getSlowest(10).stream()
+                .collect(Collectors.toMap(SlowQueryDetector.ShapeSnapshot::sql, SlowQueryDetector.ShapeSnapshot::maxRows));
+        assertEquals(Map.of("select * from product", 2L, "select * from orders", 1L), rows);
+    }
+
+    @Test
+    void slowSelect_ShouldBeCompleted_WhenItsStatementIsClosed() throws Exception {
+        ResultSet resultSet = mock(ResultSet.class);
+        Statement statement = mock(Statement.class);
+        ExecutionInfo execution = execution(THRESHOLD_MILLIS, resultSet);
+        execution.setStatement(statement);
+        detector.afterQuery(execution, queries("select * from product"));
+        detector.afterMethod(method(resultSet, "next", true));
+
+        detector.afterMethod(method(statement, Statement.class, "close", null));
+
+        assertEquals(1, detector.getRecorded());
+        assertEquals(1, detector.getSlowest(10).getFirst().maxRows());
+    }
+
+    @Test
+    void slowExecutions_ShouldBeRateLimited() {
+        SlowQueryDetector limited = detector(2);
+        for (int i = 0; i < 5; i++)
+            limited.afterQuery(execution(THRESHOLD_MILLIS, 1), queries("delete from basket_item where id=" + i));
+
+        assertEquals(5, limited.getRecorded() + limited.getRateLimited());
+        assertTrue(limited.getRateLimited() >= 1);
+        assertEquals(1, limited.getShapeCount());
+        // the metric counts every slow execution, logged or not
+        assertEquals(5, limited.getSlow());
+        assertEquals(5, registry.get("datasource.query.slow").timer().count());
+    }
+
+    @Test
+    void sampledOutExecutions_ShouldStillBeTimed() {
+        SlowQueryDetector sampled = new SlowQueryDetector(THRESHOLD_MILLIS, 0.0, 100, 10,
+                new StaticListableBeanFactory(Map.of("meterRegistry", registry)).getBeanProvider(MeterRegistry.class));
+        for (int i = 0; i < 3; i++)
+            sampled.afterQuery(execution(THRESHOLD_MILLIS + i, 1), queries("update product set stock=? where id=?"));
+
+        assertEquals(0, sampled.getRecorded());
+        assertEquals(3, sampled.getSampledOut());
+        assertEquals(3, registry.get("datasource.query.slow").timer().count());
+        assertEquals(THRESHOLD_MILLIS + 2, (long) registry.get("datasource.query.slow").timer().max(TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void getSlowest_ShouldReturnTheSlowestShapesFirst() {
+        detector.afterQuery(execution(300, 1), queries("update product set stock=? where id=?"));
+        detector.afterQuery(execution(900, 1), queries("update orders set status=? where id=?"));
+        detector.afterQuery(execution(500, 1), queries("update basket set status=? where id=?"));
+
+        assertEquals(List.of("update orders set status=? where id=?", "update basket set status=? where id=?"),
+                detector.getSlowest(2).stream().map(SlowQueryDetector.ShapeSnapshot::sql).toList());
+        assertThrows(BadRequestException.class, () -> detector.getSlowest(0));
+    }
+
+    @Test
+    void normalize_ShouldReplaceLiteralsButKeepAliases() {
+        assertEquals("select b1_0.id from basket b1_0 where b1_0.status=? and b1_0.total>? limit ?",
+                SlowQueryDetector.normalize("select b1_0.id\n  from basket b1_0 where b1_0.status='ACTIVE' and b1_0.total>12.5 limit 20"));
+        assertEquals("select * from product where id in (?)",
+                SlowQueryDetector.normalize("select * from product where id in ( ?, ?,? )"));
+    }
+
+    private SlowQueryDetector detector(int maxPerSecond) {
+        return new SlowQueryDetector(THRESHOLD_MILLIS, 1.0, maxPerSecond, 10,
+                new StaticListableBeanFactory(Map.of("meterRegistry", registry)).getBeanProvider(MeterRegistry.class));
+    }
+
+    private static ExecutionInfo execution(long elapsedMillis, Object result) {
+        ExecutionInfo execution = new ExecutionInfo();
+        execution.setElapsedTime(elapsedMillis);
+        execution.setResult(result);
+        return execution;
+    }
+
+    private static List<QueryInfo> queries(String sql) {
+        return List.of(new QueryInfo(sql));
+    }
+
+    private static MethodExecutionContext method(ResultSet resultSet, String name, Object result) throws Exception {
+        return method(resultSet, ResultSet.class, name, result);
+    }
+
+    private static MethodExecutionContext method(Object target, Class<?> type, String name, Object result) throws Exception {
+        MethodExecutionContext context = mock(MethodExecutionContext.class);
+        when(context.getTarget()).thenReturn(target);
+        when(context.getMethod()).thenReturn(type.getMethod(name));
+        when(context.getResult()).thenReturn(result);
+        return context;
+    }
+}
@@ -0,0 +1,93 @@
+package com.fabiolima.e_commerce.monitoring;
+
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.testing.exporter.InMemorySpanExporter;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SimpleSpanProcessor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TailSamplingSpanProcessorTest {
+
+    private static final long SLOW_MILLIS = 500;
+
+    private InMemorySpanExporter exporter;
+    private TailSamplingSpanProcessor processor;
+    private SdkTracerProvider tracerProvider;
+    private Tracer tracer;
+
+    @BeforeEach
+    void setUp() {
+        exporter = InMemorySpanExporter.create();
+        // no baseline sample: only slow and errored traces are exported, at most 2 traces buffered
+        processor = new TailSamplingSpanProcessor(SimpleSpanProcessor.create(exporter),
+                TimeUnit.MILLISECONDS.toNanos(SLOW_MILLIS), 0, 2, TimeUnit.MILLISECONDS.toNanos(100));
+        tracerProvider = SdkTracerProvider.builder().addSpanProcessor(processor).build();
+        tracer = tracerProvider.get("test");
+    }
+
+    @AfterEach
+    void tearDown() {
+        tracerProvider.close();
+    }
+
+    @Test
+    void fastTrace_ShouldBeDropped_WhenNothingFailed() {
+        trace("fast", 10, false);
+
+        assertTrue(exporter.getFinishedSpanItems().isEmpty());
+        assertEquals(1, processor.getDropped());
+        assertEquals(0, processor.getBufferedTraces());
+    }
+
+    @Test
+    void slowTrace_ShouldBeExportedWithAllItsSpans() {
+        trace("slow", SLOW_MILLIS + 100, false);
+
+        assertEquals(List.of("slow-child", "slow"), exporter.getFinishedSpanItems().stream().map(SpanData::getName).toList());
+        assertEquals(1, processor.getKept());
+    }
+
+    @Test
+    void fastTrace_ShouldBeExported_WhenAChildSpanFailed() {
+        trace("failed", 10, true);
+
+        assertEquals(2, exporter.getFinishedSpanItems().size());
+        assertEquals(1, processor.getKept());
+    }
+
+    @Test
+    void childSpans_ShouldNotBeBuffered_WhenTooManyTracesArePending() throws InterruptedException {
+        for (int i = 0; i < 3; i++)
+            tracer.spanBuilder("orphan-" + i).setParent(Context.root().with(tracer.spanBuilder("open-root").startSpan()))
+                    .startSpan().end();
+
+        assertEquals(2, processor.getBufferedTraces());
+        assertEquals(1, processor.getOverflowed());
+
+        Thread.sleep(150);
+        processor.evictStale();
+        assertEquals(0, processor.getBufferedTraces());
+    }
+
+    private void trace(String name, long durationMillis, boolean childFails) {
+        long start = System.currentTimeMillis();
+        Span root = tracer.spanBuilder(name).setStartTimestamp(start, TimeUnit.MILLISECONDS).startSpan();
+        Span child = tracer.spanBuilder(name + "-child").setParent(Context.root().with(root))
+                .setStartTimestamp(start, TimeUnit.MILLISECONDS).startSpan();
+        if (childFails)
+            child.setStatus(StatusCode.ERROR);
+        child.end(start + 1, TimeUnit.MILLISECONDS);
+        root.end(start + durationMillis, TimeUnit.MILLISECONDS);
+    }
+}
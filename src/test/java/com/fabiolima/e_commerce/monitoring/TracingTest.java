@@ -0,0 +1,99 @@
+package com.fabiolima.e_commerce.monitoring;
+
+import com.fabiolima.e_commerce.exceptions.NotFoundException;
+import com.fabiolima.e_commerce.repository.UserRepository;
+import com.fabiolima.e_commerce.service.UserService;
+import com.fabiolima.e_commerce.support.InMemoryTracing;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.sdk.testing.exporter.InMemorySpanExporter;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Spans recorded for a service call, with the in-memory exporter and every trace kept by the tail sampler.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:tracing;DB_CLOSE_DELAY=-1",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.globally_quoted_identifiers=true",
+        "spring.jpa.properties.hibernate.type.preferred_uuid_jdbc_type=BINARY",
+        "tracing.tail-sampling.baseline-probability=1.0"
+})
+@AutoConfigureObservability(metrics = false)
+@Import(InMemoryTracing.class)
+class TracingTest {
+
+    private static final String EMAIL = "tracing-secret@example.com";
+
+    @Autowired
+    private InMemorySpanExporter exporter;
+    @Autowired
+    private TailSamplingSpanProcessor tailSamplingSpanProcessor;
+    @Autowired
+    private ObservationRegistry observationRegistry;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private UserService userService;
+
+    @BeforeEach
+    void setUp() {
+        flush();
+        exporter.reset();
+    }
+
+    @Test
+    void serviceCall_ShouldRecordSqlSpansWithoutBindValues_UnderTheCallersTrace() {
+        Observation.createNotStarted("test.request", observationRegistry).observe(() ->
+                userRepository.findByEmail(EMAIL));
+        flush();
+
+        List<SpanData> spans = exporter.getFinishedSpanItems();
+        SpanData root = spans.stream().filter(span -> span.getName().equals("test.request")).findFirst().orElseThrow();
+        List<String> statements = spans.stream()
+                .flatMap(span -> span.getAttributes().asMap().entrySet().stream())
+                .filter(attribute -> attribute.getKey().getKey().startsWith("jdbc.query"))
+                .map(attribute -> String.valueOf(attribute.getValue()))
+                .toList();
+
+        assertAll(
+                () -> assertTrue(spans.stream().allMatch(span -> span.getTraceId().equals(root.getTraceId()))),
+                () -> assertFalse(statements.isEmpty(), "no SQL span recorded"),
+                () -> assertTrue(statements.stream().anyMatch(sql -> sql.contains("?")), statements::toString),
+                () -> assertTrue(spans.stream().noneMatch(span -> span.getAttributes().asMap().values().stream()
+                        .anyMatch(value -> String.valueOf(value).contains(EMAIL))), "bind value leaked into a span")
+        );
+    }
+
+    @Test
+    void failedServiceCall_ShouldRecordAnErroredServiceSpan() {
+        UUID missingUser = UUID.randomUUID();
+
+        assertThrows(NotFoundException.class, () -> userService.findUserByUserId(missingUser));
+        flush();
+
+        List<SpanData> spans = exporter.getFinishedSpanItems();
+        assertTrue(spans.stream().anyMatch(span -> span.getName().endsWith("#findUserByUserId")
+                && span.getStatus().getStatusCode() == StatusCode.ERROR),
+                spans.stream().map(SpanData::getName).toList()::toString);
+    }
+
+    private void flush() {
+        tailSamplingSpanProcessor.forceFlush().join(5, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,109 @@
+package com.fabiolima.e_commerce.monitoring.jfr;
+
+import com.fabiolima.e_commerce.exceptions.BadRequestException;
+import com.fabiolima.e_commerce.exceptions.NotFoundException;
+import com.fabiolima.e_commerce.security.JwtService;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProfilingRecordingsTest {
+
+    private ProfilingRecordings recordings;
+
+    @BeforeEach
+    void setUp() {
+        // 2 recordings, 5 minutes / 10 MB of data each, stopped after 10 minutes at most
+        recordings = new ProfilingRecordings(2, 5, 10, 10);
+    }
+
+    @AfterEach
+    void tearDown() {
+        recordings.closeAll();
+    }
+
+    @Test
+    void dump_ShouldContainTheApplicationEvents_WhileTheRecordingRuns() throws Exception {
+        ProfilingRecordings.RecordingSnapshot started = recordings.start("profile", 60L);
+
+        StockUpdateEvent event = new StockUpdateEvent();
+        event.begin();
+        event.productId = "sneaker";
+        event.delta = 3;
+        event.commit();
+
+        Path file = recordings.dump(started.id());
+        try {
+            List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+            assertTrue(events.stream().anyMatch(recorded -> recorded.getEventType().getName().equals("ecommerce.StockUpdate")
+                    && "sneaker".equals(recorded.getString("productId")) && recorded.getInt("delta") == 3));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+        assertEquals("RUNNING", started.state());
+        assertEquals(10 * 60, started.duration().toSeconds(), "duration is capped at the maximum");
+        assertEquals("STOPPED", recordings.stop(started.id()).state());
+    }
+
+    @Test
+    void dump_ShouldIdentifyTheTokenSubjectWithoutItsEmail() throws Exception {
+        JwtService jwtService = new JwtService();
+        byte[] key = new byte[32];
+        new SecureRandom().nextBytes(key);
+        ReflectionTestUtils.setField(jwtService, "secretKey", Base64.getEncoder().encodeToString(key));
+        ReflectionTestUtils.setField(jwtService, "jwtExpiration", 60_000L);
+        String token = jwtService.generateToken(User.withUsername("alice@mail.com").password("secret").build());
+        ProfilingRecordings.RecordingSnapshot started = recordings.start("default", 60L);
+
+        jwtService.extractUsername(token);
+        jwtService.extractUsername(token);
+
+        Path file = recordings.dump(started.id());
+        try {
+            List<RecordedEvent> verifications = RecordingFile.readAllEvents(file).stream()
+                    .filter(recorded -> recorded.getEventType().getName().equals("ecommerce.JwtVerification"))
+                    .toList();
+            assertEquals(2, verifications.size());
+            String hash = verifications.getFirst().getString("subjectHash");
+            assertEquals(16, hash.length());
+            assertEquals(hash, verifications.getLast().getString("subjectHash"), "the same user gets the same hash");
+            assertFalse(hash.contains("alice"));
+            assertFalse(verifications.getFirst().getFields().stream().anyMatch(field -> field.getName().equals("subject")));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    void start_ShouldBeRejected_WhenTheMaximumNumberOfRecordingsIsKept() {
+        ProfilingRecordings.RecordingSnapshot first = recordings.start("default", null);
+        recordings.start("profile", 1L);
+
+        assertThrows(BadRequestException.class, () -> recordings.start("profile", 1L));
+
+        recordings.stop(first.id());
+        assertThrows(BadRequestException.class, () -> recordings.start("profile", 1L), "stopped recordings still count");
+
+        recordings.delete(first.id());
+        assertDoesNotThrow(() -> recordings.start("profile", 1L));
+        assertEquals(2, recordings.getRecordings().size());
+    }
+
+    @Test
+    void start_ShouldRejectUnknownSettings() {
+        assertThrows(BadRequestException.class, () -> recordings.start("everything", null));
+        assertThrows(NotFoundException.class, () -> recordings.delete(42));
+    }
+}
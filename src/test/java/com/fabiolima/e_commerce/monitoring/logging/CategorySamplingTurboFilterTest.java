@@ -0,0 +1,84 @@
+package com.fabiolima.e_commerce.monitoring.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CategorySamplingTurboFilterTest {
+
+    private LoggerContext context;
+    private ListAppender<ILoggingEvent> appender;
+    private CategorySamplingTurboFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        context = new LoggerContext();
+        appender = new ListAppender<>();
+        appender.setContext(context);
+        appender.start();
+        Logger root = context.getLogger(Logger.ROOT_LOGGER_NAME);
+        root.setLevel(Level.INFO);
+        root.addAppender(appender);
+
+        filter = new CategorySamplingTurboFilter();
+        filter.addLimit("com.shop=1000");
+        filter.addLimit("com.shop.security=5");
+        filter.setSampleEvery(10);
+        filter.setContext(context);
+        filter.start();
+        context.addTurboFilter(filter);
+    }
+
+    @Test
+    void category_ShouldOnlyWriteItsLimitPerSecondThenOneInSampleEvery() {
+        Logger security = context.getLogger("com.shop.security.OwnerCheck");
+
+        // all within the same second unless the clock ticks over, which only lets more through
+        for (int i = 0; i < 105; i++)
+            security.info("check {}", i);
+
+        long written = appender.list.size();
+        assertTrue(written >= 5 + 10 && written < 105, "written: " + written);
+        assertEquals(105 - written, filter.getCategories().getFirst().getDropped());
+    }
+
+    @Test
+    void warnings_ShouldNeverBeDropped() {
+        Logger security = context.getLogger("com.shop.security.OwnerCheck");
+
+        for (int i = 0; i < 50; i++)
+            security.warn("check {}", i);
+
+        assertEquals(50, appender.list.size());
+    }
+
+    @Test
+    void disabledLevelsAndGuards_ShouldNotUseThePermits() {
+        Logger security = context.getLogger("com.shop.security.OwnerCheck");
+
+        for (int i = 0; i < 100; i++) {
+            security.debug("not written {}", i);
+            security.isInfoEnabled();
+        }
+        for (int i = 0; i < 5; i++)
+            security.info("check {}", i);
+
+        assertEquals(5, appender.list.size());
+    }
+
+    @Test
+    void loggersOutsideEveryCategory_ShouldNotBeLimited() {
+        Logger other = context.getLogger("org.example.Other");
+
+        for (int i = 0; i < 200; i++)
+            other.info("event {}", i);
+
+        assertEquals(200, appender.list.size());
+    }
+}
@@ -0,0 +1,123 @@
+package com.fabiolima.e_commerce.repository;
+
+import com.fabiolima.e_commerce.dto.BasketResponse;
+import com.fabiolima.e_commerce.dto.OrderResponse;
+import com.fabiolima.e_commerce.entities.*;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Counts the SQL statements needed to load and map a page of orders or baskets, including their items.
+ * The count must not depend on the page size.
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "spring.jpa.properties.hibernate.globally_quoted_identifiers=true",
+        "spring.jpa.properties.hibernate.type.preferred_uuid_jdbc_type=BINARY"
+})
+class PagedListQueryCountTest {
+
+    private static final int ORDERS = 40;
+    // ids page + count + one fetch query + the (single) user's roles
+    private static final long MAX_STATEMENTS_PER_PAGE = 4;
+
+    @Autowired
+    private TestEntityManager entityManager;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private OrderRepository orderRepository;
+    @Autowired
+    private BasketRepository basketRepository;
+
+    private UUID userId;
+
+    @BeforeEach
+    void setUp() {
+        User user = new User();
+        user.setName("Paged User");
+        user.setEmail("paged@user.com");
+        user.setPassword("secret");
+        entityManager.persist(user);
+
+        Product product = new Product();
+        product.setProductName("Game");
+        product.setProductPrice(new BigDecimal("10.00"));
+        product.setStock(1000);
+        entityManager.persist(product);
+
+        for (int i = 0; i < ORDERS; i++) {
+            Basket basket = new Basket();
+            user.addBasketToUser(basket);
+            basket.addBasketItemToBasket(BasketItem.builder().product(product).quantity(1).build());
+            basket.addBasketItemToBasket(BasketItem.builder().product(product).quantity(2).build());
+            entityManager.persist(basket);
+
+            Order order = new Order();
+            order.setBasket(basket);
+            order.setTotalPrice(new BigDecimal("30.00"));
+            user.addOrderToUser(order);
+            order.addOrderItemToOrder(OrderItem.builder().productId(product.getId()).productName("Game")
+                    .price(new BigDecimal("10.00")).quantity(1).build());
+            order.addOrderItemToOrder(OrderItem.builder().productId(product.getId()).productName("Game")
+                    .price(new BigDecimal("10.00")).quantity(2).build());
+            entityManager.persist(order);
+        }
+        userId = user.getId();
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {5, 20})
+    void findAllByUserId_ShouldLoadOrdersWithItems_InAConstantNumberOfStatements(int pageSize) {
+        Statistics statistics = statistics();
+
+        Page<Order> page = orderRepository.findAllByUserId(userId, PageRequest.of(1, pageSize));
+        List<OrderResponse> responses = page.map(OrderResponse::from).getContent();
+
+        assertEquals(pageSize, responses.size());
+        assertEquals(ORDERS, page.getTotalElements());
+        assertTrue(responses.stream().allMatch(order -> order.getItems().size() == 2));
+        assertTrue(statistics.getPrepareStatementCount() <= MAX_STATEMENTS_PER_PAGE,
+                statistics.getPrepareStatementCount() + " statements for a page of " + pageSize);
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {5, 20})
+    void findAllByUserId_ShouldLoadBasketsWithItemsAndProducts_InAConstantNumberOfStatements(int pageSize) {
+        Statistics statistics = statistics();
+
+        Page<Basket> page = basketRepository.findAllByUserId(userId,
+                PageRequest.of(1, pageSize, Sort.by(Sort.Direction.DESC, "createdAt")));
+        List<BasketResponse> responses = page.map(BasketResponse::from).getContent();
+
+        assertEquals(pageSize, responses.size());
+        assertTrue(responses.stream().allMatch(basket -> basket.getBasketItems().size() == 2
+                && basket.getBasketItems().get(0).getProduct().getProductName().equals("Game")));
+        assertTrue(statistics.getPrepareStatementCount() <= MAX_STATEMENTS_PER_PAGE,
+                statistics.getPrepareStatementCount() + " statements for a page of " + pageSize);
+    }
+
+    private Statistics statistics() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        return statistics;
+    }
+}
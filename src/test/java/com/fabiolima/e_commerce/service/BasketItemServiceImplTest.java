@@ -1,5 +1,6 @@
 package com.fabiolima.e_commerce.service;
 
+import com.fabiolima.e_commerce.exceptions.ForbiddenException;
 import com.fabiolima.e_commerce.exceptions.InsufficientStockException;
 import com.fabiolima.e_commerce.exceptions.InvalidQuantityException;
 import com.fabiolima.e_commerce.entities.Basket;
@@ -611,6 +612,37 @@ class BasketItemServiceImplTest {
         verify(basketService, times(1)).removeItemFromBasket(basket, removedItem);
     }
 
+    @ParameterizedTest
+    @CsvSource({"CHECKED_OUT", "INACTIVE"})
+    void itemChanges_ShouldBeRefusedWithoutTouchingStock_WhenBasketIsNotActive(String status) {
+        //Given
+        Product product = Product.builder().id(UUID.randomUUID()).stock(10).build();
+        BasketItem item = BasketItem.builder().id(UUID.randomUUID()).product(product).quantity(2).build();
+        Basket basket = new Basket();
+        basket.setId(UUID.randomUUID());
+        basket.setBasketStatus(BasketStatus.valueOf(status));
+        basket.addBasketItemToBasket(item);
+
+        when(basketService.findBasketById(basket.getId())).thenReturn(basket);
+        when(basketItemRepository.findById(item.getId())).thenReturn(Optional.of(item));
+
+        //When //Then: the items were sold with the order or given back already
+        assertAll(
+                () -> assertThrows(ForbiddenException.class, () -> basketItemService.incrementItemQuantity(item.getId())),
+                () -> assertThrows(ForbiddenException.class,
+                        () -> basketItemService.decrementItemQuantity(basket.getId(), item.getId())),
+                () -> assertThrows(ForbiddenException.class,
+                        () -> basketItemService.updateBasketItem(basket.getId(), item.getId(), 5)),
+                () -> assertThrows(ForbiddenException.class,
+                        () -> basketItemService.updateBasketItem(basket.getId(), item.getId(), 0)),
+                () -> assertThrows(ForbiddenException.class,
+                        () -> basketItemService.removeItemFromBasket(basket.getId(), item.getId()))
+        );
+        assertEquals(2, item.getQuantity());
+        verify(productService, never()).updateProductStock(any(Product.class), anyInt());
+        verify(basketService, never()).removeItemFromBasket(any(Basket.class), any(BasketItem.class));
+    }
+
     @Test
     void ensureStockAvailable_ShouldThrowIllegalArgumentException_WhenProductIsNull() {
         //Given
@@ -0,0 +1,237 @@
+package com.fabiolima.e_commerce.service;
+
+import com.fabiolima.e_commerce.dto.BasketItemResponse;
+import com.fabiolima.e_commerce.entities.Basket;
+import com.fabiolima.e_commerce.entities.BasketItem;
+import com.fabiolima.e_commerce.entities.Product;
+import com.fabiolima.e_commerce.entities.User;
+import com.fabiolima.e_commerce.exceptions.InsufficientStockException;
+import com.fabiolima.e_commerce.repository.BasketItemRepository;
+import com.fabiolima.e_commerce.repository.BasketRepository;
+import com.fabiolima.e_commerce.repository.ProductRepository;
+import com.fabiolima.e_commerce.repository.ProductStockShardRepository;
+import com.fabiolima.e_commerce.repository.UserRepository;
+import com.fabiolima.e_commerce.service.implementation.BasketMutationCoalescer;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Rapid-click load: many +1/-1 requests on one basket line, compared with applying them one by one.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:basket-coalescing;DB_CLOSE_DELAY=-1",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.globally_quoted_identifiers=true",
+        "spring.jpa.properties.hibernate.type.preferred_uuid_jdbc_type=BINARY",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "basket.coalescing.window-ms=50"
+})
+class BasketMutationCoalescerTest {
+
+    private static final int INITIAL_STOCK = 10_000;
+    private static final int CLIENTS = 20;
+    private static final int CLICKS_PER_CLIENT = 5;
+
+    @Autowired
+    private BasketMutationCoalescer coalescer;
+    @Autowired
+    private BasketItemService basketItemService;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private ProductService productService;
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private ProductStockShardRepository shardRepository;
+    @Autowired
+    private BasketRepository basketRepository;
+    @Autowired
+    private BasketItemRepository basketItemRepository;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Test
+    void rapidIncrements_ShouldBeWrittenAsFarFewerUpdates_WithTheSameFinalState() throws Exception {
+        //baseline: the same number of clicks applied one request at a time
+        Line baseline = line("baseline@user.com");
+        statistics.clear();
+        for (int i = 0; i < CLIENTS * CLICKS_PER_CLIENT; i++)
+            basketItemService.incrementItemQuantity(baseline.itemId);
+        long baselineUpdates = statistics.getEntityUpdateCount();
+
+        //coalesced: 20 clients clicking 5 times each, as fast as the responses come back
+        Line coalesced = line("coalesced@user.com");
+        long writesBefore = coalescer.getWrites();
+        statistics.clear();
+        List<BasketItemResponse> responses = clickConcurrently(coalesced, 1);
+        long coalescedUpdates = statistics.getEntityUpdateCount();
+        long coalescedWrites = coalescer.getWrites() - writesBefore;
+
+        int clicks = CLIENTS * CLICKS_PER_CLIENT;
+        assertEquals(1 + clicks, basketItemRepository.findById(coalesced.itemId).orElseThrow().getQuantity());
+        assertEquals(INITIAL_STOCK - clicks, productRepository.findById(coalesced.productId).orElseThrow().getStock());
+        assertEquals(clicks, responses.size());
+        assertTrue(coalescedWrites * 10 <= clicks, "quantity writes: " + coalescedWrites);
+        assertTrue(coalescedUpdates * 10 <= baselineUpdates,
+                String.format("entity updates one by one: %d, coalesced: %d", baselineUpdates, coalescedUpdates));
+    }
+
+    @Test
+    void clicksThatCancelOut_ShouldNotWriteAnything() throws Exception {
+        Line line = line("undecided@user.com");
+        long writesBefore = coalescer.getWrites();
+
+        // every client sends +1 and -1 at the same time
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<BasketItemResponse>> futures = new ArrayList<>();
+            for (int c = 0; c < CLIENTS; c++)
+                for (int delta : new int[]{1, -1})
+                    futures.add(executor.submit(() -> {
+                        start.await();
+                        return coalescer.submit(line.basketId, line.itemId, delta);
+                    }));
+            start.countDown();
+            for (Future<BasketItemResponse> future : futures)
+                future.get(30, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(1, basketItemRepository.findById(line.itemId).orElseThrow().getQuantity());
+        assertEquals(INITIAL_STOCK, productRepository.findById(line.productId).orElseThrow().getStock());
+        assertTrue(coalescer.getWrites() - writesBefore <= 2, "only a window split between +1 and -1 can write");
+    }
+
+    @Test
+    void incrementsBeyondTheStock_ShouldApplyWhatTheStockCovers_AndFailOnlyTheExcess() throws Exception {
+        Line line = line("greedy@user.com", 3);
+
+        int succeeded = clickOnceEach(line, 10);
+
+        assertEquals(3, succeeded);
+        assertEquals(1 + 3, basketItemRepository.findById(line.itemId).orElseThrow().getQuantity());
+        assertEquals(0, productRepository.findById(line.productId).orElseThrow().getStock());
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {0, 100})
+    void incrementsOfAShardedProduct_ShouldBeCappedByItsShards_NotByTheCachedTotal(int cachedStock) throws Exception {
+        Line line = line("sharded-" + cachedStock + "@user.com", 3);
+        productService.shardProductStock(line.productId, 2);
+        // the rebalance job has not refreshed the cached total yet
+        Product product = productRepository.findById(line.productId).orElseThrow();
+        product.setStock(cachedStock);
+        productRepository.save(product);
+
+        int succeeded = clickOnceEach(line, 10);
+
+        assertEquals(3, succeeded);
+        assertEquals(1 + 3, basketItemRepository.findById(line.itemId).orElseThrow().getQuantity());
+        assertEquals(0, shardRepository.sumStock(line.productId));
+    }
+
+    // every click arrives within the same window; returns how many were applied, the others must be out of stock
+    private int clickOnceEach(Line line, int clicks) throws Exception {
+        int succeeded = 0;
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<BasketItemResponse>> futures = new ArrayList<>();
+            for (int c = 0; c < clicks; c++)
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return coalescer.submit(line.basketId, line.itemId, 1);
+                }));
+            start.countDown();
+            for (Future<BasketItemResponse> future : futures) {
+                try {
+                    future.get(30, TimeUnit.SECONDS);
+                    succeeded++;
+                } catch (ExecutionException e) {
+                    assertInstanceOf(InsufficientStockException.class, e.getCause());
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return succeeded;
+    }
+
+    private List<BasketItemResponse> clickConcurrently(Line line, int delta) throws Exception {
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<List<BasketItemResponse>>> futures = new ArrayList<>();
+            for (int c = 0; c < CLIENTS; c++)
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    List<BasketItemResponse> responses = new ArrayList<>();
+                    for (int i = 0; i < CLICKS_PER_CLIENT; i++)
+                        responses.add(coalescer.submit(line.basketId, line.itemId, delta));
+                    return responses;
+                }));
+            start.countDown();
+            List<BasketItemResponse> responses = new ArrayList<>();
+            for (Future<List<BasketItemResponse>> future : futures)
+                responses.addAll(future.get(60, TimeUnit.SECONDS));
+            return responses;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private Line line(String email) {
+        return line(email, INITIAL_STOCK);
+    }
+
+    private Line line(String email, int stock) {
+        User user = new User();
+        user.setName("Clicking User");
+        user.setEmail(email);
+        user.setPassword("secret");
+        userRepository.save(user);
+
+        Product product = new Product();
+        product.setProductName("Headphones");
+        product.setProductPrice(new BigDecimal("20.00"));
+        product.setCategory("Electronics");
+        product.setStock(stock);
+        productRepository.save(product);
+
+        Basket basket = new Basket();
+        basket.setUser(user);
+        basket.addBasketItemToBasket(BasketItem.builder().product(product).quantity(1).build());
+        basketRepository.save(basket);
+        return new Line(basket.getId(), basket.getBasketItems().getFirst().getId(), product.getId());
+    }
+
+    private record Line(UUID basketId, UUID itemId, UUID productId) {
+    }
+}
@@ -0,0 +1,167 @@
+package com.fabiolima.e_commerce.service;
+
+import com.fabiolima.e_commerce.entities.Basket;
+import com.fabiolima.e_commerce.entities.BasketItem;
+import com.fabiolima.e_commerce.entities.Product;
+import com.fabiolima.e_commerce.entities.User;
+import com.fabiolima.e_commerce.entities.enums.BasketStatus;
+import com.fabiolima.e_commerce.repository.BasketRepository;
+import com.fabiolima.e_commerce.repository.ProductRepository;
+import com.fabiolima.e_commerce.repository.UserRepository;
+import com.fabiolima.e_commerce.service.implementation.BasketTouchTracker;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.orm.jpa.EntityManagerFactoryUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Basket-table writes caused by item changes, before (one basket save per change) and after write-behind.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:basket-touch;DB_CLOSE_DELAY=-1",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.globally_quoted_identifiers=true",
+        "spring.jpa.properties.hibernate.type.preferred_uuid_jdbc_type=BINARY",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "basket.touch.flush-interval-ms=3600000"
+})
+class BasketTouchTrackerTest {
+
+    private static final int BASKETS = 20;
+    private static final int CHANGES_PER_BASKET = 10;
+
+    @Autowired
+    private BasketTouchTracker tracker;
+    @Autowired
+    private BasketItemService basketItemService;
+    @Autowired
+    private BasketService basketService;
+    @Autowired
+    private BasketRepository basketRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        tracker.flush();
+    }
+
+    @Test
+    void basketWritesPerSecond_ShouldDropWithWriteBehind() {
+        List<Basket> before = baskets("before");
+        List<Basket> after = baskets("after");
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+
+        //before: what every item change used to do, set last_updated and save the basket
+        statistics.clear();
+        long start = System.nanoTime();
+        for (int i = 0; i < CHANGES_PER_BASKET; i++)
+            for (Basket basket : before)
+                transaction.executeWithoutResult(status -> {
+                    Basket reference = basketRepository.findById(basket.getId()).orElseThrow();
+                    reference.setLastUpdated(LocalDateTime.now());
+                    basketRepository.save(reference);
+                });
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long basketUpdatesBefore = basketUpdates();
+        double writesPerSecondBefore = basketUpdatesBefore / seconds;
+
+        //after: the same number of real item changes, then one flush
+        statistics.clear();
+        long statementsBefore = tracker.getStatements();
+        start = System.nanoTime();
+        for (int i = 0; i < CHANGES_PER_BASKET; i++)
+            for (Basket basket : after)
+                basketItemService.incrementItemQuantity(basket.getBasketItems().getFirst().getId());
+        tracker.flush();
+        seconds = (System.nanoTime() - start) / 1e9;
+        long basketWritesAfter = basketUpdates() + (tracker.getStatements() - statementsBefore);
+        double writesPerSecondAfter = basketWritesAfter / seconds;
+
+        String rates = String.format("basket writes/s before: %.0f (%d writes), after: %.1f (%d writes)",
+                writesPerSecondBefore, basketUpdatesBefore, writesPerSecondAfter, basketWritesAfter);
+        assertEquals(BASKETS * CHANGES_PER_BASKET, basketUpdatesBefore, rates);
+        assertEquals(1, basketWritesAfter, rates);
+        assertEquals(0, tracker.getPendingCount());
+        for (Basket basket : after)
+            assertTrue(basketRepository.findById(basket.getId()).orElseThrow().getLastUpdated()
+                    .isAfter(basket.getLastUpdated()), rates);
+    }
+
+    @Test
+    void expirySweep_ShouldKeepBasketsWithActivityNotYetFlushed() {
+        Basket touched = baskets("touched-stale").getFirst();
+        Basket untouched = baskets("untouched-stale").getFirst();
+        ageBaskets(List.of(touched.getId(), untouched.getId()), LocalDateTime.now().minusDays(2));
+
+        tracker.touch(touched.getId());
+        basketService.deleteExpiredBasketAndAddNewOne();
+
+        assertTrue(basketRepository.findById(touched.getId()).isPresent());
+        assertTrue(basketRepository.findById(untouched.getId()).isEmpty());
+    }
+
+    // @UpdateTimestamp would overwrite last_updated on save, so write the old value with a bulk update
+    private void ageBaskets(List<UUID> ids, LocalDateTime lastUpdated) {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+                EntityManagerFactoryUtils.getTransactionalEntityManager(entityManagerFactory)
+                        .createQuery("UPDATE Basket b SET b.lastUpdated = :lastUpdated WHERE b.id IN :ids")
+                        .setParameter("lastUpdated", lastUpdated)
+                        .setParameter("ids", ids)
+                        .executeUpdate());
+    }
+
+    private long basketUpdates() {
+        return statistics.getEntityStatistics(Basket.class.getName()).getUpdateCount();
+    }
+
+    private List<Basket> baskets(String prefix) {
+        Product product = new Product();
+        product.setProductName("Mug");
+        product.setProductPrice(new BigDecimal("5.00"));
+        product.setCategory("Kitchen");
+        product.setStock(100_000);
+        productRepository.save(product);
+
+        List<Basket> baskets = new ArrayList<>();
+        for (int i = 0; i < BASKETS; i++) {
+            User user = new User();
+            user.setName("Basket User");
+            user.setEmail(prefix + i + "@user.com");
+            user.setPassword("secret");
+            userRepository.save(user);
+
+            Basket basket = new Basket();
+            basket.setBasketStatus(BasketStatus.ACTIVE);
+            basket.setUser(user);
+            basket.addBasketItemToBasket(BasketItem.builder().product(product).quantity(1).build());
+            baskets.add(basketRepository.save(basket));
+        }
+        return baskets;
+    }
+}
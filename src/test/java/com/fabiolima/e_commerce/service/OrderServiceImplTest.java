@@ -3,6 +3,7 @@ package com.fabiolima.e_commerce.service;
 import com.fabiolima.e_commerce.exceptions.ForbiddenException;
 import com.fabiolima.e_commerce.exceptions.NotFoundException;
 import com.fabiolima.e_commerce.entities.*;
+import com.fabiolima.e_commerce.entities.enums.BasketStatus;
 import com.fabiolima.e_commerce.entities.enums.OrderStatus;
 import com.fabiolima.e_commerce.repository.OrderRepository;
 import com.fabiolima.e_commerce.repository.ProductRepository;
@@ -497,6 +498,42 @@ class OrderServiceImplTest {
         verify(orderRepository,times(1)).save(expected);
     }
 
+    @Test
+    void cancelOrder_ShouldReturnStockAndCloseTheBasket_WhenTheBasketWasCheckedOut() {
+        //given
+        Product product = Product.builder().stock(7).productPrice(new BigDecimal("4.50")).build();
+        Order order = pendingOrderOf(BasketStatus.CHECKED_OUT, product, 3);
+
+        when(orderRepository.findById(any())).thenReturn(Optional.of(order));
+        when(productRepository.save(any(Product.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(orderRepository.save(any())).thenReturn(order);
+
+        //when
+        orderService.cancelOrder(order.getId());
+
+        //then: the units sold with the order are back on sale, and the basket no longer counts them
+        assertEquals(10, product.getStock());
+        assertEquals(BasketStatus.INACTIVE, order.getBasket().getBasketStatus());
+    }
+
+    @Test
+    void cancelOrder_ShouldNotReturnStock_WhenTheBasketStillHoldsTheItems() {
+        //given
+        Product product = Product.builder().stock(7).productPrice(new BigDecimal("4.50")).build();
+        Order order = pendingOrderOf(BasketStatus.ACTIVE, product, 3);
+
+        when(orderRepository.findById(any())).thenReturn(Optional.of(order));
+        when(orderRepository.save(any())).thenReturn(order);
+
+        //when
+        orderService.cancelOrder(order.getId());
+
+        //then: the ACTIVE basket gives the units back itself when it is cleared, deactivated or expires
+        assertEquals(7, product.getStock());
+        assertEquals(BasketStatus.ACTIVE, order.getBasket().getBasketStatus());
+        verify(productRepository, never()).save(any(Product.class));
+    }
+
     @ParameterizedTest
     @CsvSource({
             "COMPLETED",
@@ -521,4 +558,17 @@ class OrderServiceImplTest {
 
     }
 
-}
\ No newline at end of file
+    private static Order pendingOrderOf(BasketStatus basketStatus, Product product, int quantity) {
+        Order order = new Order();
+        order.setId(UUID.randomUUID());
+        order.setOrderStatus(PENDING);
+
+        Basket basket = new Basket();
+        basket.setId(UUID.randomUUID());
+        basket.setBasketStatus(basketStatus);
+        basket.setOrder(order);
+        basket.addBasketItemToBasket(BasketItem.builder().quantity(quantity).product(product).build());
+        order.setBasket(basket);
+        return order;
+    }
+}
@@ -0,0 +1,166 @@
+package com.fabiolima.e_commerce.service;
+
+import com.fabiolima.e_commerce.exceptions.PayPalException;
+import com.fabiolima.e_commerce.exceptions.PaymentOutcomeUnknownException;
+import com.fabiolima.e_commerce.exceptions.ServiceUnavailableException;
+import com.fabiolima.e_commerce.service.implementation.CircuitBreaker;
+import com.fabiolima.e_commerce.service.implementation.PaypalGatewayImpl;
+import com.fabiolima.e_commerce.support.PayPalStub;
+import com.paypal.core.PayPalEnvironment;
+import com.paypal.core.PayPalHttpClient;
+import com.paypal.http.exceptions.HttpException;
+import com.paypal.orders.*;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PaypalGatewayImplTest {
+
+    private PayPalStub payPalStub;
+    private ExecutorService executor;
+    private PaypalGatewayImpl paypalGateway;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        payPalStub = new PayPalStub();
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+        PayPalHttpClient client = new PayPalHttpClient(
+                new PayPalEnvironment("client", "secret", payPalStub.getBaseUrl(), payPalStub.getBaseUrl()));
+        client.setReadTimeout(1_000);
+        // 300ms deadline, 2 calls in flight, breaker opens after 3 failures for 60s
+        paypalGateway = new PaypalGatewayImpl(client, executor, ObservationRegistry.NOOP, 300, 2, 3, 60);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.close();
+        payPalStub.close();
+    }
+
+    @Test
+    void createOrder_ShouldReturnPayPalOrder_WhenPayPalIsHealthy() {
+        Order order = paypalGateway.createOrder(orderRequest());
+
+        assertAll(
+                () -> assertEquals("CREATED", order.status()),
+                () -> assertTrue(order.links().stream().anyMatch(link -> "approve".equals(link.rel()))),
+                () -> assertEquals(1, paypalGateway.getStats(PaypalGatewayImpl.Operation.CREATE_ORDER).getCalls())
+        );
+    }
+
+    @Test
+    void createOrder_ShouldFailFastWithProviderBusy_WhenPayPalIsSlowerThanTheDeadline() {
+        payPalStub.setLatencyMillis(2_000);
+
+        long start = System.nanoTime();
+        assertThrows(ServiceUnavailableException.class, () -> paypalGateway.createOrder(orderRequest()));
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        assertTrue(elapsedMillis < 1_000, "caller waited " + elapsedMillis + "ms");
+        assertEquals(1, paypalGateway.getStats(PaypalGatewayImpl.Operation.CREATE_ORDER).getTimeouts());
+    }
+
+    @Test
+    void captureOrder_ShouldReportAnUnknownOutcome_WhenPayPalIsSlowerThanTheDeadline() {
+        payPalStub.setLatencyMillis(2_000);
+
+        assertThrows(PaymentOutcomeUnknownException.class, () -> paypalGateway.captureOrder("ORDER-1"));
+        assertEquals(1, paypalGateway.getStats(PaypalGatewayImpl.Operation.CAPTURE_ORDER).getTimeouts());
+    }
+
+    @Test
+    void createOrder_ShouldKeepPayPalsAnswerAsTheCause_WhenPayPalRefuses() {
+        payPalStub.setErrorStatus(422);
+
+        PayPalException failure = assertThrows(PayPalException.class, () -> paypalGateway.createOrder(orderRequest()));
+
+        assertInstanceOf(HttpException.class, failure.getCause());
+        assertEquals(422, ((HttpException) failure.getCause()).statusCode());
+    }
+
+    @Test
+    void captureOrder_ShouldNotCaptureTwice_WhenSentAgain() {
+        Order first = paypalGateway.captureOrder("ORDER-1");
+        Order second = paypalGateway.captureOrder("ORDER-1");
+
+        assertEquals(1, payPalStub.getCaptures());
+        assertEquals(first.purchaseUnits().getFirst().payments().captures().getFirst().id(),
+                second.purchaseUnits().getFirst().payments().captures().getFirst().id());
+    }
+
+    @Test
+    void hungCall_ShouldGiveItsPermitBack_WhenTheReadTimeoutEndsIt() throws Exception {
+        payPalStub.setLatencyMillis(5_000);
+
+        assertThrows(ServiceUnavailableException.class, () -> paypalGateway.createOrder(orderRequest()));
+        assertEquals(1, paypalGateway.getAvailableCallPermits(), "the call still holds its permit past the deadline");
+
+        // the read timeout (1s) ends the call long before PayPal answers (5s)
+        long deadline = System.nanoTime() + 3_000_000_000L;
+        while (paypalGateway.getAvailableCallPermits() < 2 && System.nanoTime() < deadline)
+            Thread.sleep(20);
+        assertEquals(2, paypalGateway.getAvailableCallPermits());
+    }
+
+    @Test
+    void createOrder_ShouldRejectCallsAboveTheBulkhead() {
+        payPalStub.setLatencyMillis(1_000);
+
+        List<CompletableFuture<Order>> calls = new ArrayList<>();
+        for (int i = 0; i < 5; i++)
+            calls.add(paypalGateway.createOrderAsync(orderRequest()));
+
+        long rejected = calls.stream()
+                .filter(call -> call.isCompletedExceptionally())
+                .count();
+        assertEquals(3, rejected);
+        assertEquals(3, paypalGateway.getStats(PaypalGatewayImpl.Operation.CREATE_ORDER).getRejected());
+    }
+
+    @Test
+    void circuitBreaker_ShouldOpenAfterConsecutiveFailures_AndStopCallingPayPal() {
+        payPalStub.setErrorStatus(500);
+
+        for (int i = 0; i < 3; i++)
+            assertThrows(PayPalException.class, () -> paypalGateway.captureOrder("ORDER-1"));
+        int requestsBeforeOpen = payPalStub.getOrderRequests();
+
+        assertThrows(ServiceUnavailableException.class, () -> paypalGateway.captureOrder("ORDER-1"));
+
+        assertAll(
+                () -> assertEquals(CircuitBreaker.State.OPEN, paypalGateway.getCircuitBreakerState()),
+                () -> assertEquals(requestsBeforeOpen, payPalStub.getOrderRequests()),
+                () -> assertEquals(3, paypalGateway.getStats(PaypalGatewayImpl.Operation.CAPTURE_ORDER).getFailures())
+        );
+    }
+
+    @Test
+    void circuitBreaker_ShouldStayClosed_WhenPayPalRefusesTheRequest() {
+        payPalStub.setErrorStatus(422);
+
+        for (int i = 0; i < 5; i++)
+            assertThrows(PayPalException.class, () -> paypalGateway.captureOrder("ORDER-1"));
+
+        assertAll(
+                () -> assertEquals(CircuitBreaker.State.CLOSED, paypalGateway.getCircuitBreakerState()),
+                () -> assertEquals(5, payPalStub.getOrderRequests()),
+                () -> assertEquals(0, paypalGateway.getStats(PaypalGatewayImpl.Operation.CAPTURE_ORDER).getRejected())
+        );
+    }
+
+    private OrderRequest orderRequest() {
+        return new OrderRequest()
+                .checkoutPaymentIntent("CAPTURE")
+                .purchaseUnits(List.of(new PurchaseUnitRequest()
+                        .amountWithBreakdown(new AmountWithBreakdown().currencyCode("EUR").value("10.00"))));
+    }
+}
@@ -0,0 +1,247 @@
+package com.fabiolima.e_commerce.service;
+
+import com.fabiolima.e_commerce.dto.OrderResponse;
+import com.fabiolima.e_commerce.entities.*;
+import com.fabiolima.e_commerce.entities.enums.BasketStatus;
+import com.fabiolima.e_commerce.entities.enums.OrderStatus;
+import com.fabiolima.e_commerce.entities.enums.PaymentStatus;
+import com.fabiolima.e_commerce.exceptions.ForbiddenException;
+import com.fabiolima.e_commerce.exceptions.NotFoundException;
+import com.fabiolima.e_commerce.filter.RouteGroup;
+import com.fabiolima.e_commerce.monitoring.ConnectionHoldTimeRecorder;
+import com.fabiolima.e_commerce.repository.*;
+import com.fabiolima.e_commerce.service.implementation.PaymentReconciliation;
+import com.fabiolima.e_commerce.service.implementation.PaypalServiceImpl;
+import com.fabiolima.e_commerce.support.PayPalStub;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the PayPal flows through the real gateway, against the local PayPal stand-in, and the real pool and
+ * transactions on H2.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:paypal-service;DB_CLOSE_DELAY=-1",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.globally_quoted_identifiers=true",
+        "spring.jpa.properties.hibernate.type.preferred_uuid_jdbc_type=BINARY",
+        "paypal.client-id=test",
+        "paypal.secret=test",
+        "paypal.gateway.timeout-ms=500",
+        // reconciliation is run by the tests themselves
+        "paypal.reconciliation.interval-ms=3600000"
+})
+class PaypalServiceImplTest {
+
+    private static final PayPalStub PAYPAL = startPayPalStub();
+    private static final long PAYPAL_LATENCY_MS = 300;
+
+    @Autowired
+    private PaypalServiceImpl paypalService;
+    @Autowired
+    private PaymentReconciliation paymentReconciliation;
+    @Autowired
+    private ConnectionHoldTimeRecorder recorder;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private BasketRepository basketRepository;
+    @Autowired
+    private OrderRepository orderRepository;
+    @Autowired
+    private PaymentRepository paymentRepository;
+    @Autowired
+    private OrderService orderService;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @DynamicPropertySource
+    static void environment(DynamicPropertyRegistry registry) {
+        byte[] key = new byte[32];
+        new SecureRandom().nextBytes(key);
+        registry.add("security.jwt.secret-key", () -> Base64.getEncoder().encodeToString(key));
+        registry.add("paypal.base-url", PAYPAL::getBaseUrl);
+    }
+
+    @AfterEach
+    void tearDown() {
+        PAYPAL.setLatencyMillis(0);
+        PAYPAL.setOnOrderRequest(() -> { });
+    }
+
+    @Test
+    void createOrder_ShouldNotHoldTransactionOrConnection_WhilePayPalIsCalled() {
+        //given
+        UUID orderId = pendingOrder("create@user.com", null);
+        PAYPAL.setLatencyMillis(PAYPAL_LATENCY_MS);
+        ConnectionHoldTimeRecorder.RequestHold hold = recorder.begin();
+        AtomicInteger openConnections = new AtomicInteger(-1);
+        PAYPAL.setOnOrderRequest(() -> openConnections.set(hold.getOpenConnections()));
+
+        //when
+        String approveUrl;
+        try {
+            approveUrl = paypalService.createOrder(orderId);
+        } finally {
+            recorder.end(hold, RouteGroup.PAYMENT);
+        }
+
+        //then
+        String paypalOrderId = orderRepository.findById(orderId).orElseThrow().getPaypalOrderId();
+        assertAll(
+                () -> assertNotNull(paypalOrderId),
+                () -> assertTrue(approveUrl.endsWith("token=" + paypalOrderId)),
+                () -> assertEquals(0, openConnections.get()),
+                () -> assertTrue(hold.getTotalNanos() < PAYPAL_LATENCY_MS * 1_000_000,
+                        "connections held for " + hold.getTotalNanos() / 1_000_000 + "ms")
+        );
+    }
+
+    @Test
+    void captureOrder_ShouldMarkOrderAsPaid_AfterPayPalCallOutsideTransaction() {
+        //given
+        UUID orderId = pendingOrder("capture@user.com", "PAYPAL-CAPTURE");
+        ConnectionHoldTimeRecorder.RequestHold hold = recorder.begin();
+        AtomicInteger openConnections = new AtomicInteger(-1);
+        PAYPAL.setOnOrderRequest(() -> openConnections.set(hold.getOpenConnections()));
+        AtomicBoolean transactionActive = new AtomicBoolean();
+
+        //when
+        OrderResponse result;
+        try {
+            result = paypalService.captureOrder("PAYPAL-CAPTURE");
+            transactionActive.set(TransactionSynchronizationManager.isActualTransactionActive());
+        } finally {
+            recorder.end(hold, RouteGroup.PAYMENT);
+        }
+
+        //then
+        assertEquals(orderId, result.getId());
+        assertEquals(OrderStatus.PAID, result.getOrderStatus());
+        assertEquals(0, openConnections.get());
+        assertFalse(transactionActive.get());
+    }
+
+    @Test
+    void captureOrder_ShouldLeaveTheOrderToReconciliation_WhenPayPalDoesNotAnswer() {
+        //given
+        UUID orderId = pendingOrder("unknown@user.com", "PAYPAL-UNKNOWN");
+        int capturesBefore = PAYPAL.getCaptures();
+        PAYPAL.setLatencyMillis(1_500);
+
+        //when
+        OrderResponse result = paypalService.captureOrder("PAYPAL-UNKNOWN");
+
+        //then: nothing is failed, the capture may have taken the money
+        assertEquals(OrderStatus.PENDING, result.getOrderStatus());
+        assertEquals(PaymentStatus.PENDING, payment(orderId).getPaymentStatus());
+
+        //when: PayPal answers again, the capture is sent again with the same request id
+        PAYPAL.setLatencyMillis(0);
+        paymentReconciliation.reconcilePendingPayments();
+
+        //then: the money was taken once and the order is paid
+        assertEquals(OrderStatus.PAID, orderRepository.findById(orderId).orElseThrow().getOrderStatus());
+        assertEquals(PaymentStatus.COMPLETED, payment(orderId).getPaymentStatus());
+        assertEquals(capturesBefore + 1, PAYPAL.getCaptures());
+    }
+
+    @Test
+    void captureOrder_ShouldRefundTheCapture_WhenTheOrderIsCancelledWhilePayPalIsCalled() {
+        //given: the user cancels the order while PayPal takes the money
+        UUID orderId = pendingOrder("cancel@user.com", "PAYPAL-CANCEL");
+        int refundsBefore = PAYPAL.getRefunds();
+        PAYPAL.setOnOrderRequest(() -> orderService.cancelOrder(orderId));
+
+        //when
+        assertThrows(ForbiddenException.class, () -> paypalService.captureOrder("PAYPAL-CANCEL"));
+
+        //then: the capture that could not be recorded is left to reconciliation, which refunds it
+        assertEquals(PaymentStatus.PENDING, payment(orderId).getPaymentStatus());
+        PAYPAL.setOnOrderRequest(() -> { });
+        paymentReconciliation.reconcilePendingPayments();
+
+        Payment payment = payment(orderId);
+        assertEquals(OrderStatus.CANCELLED, orderRepository.findById(orderId).orElseThrow().getOrderStatus());
+        assertEquals(PaymentStatus.REFUNDED, payment.getPaymentStatus());
+        assertEquals("CAPTURE-PAYPAL-CANCEL", payment.getTransactionId());
+        assertEquals(refundsBefore + 1, PAYPAL.getRefunds());
+    }
+
+    @Test
+    void captureOrder_ShouldNotCallPayPal_WhenNoSystemOrderMatchesToken() {
+        //given
+        int requestsBefore = PAYPAL.getOrderRequests();
+
+        //when //then
+        assertThrows(NotFoundException.class, () -> paypalService.captureOrder("UNKNOWN"));
+        assertEquals(requestsBefore, PAYPAL.getOrderRequests());
+    }
+
+    private Payment payment(UUID orderId) {
+        return paymentRepository.findByOrder_Id(orderId).orElseThrow();
+    }
+
+    // a pending order of a checked-out basket, so cancelling it gives its unit back
+    private UUID pendingOrder(String email, String paypalOrderId) {
+        return new TransactionTemplate(transactionManager).execute(status -> {
+            User user = new User();
+            user.setName("PayPal User");
+            user.setEmail(email);
+            user.setPassword("secret");
+            userRepository.save(user);
+
+            Product product = new Product();
+            product.setProductName("Console");
+            product.setProductPrice(new BigDecimal("10.00"));
+            product.setCategory("Electronics");
+            product.setStock(10);
+            productRepository.save(product);
+
+            Basket basket = new Basket();
+            user.addBasketToUser(basket);
+            basket.addBasketItemToBasket(BasketItem.builder().product(product).quantity(1).build());
+            basket.setBasketStatus(BasketStatus.CHECKED_OUT);
+            basketRepository.save(basket);
+
+            Order order = new Order();
+            order.setBasket(basket);
+            order.setTotalPrice(new BigDecimal("10.00"));
+            order.setPaypalOrderId(paypalOrderId);
+            user.addOrderToUser(order);
+            order.addOrderItemToOrder(OrderItem.builder().productId(product.getId())
+                    .productName("Console").price(new BigDecimal("10.00")).quantity(1).build());
+            return orderRepository.save(order).getId();
+        });
+    }
+
+    private static PayPalStub startPayPalStub() {
+        try {
+            return new PayPalStub();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
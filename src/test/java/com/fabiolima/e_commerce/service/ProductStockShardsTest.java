@@ -0,0 +1,208 @@
+package com.fabiolima.e_commerce.service;
+
+import com.fabiolima.e_commerce.entities.Basket;
+import com.fabiolima.e_commerce.entities.Product;
+import com.fabiolima.e_commerce.entities.ProductStockShard;
+import com.fabiolima.e_commerce.entities.User;
+import com.fabiolima.e_commerce.entities.enums.BasketStatus;
+import com.fabiolima.e_commerce.exceptions.InsufficientStockException;
+import com.fabiolima.e_commerce.repository.BasketRepository;
+import com.fabiolima.e_commerce.repository.ProductRepository;
+import com.fabiolima.e_commerce.repository.ProductStockShardRepository;
+import com.fabiolima.e_commerce.repository.UserRepository;
+import com.fabiolima.e_commerce.service.implementation.ProductStockShards;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Add-to-basket on a single SKU while its stock is split over 1, 4 and 16 rows. Each add-to-basket
+ * transaction keeps its locks for a few milliseconds more, standing in for the rest of the request's
+ * statements on a networked database.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:stock-shards;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=30000",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.globally_quoted_identifiers=true",
+        "spring.jpa.properties.hibernate.type.preferred_uuid_jdbc_type=BINARY",
+        "product.stock-shards.rebalance-interval-ms=3600000"
+})
+class ProductStockShardsTest {
+
+    private static final int CLIENTS = 12;
+    private static final int ADDS_PER_CLIENT = 20;
+    private static final long LOCK_HOLD_MS = 5;
+    private static final int INITIAL_STOCK = 100_000;
+
+    @Autowired
+    private ProductStockShards stockShards;
+    @Autowired
+    private ProductService productService;
+    @Autowired
+    private BasketItemService basketItemService;
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private ProductStockShardRepository shardRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private BasketRepository basketRepository;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void concurrentAdds_ShouldTakeEveryUnitExactlyOnce_WhateverTheNumberOfShards() throws Exception {
+        for (int shards : new int[]{1, 4, 16}) {
+            UUID productId = product(INITIAL_STOCK).getId();
+            productService.shardProductStock(productId, shards);
+            addToBasketConcurrently(productId);
+
+            assertEquals(INITIAL_STOCK - CLIENTS * ADDS_PER_CLIENT, shardRepository.sumStock(productId), shards + " shards");
+        }
+    }
+
+    // wall-clock comparison: only run by the load-test profile (mvn -P load-test test)
+    @Tag("load")
+    @Test
+    void addToBasketThroughput_ShouldGrowWithTheNumberOfShards() throws Exception {
+        Map<Integer, Double> addsPerSecond = new LinkedHashMap<>();
+        for (int shards : new int[]{1, 4, 16}) {
+            UUID productId = product(INITIAL_STOCK).getId();
+            productService.shardProductStock(productId, shards);
+            addsPerSecond.put(shards, addToBasketConcurrently(productId));
+        }
+
+        String results = "add-to-basket/s by number of shards: " + addsPerSecond;
+        assertTrue(addsPerSecond.get(4) > addsPerSecond.get(1), results);
+        assertTrue(addsPerSecond.get(16) > 2 * addsPerSecond.get(1), results);
+    }
+
+    @Test
+    void take_ShouldScanOtherShards_AndSplitAcrossThemWhenNoneHoldsEnough() {
+        Product product = productService.shardProductStock(product(8).getId(), 4); // 2 units per shard
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+
+        transaction.executeWithoutResult(status -> stockShards.take(product, 2));
+        transaction.executeWithoutResult(status -> stockShards.take(product, 5)); // more than any shard holds
+        assertEquals(1, shardRepository.sumStock(product.getId()));
+
+        assertThrows(InsufficientStockException.class,
+                () -> transaction.executeWithoutResult(status -> stockShards.take(product, 2)));
+        assertEquals(1, shardRepository.sumStock(product.getId()), "a failed take must not keep partial takes");
+    }
+
+    @Test
+    void give_ShouldNotLoseStock_WhenTheProductWasReshardedSinceItWasRead() {
+        Product stale = productService.shardProductStock(product(40).getId(), 4);
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+
+        // down to one shard: three of the four shard indexes the stale product may pick are gone
+        productService.shardProductStock(stale.getId(), 1);
+        for (int i = 0; i < 8; i++)
+            transaction.executeWithoutResult(status -> stockShards.give(stale, 1));
+        assertEquals(48, shardRepository.sumStock(stale.getId()));
+
+        // no shards anymore: the stock goes back to product.stock
+        productService.shardProductStock(stale.getId(), 0);
+        transaction.executeWithoutResult(status -> stockShards.give(stale, 2));
+        assertEquals(50, productRepository.findById(stale.getId()).orElseThrow().getStock());
+        assertTrue(stockShards.getMisplacedGives() >= 1);
+    }
+
+    @Test
+    void rebalance_ShouldEvenOutShards_AndRefreshTheCachedTotal() {
+        Product product = productService.shardProductStock(product(40).getId(), 4);
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        for (int i = 0; i < 9; i++)
+            transaction.executeWithoutResult(status -> shardRepository.take(product.getId(), 0, 1));
+
+        stockShards.rebalance();
+
+        List<Integer> shards = shardRepository.findAll().stream()
+                .filter(shard -> shard.getProductId().equals(product.getId()))
+                .map(ProductStockShard::getStock).toList();
+        assertEquals(31, shards.stream().mapToInt(Integer::intValue).sum());
+        assertTrue(shards.stream().allMatch(stock -> stock == 7 || stock == 8), shards.toString());
+        assertEquals(31, productRepository.findById(product.getId()).orElseThrow().getStock());
+
+        productService.shardProductStock(product.getId(), 0);
+        assertEquals(0, shardRepository.sumStock(product.getId()));
+        assertEquals(31, productRepository.findById(product.getId()).orElseThrow().getStock());
+    }
+
+    private double addToBasketConcurrently(UUID productId) throws Exception {
+        List<UUID> baskets = new ArrayList<>();
+        for (int c = 0; c < CLIENTS; c++)
+            baskets.add(basket().getId());
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+
+        ExecutorService executor = Executors.newFixedThreadPool(CLIENTS);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> futures = new ArrayList<>();
+            for (UUID basketId : baskets)
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < ADDS_PER_CLIENT; i++)
+                        transaction.executeWithoutResult(status -> {
+                            basketItemService.addItemToBasket(basketId, productId, 1);
+                            holdLocks();
+                        });
+                    return null;
+                }));
+            long begin = System.nanoTime();
+            start.countDown();
+            for (Future<?> future : futures)
+                future.get(120, TimeUnit.SECONDS);
+            return CLIENTS * ADDS_PER_CLIENT / ((System.nanoTime() - begin) / 1e9);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void holdLocks() {
+        try {
+            Thread.sleep(LOCK_HOLD_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private Product product(int stock) {
+        Product product = new Product();
+        product.setProductName("Best Seller");
+        product.setProductPrice(new BigDecimal("15.00"));
+        product.setCategory("Electronics");
+        product.setStock(stock);
+        return productRepository.save(product);
+    }
+
+    private Basket basket() {
+        User user = new User();
+        user.setName("Shard User");
+        user.setEmail(UUID.randomUUID() + "@user.com");
+        user.setPassword("secret");
+        userRepository.save(user);
+
+        Basket basket = new Basket();
+        basket.setBasketStatus(BasketStatus.ACTIVE);
+        basket.setUser(user);
+        return basketRepository.save(basket);
+    }
+}
@@ -0,0 +1,18 @@
+package com.fabiolima.e_commerce.support;
+
+import io.opentelemetry.sdk.testing.exporter.InMemorySpanExporter;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+
+/**
+ * Collects exported spans in memory instead of sending them over OTLP.
+ * Import it in a test annotated with @AutoConfigureObservability, which turns tracing back on.
+ */
+@TestConfiguration
+public class InMemoryTracing {
+
+    @Bean
+    public InMemorySpanExporter inMemorySpanExporter() {
+        return InMemorySpanExporter.create();
+    }
+}
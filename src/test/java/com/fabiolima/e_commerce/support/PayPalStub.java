@@ -0,0 +1,135 @@
+package com.fabiolima.e_commerce.support;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Local stand-in for the PayPal REST API (OAuth token, create order, capture order, refund capture).
+ * Latency and failures can be injected to reproduce a PayPal brown-out without network access.
+ * A capture or refund sent again with the same PayPal-Request-Id answers the first one, as PayPal does.
+ */
+public class PayPalStub implements AutoCloseable {
+
+    private final HttpServer server;
+    private final AtomicInteger orderRequests = new AtomicInteger();
+    private final Map<String, String> capturesByRequestId = new ConcurrentHashMap<>();
+    private final Map<String, String> refundsByRequestId = new ConcurrentHashMap<>();
+    private volatile Runnable onOrderRequest = () -> { };
+    private volatile long latencyMillis;
+    private volatile int errorStatus;
+
+    public PayPalStub() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/v1/oauth2/token", exchange ->
+                respond(exchange, 200, "{\"access_token\":\"stub-token\",\"token_type\":\"Bearer\",\"expires_in\":32400}"));
+        server.createContext("/v2/checkout/orders", this::handleOrders);
+        server.createContext("/v2/payments/captures", this::handleRefunds);
+        server.start();
+    }
+
+    public String getBaseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    public void setLatencyMillis(long latencyMillis) {
+        this.latencyMillis = latencyMillis;
+    }
+
+    /**
+     * @param errorStatus http status returned by the order endpoints, 0 to answer normally
+     */
+    public void setErrorStatus(int errorStatus) {
+        this.errorStatus = errorStatus;
+    }
+
+    /**
+     * @param onOrderRequest run on the stub's thread for every order request, before it is answered
+     */
+    public void setOnOrderRequest(Runnable onOrderRequest) {
+        this.onOrderRequest = onOrderRequest;
+    }
+
+    public int getOrderRequests() {
+        return orderRequests.get();
+    }
+
+    /** captures actually made, a capture sent again with the same PayPal-Request-Id is not counted */
+    public int getCaptures() {
+        return capturesByRequestId.size();
+    }
+
+    /** refunds actually made, a refund sent again with the same PayPal-Request-Id is not counted */
+    public int getRefunds() {
+        return refundsByRequestId.size();
+    }
+
+    private void handleOrders(HttpExchange exchange) throws IOException {
+        orderRequests.incrementAndGet();
+        exchange.getRequestBody().readAllBytes();
+        onOrderRequest.run();
+        if (latencyMillis > 0) {
+            try {
+                Thread.sleep(latencyMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (errorStatus > 0) {
+            respond(exchange, errorStatus, "{\"name\":\"INTERNAL_SERVER_ERROR\",\"message\":\"injected failure\"}");
+            return;
+        }
+
+        String path = exchange.getRequestURI().getPath();
+        if (path.endsWith("/capture")) {
+            String id = path.substring("/v2/checkout/orders/".length(), path.length() - "/capture".length());
+            String requestId = exchange.getRequestHeaders().getFirst("PayPal-Request-Id");
+            String captureId = capturesByRequestId.computeIfAbsent(requestId != null ? requestId : UUID.randomUUID().toString(),
+                    key -> "CAPTURE-" + id);
+            respond(exchange, 201, "{\"id\":\"" + id + "\",\"status\":\"COMPLETED\",\"purchase_units\":[{\"payments\":"
+                    + "{\"captures\":[{\"id\":\"" + captureId + "\",\"status\":\"COMPLETED\"}]}}]}");
+            return;
+        }
+        String id = UUID.randomUUID().toString().replace("-", "").substring(0, 17).toUpperCase();
+        respond(exchange, 201, "{\"id\":\"" + id + "\",\"status\":\"CREATED\",\"links\":["
+                + "{\"href\":\"" + getBaseUrl() + "/checkoutnow?token=" + id + "\",\"rel\":\"approve\",\"method\":\"GET\"}]}");
+    }
+
+    private void handleRefunds(HttpExchange exchange) throws IOException {
+        exchange.getRequestBody().readAllBytes();
+        String path = exchange.getRequestURI().getPath();
+        if (!path.endsWith("/refund")) {
+            respond(exchange, 404, "{\"name\":\"RESOURCE_NOT_FOUND\"}");
+            return;
+        }
+        String captureId = path.substring("/v2/payments/captures/".length(), path.length() - "/refund".length());
+        String requestId = exchange.getRequestHeaders().getFirst("PayPal-Request-Id");
+        String refundId = refundsByRequestId.computeIfAbsent(requestId != null ? requestId : UUID.randomUUID().toString(),
+                key -> "REFUND-" + captureId);
+        respond(exchange, 201, "{\"id\":\"" + refundId + "\",\"status\":\"COMPLETED\"}");
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}
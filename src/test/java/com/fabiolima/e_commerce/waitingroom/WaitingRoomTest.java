@@ -0,0 +1,240 @@
+package com.fabiolima.e_commerce.waitingroom;
+
+import com.fabiolima.e_commerce.dto.WaitingRoomResponse;
+import com.fabiolima.e_commerce.exceptions.ForbiddenException;
+import com.fabiolima.e_commerce.exceptions.NotFoundException;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WaitingRoomTest {
+
+    private static final long TICK_MILLIS = 100;
+    private final AdmissionTokens admissionTokens = new AdmissionTokens("test-secret");
+    private final UUID productId = UUID.randomUUID();
+
+    // ttl 300s, abandon after 30s, 2 units per admission
+    private final WaitingRoomManager manager = new WaitingRoomManager(admissionTokens, 300, 30, 2);
+
+    /**
+     * 50k users hit the room in the same instant. Clients poll when the room tells them to and add the product
+     * to their basket as soon as they are admitted; every add-to-basket is one database write.
+     * Without the room the database would take 50k writes at once, behind it the writes per second stay at the admission rate.
+     */
+    @Test
+    void surge_ShouldAdmitEveryoneInOrder_AtASteadyRate() throws Exception {
+        int users = 50_000;
+        int admissionsPerSecond = 500;
+        manager.open("launch", Set.of(productId), admissionsPerSecond);
+
+        // everybody joins at t=0, concurrently
+        List<Client> clients = new ArrayList<>(users);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<Client>> joins = new ArrayList<>(users);
+            for (int i = 0; i < users; i++) {
+                String user = "user" + i + "@mail.com";
+                joins.add(executor.submit(() -> new Client(user, manager.join("launch", user, 0))));
+            }
+            for (Future<Client> join : joins)
+                clients.add(join.get());
+        }
+        // positions handed out are exactly 1..50000, nobody shares or skips a place
+        boolean[] seen = new boolean[users];
+        for (Client client : clients) {
+            int place = (int) client.joined.getPosition() - 1;
+            assertFalse(seen[place], "position handed out twice");
+            seen[place] = true;
+        }
+
+        int seconds = users / admissionsPerSecond + 20;
+        int[] writesPerSecond = new int[seconds];
+        // admission times, read from the expiry of the token (admission + ttl)
+        long[] admittedAtByPlace = new long[users];
+        List<List<Client>> pollsDue = new ArrayList<>();
+        for (int tick = 0; tick < seconds * 1000 / TICK_MILLIS; tick++)
+            pollsDue.add(new ArrayList<>());
+        for (Client client : clients)
+            pollsDue.get((int) (client.joined.getPollAfterMillis() / TICK_MILLIS)).add(client);
+
+        long polls = 0;
+        for (int tick = 0; tick < pollsDue.size(); tick++) {
+            long now = tick * TICK_MILLIS;
+            manager.admit(now);
+            for (Client client : pollsDue.get(tick)) {
+                polls++;
+                WaitingRoomResponse status = manager.status("launch", client.user, now);
+                if (status.isAdmitted()) {
+                    manager.checkAdmission(productId, client.user, status.getAdmissionToken(), 1, now);
+                    writesPerSecond[(int) (now / 1000)]++;
+                    admittedAtByPlace[(int) client.joined.getPosition() - 1] = status.getAdmissionExpiresAt().toEpochMilli();
+                } else {
+                    int next = tick + (int) (status.getPollAfterMillis() / TICK_MILLIS);
+                    pollsDue.get(Math.min(next, pollsDue.size() - 1)).add(client);
+                }
+            }
+        }
+
+        WaitingRoomManager.RoomSnapshot room = manager.getRooms().getFirst();
+        int busiestSecond = 0;
+        for (int second = 1; second < seconds; second++)
+            busiestSecond = Math.max(busiestSecond, writesPerSecond[second]);
+        // the room hands out 50 admissions every 100ms tick. Clients notice their admission at their next poll
+        // (up to a second later), so a single second can see up to two seconds' worth of admissions,
+        // but over any 5 seconds the database sees the configured rate
+        int window = 5;
+        for (int second = 1; second + window <= users / admissionsPerSecond; second++) {
+            int writes = 0;
+            for (int i = second; i < second + window; i++)
+                writes += writesPerSecond[i];
+            assertEquals(admissionsPerSecond, writes / window, admissionsPerSecond / 5,
+                    "seconds " + second + " to " + (second + window));
+        }
+
+        // fairness: places are admitted in order
+        for (int place = 1; place < users; place++)
+            assertTrue(admittedAtByPlace[place - 1] <= admittedAtByPlace[place], "place " + place + " jumped the queue");
+
+        assertAll(
+                () -> assertEquals(users, room.admissions()),
+                () -> assertEquals(0, room.abandons(), "clients following pollAfterMillis never lose their place"),
+                () -> assertEquals(0, room.waiting()),
+                () -> assertEquals(0, manager.getRejectedRequests()),
+                () -> assertEquals(users, manager.getGuardedRequests())
+        );
+        assertTrue(busiestSecond <= admissionsPerSecond * 2, "busiest second saw " + busiestSecond + " writes");
+        // most polling happens far from the front, at the slow pace
+        assertTrue(polls < users * 40L, "clients polled " + polls + " times");
+    }
+
+    @Test
+    void admit_ShouldKeepArrivalOrder_AndSkipUsersWhoStoppedPolling() {
+        WaitingRoom room = new WaitingRoom("drop", Set.of(productId), 2);
+        WaitingRoom.Ticket a = room.join("a@mail.com", 0);
+        WaitingRoom.Ticket b = room.join("b@mail.com", 0);
+        WaitingRoom.Ticket c = room.join("c@mail.com", 0);
+        WaitingRoom.Ticket d = room.join("d@mail.com", 0);
+        room.admit(0, 30_000, 300_000);
+        assertEquals(List.of(1L, 2L, 3L, 4L), List.of(room.position(a), room.position(b), room.position(c), room.position(d)));
+
+        // joining again does not move anybody
+        assertSame(c, room.join("c@mail.com", 20_000));
+        room.poll("a@mail.com", 20_000);
+        room.poll("d@mail.com", 20_000);
+
+        // b has not polled for 40s: skipped without using one of the two admissions
+        room.admit(40_000, 30_000, 300_000);
+        assertAll(
+                () -> assertTrue(a.isAdmitted()),
+                () -> assertTrue(c.isAdmitted()),
+                () -> assertFalse(d.isAdmitted()),
+                () -> assertEquals(1, room.position(d)),
+                () -> assertNull(room.poll("b@mail.com", 40_000)),
+                () -> assertEquals(1, room.getAbandons())
+        );
+
+        // b comes back at the end of the queue
+        WaitingRoom.Ticket b2 = room.join("b@mail.com", 41_000);
+        assertEquals(2, room.position(b2));
+        assertEquals(2, room.getWaiting());
+    }
+
+    @Test
+    void admit_ShouldNotReleaseABurstAfterAnIdlePeriod() {
+        WaitingRoom room = new WaitingRoom("idle", Set.of(productId), 10);
+        room.admit(0, 30_000, 300_000);
+        List<WaitingRoom.Ticket> tickets = new ArrayList<>();
+        for (int i = 0; i < 100; i++)
+            tickets.add(room.join("user" + i + "@mail.com", 60_000));
+
+        // a minute of idle time is worth one second of admissions, not six hundred
+        room.admit(60_000, 30_000, 300_000);
+        assertEquals(10, tickets.stream().filter(WaitingRoom.Ticket::isAdmitted).count());
+    }
+
+    @Test
+    void checkAdmission_ShouldOnlyAcceptTheUsersOwnTokenForTheGuardingRoom() {
+        manager.open("launch", Set.of(productId), 1);
+        UUID otherProduct = UUID.randomUUID();
+        manager.open("other", Set.of(otherProduct), 1);
+
+        manager.join("launch", "alice@mail.com", 0);
+        manager.admit(0);
+        manager.admit(1_000);
+        String token = manager.status("launch", "alice@mail.com", 1_000).getAdmissionToken();
+        assertNotNull(token);
+
+        manager.checkAdmission(productId, "alice@mail.com", token, 1, 2_000);
+        manager.checkAdmission(UUID.randomUUID(), "alice@mail.com", null, 1, 2_000); // not guarded
+
+        String forged = new AdmissionTokens("another-secret").issue("launch", "mallory@mail.com", 10_000);
+        String[] parts = token.split("\\.");
+        String tampered = admissionTokens.issue("launch", "mallory@mail.com", 10_000).split("\\.")[0] + "." + parts[1];
+        assertAll(
+                () -> assertThrows(ForbiddenException.class, () -> manager.checkAdmission(productId, "alice@mail.com", null, 1, 2_000)),
+                () -> assertThrows(ForbiddenException.class, () -> manager.checkAdmission(productId, "bob@mail.com", token, 1, 2_000)),
+                () -> assertThrows(ForbiddenException.class, () -> manager.checkAdmission(otherProduct, "alice@mail.com", token, 1, 2_000)),
+                () -> assertThrows(ForbiddenException.class, () -> manager.checkAdmission(productId, "mallory@mail.com", forged, 1, 2_000)),
+                () -> assertThrows(ForbiddenException.class, () -> manager.checkAdmission(productId, "mallory@mail.com", tampered, 1, 2_000)),
+                () -> assertThrows(ForbiddenException.class, () -> manager.checkAdmission(productId, "alice@mail.com", "garbage", 1, 2_000)),
+                // expired
+                () -> assertThrows(ForbiddenException.class, () -> manager.checkAdmission(productId, "alice@mail.com", token, 1, 302_000))
+        );
+        assertEquals(7, manager.getRejectedRequests());
+
+        manager.close("launch");
+        manager.checkAdmission(productId, "bob@mail.com", null, 1, 2_000);
+        assertThrows(NotFoundException.class, () -> manager.join("launch", "bob@mail.com", 2_000));
+    }
+
+    @Test
+    void checkAdmission_ShouldLimitTheUnitsTakenWithOneAdmission() {
+        manager.open("launch", Set.of(productId), 1);
+        manager.join("launch", "alice@mail.com", 0);
+        manager.admit(0);
+        manager.admit(1_000);
+        String token = manager.status("launch", "alice@mail.com", 1_000).getAdmissionToken();
+
+        // add 1, then increment once: the 2 units the admission covers
+        manager.checkAdmission(productId, "alice@mail.com", token, 1, 2_000);
+        manager.checkAdmission(productId, "alice@mail.com", token, 1, 3_000);
+        assertThrows(ForbiddenException.class, () -> manager.checkAdmission(productId, "alice@mail.com", token, 1, 4_000));
+        // an add of several units is counted as a whole
+        assertThrows(ForbiddenException.class, () -> manager.checkAdmission(productId, "alice@mail.com", token, 5, 4_000));
+        // calls that take no stock still need the token, but do not use any unit
+        manager.checkAdmission(productId, "alice@mail.com", token, 0, 5_000);
+        assertThrows(ForbiddenException.class, () -> manager.checkAdmission(productId, "alice@mail.com", null, 0, 5_000));
+        assertEquals(3, manager.getRejectedRequests());
+    }
+
+    @Test
+    void status_ShouldReportPositionAndEstimatedWait() {
+        manager.open("launch", Set.of(productId), 2);
+        for (int i = 0; i < 10; i++)
+            manager.join("launch", "user" + i + "@mail.com", 0);
+        manager.admit(0);
+        manager.admit(1_000);
+
+        WaitingRoomResponse first = manager.status("launch", "user0@mail.com", 1_000);
+        WaitingRoomResponse last = manager.status("launch", "user9@mail.com", 1_000);
+        assertAll(
+                () -> assertTrue(first.isAdmitted()),
+                () -> assertEquals(0, first.getPosition()),
+                () -> assertNotNull(first.getAdmissionToken()),
+                () -> assertFalse(last.isAdmitted()),
+                () -> assertEquals(8, last.getPosition()),
+                () -> assertEquals(4, last.getEstimatedWaitSeconds()),
+                () -> assertNull(last.getAdmissionToken()),
+                () -> assertThrows(NotFoundException.class, () -> manager.status("launch", "stranger@mail.com", 1_000))
+        );
+    }
+
+    private record Client(String user, WaitingRoomResponse joined) {}
+}